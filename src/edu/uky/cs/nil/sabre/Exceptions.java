@@ -1,5 +1,8 @@
 package edu.uky.cs.nil.sabre;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.NoSuchElementException;
 
 import edu.uky.cs.nil.sabre.io.DefaultParser;
@@ -76,6 +79,80 @@ public class Exceptions {
 		return new OutOfMemoryError("All " + MemoryBudget.toString(size) + " of memory has been used.");
 	}
 	
+	/**
+	 * Thrown when a {@link edu.uky.cs.nil.sabre.util.BigArrayLong big array}
+	 * which stores its chunks in memory-mapped files fails to create or map a
+	 * new chunk file.
+	 * 
+	 * @param directory the directory where the chunk file was to be created
+	 * @param cause the exception that caused the failure
+	 * @return an UncheckedIOException
+	 */
+	public static final UncheckedIOException cannotMapChunk(File directory, IOException cause) {
+		return new UncheckedIOException("Failed to map a new chunk file in the directory \"" + directory + "\".", cause);
+	}
+	
+	/**
+	 * Thrown when a {@link edu.uky.cs.nil.sabre.ptree.ProgressionTree
+	 * progression tree} that uses the {@link
+	 * edu.uky.cs.nil.sabre.ptree.ProgressionTree#compact compact node layout}
+	 * has no more node ID numbers available.
+	 * 
+	 * @param limit the maximum number of nodes in a compact tree
+	 * @return an OutOfMemoryError
+	 */
+	public static final OutOfMemoryError compactTreeFull(long limit) {
+		return new OutOfMemoryError("A compact progression tree cannot hold more than " + limit + " nodes.");
+	}
+	
+	/**
+	 * Thrown when a {@link edu.uky.cs.nil.sabre.prog.ProgressionSearch#restore(java.io.InputStream)
+	 * search checkpoint} cannot be restored because it is malformed or was
+	 * written for a different problem or search.
+	 * 
+	 * @param reason a description of why the checkpoint cannot be restored
+	 * @return an IllegalArgumentException
+	 */
+	public static final IllegalArgumentException checkpointMismatch(String reason) {
+		return new IllegalArgumentException("The checkpoint cannot be restored: " + reason + ".");
+	}
+	
+	/**
+	 * Thrown when a {@link edu.uky.cs.nil.sabre.prog.ProgressionSpace
+	 * progression space} which does not support checkpoints is asked to
+	 * write or read one.
+	 * 
+	 * @param space the progression space
+	 * @return an UnsupportedOperationException
+	 */
+	public static final UnsupportedOperationException checkpointNotSupported(Object space) {
+		return new UnsupportedOperationException("The progression space \"" + space + "\" does not support checkpoints.");
+	}
+	
+	/**
+	 * Thrown when a {@link edu.uky.cs.nil.sabre.Session session} fails to
+	 * read or write its {@link edu.uky.cs.nil.sabre.Session#getCheckpoint()
+	 * checkpoint file}.
+	 * 
+	 * @param file the checkpoint file
+	 * @param cause the exception that caused the failure
+	 * @return an UncheckedIOException
+	 */
+	public static final UncheckedIOException checkpointFailed(File file, IOException cause) {
+		return new UncheckedIOException("Failed to read or write the checkpoint file \"" + file + "\".", cause);
+	}
+	
+	/**
+	 * Thrown when a {@link edu.uky.cs.nil.sabre.prog.PortfolioPlanner
+	 * portfolio planner} is asked to create a search but has not been given
+	 * any configurations to run.
+	 * 
+	 * @return an IllegalStateException
+	 */
+	public static final IllegalStateException emptyPortfolio() {
+		return new IllegalStateException("A portfolio planner must have at least one configuration.");
+	}
+	
 	/**
 	 * Thrown when a {@link Logical logical formula} should be ground (that is,
 	 * should contain no variables) but is not.
@@ -637,6 +714,18 @@ public class Exceptions {
 		return new IllegalArgumentException("The directory \"" + path + "\" was not found.");
 	}
 	
+	/**
+	 * Thrown when two {@link edu.uky.cs.nil.sabre.util.CommandLineArguments
+	 * command line arguments} cannot be used together.
+	 * 
+	 * @param argument the argument which cannot be used
+	 * @param other the argument it cannot be used with
+	 * @return an IllegalArgumentException
+	 */
+	public static final IllegalArgumentException incompatibleCommandLineArguments(String argument, String other) {
+		return new IllegalArgumentException("The command line argument \"" + argument + "\" cannot be used with \"" + other + "\".");
+	}
+	
 	/**
 	 * Thrown when a {@link edu.uky.cs.nil.sabre.util.CommandLineArguments a
 	 * command line argument} is not used for anything.
@@ -4,17 +4,22 @@ import java.io.File;
 import java.io.PrintStream;
 import java.lang.reflect.Array;
 
+import edu.uky.cs.nil.sabre.prog.CachedHeuristic;
 import edu.uky.cs.nil.sabre.prog.GraphHeuristic;
+import edu.uky.cs.nil.sabre.prog.PortfolioSearch;
 import edu.uky.cs.nil.sabre.prog.ProgressionCostFactory;
 import edu.uky.cs.nil.sabre.prog.ProgressionPlanner;
 import edu.uky.cs.nil.sabre.prog.ProgressionPlanner.Method;
+import edu.uky.cs.nil.sabre.prog.ProgressionSearch;
 import edu.uky.cs.nil.sabre.prog.ReachabilityHeuristic;
 import edu.uky.cs.nil.sabre.prog.RelaxedPlanHeuristic;
 import edu.uky.cs.nil.sabre.prog.WeightedCost;
+import edu.uky.cs.nil.sabre.ptree.ProgressionTree;
 import edu.uky.cs.nil.sabre.search.Planner;
 import edu.uky.cs.nil.sabre.search.Result;
 import edu.uky.cs.nil.sabre.search.Search;
 import edu.uky.cs.nil.sabre.util.CommandLineArguments;
+import edu.uky.cs.nil.sabre.util.MemoryBudget;
 import edu.uky.cs.nil.sabre.util.Worker;
 
 import r7.sabre.spaces.distance.DistanceMatrix;
@@ -99,11 +104,92 @@ public class Main {
 	 */
 	public static final String HEURISTIC_WEIGHT_KEY = "-hw";
 	
+	/**
+	 * The command line key for the number of values a {@link CachedHeuristic
+	 * heuristic cache} remembers
+	 */
+	public static final String HEURISTIC_CACHE_KEY = "-hc";
+	
 	/**
 	 * The command line key for {@link
 	 * ProgressionPlanner#getExplanationPruning() explanation pruning}
 	 */
 	public static final String EXPLANATION_PRUNING_KEY = "-ep";
+	
+	/**
+	 * The command line key for whether searches use a {@link
+	 * ProgressionPlanner#getTranspositions() transposition table}
+	 */
+	public static final String TRANSPOSITIONS_KEY = "-tt";
+	
+	/**
+	 * The command line key for the {@link ProgressionPlanner#getMemoryLimit()
+	 * memory limit} of the search tree
+	 */
+	public static final String MEMORY_LIMIT_KEY = "-mem";
+	
+	/**
+	 * The command line key for whether searches {@link
+	 * ProgressionPlanner#getReclaim() reclaim memory} from nodes they no
+	 * longer need
+	 */
+	public static final String RECLAIM_KEY = "-rc";
+	
+	/**
+	 * The command line key for whether searches {@link
+	 * ProgressionPlanner#getDeferred() defer evaluating the heuristic} of a
+	 * node until it is about to be visited
+	 */
+	public static final String DEFERRED_KEY = "-dh";
+	
+	/**
+	 * The command line key for the {@link ProgressionPlanner#getFocalWeight()
+	 * weight} used by {@link ProgressionPlanner.Method#FOCAL focal search}
+	 */
+	public static final String FOCAL_WEIGHT_KEY = "-fw";
+	
+	/**
+	 * The command line key for the {@link ProgressionPlanner#getThreads()
+	 * number of threads} used by {@link ProgressionPlanner.Method#PARALLEL
+	 * parallel search}
+	 */
+	public static final String THREADS_KEY = "-th";
+	
+	/**
+	 * The command line key for the {@link
+	 * ProgressionPlanner#getSnapshotInterval() snapshot interval}
+	 */
+	public static final String SNAPSHOT_INTERVAL_KEY = "-si";
+	
+	/**
+	 * The command line key for the {@link
+	 * ProgressionPlanner#getSnapshotBudget() snapshot memory budget}
+	 */
+	public static final String SNAPSHOT_BUDGET_KEY = "-sb";
+	
+	/**
+	 * The command line key for the {@link ProgressionPlanner#getStorage()
+	 * directory where the search tree is stored in memory-mapped files}
+	 */
+	public static final String STORAGE_KEY = "-st";
+	
+	/**
+	 * The command line key for whether the search tree {@link
+	 * ProgressionPlanner#getCompact() always uses the compact node layout}
+	 */
+	public static final String COMPACT_KEY = "-cl";
+	
+	/**
+	 * The command line key for the {@link Session#getCheckpoint() checkpoint
+	 * file} the search is restored from and saved to
+	 */
+	public static final String CHECKPOINT_KEY = "-cp";
+	
+	/**
+	 * The command line key for the {@link Session#getCheckpointInterval()
+	 * number of milliseconds between checkpoints}
+	 */
+	public static final String CHECKPOINT_INTERVAL_KEY = "-ci";
 
 	/**
 	 * The command line key for the number of solutions to find
@@ -121,6 +207,12 @@ public class Main {
 	 */
 	public static final String DISTANCE_KEY = "-d";
 
+	/**
+	 * The command line key for the {@link Session#getMinimumDistance() minimum
+	 * distance} between solutions
+	 */
+	public static final String MIN_DISTANCE_KEY = "-md";
+	
 	/**
 	 * The abbreviation for {@link ProgressionPlanner.Method#BEST_FIRST
 	 * best-first search}
@@ -139,6 +231,24 @@ public class Main {
 	 */
 	public static final String GOAL_FIRST_OPTION = "gf";
 	
+	/**
+	 * The abbreviation for {@link ProgressionPlanner.Method#FOCAL focal
+	 * search}
+	 */
+	public static final String FOCAL_OPTION = "focal";
+	
+	/**
+	 * The abbreviation for {@link ProgressionPlanner.Method#PARALLEL parallel
+	 * best-first search}
+	 */
+	public static final String PARALLEL_OPTION = "par";
+	
+	/**
+	 * The abbreviation for {@link ProgressionPlanner.Method#PORTFOLIO
+	 * portfolio search}
+	 */
+	public static final String PORTFOLIO_OPTION = "port";
+	
 	/**
 	 * The abbreviation for {@link
 	 * edu.uky.cs.nil.sabre.prog.ProgressionCost#ZERO the zero cost function}
@@ -217,6 +327,9 @@ public class Main {
 		pad("   " + BEST_FIRST_OPTION) +				"A* best-first (default)\n" +
 		pad("   " + EXPLANATION_FIRST_OPTION) +			"explanation-first: explain actions before achieving the goal\n" +
 		pad("   " + GOAL_FIRST_OPTION) +				"goal-first: achieve the goal before explaining actions\n" +
+		pad("   " + FOCAL_OPTION) +						"focal: greedily prefer nodes near the goal, no cost bound (see " + FOCAL_WEIGHT_KEY + ")\n" +
+		pad("   " + PARALLEL_OPTION) +					"A* best-first using several threads (see " + THREADS_KEY + ")\n" +
+		pad("   " + PORTFOLIO_OPTION) +					"run bf, ef, and gf at once and keep the first solution\n" +
 		pad(COST_KEY + " OPTION") +						"how plan cost is measured; options include:\n" +
 		pad("   " + ZERO_COST_OPTION) +					"always zero\n" +
 		pad("   " + PLAN_SIZE_COST_OPTION) +			"number of actions in the plan\n" +
@@ -229,7 +342,20 @@ public class Main {
 		pad("   " + SUM_HEURISTIC_OPTION) +				"estimate cost when a conjunction costs the sum of its arguments\n" +
 		pad("   " + RELAXED_PLAN_HEURISTIC_OPTION) +	"build a relaxed plan to approximate the solution (default)\n" +
 		pad(HEURISTIC_WEIGHT_KEY + " NUMBER") +			"a weight to multiply the heuristic by\n" +
+		pad(HEURISTIC_CACHE_KEY + " NUMBER") +			"remember this many heuristic values so repeated states are not evaluated again (default 0, no cache)\n" +
 		pad(EXPLANATION_PRUNING_KEY + " {y|n}") +		"once one explanation has been found for an action, do not search for more (default y)\n" +
+		pad(TRANSPOSITIONS_KEY + " {y|n}") +			"detect states reached by more than one path and share their explanations (default n)\n" +
+		pad(MEMORY_LIMIT_KEY + " MEMORY") +			"max memory for the search tree, such as 500M or 2G; the search stops with its best solution when it runs low (default unlimited)\n" +
+		pad(RECLAIM_KEY + " {y|n}") +			"discard searched subtrees that are no longer needed when the search tree doubles in size or runs low on memory (default n)\n" +
+		pad(DEFERRED_KEY + " {y|n}") +					"evaluate a node's heuristic only when it is about to be visited, queueing it with its parent's value until then (default n)\n" +
+		pad(FOCAL_WEIGHT_KEY + " NUMBER") +				"focal search may visit nodes up to this many times the lowest cost in the queue (default 1.25)\n" +
+		pad(THREADS_KEY + " NUMBER") +					"number of threads used by parallel search (default number of processors)\n" +
+		pad(SNAPSHOT_INTERVAL_KEY + " NUMBER") +		"record a node's full state after walking back this many nodes to find a value; " + ProgressionTree.NO_SNAPSHOTS + " for never (default " + ProgressionTree.NO_SNAPSHOTS + ")\n" +
+		pad(SNAPSHOT_BUDGET_KEY + " MEMORY") +			"max memory for state snapshots, such as 500M or 2G (default unlimited)\n" +
+		pad(STORAGE_KEY + " PATH") +					"store the search tree in memory-mapped files in this directory instead of on the heap; " + MEMORY_LIMIT_KEY + " then only limits heap indexes\n" +
+		pad(COMPACT_KEY + " {y|n}") +					"store node IDs as 32-bit ints to halve memory per node, limiting the tree to " + ProgressionTree.COMPACT_LIMIT + " nodes (default n)\n" +
+		pad(CHECKPOINT_KEY + " PATH") +					"resume the search from this file if it exists, and save the search to it periodically and when finished (not with " + METHOD_KEY + " " + PORTFOLIO_OPTION + ")\n" +
+		pad(CHECKPOINT_INTERVAL_KEY + " NUMBER") +		"min milliseconds between saves of the checkpoint file; 0 to save after every solution (default " + Session.DEFAULT_CHECKPOINT_INTERVAL + ")\n" +
 		pad(SEARCH_LIMIT_KEY + " NUMBER") +				"max nodes the search can visit; " + Planner.UNLIMITED_NODES + " for unlimited (default " + Planner.UNLIMITED_NODES + ")\n" +
 		pad(SPACE_LIMIT_KEY + " NUMBER") +				"max nodes the search can generate; " + Planner.UNLIMITED_NODES + " for unlimited (default " + Planner.UNLIMITED_NODES + ")\n" +
 		pad(TIME_LIMIT_KEY + " NUMBER") +				"max milliseconds the search can run; " + Planner.UNLIMITED_TIME + " for unlimited (default " + Planner.UNLIMITED_TIME + ")\n" +
@@ -240,7 +366,8 @@ public class Main {
 		pad(OUTPUT_KEY + " PATH") +                     "a directory for the output files\n" +
 		pad(DISTANCE_KEY + " OPTION") +                 "calculate distances between solutions using the given metric; options include:\n" + 
 		pad("   " + ACTION_JACCARD_OPTION) +            "action jaccard distance (default)\n" +
-		pad("   " + SALIENCE_DISTANCE_OPTION) +         "salience distance";
+		pad("   " + SALIENCE_DISTANCE_OPTION) +         "salience distance\n" +
+		pad(MIN_DISTANCE_KEY + " NUMBER") +             "skip solutions closer than this to a previous solution, using the " + DISTANCE_KEY + " metric (default 0, which only skips solutions with the same actions)";
 
 	/**
 	 * A functional interface for changing a setting in a {@link Session
@@ -346,7 +473,10 @@ public class Main {
 		(s, v) -> s.setMethod(v),
 		BEST_FIRST_OPTION, Method.BEST_FIRST,
 		EXPLANATION_FIRST_OPTION, Method.EXPLANATION_FIRST,
-		GOAL_FIRST_OPTION, Method.GOAL_FIRST
+		GOAL_FIRST_OPTION, Method.GOAL_FIRST,
+		FOCAL_OPTION, Method.FOCAL,
+		PARALLEL_OPTION, Method.PARALLEL,
+		PORTFOLIO_OPTION, Method.PORTFOLIO
 	);
 	
 	/**
@@ -406,8 +536,19 @@ public class Main {
 				else
 					result = session.getResult();
 				// Print results.
-				if(verbose)
-					System.out.println(session.getPrinter().toString(result) + "\n");
+				if(verbose) {
+					if(session.getSearch() instanceof PortfolioSearch && ((PortfolioSearch) session.getSearch()).getWinner() != null)
+						System.out.println("Solution found by " + ((PortfolioSearch) session.getSearch()).getWinner().name + ".");
+					System.out.println(session.getPrinter().toString(result));
+					if(session.getSearch() instanceof ProgressionSearch && ((ProgressionSearch) session.getSearch()).heuristic instanceof CachedHeuristic) {
+						CachedHeuristic cache = (CachedHeuristic) ((ProgressionSearch) session.getSearch()).heuristic;
+						if(cache.isStateBased())
+							System.out.println("  heuristic cache:  " + cache.getHits() + " hits; " + cache.getMisses() + " misses");
+						else
+							System.out.println("  heuristic cache:  not used, since " + cache.parent + " does not depend only on the state");
+					}
+					System.out.println();
+				}
 				else if(result.solution == null)
 					System.out.println(result.message);
 				if(!result.getSuccess()) {
@@ -415,6 +556,8 @@ public class Main {
 					break;
 				}
 			}
+			// Save checkpoint.
+			session.saveCheckpoint();
 			// Print solutions.
 			if(session.getSolutions() != null)
 				System.out.println("solutions found: " + session.getSolutions().size());
@@ -483,7 +626,35 @@ public class Main {
 				session.setCost(new WeightedCost.Factory(session.getCost(), arguments.getDouble(COST_WEIGHT_KEY, 1)));
 			if(arguments.contains(HEURISTIC_WEIGHT_KEY))
 				session.setCost(new WeightedCost.Factory(session.getHeuristic(), arguments.getDouble(HEURISTIC_WEIGHT_KEY, 1)));
+			if(arguments.getInt(HEURISTIC_CACHE_KEY, 0) > 0)
+				session.setHeuristic(new CachedHeuristic.Factory(session.getHeuristic(), arguments.getInt(HEURISTIC_CACHE_KEY, 0)));
 			session.setExplanationPruning(arguments.getBoolean(EXPLANATION_PRUNING_KEY, true));
+			session.setTranspositions(arguments.getBoolean(TRANSPOSITIONS_KEY, false));
+			session.setMemoryLimit(MemoryBudget.parse(arguments.get(MEMORY_LIMIT_KEY, "")));
+			session.setReclaim(arguments.getBoolean(RECLAIM_KEY, false));
+			session.setDeferred(arguments.getBoolean(DEFERRED_KEY, false));
+			session.setFocalWeight(arguments.getDouble(FOCAL_WEIGHT_KEY, 1.25));
+			session.setThreads(arguments.getInt(THREADS_KEY, Runtime.getRuntime().availableProcessors()));
+			session.setSnapshotInterval(arguments.getInt(SNAPSHOT_INTERVAL_KEY, ProgressionTree.NO_SNAPSHOTS));
+			session.setSnapshotBudget(MemoryBudget.parse(arguments.get(SNAPSHOT_BUDGET_KEY, "")));
+			if(arguments.contains(STORAGE_KEY)) {
+				String storage = arguments.get(STORAGE_KEY);
+				if(storage == null)
+					throw Exceptions.notSet(STORAGE_KEY);
+				if(!(new File(storage)).isDirectory())
+					throw Exceptions.directoryNotFound(storage);
+				session.setStorage(new File(storage));
+			}
+			session.setCompact(arguments.getBoolean(COMPACT_KEY, false));
+			if(arguments.contains(CHECKPOINT_KEY)) {
+				String checkpoint = arguments.get(CHECKPOINT_KEY);
+				if(checkpoint == null)
+					throw Exceptions.notSet(CHECKPOINT_KEY);
+				if(session.getMethod() == Method.PORTFOLIO)
+					throw Exceptions.incompatibleCommandLineArguments(CHECKPOINT_KEY, METHOD_KEY + " " + PORTFOLIO_OPTION);
+				session.setCheckpoint(new File(checkpoint));
+				session.setCheckpointInterval(arguments.getLong(CHECKPOINT_INTERVAL_KEY, Session.DEFAULT_CHECKPOINT_INTERVAL));
+			}
 		}
 		if(verbose)
 			Worker.run(s -> session.getSearch(), session.getStatus());
@@ -512,6 +683,11 @@ public class Main {
 			else
 				throw Exceptions.failedToParseCommandLineArgument(DISTANCE_KEY, metric);
 		}
+		if(arguments.contains(MIN_DISTANCE_KEY)) {
+			if(session.getDistance() == null)
+				session.setDistance(new ActionJaccardDistance());
+			session.setMinimumDistance(arguments.getDouble(MIN_DISTANCE_KEY, 0));
+		}
 	}
 	
 	/**
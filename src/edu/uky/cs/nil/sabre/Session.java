@@ -1,8 +1,16 @@
 package edu.uky.cs.nil.sabre;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 
 import edu.uky.cs.nil.sabre.comp.CompiledProblem;
 import edu.uky.cs.nil.sabre.io.DefaultParser;
@@ -16,9 +24,11 @@ import edu.uky.cs.nil.sabre.logic.Value;
 import edu.uky.cs.nil.sabre.prog.ProgressionCostFactory;
 import edu.uky.cs.nil.sabre.prog.ProgressionPlanner;
 import edu.uky.cs.nil.sabre.prog.ProgressionPlanner.Method;
+import edu.uky.cs.nil.sabre.prog.ProgressionSearch;
 import edu.uky.cs.nil.sabre.search.Planner;
 import edu.uky.cs.nil.sabre.search.Result;
 import edu.uky.cs.nil.sabre.search.Search;
+import edu.uky.cs.nil.sabre.util.MemoryBudget;
 import edu.uky.cs.nil.sabre.util.Worker.Status;
 
 import r7.sabre.spaces.StoryPlan;
@@ -122,6 +132,87 @@ public class Session {
 	 */
 	protected static final String EXPLANATION_PRUNING = "explanation pruning";
 	
+	/**
+	 * A name for the heuristic progression planner's {@link
+	 * ProgressionPlanner#getTranspositions() transposition table} setting
+	 */
+	protected static final String TRANSPOSITIONS = "transposition table";
+	
+	/**
+	 * A name for the heuristic progression planner's {@link
+	 * ProgressionPlanner#getMemoryLimit() memory limit} setting
+	 */
+	protected static final String MEMORY_LIMIT = "memory limit";
+	
+	/**
+	 * A name for the heuristic progression planner's {@link
+	 * ProgressionPlanner#getReclaim() reclaim memory} setting
+	 */
+	protected static final String RECLAIM = "reclaim memory";
+	
+	/**
+	 * A name for the heuristic progression planner's {@link
+	 * ProgressionPlanner#getDeferred() deferred heuristic} setting
+	 */
+	protected static final String DEFERRED = "deferred heuristic";
+	
+	/**
+	 * A name for the heuristic progression planner's {@link
+	 * ProgressionPlanner#getFocalWeight() focal weight} setting
+	 */
+	protected static final String FOCAL_WEIGHT = "focal weight";
+	
+	/**
+	 * A name for the heuristic progression planner's {@link
+	 * ProgressionPlanner#getThreads() threads} setting
+	 */
+	protected static final String THREADS = "threads";
+	
+	/**
+	 * A name for the heuristic progression planner's {@link
+	 * ProgressionPlanner#getSnapshotInterval() snapshot interval} setting
+	 */
+	protected static final String SNAPSHOT_INTERVAL = "snapshot interval";
+	
+	/**
+	 * A name for the heuristic progression planner's {@link
+	 * ProgressionPlanner#getSnapshotBudget() snapshot budget} setting
+	 */
+	protected static final String SNAPSHOT_BUDGET = "snapshot budget";
+	
+	/**
+	 * A name for the heuristic progression planner's {@link
+	 * ProgressionPlanner#getStorage() storage directory} setting
+	 */
+	protected static final String STORAGE = "storage";
+	
+	/**
+	 * A name for the heuristic progression planner's {@link
+	 * ProgressionPlanner#getCompact() compact node layout} setting
+	 */
+	protected static final String COMPACT = "compact layout";
+	
+	/** A name for the session's {@link #getCheckpoint() checkpoint file} */
+	protected static final String CHECKPOINT = "checkpoint";
+	
+	/**
+	 * A name for the session's {@link #getCheckpointInterval() checkpoint
+	 * interval}
+	 */
+	protected static final String CHECKPOINT_INTERVAL = "checkpoint interval";
+	
+	/**
+	 * The default {@link #getCheckpointInterval() number of milliseconds}
+	 * between saves of the {@link #getCheckpoint() checkpoint file}
+	 */
+	public static final long DEFAULT_CHECKPOINT_INTERVAL = 60000;
+	
+	/**
+	 * A name for the session's {@link #getMinimumDistance() minimum distance}
+	 * between solutions
+	 */
+	protected static final String MINIMUM_DISTANCE = "minimum distance";
+	
 	/** A name for the session's {@link Search search} object */
 	protected static final String SEARCH = "search";
 	
@@ -189,12 +280,42 @@ public class Session {
 	/** The list of {@link Solution solutions} found */
 	protected StorySpace solutions;
 	
+	/**
+	 * The file from which the search is restored when it is created and to
+	 * which it is saved periodically, or null
+	 */
+	protected File checkpoint;
+	
+	/**
+	 * The least number of milliseconds between saves of the {@link
+	 * #checkpoint checkpoint file}
+	 */
+	protected long checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+	
+	/**
+	 * The time, in milliseconds, when the {@link #checkpoint checkpoint file}
+	 * was last saved or the search was created
+	 */
+	protected long lastCheckpoint = 0;
+	
+	/**
+	 * Whether the search has been run since the {@link #checkpoint checkpoint
+	 * file} was last saved
+	 */
+	protected boolean unsaved = false;
+	
 	/** The output stream for writing solutions */
 	protected PrintStream out = System.out;
 	
 	/** The {@link DistanceMetric distance metric} with which to compare solutions */
 	protected DistanceMetric distanceMetric;
 	
+	/**
+	 * The smallest {@link #distanceMetric distance} allowed between any two
+	 * {@link #solutions solutions}
+	 */
+	protected double minimumDistance = 0;
+	
 	/**
 	 * Constructs a new session with a {@link DefaultParser default parser},
 	 * {@link edu.uky.cs.nil.sabre.io.DefaultPrinter default printer}, and a
@@ -736,6 +857,365 @@ public class Session {
 		getStatus().setMessage(EXPLANATION_PRUNING + ": " + value);
 	}
 	
+	/**
+	 * Returns the {@link ProgressionPlanner#getTranspositions() transposition
+	 * table} setting used by a {@link ProgressionPlanner heuristic progression
+	 * planner}, if the {@link #getPlanner() current planner} is that type.
+	 * 
+	 * @return whether a transposition table will be used
+	 * @throws IllegalStateException if the current planner is not a heuristic
+	 * progression planner
+	 */
+	public synchronized boolean getTranspositions() {
+		return pp().getTranspositions();
+	}
+	
+	/**
+	 * Sets the {@link ProgressionPlanner#getTranspositions() transposition
+	 * table} setting used by a {@link ProgressionPlanner heuristic progression
+	 * planner}, if the {@link #getPlanner() current planner} is that type.
+	 * 
+	 * @param value whether a transposition table should be used
+	 * @throws IllegalStateException if the current planner is not a heuristic
+	 * progression planner
+	 */
+	public synchronized void setTranspositions(boolean value) {
+		pp().setTranspositions(value);
+		setSearch(null);
+		getStatus().setMessage(TRANSPOSITIONS + ": " + value);
+	}
+	
+	/**
+	 * Returns the {@link ProgressionPlanner#getMemoryLimit() memory limit}
+	 * used by a {@link ProgressionPlanner heuristic progression planner}, if
+	 * the {@link #getPlanner() current planner} is that type.
+	 * 
+	 * @return the memory limit in bytes
+	 * @throws IllegalStateException if the current planner is not a heuristic
+	 * progression planner
+	 */
+	public synchronized long getMemoryLimit() {
+		return pp().getMemoryLimit();
+	}
+	
+	/**
+	 * Sets the {@link ProgressionPlanner#getMemoryLimit() memory limit} used
+	 * by a {@link ProgressionPlanner heuristic progression planner}, if the
+	 * {@link #getPlanner() current planner} is that type.
+	 * 
+	 * @param bytes the new memory limit in bytes
+	 * @throws IllegalStateException if the current planner is not a heuristic
+	 * progression planner
+	 */
+	public synchronized void setMemoryLimit(long bytes) {
+		pp().setMemoryLimit(bytes);
+		setSearch(null);
+		getStatus().setMessage(MEMORY_LIMIT + ": " + MemoryBudget.toString(bytes));
+	}
+	
+	/**
+	 * Returns the {@link ProgressionPlanner#getReclaim() reclaim memory}
+	 * setting used by a {@link ProgressionPlanner heuristic progression
+	 * planner}, if the {@link #getPlanner() current planner} is that type.
+	 * 
+	 * @return whether searches will reclaim memory from unneeded nodes
+	 * @throws IllegalStateException if the current planner is not a heuristic
+	 * progression planner
+	 */
+	public synchronized boolean getReclaim() {
+		return pp().getReclaim();
+	}
+	
+	/**
+	 * Sets the {@link ProgressionPlanner#getReclaim() reclaim memory} setting
+	 * used by a {@link ProgressionPlanner heuristic progression planner}, if
+	 * the {@link #getPlanner() current planner} is that type.
+	 * 
+	 * @param value whether searches should reclaim memory from unneeded nodes
+	 * @throws IllegalStateException if the current planner is not a heuristic
+	 * progression planner
+	 */
+	public synchronized void setReclaim(boolean value) {
+		pp().setReclaim(value);
+		setSearch(null);
+		getStatus().setMessage(RECLAIM + ": " + value);
+	}
+	
+	/**
+	 * Returns the {@link ProgressionPlanner#getDeferred() deferred heuristic}
+	 * setting used by a {@link ProgressionPlanner heuristic progression
+	 * planner}, if the {@link #getPlanner() current planner} is that type.
+	 * 
+	 * @return whether searches will wait to evaluate a node's heuristic until
+	 * the node is about to be visited
+	 * @throws IllegalStateException if the current planner is not a heuristic
+	 * progression planner
+	 */
+	public synchronized boolean getDeferred() {
+		return pp().getDeferred();
+	}
+	
+	/**
+	 * Sets the {@link ProgressionPlanner#getDeferred() deferred heuristic}
+	 * setting used by a {@link ProgressionPlanner heuristic progression
+	 * planner}, if the {@link #getPlanner() current planner} is that type.
+	 * 
+	 * @param value whether searches should wait to evaluate a node's heuristic
+	 * until the node is about to be visited
+	 * @throws IllegalStateException if the current planner is not a heuristic
+	 * progression planner
+	 */
+	public synchronized void setDeferred(boolean value) {
+		pp().setDeferred(value);
+		setSearch(null);
+		getStatus().setMessage(DEFERRED + ": " + value);
+	}
+	
+	/**
+	 * Returns the {@link ProgressionPlanner#getFocalWeight() focal weight}
+	 * used by a {@link ProgressionPlanner heuristic progression planner}, if
+	 * the {@link #getPlanner() current planner} is that type.
+	 * 
+	 * @return the weight focal searches will use
+	 * @throws IllegalStateException if the current planner is not a heuristic
+	 * progression planner
+	 */
+	public synchronized double getFocalWeight() {
+		return pp().getFocalWeight();
+	}
+	
+	/**
+	 * Sets the {@link ProgressionPlanner#getFocalWeight() focal weight} used
+	 * by a {@link ProgressionPlanner heuristic progression planner}, if the
+	 * {@link #getPlanner() current planner} is that type.
+	 * 
+	 * @param weight the weight focal searches should use
+	 * @throws IllegalStateException if the current planner is not a heuristic
+	 * progression planner
+	 */
+	public synchronized void setFocalWeight(double weight) {
+		pp().setFocalWeight(weight);
+		setSearch(null);
+		getStatus().setMessage(FOCAL_WEIGHT + ": " + weight);
+	}
+	
+	/**
+	 * Returns the {@link ProgressionPlanner#getThreads() number of threads}
+	 * used by a {@link ProgressionPlanner heuristic progression planner}, if
+	 * the {@link #getPlanner() current planner} is that type.
+	 * 
+	 * @return the number of threads parallel searches will use
+	 * @throws IllegalStateException if the current planner is not a heuristic
+	 * progression planner
+	 */
+	public synchronized int getThreads() {
+		return pp().getThreads();
+	}
+	
+	/**
+	 * Sets the {@link ProgressionPlanner#getThreads() number of threads} used
+	 * by a {@link ProgressionPlanner heuristic progression planner}, if the
+	 * {@link #getPlanner() current planner} is that type.
+	 * 
+	 * @param threads the number of threads parallel searches should use
+	 * @throws IllegalStateException if the current planner is not a heuristic
+	 * progression planner
+	 */
+	public synchronized void setThreads(int threads) {
+		pp().setThreads(threads);
+		setSearch(null);
+		getStatus().setMessage(THREADS + ": " + threads);
+	}
+	
+	/**
+	 * Returns the {@link ProgressionPlanner#getSnapshotInterval() snapshot
+	 * interval} used by a {@link ProgressionPlanner heuristic progression
+	 * planner}, if the {@link #getPlanner() current planner} is that type.
+	 * 
+	 * @return the snapshot interval
+	 * @throws IllegalStateException if the current planner is not a heuristic
+	 * progression planner
+	 */
+	public synchronized int getSnapshotInterval() {
+		return pp().getSnapshotInterval();
+	}
+	
+	/**
+	 * Sets the {@link ProgressionPlanner#getSnapshotInterval() snapshot
+	 * interval} used by a {@link ProgressionPlanner heuristic progression
+	 * planner}, if the {@link #getPlanner() current planner} is that type.
+	 * 
+	 * @param interval the new snapshot interval
+	 * @throws IllegalStateException if the current planner is not a heuristic
+	 * progression planner
+	 */
+	public synchronized void setSnapshotInterval(int interval) {
+		pp().setSnapshotInterval(interval);
+		setSearch(null);
+		getStatus().setMessage(SNAPSHOT_INTERVAL + ": " + interval);
+	}
+	
+	/**
+	 * Returns the {@link ProgressionPlanner#getSnapshotBudget() snapshot
+	 * budget} used by a {@link ProgressionPlanner heuristic progression
+	 * planner}, if the {@link #getPlanner() current planner} is that type.
+	 * 
+	 * @return the snapshot budget in bytes
+	 * @throws IllegalStateException if the current planner is not a heuristic
+	 * progression planner
+	 */
+	public synchronized long getSnapshotBudget() {
+		return pp().getSnapshotBudget();
+	}
+	
+	/**
+	 * Sets the {@link ProgressionPlanner#getSnapshotBudget() snapshot budget}
+	 * used by a {@link ProgressionPlanner heuristic progression planner}, if
+	 * the {@link #getPlanner() current planner} is that type.
+	 * 
+	 * @param bytes the new snapshot budget in bytes
+	 * @throws IllegalStateException if the current planner is not a heuristic
+	 * progression planner
+	 */
+	public synchronized void setSnapshotBudget(long bytes) {
+		pp().setSnapshotBudget(bytes);
+		setSearch(null);
+		getStatus().setMessage(SNAPSHOT_BUDGET + ": " + MemoryBudget.toString(bytes));
+	}
+	
+	/**
+	 * Returns the {@link ProgressionPlanner#getStorage() storage directory}
+	 * used by a {@link ProgressionPlanner heuristic progression planner}, if
+	 * the {@link #getPlanner() current planner} is that type.
+	 * 
+	 * @return the storage directory, or null if nodes are stored on the heap
+	 * @throws IllegalStateException if the current planner is not a heuristic
+	 * progression planner
+	 */
+	public synchronized File getStorage() {
+		return pp().getStorage();
+	}
+	
+	/**
+	 * Sets the {@link ProgressionPlanner#getStorage() storage directory} used
+	 * by a {@link ProgressionPlanner heuristic progression planner}, if the
+	 * {@link #getPlanner() current planner} is that type.
+	 * 
+	 * @param directory the new storage directory, or null to store nodes on
+	 * the heap
+	 * @throws IllegalStateException if the current planner is not a heuristic
+	 * progression planner
+	 */
+	public synchronized void setStorage(File directory) {
+		pp().setStorage(directory);
+		setSearch(null);
+		getStatus().setMessage(STORAGE + ": " + (directory == null ? "heap" : directory));
+	}
+	
+	/**
+	 * Returns the {@link ProgressionPlanner#getCompact() compact node layout}
+	 * setting used by a {@link ProgressionPlanner heuristic progression
+	 * planner}, if the {@link #getPlanner() current planner} is that type.
+	 * 
+	 * @return true if search trees will always use the compact layout
+	 * @throws IllegalStateException if the current planner is not a heuristic
+	 * progression planner
+	 */
+	public synchronized boolean getCompact() {
+		return pp().getCompact();
+	}
+	
+	/**
+	 * Sets the {@link ProgressionPlanner#getCompact() compact node layout}
+	 * setting used by a {@link ProgressionPlanner heuristic progression
+	 * planner}, if the {@link #getPlanner() current planner} is that type.
+	 * 
+	 * @param value true if search trees should always use the compact layout
+	 * @throws IllegalStateException if the current planner is not a heuristic
+	 * progression planner
+	 */
+	public synchronized void setCompact(boolean value) {
+		pp().setCompact(value);
+		setSearch(null);
+		getStatus().setMessage(COMPACT + ": " + value);
+	}
+	
+	/**
+	 * Returns the session's checkpoint file. When a checkpoint file is set
+	 * and the {@link #getSearch() search} is a {@link ProgressionSearch
+	 * progression search}, the search is {@link
+	 * ProgressionSearch#restore(InputStream) restored} from the file (if it
+	 * exists) when the search is created, and {@link
+	 * ProgressionSearch#checkpoint(OutputStream) saved} to the file after a
+	 * {@link #getResult() result} once {@link #getCheckpointInterval() the
+	 * checkpoint interval} has passed since it was last saved, so that a long
+	 * search can survive being stopped and restarted. Saving writes the whole
+	 * search space, so it is not done after every result. The file also records the actions of the {@link
+	 * #getSolutions() solutions} found so far, so that a restarted search
+	 * skips solutions it already found.
+	 * 
+	 * @return the checkpoint file, or null if checkpoints are not used
+	 */
+	public synchronized File getCheckpoint() {
+		return checkpoint;
+	}
+	
+	/**
+	 * Sets the session's {@link #getCheckpoint() checkpoint file} and removes
+	 * the {@link #getSearch() current search}, {@link #getResult() most
+	 * recent result}, etc.
+	 * 
+	 * @param file the new checkpoint file, or null if checkpoints should not
+	 * be used
+	 */
+	public synchronized void setCheckpoint(File file) {
+		this.checkpoint = file;
+		setSearch(null);
+		getStatus().setMessage(CHECKPOINT + ": " + (file == null ? "none" : file));
+	}
+	
+	/**
+	 * Returns the least number of milliseconds that must pass between saves
+	 * of the {@link #getCheckpoint() checkpoint file}. After a {@link
+	 * #getResult() result}, the search is only saved if at least this long
+	 * has passed since it was last saved or created, or if the search failed.
+	 * Work done since the last save is lost if the session is stopped before
+	 * the next save, unless {@link #saveCheckpoint()} is called first.
+	 * 
+	 * @return the checkpoint interval in milliseconds
+	 */
+	public synchronized long getCheckpointInterval() {
+		return checkpointInterval;
+	}
+	
+	/**
+	 * Sets the least number of milliseconds between saves of the {@link
+	 * #getCheckpoint() checkpoint file}. An interval of 0 means the search is
+	 * saved after every result.
+	 * 
+	 * @param interval the checkpoint interval in milliseconds
+	 */
+	public synchronized void setCheckpointInterval(long interval) {
+		this.checkpointInterval = interval;
+		getStatus().setMessage(CHECKPOINT_INTERVAL + ": " + interval + " ms");
+	}
+	
+	/**
+	 * Saves the {@link #getSearch() current search} to the {@link
+	 * #getCheckpoint() checkpoint file} if it has been run since it was last
+	 * saved, regardless of {@link #getCheckpointInterval() the checkpoint
+	 * interval}. This should be called when the session is finished with the
+	 * search. Nothing happens if no checkpoint file is set.
+	 * 
+	 * @throws IllegalStateException if the current search is not a progression
+	 * search
+	 * @throws java.io.UncheckedIOException if the file cannot be written
+	 */
+	public synchronized void saveCheckpoint() {
+		if(checkpoint != null && unsaved)
+			checkpoint();
+	}
+	
 	/**
 	 * Returns the number of {@link Solution solutions} the search should find before finishing.
 	 * @return the target number of solutions
@@ -785,6 +1265,30 @@ public class Session {
 		this.distanceMetric = metric;
 	}
 	
+	/**
+	 * Returns the smallest {@link #getDistance() distance} allowed between any
+	 * two {@link #getSolutions() solutions}. A solution which is closer than
+	 * this to a solution already found is skipped and does not count toward
+	 * {@link #getNumSolutions() the number of solutions to find}. A minimum
+	 * distance of 0 means only solutions with the same actions are skipped.
+	 * 
+	 * @return the minimum distance between solutions
+	 */
+	public synchronized double getMinimumDistance() {
+		return minimumDistance;
+	}
+	
+	/**
+	 * Sets the smallest {@link #getDistance() distance} allowed between any two
+	 * {@link #getSolutions() solutions}.
+	 * 
+	 * @param distance the minimum distance between solutions
+	 */
+	public synchronized void setMinimumDistance(double distance) {
+		this.minimumDistance = distance;
+		getStatus().setMessage(MINIMUM_DISTANCE + ": " + distance);
+	}
+	
 	/**
 	 * Returns the session's current {@link Search search}, which was created
 	 * by the session's {@link #getPlanner() planner} for the session's {@link
@@ -806,10 +1310,67 @@ public class Session {
 			search.setGoal(goal);
 			setResult(null); 
 			getStatus().setMessage("Search created for problem \"" + problem.name + "\".");
+			if(checkpoint != null && checkpoint.exists())
+				restore();
+			lastCheckpoint = System.currentTimeMillis();
+			unsaved = false;
 		}
 		return search;
 	}
 	
+	/**
+	 * {@link ProgressionSearch#restore(InputStream) Restores} the {@link
+	 * #search current search} from the {@link #getCheckpoint() checkpoint
+	 * file}, along with the {@link StorySpace#restore(java.io.DataInput,
+	 * CompiledProblem) actions of the solutions} it had found.
+	 * 
+	 * @throws IllegalStateException if the current search is not a progression
+	 * search
+	 * @throws java.io.UncheckedIOException if the file cannot be read
+	 */
+	protected void restore() {
+		ProgressionSearch search = cast(this.search, SEARCH, ProgressionSearch.class, "a heuristic progression search");
+		try(InputStream in = new FileInputStream(checkpoint)) {
+			solutions.restore(new DataInputStream(in), search.problem);
+			search.restore(in);
+		}
+		catch(IOException e) {
+			throw Exceptions.checkpointFailed(checkpoint, e);
+		}
+		getStatus().setMessage("Search restored from \"" + checkpoint + "\": %d visited; %d generated.", search.getVisited(), search.getGenerated());
+	}
+	
+	/**
+	 * {@link ProgressionSearch#checkpoint(OutputStream) Saves} the {@link
+	 * #search current search} to the {@link #getCheckpoint() checkpoint file},
+	 * after the {@link StorySpace#checkpoint(java.io.DataOutput) actions of
+	 * the solutions} it has found. The checkpoint is first written to a temporary file in the same
+	 * directory which then replaces the checkpoint file, so that an
+	 * interrupted save never destroys the previous checkpoint.
+	 * 
+	 * @throws IllegalStateException if the current search is not a progression
+	 * search
+	 * @throws java.io.UncheckedIOException if the file cannot be written
+	 */
+	protected void checkpoint() {
+		ProgressionSearch search = cast(this.search, SEARCH, ProgressionSearch.class, "a heuristic progression search");
+		File temporary = new File(checkpoint.getAbsoluteFile().getParentFile(), checkpoint.getName() + ".tmp");
+		try {
+			try(OutputStream out = new FileOutputStream(temporary)) {
+				DataOutputStream data = new DataOutputStream(out);
+				solutions.checkpoint(data);
+				data.flush();
+				search.checkpoint(out);
+			}
+			Files.move(temporary.toPath(), checkpoint.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			lastCheckpoint = System.currentTimeMillis();
+			unsaved = false;
+		}
+		catch(IOException e) {
+			throw Exceptions.checkpointFailed(checkpoint, e);
+		}
+	}
+	
 	/**
 	 * Sets the session's current {@link Search search}, and removes the {@link
 	 * #getResult() most recent result}, etc. This method is protected by
@@ -832,6 +1393,13 @@ public class Session {
 	 * Search#get(Status) run} of the session's {@link #getSearch() current
 	 * search}. If the search has not been created, it will be created. If it
 	 * has already been run, it will run again and find a different solution.
+	 * A successful solution is added to {@link #getSolutions() the list of
+	 * solutions} and written to the output stream, unless it has the same
+	 * actions as a solution already in the list or is closer than {@link
+	 * #getMinimumDistance() the minimum distance} to one. If a {@link
+	 * #getCheckpoint() checkpoint file} is set, the search is saved to it
+	 * after it runs if {@link #getCheckpointInterval() the checkpoint
+	 * interval} has passed or the search failed.
 	 * 
 	 * @return a new search result
 	 * @throws IllegalStateException if the search needs to be run but it {@link
@@ -840,10 +1408,16 @@ public class Session {
 	public synchronized Result<?> getResult() { 
 		result = getSearch().get(getStatus());
 		if(result.getSuccess()) {
-			solutions.add(new StoryPlan(result.solution));
-			out.println(getPrinter().toString(getPlan(null)));
-			out.flush();
+			if(solutions.add(new StoryPlan(result.solution), distanceMetric, minimumDistance)) {
+				out.println(getPrinter().toString(getPlan(null)));
+				out.flush();
+			}
+			else
+				getStatus().setMessage("Solution skipped because it is too similar to a previous solution.");
 		} 
+		unsaved = true;
+		if(checkpoint != null && (!result.getSuccess() || System.currentTimeMillis() - lastCheckpoint >= checkpointInterval))
+			checkpoint();
 		return result;
 	}
 	
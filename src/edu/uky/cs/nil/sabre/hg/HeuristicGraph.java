@@ -127,6 +127,13 @@ public abstract class HeuristicGraph implements Serializable {
 	/** Maps the labels of nodes to their corresponding nodes */
 	protected final HashMap<Object, Node> nodes = new HashMap<>();
 	
+	/**
+	 * The number of nodes that have been created in this graph, which is also
+	 * the {@link Node#id ID number} the next node will get; this field has no
+	 * initializer because nodes are created by other field initializers
+	 */
+	int size;
+	
 	/**
 	 * A node representing the {@link edu.uky.cs.nil.sabre.Problem#utility
 	 * author's utility}
@@ -168,6 +175,12 @@ public abstract class HeuristicGraph implements Serializable {
 	 */
 	final List<ActionNode> next = new List<>();
 	
+	/**
+	 * The actions being added to the graph during a call to {@link #extend()},
+	 * kept between calls so that extending the graph does not allocate
+	 */
+	private ActionNode[] layer = new ActionNode[0];
+	
 	/**
 	 * A sentinel node that represents the end of the list of nodes that need to
 	 * be {@link #reset() reset}
@@ -226,6 +239,16 @@ public abstract class HeuristicGraph implements Serializable {
 		return Utilities.DEFAULT_PRINTER.toString(this);
 	}
 	
+	/**
+	 * Returns the number of nodes in the graph. Every node's {@link Node#id
+	 * ID number} is less than this number.
+	 * 
+	 * @return the number of nodes
+	 */
+	public int size() {
+		return size;
+	}
+	
 	/**
 	 * Returns the {@link Node heuristic graph node} associated with the given
 	 * {@link Logical logical expression}. If the node does not exist, it will
@@ -939,21 +962,21 @@ public abstract class HeuristicGraph implements Serializable {
 	 * was assigned a finite cost, or false if the graph has leveled off
 	 */
 	public boolean extend() {
-		if(next.size() == 0)
+		int size = next.size();
+		if(size == 0)
 			return false;
-		else {
-			extend(next.size() - 1);
-			return true;
-		}
-	}
-	
-	private final void extend(int index) {
-		if(index >= 0) {
-			ActionNode node = next.get(index);
-			extend(index - 1);
+		if(layer.length < size)
+			layer = new ActionNode[Math.max(size, layer.length * 2)];
+		for(int i=0; i<size; i++)
+			layer[i] = next.get(i);
+		// Actions whose preconditions become finite while this layer is being
+		// added will wait for the next layer.
+		next.clear();
+		for(int i=0; i<size; i++) {
+			ActionNode node = layer[i];
+			layer[i] = null;
 			node.setCost(node.precondition.getCost() + 1);
 		}
-		else
-			next.clear();
+		return true;
 	}
 }
\ No newline at end of file
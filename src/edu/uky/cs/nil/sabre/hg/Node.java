@@ -23,6 +23,13 @@ public abstract class Node implements Serializable {
 	/** The logical formula this node represents in the graph */
 	public Logical label;
 	
+	/**
+	 * A number which identifies this node in its graph; nodes are numbered
+	 * from 0 in the order they are created, so this number can be used as an
+	 * index into an array with one element per node
+	 */
+	public final int id;
+	
 	/**
 	 * The next node in the graph's linked list of nodes that need to be reset
 	 */
@@ -38,6 +45,7 @@ public abstract class Node implements Serializable {
 	protected Node(HeuristicGraph graph, Logical label) {
 		this.graph = graph;
 		this.label = label;
+		this.id = graph.size++;
 		graph.nodes.put(label, this);
 	}
 	
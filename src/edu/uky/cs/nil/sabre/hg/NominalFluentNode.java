@@ -29,6 +29,32 @@ public class NominalFluentNode extends FluentNode {
 	 * code of the group's value
 	 */
 	protected final List<PreconditionNode>[] groups;
+	
+	/**
+	 * An array of {@link edu.uky.cs.nil.sabre.logic.Comparison#NOT_EQUAL_TO
+	 * not equal to} {@link PreconditionNode precondition nodes} with this
+	 * node's fluent on the left and a constant on the right, indexed by the
+	 * hash code of that constant
+	 */
+	private final PreconditionNode[] inequalities;
+	
+	/** The value with the lowest cost, or null if no value has a cost */
+	private Value best = null;
+	
+	/** The cost of {@link #best the lowest cost value} */
+	private double bestCost = Double.POSITIVE_INFINITY;
+	
+	/**
+	 * The cost of the lowest cost value other than {@link #best the lowest
+	 * cost value}
+	 */
+	private double secondCost = Double.POSITIVE_INFINITY;
+	
+	/**
+	 * The values and costs in this set, sorted by cost, or null if they need
+	 * to be {@link #entries() recalculated}
+	 */
+	private Entry[] entries = null;
 
 	/**
 	 * Constructs a new fluent node that belongs to a given graph and
@@ -43,6 +69,7 @@ public class NominalFluentNode extends FluentNode {
 		super(graph, label);
 		label.mustNotBeNumber();
 		this.groups = new List[label.type.universe.entities.size() + 1];
+		this.inequalities = new PreconditionNode[groups.length];
 	}
 	
 	@Override
@@ -54,10 +81,13 @@ public class NominalFluentNode extends FluentNode {
 			for(PreconditionNode other : preconditions)
 				register(group, other);
 		}
-		else if(precondition.label.operator.equals(Comparison.NOT_EQUAL_TO))
+		else if(precondition.label.operator.equals(Comparison.NOT_EQUAL_TO)) {
+			if(precondition.label.right instanceof Value)
+				inequalities[precondition.label.right.hashCode() + 1] = precondition;
 			for(List<PreconditionNode> group : groups)
 				if(group != null)
 					register(group, precondition);
+		}
 		for(EffectNode effect : effects)
 			register(precondition, effect);
 	}
@@ -134,21 +164,30 @@ public class NominalFluentNode extends FluentNode {
 
 	@Override
 	public double getCost(Operator operator, Value value) {
-		for(Entry entry : entries())
-			if(operator.test(entry.value, value))
-				return entry.cost;
-		return Double.POSITIVE_INFINITY;
+		double min = Double.POSITIVE_INFINITY;
+		for(int i=0; i<groups.length; i++) {
+			if(groups[i] != null) {
+				PreconditionNode node = groups[i].get(0);
+				if(node.getCost() < min && operator.test((Value) node.label.right, value))
+					min = node.getCost();
+			}
+		}
+		return min;
 	}
 	
 	/**
 	 * Returns an array of {@link CostSet.Entry cost set entries} for every
-	 * value (and its associated cost) that this fluent can have.
+	 * value (and its associated cost) that this fluent can have. The array is
+	 * remembered until the cost of some value changes, so it should not be
+	 * modified.
 	 * 
 	 * @return an array of cost set entries
 	 */
 	protected Entry[] entries() {
-		Entry[] entries = entries(0, 0);
-		Arrays.sort(entries);
+		if(entries == null) {
+			entries = entries(0, 0);
+			Arrays.sort(entries);
+		}
 		return entries;
 	}
 
@@ -169,12 +208,41 @@ public class NominalFluentNode extends FluentNode {
 	public boolean setCost(Value value, double cost) {
 		List<PreconditionNode> group = getGroup(value);
 		if(group.get(0).setCost(cost)) {
+			markForReset();
+			entries = null;
 			super.setCost(value, cost);
-			for(int i=1; i<group.size(); i++)
-				group.get(i).setCost(cost);
+			// A not equal to precondition's cost is the cost of the lowest
+			// cost value that makes it true, which is the lowest cost value
+			// unless that value is the one on its right, in which case it is
+			// the second lowest. If the lowest cost did not change, only the
+			// precondition that is not equal to the lowest cost value can
+			// change, so the rest of the group does not need to be checked.
+			if(cost < bestCost) {
+				if(!value.equals(best))
+					secondCost = bestCost;
+				best = value;
+				bestCost = cost;
+				for(int i=1; i<group.size(); i++)
+					group.get(i).setCost(cost);
+			}
+			else if(!value.equals(best) && cost < secondCost) {
+				secondCost = cost;
+				PreconditionNode inequality = inequalities[best.hashCode() + 1];
+				if(inequality != null)
+					inequality.setCost(cost);
+			}
 			return true;
 		}
 		else
 			return false;
 	}
+	
+	@Override
+	protected void reset() {
+		super.reset();
+		best = null;
+		bestCost = Double.POSITIVE_INFINITY;
+		secondCost = Double.POSITIVE_INFINITY;
+		entries = null;
+	}
 }
\ No newline at end of file
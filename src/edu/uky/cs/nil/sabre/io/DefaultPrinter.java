@@ -832,6 +832,7 @@ public class DefaultPrinter extends Printer {
 	private static final String COST_KEY = "cost";
 	private static final String HEURISTIC_KEY = "heuristic";
 	private static final String EXPLANATION_PRUNING_KEY = "explanation pruning";
+	private static final String FOCAL_WEIGHT_KEY = "focal weight";
 	
 	private static final LinkedHashMap<String, Object> getProgressionPlannerKeys(ProgressionPlanner planner) {
 		LinkedHashMap<String, Object> map = new LinkedHashMap<>();
@@ -839,6 +840,8 @@ public class DefaultPrinter extends Printer {
 		map.put(COST_KEY, planner.getCost());
 		map.put(HEURISTIC_KEY, planner.getHeuristic());
 		map.put(EXPLANATION_PRUNING_KEY, planner.getExplanationPruning());
+		if(planner.getMethod() == Method.FOCAL)
+			map.put(FOCAL_WEIGHT_KEY, planner.getFocalWeight());
 		for(Map.Entry<String, Object> entry : getPlannerKeys(planner).entrySet())
 			map.put(entry.getKey(), entry.getValue());
 		return map;
@@ -869,10 +872,14 @@ public class DefaultPrinter extends Printer {
 			method = Method.EXPLANATION_FIRST;
 		if(search instanceof GoalFirstSearch)
 			method = Method.GOAL_FIRST;
+		if(search instanceof FocalSearch)
+			method = Method.FOCAL;
 		map.put(SEARCH_METHOD_KEY, method);
 		map.put(COST_KEY, search.cost);
 		map.put(HEURISTIC_KEY, search.heuristic);
 		map.put(EXPLANATION_PRUNING_KEY, search.explanationPruning);
+		if(search instanceof FocalSearch)
+			map.put(FOCAL_WEIGHT_KEY, ((FocalSearch) search).weight);
 		return insertKeys(map, getSearchKeys(search), 3);
 	}
 	
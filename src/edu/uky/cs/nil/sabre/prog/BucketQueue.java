@@ -0,0 +1,503 @@
+package edu.uky.cs.nil.sabre.prog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.function.Predicate;
+
+/**
+ * A {@link SearchQueue search queue} which groups nodes into buckets by the
+ * sum of their {@link SearchNode#getCost() cost} and {@link
+ * SearchNode#getHeuristic() heuristic}, their heuristic, and their {@link
+ * SearchNode#getEpistemicDepth() epistemic depth}. When cost and heuristic
+ * values are small integers, as they are with the {@link
+ * ProgressionCost#TEMPORAL temporal cost} and {@link RelaxedPlanHeuristic
+ * relaxed plan heuristic}, most nodes share a handful of buckets.
+ * <p>
+ * The three values are packed into a single {@code long} key whose numeric
+ * order is the order of the buckets, so buckets are found in a table indexed
+ * by that key and ordered by comparing keys, without calling {@link
+ * #comparator() the comparator}. Each bucket keeps its nodes in an array in
+ * the order they were added, and nodes with the same three values come out
+ * in that order (first in, first out). Adding a node appends it to its
+ * bucket and removing the first node advances past it, so both take
+ * constant time; the buckets themselves only need to be reordered when one
+ * becomes non-empty or empty, and there are usually few of them.
+ * <p>
+ * This queue may only be used when {@link #comparator() the comparator}
+ * orders nodes by those three values first, as {@link
+ * ProgressionSearch#compare(SearchNode, SearchNode)} does by default. Nodes
+ * whose values are not non-negative integers (or are too large for a key)
+ * are kept in a separate heap and compared to the first node in the lowest
+ * bucket using the comparator, so the queue still returns the lowest node
+ * first.
+ * <p>
+ * A node's recorded position is its position in its bucket's array, and the
+ * node also records its bucket's key, so a node can be found, {@link
+ * #remove(Object) removed}, or {@link #update(SearchNode) updated} in
+ * constant time even if its priority has changed since it was added. A
+ * removed node leaves a gap in its bucket's array, which is closed the next
+ * time the array fills up.
+ * 
+ * @author Stephen G. Ware
+ */
+final class BucketQueue extends SearchQueue {
+	
+	/** The largest heuristic value that can be stored in a key */
+	private static final int MAX_HEURISTIC = (1 << 24) - 1;
+	
+	/** The largest epistemic depth that can be stored in a key */
+	private static final int MAX_EPISTEMIC = (1 << 8) - 1;
+	
+	/** The number of nodes a new bucket has room for */
+	private static final int INITIAL_CAPACITY = 16;
+	
+	/**
+	 * A group of nodes with the same cost plus heuristic, heuristic, and
+	 * epistemic depth.
+	 * 
+	 * @author Stephen G. Ware
+	 */
+	private static final class Bucket {
+		
+		/**
+		 * The cost plus heuristic value, heuristic value, and epistemic depth
+		 * of every node in this bucket, packed into one number
+		 */
+		public final long key;
+		
+		/**
+		 * The nodes in this bucket, in the order they were added, with null
+		 * in place of nodes that were removed
+		 */
+		public SearchNode<?>[] nodes = new SearchNode<?>[INITIAL_CAPACITY];
+		
+		/** The position of the first node which may not have been removed */
+		public int head = 0;
+		
+		/** The position after the last node */
+		public int tail = 0;
+		
+		/** The number of nodes in this bucket */
+		public int size = 0;
+		
+		/** Whether this bucket is in {@link BucketQueue#order} */
+		public boolean queued = false;
+		
+		/**
+		 * Constructs a new, empty bucket.
+		 * 
+		 * @param key the packed values of its nodes
+		 */
+		public Bucket(long key) {
+			this.key = key;
+		}
+		
+		/**
+		 * Adds a node to the end of this bucket.
+		 * 
+		 * @param node the node
+		 */
+		public void add(SearchNode<?> node) {
+			if(tail == nodes.length)
+				grow();
+			node.index = tail;
+			node.group = key;
+			nodes[tail++] = node;
+			size++;
+		}
+		
+		/**
+		 * Returns the first node in this bucket, which must not be empty.
+		 * 
+		 * @return the first node
+		 */
+		public SearchNode<?> peek() {
+			while(nodes[head] == null)
+				head++;
+			return nodes[head];
+		}
+		
+		/**
+		 * Removes and returns the first node in this bucket, which must not be
+		 * empty.
+		 * 
+		 * @return the first node
+		 */
+		public SearchNode<?> poll() {
+			SearchNode<?> node = peek();
+			removeAt(head);
+			return node;
+		}
+		
+		/**
+		 * Indicates whether a node is in this bucket at its recorded
+		 * position.
+		 * 
+		 * @param node the node
+		 * @return true if the node is in this bucket
+		 */
+		public boolean contains(SearchNode<?> node) {
+			return node.index >= head && node.index < tail && nodes[node.index] == node;
+		}
+		
+		/**
+		 * Removes the node at a given position.
+		 * 
+		 * @param index the position of the node to remove
+		 */
+		public void removeAt(int index) {
+			nodes[index].index = -1;
+			nodes[index] = null;
+			if(--size == 0)
+				head = tail = 0;
+		}
+		
+		/**
+		 * Removes every node.
+		 */
+		public void clear() {
+			Arrays.fill(nodes, head, tail, null);
+			head = tail = size = 0;
+		}
+		
+		/**
+		 * Makes room at the end of the array, either by moving the remaining
+		 * nodes to the front to close the gaps left by removed nodes or, if
+		 * the array is at least half full, by making it larger.
+		 */
+		private void grow() {
+			if(size < nodes.length / 2) {
+				int count = 0;
+				for(int i=head; i<tail; i++) {
+					if(nodes[i] != null) {
+						nodes[count] = nodes[i];
+						nodes[count].index = count;
+						count++;
+					}
+				}
+				Arrays.fill(nodes, count, tail, null);
+				head = 0;
+				tail = count;
+			}
+			else
+				nodes = Arrays.copyOf(nodes, nodes.length * 2);
+		}
+	}
+	
+	/**
+	 * Every bucket, in a hashtable indexed by key which resolves collisions
+	 * by checking the next slot; the length is always a power of 2
+	 */
+	private Bucket[] table = new Bucket[16];
+	
+	/** Every bucket, in the order they were created */
+	private final ArrayList<Bucket> list = new ArrayList<>();
+	
+	/**
+	 * A heap of the buckets which may have nodes, with the lowest key first;
+	 * buckets which become empty are removed lazily
+	 */
+	private Bucket[] order = new Bucket[16];
+	
+	/** The number of buckets in {@link #order} */
+	private int queued = 0;
+	
+	/** Nodes which could not be put in a bucket */
+	private final HeapQueue others;
+	
+	/** The bucket the last node was added to */
+	private Bucket last = null;
+	
+	/** The number of nodes in the queue */
+	private int size = 0;
+	
+	/**
+	 * Constructs a new, empty bucket queue.
+	 * 
+	 * @param comparator the comparator which defines the order of the nodes,
+	 * with the lowest node first
+	 */
+	public BucketQueue(Comparator<SearchNode<?>> comparator) {
+		super(comparator);
+		this.others = new HeapQueue(comparator);
+	}
+	
+	@Override
+	public BucketQueue create() {
+		return new BucketQueue(comparator());
+	}
+	
+	@Override
+	public int size() {
+		return size;
+	}
+	
+	@Override
+	public Iterator<SearchNode<?>> iterator() {
+		ArrayList<SearchNode<?>> nodes = new ArrayList<>(size);
+		for(Bucket bucket : list)
+			for(int i=bucket.head; i<bucket.tail; i++)
+				if(bucket.nodes[i] != null)
+					nodes.add(bucket.nodes[i]);
+		nodes.addAll(others);
+		return Collections.unmodifiableList(nodes).iterator();
+	}
+	
+	@Override
+	public boolean contains(Object object) {
+		return others.contains(object) || find(object) != null;
+	}
+	
+	@Override
+	public boolean offer(SearchNode<?> node) {
+		long key = getKey(node);
+		if(key == -1)
+			others.offer(node);
+		else {
+			Bucket bucket = getBucket(key);
+			bucket.add(node);
+			if(!bucket.queued) {
+				bucket.queued = true;
+				push(bucket);
+			}
+		}
+		size++;
+		return true;
+	}
+	
+	@Override
+	public SearchNode<?> peek() {
+		Bucket bucket = first();
+		SearchNode<?> other = others.peek();
+		if(bucket == null)
+			return other;
+		else if(other != null && comparator().compare(other, bucket.peek()) < 0)
+			return other;
+		else
+			return bucket.peek();
+	}
+	
+	@Override
+	public SearchNode<?> poll() {
+		Bucket bucket = first();
+		SearchNode<?> other = others.peek();
+		SearchNode<?> node;
+		if(bucket == null || (other != null && comparator().compare(other, bucket.peek()) < 0))
+			node = others.poll();
+		else
+			node = bucket.poll();
+		if(node != null)
+			size--;
+		return node;
+	}
+	
+	@Override
+	public boolean remove(Object object) {
+		boolean removed = others.remove(object);
+		if(!removed) {
+			Bucket bucket = find(object);
+			if(bucket != null) {
+				bucket.removeAt(((SearchNode<?>) object).index);
+				removed = true;
+			}
+		}
+		if(removed)
+			size--;
+		return removed;
+	}
+	
+	@Override
+	public void clear() {
+		for(Bucket bucket : list) {
+			bucket.clear();
+			bucket.queued = false;
+		}
+		Arrays.fill(order, 0, queued, null);
+		queued = 0;
+		others.clear();
+		size = 0;
+	}
+	
+	@Override
+	public void update(SearchNode<?> node) {
+		if(remove(node))
+			offer(node);
+	}
+	
+	@Override
+	public void reprioritize(Predicate<? super SearchNode<?>> test) {
+		Iterator<SearchNode<?>> nodes = iterator();
+		clear();
+		while(nodes.hasNext()) {
+			SearchNode<?> node = nodes.next();
+			if(test.test(node))
+				offer(node);
+			else
+				node.index = -1;
+		}
+	}
+	
+	/**
+	 * Returns the lowest bucket which has nodes, discarding any empty buckets
+	 * in front of it.
+	 * 
+	 * @return the lowest non-empty bucket, or null if every bucket is empty
+	 */
+	private final Bucket first() {
+		while(queued > 0 && order[0].size == 0) {
+			order[0].queued = false;
+			Bucket bucket = order[--queued];
+			order[queued] = null;
+			if(queued > 0)
+				siftDown(0, bucket);
+		}
+		return queued == 0 ? null : order[0];
+	}
+	
+	/**
+	 * Adds a bucket to {@link #order the heap of buckets}.
+	 * 
+	 * @param bucket the bucket
+	 */
+	private final void push(Bucket bucket) {
+		if(queued == order.length)
+			order = Arrays.copyOf(order, order.length * 2);
+		int index = queued++;
+		while(index > 0) {
+			int parent = (index - 1) >>> 1;
+			if(order[parent].key <= bucket.key)
+				break;
+			order[index] = order[parent];
+			index = parent;
+		}
+		order[index] = bucket;
+	}
+	
+	/**
+	 * Moves a bucket down {@link #order the heap of buckets} until it is in
+	 * order.
+	 * 
+	 * @param index the position where the bucket starts
+	 * @param bucket the bucket
+	 */
+	private final void siftDown(int index, Bucket bucket) {
+		int half = queued >>> 1;
+		while(index < half) {
+			int child = (index << 1) + 1;
+			if(child + 1 < queued && order[child + 1].key < order[child].key)
+				child++;
+			if(bucket.key <= order[child].key)
+				break;
+			order[index] = order[child];
+			index = child;
+		}
+		order[index] = bucket;
+	}
+	
+	/**
+	 * Returns the bucket that a node in this queue is in.
+	 * 
+	 * @param object the node
+	 * @return the node's bucket, or null if it is not in a bucket
+	 */
+	private final Bucket find(Object object) {
+		if(object instanceof SearchNode) {
+			SearchNode<?> node = (SearchNode<?>) object;
+			Bucket bucket = lookup(node.group);
+			if(bucket != null && bucket.contains(node))
+				return bucket;
+		}
+		return null;
+	}
+	
+	/**
+	 * Packs a node's cost plus heuristic, heuristic, and epistemic depth into
+	 * a key whose numeric order matches the order of the nodes.
+	 * 
+	 * @param node the node
+	 * @return the key, or -1 if its values cannot be stored in a key
+	 */
+	private static final long getKey(SearchNode<?> node) {
+		double total = node.getCost() + node.getHeuristic();
+		double heuristic = node.getHeuristic();
+		int epistemic = node.getEpistemicDepth();
+		if(total != (int) total || total < 0 || heuristic != (int) heuristic || heuristic < 0 || heuristic > MAX_HEURISTIC || epistemic > MAX_EPISTEMIC)
+			return -1;
+		return ((long) total << 32) | ((long) heuristic << 8) | epistemic;
+	}
+	
+	/**
+	 * Returns the bucket for a key, creating it if it does not exist yet.
+	 * 
+	 * @param key the key
+	 * @return the bucket
+	 */
+	private final Bucket getBucket(long key) {
+		if(last != null && last.key == key)
+			return last;
+		Bucket bucket = lookup(key);
+		if(bucket == null) {
+			if((list.size() + 1) * 2 > table.length)
+				rehash();
+			bucket = new Bucket(key);
+			table[slot(key)] = bucket;
+			list.add(bucket);
+		}
+		last = bucket;
+		return bucket;
+	}
+	
+	/**
+	 * Returns the bucket for a key, if it exists.
+	 * 
+	 * @param key the key
+	 * @return the bucket, or null if there is no bucket for the key
+	 */
+	private final Bucket lookup(long key) {
+		int mask = table.length - 1;
+		for(int i=hash(key) & mask; table[i] != null; i=(i + 1) & mask)
+			if(table[i].key == key)
+				return table[i];
+		return null;
+	}
+	
+	/**
+	 * Returns the first empty slot in {@link #table the table} where a key
+	 * could be stored.
+	 * 
+	 * @param key the key
+	 * @return the slot
+	 */
+	private final int slot(long key) {
+		int mask = table.length - 1;
+		int i = hash(key) & mask;
+		while(table[i] != null)
+			i = (i + 1) & mask;
+		return i;
+	}
+	
+	/**
+	 * Doubles the size of {@link #table the table} and puts every bucket back
+	 * into it.
+	 */
+	private final void rehash() {
+		table = new Bucket[table.length * 2];
+		for(Bucket bucket : list)
+			table[slot(bucket.key)] = bucket;
+	}
+	
+	/**
+	 * Spreads the bits of a key so that keys which differ only in their
+	 * highest bits do not share a slot.
+	 * 
+	 * @param key the key
+	 * @return the hash of the key
+	 */
+	private static final int hash(long key) {
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32));
+	}
+}
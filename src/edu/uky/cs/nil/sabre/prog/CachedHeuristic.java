@@ -0,0 +1,299 @@
+package edu.uky.cs.nil.sabre.prog;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import edu.uky.cs.nil.sabre.Character;
+import edu.uky.cs.nil.sabre.Settings;
+import edu.uky.cs.nil.sabre.comp.CompiledFluent;
+import edu.uky.cs.nil.sabre.comp.CompiledProblem;
+import edu.uky.cs.nil.sabre.logic.Value;
+import edu.uky.cs.nil.sabre.util.Worker.Status;
+
+/**
+ * The cached heuristic is a wrapper around a {@link ProgressionCost cost
+ * function} that remembers the values {@link #parent the function it wraps
+ * around} has recently returned, so that a node whose state has already been
+ * evaluated does not need to be evaluated again. Heuristics like the {@link
+ * GraphHeuristic graph heuristics} and {@link RelaxedPlanHeuristic relaxed
+ * plan heuristic} propagate costs through a {@link
+ * edu.uky.cs.nil.sabre.hg.HeuristicGraph heuristic graph} for every node they
+ * evaluate, but the same state is often reached by many different paths,
+ * especially when several characters can act in either order, so much of that
+ * work is repeated.
+ * <p>
+ * Each value is recorded under the exact value of every {@link
+ * CompiledProblem#fluents fluent} in the node's state, along with {@link
+ * ProgressionNode#getCharacter() the node's character} and whether {@link
+ * ProgressionNode#isExplained(Character) its action is explained} for that
+ * character. States are compared value by value, so two different states
+ * never share a value, even if their hash codes collide. This is only correct
+ * when the wrapped function depends on nothing else, which it reports with
+ * {@link ProgressionCost#isStateBased()}. That is true of most graph
+ * heuristics, but not, for example, of {@link ProgressionCost#TEMPORAL the
+ * temporal cost}, the {@link RepeatedNodeHeuristic repeated node heuristic},
+ * or the {@link ReachabilityHeuristic reachability heuristic}, which only
+ * checks nodes at temporal depth 0. When the wrapped function is not state
+ * based, every evaluation is passed thru to it and nothing is cached, as if
+ * the function had not been wrapped. Only a limited number of values are remembered; when the cache
+ * is full, the value which was used least recently is forgotten. Each
+ * remembered value keeps its own copy of the state's fluent values, so a
+ * large cache can use a lot of memory for problems with many fluents.
+ * <p>
+ * Looking up every fluent in a node's state can be almost as expensive as
+ * evaluating the heuristic, so this function reads states through {@link
+ * RecentStates a record of recent states}, which only looks up the fluents
+ * that may have changed since a nearby state was read.
+ * <p>
+ * The number of evaluations answered from the cache and the number passed
+ * thru to the wrapped function are counted and can be read from {@link
+ * #getHits()} and {@link #getMisses()}.
+ * 
+ * @author Stephen G. Ware
+ */
+public class CachedHeuristic implements ProgressionCost {
+	
+	/**
+	 * A {@link ProgressionCostFactory factory} for producing {@link
+	 * CachedHeuristic cached heuristics}.
+	 * 
+	 * @author Stephen G. Ware
+	 */
+	public static class Factory implements ProgressionCostFactory {
+		
+		/** Serial version ID */
+		private static final long serialVersionUID = Settings.VERSION_UID;
+		
+		/**
+		 * The cost function factory that will be used to create the cost
+		 * function whose values will be cached
+		 */
+		public final ProgressionCostFactory parent;
+		
+		/** The maximum number of values to remember */
+		public final int capacity;
+		
+		/**
+		 * Constructs a new cached heuristic factory.
+		 * 
+		 * @param parent a factory to produce the cost function whose values
+		 * will be cached
+		 * @param capacity the maximum number of values to remember
+		 */
+		public Factory(ProgressionCostFactory parent, int capacity) {
+			this.parent = parent;
+			this.capacity = capacity;
+		}
+		
+		@Override
+		public String toString() {
+			return CachedHeuristic.toString(parent, capacity);
+		}
+		
+		@Override
+		public CachedHeuristic getCost(CompiledProblem problem, Status status) {
+			return new CachedHeuristic(problem, parent.getCost(problem, status), capacity);
+		}
+	}
+	
+	private static final String toString(Object parent, int capacity) {
+		return parent + " cached (" + capacity + ")";
+	}
+	
+	/**
+	 * A map of recently computed values, which forgets the value that was
+	 * used least recently when it grows beyond its capacity.
+	 * 
+	 * @author Stephen G. Ware
+	 */
+	private static final class Cache extends LinkedHashMap<Key, Double> {
+		
+		/** Serial version ID */
+		private static final long serialVersionUID = Settings.VERSION_UID;
+		
+		/** The maximum number of values to remember */
+		private final int capacity;
+		
+		/**
+		 * Constructs a new, empty cache.
+		 * 
+		 * @param capacity the maximum number of values to remember
+		 */
+		public Cache(int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+		
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, Double> eldest) {
+			return size() > capacity;
+		}
+	}
+	
+	/**
+	 * The exact state of a node, along with its character and whether its
+	 * action is explained for that character.
+	 * 
+	 * @author Stephen G. Ware
+	 */
+	private static final class Key {
+		
+		/** The node's character */
+		private final Character character;
+		
+		/** Whether the node's action is explained for its character */
+		private final boolean explained;
+		
+		/** The value of every fluent, indexed by {@link CompiledFluent#id} */
+		private final Value[] values;
+		
+		/** The hash code */
+		private final int hashCode;
+		
+		/**
+		 * Constructs a new key.
+		 * 
+		 * @param character the node's character
+		 * @param explained whether the node's action is explained for its
+		 * character
+		 * @param values the value of every fluent, which is not copied
+		 * @param hash the {@link RecentStates#getHash(int) hash} of the state
+		 */
+		public Key(Character character, boolean explained, Value[] values, long hash) {
+			this.character = character;
+			this.explained = explained;
+			this.values = values;
+			hash = hash * 31 + (character == null ? 0 : character.hashCode() + 1);
+			hash = hash * 31 + (explained ? 1 : 0);
+			this.hashCode = (int) (hash ^ (hash >>> 32));
+		}
+		
+		@Override
+		public boolean equals(Object other) {
+			if(other instanceof Key) {
+				Key otherKey = (Key) other;
+				return hashCode == otherKey.hashCode && character == otherKey.character && explained == otherKey.explained && Arrays.equals(values, otherKey.values);
+			}
+			return false;
+		}
+		
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+	}
+	
+	/** The cost function whose values are cached */
+	public final ProgressionCost parent;
+	
+	/**
+	 * Whether {@link #parent the parent} is {@link
+	 * ProgressionCost#isStateBased() state based}, so that its values can be
+	 * cached
+	 */
+	private final boolean stateBased;
+	
+	/** The maximum number of values to remember */
+	public final int capacity;
+	
+	/** Recently computed values, with the least recently used first */
+	private final Cache cache;
+	
+	/** The fluent values of recently evaluated states */
+	private final RecentStates states;
+	
+	/** The number of evaluations answered from the cache */
+	private long hits = 0;
+	
+	/** The number of evaluations passed thru to the parent */
+	private long misses = 0;
+	
+	/**
+	 * Constructs a new cached heuristic.
+	 * 
+	 * @param problem the problem whose states will be evaluated
+	 * @param parent the cost function whose values will be cached
+	 * @param capacity the maximum number of values to remember
+	 */
+	public CachedHeuristic(CompiledProblem problem, ProgressionCost parent, int capacity) {
+		this.parent = parent;
+		this.stateBased = parent.isStateBased();
+		this.capacity = capacity;
+		this.cache = new Cache(capacity);
+		this.states = new RecentStates(problem);
+	}
+	
+	@Override
+	public String toString() {
+		return toString(parent, capacity);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * This function forgets which nodes it has recently evaluated, because
+	 * the search may be starting over in a new space. Cached values are kept,
+	 * since they are recorded by state rather than by node.
+	 */
+	@Override
+	public <N> void initialize(ProgressionNode<N> root) {
+		parent.initialize(root);
+		states.clear();
+	}
+	
+	@Override
+	public <N> void reclaim(Function<N, N> map) {
+		parent.reclaim(map);
+		states.reclaim(map);
+	}
+	
+	@Override
+	public <N> double evaluate(ProgressionNode<N> node) {
+		if(!stateBased)
+			return parent.evaluate(node);
+		int slot = states.set(node.getSpace(), node.getNode());
+		Character character = node.getCharacter();
+		Key key = new Key(character, node.isExplained(character), states.getValues(slot), states.getHash(slot));
+		Double value = cache.get(key);
+		if(value == null) {
+			misses++;
+			value = parent.evaluate(node);
+			cache.put(new Key(key.character, key.explained, key.values.clone(), states.getHash(slot)), value);
+		}
+		else
+			hits++;
+		return value;
+	}
+	
+	@Override
+	public boolean isIntegral() {
+		return parent.isIntegral();
+	}
+	
+	@Override
+	public boolean isStateBased() {
+		return stateBased;
+	}
+	
+	/**
+	 * Returns the number of evaluations which were answered from the cache
+	 * without calling the parent cost function.
+	 * 
+	 * @return the number of cache hits
+	 */
+	public long getHits() {
+		return hits;
+	}
+	
+	/**
+	 * Returns the number of evaluations which were passed thru to the parent
+	 * cost function because the node's state was not in the cache.
+	 * 
+	 * @return the number of cache misses
+	 */
+	public long getMisses() {
+		return misses;
+	}
+}
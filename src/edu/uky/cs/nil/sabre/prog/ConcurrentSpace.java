@@ -0,0 +1,353 @@
+package edu.uky.cs.nil.sabre.prog;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+
+import edu.uky.cs.nil.sabre.Character;
+import edu.uky.cs.nil.sabre.Solution;
+import edu.uky.cs.nil.sabre.State;
+import edu.uky.cs.nil.sabre.comp.CompiledAction;
+import edu.uky.cs.nil.sabre.comp.CompiledFluent;
+import edu.uky.cs.nil.sabre.logic.Value;
+import edu.uky.cs.nil.sabre.util.MemoryBudget;
+
+/**
+ * A wrapper around a {@link ProgressionSpace progression space} which allows
+ * the space to be shared by several threads, as in a {@link ParallelSearch
+ * parallel search}. Spaces are not generally safe to use from more than one
+ * thread, so this wrapper guards the space with a read/write lock. Methods
+ * which only look at nodes that already exist, such as {@link
+ * #getAction(Object)}, take the read lock so that many threads can evaluate
+ * states at once. Methods which may add nodes or update the space's internal
+ * bookkeeping, such as {@link #getChild(Object, CompiledAction)}, {@link
+ * #getBranch(Object, Character)}, {@link #isExplained(Object)} (which may
+ * generate the branches needed to explain an action), and {@link
+ * #getValue(Object, CompiledFluent)} (which may take a snapshot of a state),
+ * first take the read lock and ask the space whether the answer is {@link
+ * ProgressionSpace#isReadOnly(Object, CompiledAction) already known}. Most of
+ * the time it is, because the heuristic and the search ask about the same
+ * nodes many times, and the answer is found under the read lock. Only when
+ * the space would need to create something is the write lock taken.
+ * <p>
+ * The space being wrapped must allow several threads to read it at once as
+ * long as no thread is modifying it.
+ * 
+ * @param <N> the type of object used to represent a state in this space
+ * @author Stephen G. Ware
+ */
+class ConcurrentSpace<N> implements ProgressionSpace<N> {
+	
+	/** The space being shared */
+	public final ProgressionSpace<N> space;
+	
+	/** The lock which guards the space */
+	private final StampedLock lock = new StampedLock();
+	
+	/**
+	 * Constructs a new concurrent space around a given space.
+	 * 
+	 * @param space the space to be shared between threads
+	 */
+	public ConcurrentSpace(ProgressionSpace<N> space) {
+		this.space = space;
+	}
+	
+	@Override
+	public String toString() {
+		return space.toString();
+	}
+	
+	@Override
+	public long size() {
+		long stamp = lock.readLock();
+		try {
+			return space.size();
+		}
+		finally {
+			lock.unlockRead(stamp);
+		}
+	}
+	
+	@Override
+	public boolean isMemoryLow() {
+		long stamp = lock.readLock();
+		try {
+			return space.isMemoryLow();
+		}
+		finally {
+			lock.unlockRead(stamp);
+		}
+	}
+	
+	@Override
+	public MemoryBudget getBudget() {
+		return space.getBudget();
+	}
+	
+	@Override
+	public N initialize(State state) {
+		long stamp = lock.writeLock();
+		try {
+			return space.initialize(state);
+		}
+		finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+	
+	@Override
+	public void checkpoint(DataOutputStream out) throws IOException {
+		long stamp = lock.writeLock();
+		try {
+			space.checkpoint(out);
+		}
+		finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+	
+	@Override
+	public void restore(DataInputStream in) throws IOException {
+		long stamp = lock.writeLock();
+		try {
+			space.restore(in);
+		}
+		finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+	
+	@Override
+	public void write(N node, DataOutput out) throws IOException {
+		space.write(node, out);
+	}
+	
+	@Override
+	public N read(DataInput in) throws IOException {
+		return space.read(in);
+	}
+	
+	@Override
+	public Function<N, N> reclaim(Iterable<N> live) {
+		long stamp = lock.writeLock();
+		try {
+			return space.reclaim(live);
+		}
+		finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+	
+	@Override
+	public Solution<CompiledAction> getNextSolution() {
+		long stamp = lock.writeLock();
+		try {
+			return space.getNextSolution();
+		}
+		finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+	
+	@Override
+	public double compare(N node1, N node2) {
+		return space.compare(node1, node2);
+	}
+	
+	@Override
+	public CompiledAction getAction(N node) {
+		long stamp = lock.readLock();
+		try {
+			return space.getAction(node);
+		}
+		finally {
+			lock.unlockRead(stamp);
+		}
+	}
+	
+	@Override
+	public Value getValue(N node, CompiledFluent fluent) {
+		long stamp = lock.readLock();
+		try {
+			if(space.isReadOnly(node, fluent))
+				return space.getValue(node, fluent);
+		}
+		finally {
+			lock.unlockRead(stamp);
+		}
+		stamp = lock.writeLock();
+		try {
+			return space.getValue(node, fluent);
+		}
+		finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+	
+	@Override
+	public boolean isExplained(N node) {
+		long stamp = lock.readLock();
+		try {
+			if(space.isReadOnly(node))
+				return space.isExplained(node);
+		}
+		finally {
+			lock.unlockRead(stamp);
+		}
+		stamp = lock.writeLock();
+		try {
+			return space.isExplained(node);
+		}
+		finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+	
+	@Override
+	public boolean isExplained(N node, Character character) {
+		long stamp = lock.readLock();
+		try {
+			if(space.isReadOnly(node, character))
+				return space.isExplained(node, character);
+		}
+		finally {
+			lock.unlockRead(stamp);
+		}
+		stamp = lock.writeLock();
+		try {
+			return space.isExplained(node, character);
+		}
+		finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+	
+	@Override
+	public N getExplanation(N node, Character character) {
+		long stamp = lock.readLock();
+		try {
+			if(space.isReadOnly(node, character))
+				return space.getExplanation(node, character);
+		}
+		finally {
+			lock.unlockRead(stamp);
+		}
+		stamp = lock.writeLock();
+		try {
+			return space.getExplanation(node, character);
+		}
+		finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+	
+	@Override
+	public Iterable<N> getParents(N node) {
+		long stamp = lock.readLock();
+		try {
+			return space.getParents(node);
+		}
+		finally {
+			lock.unlockRead(stamp);
+		}
+	}
+	
+	@Override
+	public N getChild(N node, CompiledAction action) {
+		long stamp = lock.readLock();
+		try {
+			if(space.isReadOnly(node, action))
+				return space.getChild(node, action);
+		}
+		finally {
+			lock.unlockRead(stamp);
+		}
+		stamp = lock.writeLock();
+		try {
+			return space.getChild(node, action);
+		}
+		finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+	
+	@Override
+	public N getBranch(N node, Character character) {
+		long stamp = lock.readLock();
+		try {
+			if(space.isReadOnly(node, character))
+				return space.getBranch(node, character);
+		}
+		finally {
+			lock.unlockRead(stamp);
+		}
+		stamp = lock.writeLock();
+		try {
+			return space.getBranch(node, character);
+		}
+		finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+	
+	@Override
+	public boolean getChanges(N from, N to, Collection<? super CompiledFluent> changed) {
+		long stamp = lock.readLock();
+		try {
+			return space.getChanges(from, to, changed);
+		}
+		finally {
+			lock.unlockRead(stamp);
+		}
+	}
+	
+	@Override
+	public boolean isReadOnly(N node) {
+		long stamp = lock.readLock();
+		try {
+			return space.isReadOnly(node);
+		}
+		finally {
+			lock.unlockRead(stamp);
+		}
+	}
+	
+	@Override
+	public boolean isReadOnly(N node, Character character) {
+		long stamp = lock.readLock();
+		try {
+			return space.isReadOnly(node, character);
+		}
+		finally {
+			lock.unlockRead(stamp);
+		}
+	}
+	
+	@Override
+	public boolean isReadOnly(N node, CompiledAction action) {
+		long stamp = lock.readLock();
+		try {
+			return space.isReadOnly(node, action);
+		}
+		finally {
+			lock.unlockRead(stamp);
+		}
+	}
+	
+	@Override
+	public boolean isReadOnly(N node, CompiledFluent fluent) {
+		long stamp = lock.readLock();
+		try {
+			return space.isReadOnly(node, fluent);
+		}
+		finally {
+			lock.unlockRead(stamp);
+		}
+	}
+}
\ No newline at end of file
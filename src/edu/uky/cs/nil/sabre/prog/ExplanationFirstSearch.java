@@ -1,5 +1,10 @@
 package edu.uky.cs.nil.sabre.prog;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Comparator;
+
 import edu.uky.cs.nil.sabre.Character;
 import edu.uky.cs.nil.sabre.State;
 import edu.uky.cs.nil.sabre.Utilities;
@@ -55,6 +60,12 @@ public class ExplanationFirstSearch extends ProgressionSearch {
 	 * search
 	 * @param explanationPruning whether the search should stop exploring a
 	 * branch once its root has been explained
+	 * @param transpositions whether the search should use a transposition
+	 * table to detect duplicate states
+	 * @param reclaim whether the search should reclaim the memory used by
+	 * nodes it no longer needs
+	 * @param deferred whether the search should wait to evaluate a node's
+	 * heuristic until the node is about to be visited
 	 */
 	public ExplanationFirstSearch(
 		CompiledProblem problem,
@@ -68,7 +79,10 @@ public class ExplanationFirstSearch extends ProgressionSearch {
 		int authorTemporalLimit,
 		int characterTemporalLimit,
 		int epistemicLimit,
-		boolean explanationPruning
+		boolean explanationPruning,
+		boolean transpositions,
+		boolean reclaim,
+		boolean deferred
 	) {
 		super(
 			problem,
@@ -82,7 +96,10 @@ public class ExplanationFirstSearch extends ProgressionSearch {
 			authorTemporalLimit,
 			characterTemporalLimit,
 			epistemicLimit,
-			explanationPruning
+			explanationPruning,
+			transpositions,
+			reclaim,
+			deferred
 		);
 	}
 
@@ -97,6 +114,18 @@ public class ExplanationFirstSearch extends ProgressionSearch {
 		depth = 0;
 	}
 	
+	@Override
+	protected <N> void checkpoint(DataOutputStream out) throws IOException {
+		super.checkpoint(out);
+		out.writeInt(depth);
+	}
+	
+	@Override
+	protected <N> void restore(DataInputStream in) throws IOException {
+		super.restore(in);
+		depth = in.readInt();
+	}
+	
 	@Override
 	protected void setStatus(Status status, Progress<CompiledAction> progress) {
 		status.setMessage("Explanation-first search for \"" + problem.name + "\": depth %d; %d visited; %d generated; %d in queue", 0, 0, 0, 0);
@@ -145,6 +174,17 @@ public class ExplanationFirstSearch extends ProgressionSearch {
 		return true;
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Because explanation-first search orders nodes by epistemic depth first, it
+	 * always uses a {@link HeapQueue heap queue}.
+	 */
+	@Override
+	protected SearchQueue getQueue(Comparator<SearchNode<?>> comparator) {
+		return new HeapQueue(comparator);
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 * <p>
@@ -0,0 +1,267 @@
+package edu.uky.cs.nil.sabre.prog;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * A {@link SearchQueue search queue} used by {@link FocalSearch focal search}
+ * which does not always return the lowest node first. Nodes are grouped by
+ * the sum of their {@link SearchNode#getCost() cost} and {@link
+ * SearchNode#getHeuristic() heuristic}. The nodes whose sum is no more than
+ * {@link FocalSearch#weight the search's weight} times the lowest sum in the
+ * queue make up the focal list, and the node returned is the one from the
+ * focal list that comes first according to {@link
+ * FocalSearch#focus(SearchNode, SearchNode) the search's secondary order}.
+ * <p>
+ * Each group keeps its nodes in a {@link HeapQueue heap queue} ordered by the
+ * secondary order, and the groups which have nodes are kept sorted by their
+ * sum, so finding the next node only requires looking at the first node of
+ * each group within the weight of the lowest. When cost and heuristic values are small
+ * integers there are only a handful of such groups.
+ * <p>
+ * A node's recorded position is its position in its group's heap, and the
+ * node also records the sum of the group it was added to, so the queue can
+ * go straight to that group even if the node's priority has changed since it
+ * was added. A node can be {@link #offer(SearchNode) added}, {@link
+ * #remove(Object) removed}, or {@link #update(SearchNode) moved} in
+ * logarithmic time, no matter how many groups there are.
+ * <p>
+ * The lowest sum is found from the groups themselves, so {@link
+ * #comparator() the comparator} is only passed on to {@link #create() new
+ * queues}.
+ * 
+ * @author Stephen G. Ware
+ */
+final class FocalQueue extends SearchQueue {
+	
+	/**
+	 * A group of nodes with the same cost plus heuristic.
+	 * 
+	 * @author Stephen G. Ware
+	 */
+	private static final class Group {
+		
+		/** The cost plus heuristic value of every node in this group */
+		public final double total;
+		
+		/** The nodes in this group, in the search's secondary order */
+		public final HeapQueue nodes;
+		
+		/**
+		 * Constructs a new, empty group.
+		 * 
+		 * @param total the cost plus heuristic value of its nodes
+		 * @param focus the secondary order of its nodes
+		 */
+		public Group(double total, Comparator<SearchNode<?>> focus) {
+			this.total = total;
+			this.nodes = new HeapQueue(focus);
+		}
+	}
+	
+	/** The search whose weight and secondary order this queue uses */
+	private final FocalSearch search;
+	
+	/** The secondary order in which nodes in the focal list are returned */
+	private final Comparator<SearchNode<?>> focus;
+	
+	/** Groups which have nodes, indexed by their cost plus heuristic */
+	private final TreeMap<Double, Group> groups = new TreeMap<>();
+	
+	/** The number of nodes in the queue */
+	private int size = 0;
+	
+	/**
+	 * Constructs a new, empty focal queue.
+	 * 
+	 * @param comparator the comparator which defines the order of the nodes
+	 * in the open list
+	 * @param search the search whose weight and secondary order will be used
+	 * to choose nodes from the focal list
+	 */
+	public FocalQueue(Comparator<SearchNode<?>> comparator, FocalSearch search) {
+		super(comparator);
+		this.search = search;
+		this.focus = new Comparator<>() {
+			@Override
+			@SuppressWarnings("unchecked")
+			public int compare(SearchNode<?> node1, SearchNode<?> node2) {
+				double comparison = search.focus((SearchNode<Object>) node1, (SearchNode<Object>) node2);
+				if(comparison < 0)
+					return -1;
+				else if(comparison > 0)
+					return 1;
+				else
+					return 0;
+			}
+		};
+	}
+	
+	@Override
+	public FocalQueue create() {
+		return new FocalQueue(comparator(), search);
+	}
+	
+	@Override
+	public int size() {
+		return size;
+	}
+	
+	@Override
+	public Iterator<SearchNode<?>> iterator() {
+		ArrayList<SearchNode<?>> nodes = new ArrayList<>(size);
+		for(Group group : groups.values())
+			nodes.addAll(group.nodes);
+		return Collections.unmodifiableList(nodes).iterator();
+	}
+	
+	@Override
+	public boolean contains(Object object) {
+		return find(object) != null;
+	}
+	
+	@Override
+	public boolean offer(SearchNode<?> node) {
+		if(contains(node))
+			update(node);
+		else {
+			Group group = getGroup(node);
+			group.nodes.offer(node);
+			node.group = Double.doubleToLongBits(group.total);
+			size++;
+		}
+		return true;
+	}
+	
+	@Override
+	public SearchNode<?> peek() {
+		Group group = choose();
+		if(group == null)
+			return null;
+		else
+			return group.nodes.peek();
+	}
+	
+	@Override
+	public SearchNode<?> poll() {
+		Group group = choose();
+		if(group == null)
+			return null;
+		SearchNode<?> node = group.nodes.poll();
+		if(group.nodes.isEmpty())
+			groups.remove(group.total);
+		size--;
+		return node;
+	}
+	
+	@Override
+	public boolean remove(Object object) {
+		Group group = find(object);
+		if(group == null)
+			return false;
+		group.nodes.remove(object);
+		if(group.nodes.isEmpty())
+			groups.remove(group.total);
+		size--;
+		return true;
+	}
+	
+	@Override
+	public void clear() {
+		for(Group group : groups.values())
+			group.nodes.clear();
+		groups.clear();
+		size = 0;
+	}
+	
+	@Override
+	public void update(SearchNode<?> node) {
+		Group group = find(node);
+		if(group == null)
+			return;
+		else if(group.total == getTotal(node))
+			group.nodes.update(node);
+		else {
+			remove(node);
+			offer(node);
+		}
+	}
+	
+	@Override
+	public void reprioritize(Predicate<? super SearchNode<?>> test) {
+		Iterator<SearchNode<?>> nodes = iterator();
+		clear();
+		while(nodes.hasNext()) {
+			SearchNode<?> node = nodes.next();
+			if(test.test(node))
+				offer(node);
+			else
+				node.index = -1;
+		}
+	}
+	
+	/**
+	 * Returns the group whose first node is the next node to be returned: of
+	 * the groups whose cost plus heuristic is within the weight of the lowest,
+	 * the one whose first node comes first in the secondary order.
+	 * 
+	 * @return the group, or null if the queue is empty
+	 */
+	private final Group choose() {
+		if(groups.isEmpty())
+			return null;
+		Group lowest = groups.firstEntry().getValue();
+		double bound = lowest.total * search.weight;
+		Group best = lowest;
+		for(Group group : groups.subMap(lowest.total, false, Math.max(bound, lowest.total), true).values())
+			if(focus.compare(group.nodes.peek(), best.nodes.peek()) < 0)
+				best = group;
+		return best;
+	}
+	
+	/**
+	 * Returns the group that a node in this queue is in.
+	 * 
+	 * @param object the node
+	 * @return the node's group, or null if it is not in this queue
+	 */
+	private final Group find(Object object) {
+		if(object instanceof SearchNode) {
+			Group group = groups.get(Double.longBitsToDouble(((SearchNode<?>) object).group));
+			if(group != null && group.nodes.contains(object))
+				return group;
+		}
+		return null;
+	}
+	
+	/**
+	 * Returns the group a node belongs in based on its current cost and
+	 * heuristic, creating the group if it does not exist yet.
+	 * 
+	 * @param node the node
+	 * @return the node's group
+	 */
+	private final Group getGroup(SearchNode<?> node) {
+		double total = getTotal(node);
+		Group group = groups.get(total);
+		if(group == null) {
+			group = new Group(total, focus);
+			groups.put(total, group);
+		}
+		return group;
+	}
+	
+	/**
+	 * Returns the sum of a node's cost and heuristic.
+	 * 
+	 * @param node the node
+	 * @return the node's cost plus heuristic
+	 */
+	private static final double getTotal(SearchNode<?> node) {
+		return node.getCost() + node.getHeuristic();
+	}
+}
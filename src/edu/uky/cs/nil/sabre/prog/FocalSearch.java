@@ -0,0 +1,167 @@
+package edu.uky.cs.nil.sabre.prog;
+
+import java.util.Comparator;
+
+import edu.uky.cs.nil.sabre.comp.CompiledAction;
+import edu.uky.cs.nil.sabre.comp.CompiledProblem;
+import edu.uky.cs.nil.sabre.etree.EventTree;
+
+/**
+ * Focal search is a greedy type of {@link ProgressionSearch progression
+ * search} which visits nodes in a secondary order among those that are close
+ * to the best. Rather than always visiting the node with the lowest {@link
+ * SearchNode#getCost() cost} plus {@link SearchNode#getHeuristic() heuristic},
+ * it may visit any node whose cost plus heuristic is no more than {@link
+ * #weight a weight} times that lowest value. These nodes make up the focal
+ * list, and among them the search visits the one that comes first according
+ * to {@link #focus(SearchNode, SearchNode) a secondary order}, which by
+ * default prefers nodes in the author's plan and then the node that appears
+ * closest to its goal.
+ * <p>
+ * This search offers no bound on the cost or length of the plans it finds.
+ * The weight only limits the order in which nodes are visited. Solutions are
+ * recognized when nodes are generated and when the explanations for
+ * characters' actions are found, not when nodes are visited, and the queue
+ * mixes nodes from the author's plan with nodes from characters' imagined
+ * plans, so a plan may be returned whose cost is any multiple of the best.
+ * Unlike inflating the heuristic with a {@link WeightedCost weighted cost},
+ * focal search keeps the original cost and heuristic of every node. A weight
+ * of 1 makes it visit nodes in the same cost plus heuristic order as
+ * best-first search, though ties are broken using the secondary order.
+ * 
+ * @author Stephen G. Ware
+ */
+public class FocalSearch extends ProgressionSearch {
+	
+	/**
+	 * The factor by which a node's cost plus heuristic may exceed the lowest
+	 * in the queue for that node to be in the focal list
+	 */
+	public final double weight;
+	
+	/**
+	 * Constructs a new focal progression search.
+	 * 
+	 * @param problem the compiled problem to be solved
+	 * @param cost a function to measure the cost of a plan so far
+	 * @param heuristic a function to estimate the cost of making a plan into a
+	 * solution
+	 * @param actions an event tree of all actions that can be taken during
+	 * search
+	 * @param space the model of states that will be searched
+	 * @param searchLimit the max number of nodes that can be visited
+	 * @param spaceLimit the max number of nodes that can be generated
+	 * @param timeLimit the max number of milliseconds a search can take
+	 * @param authorTemporalLimit the max number of actions in the main plan
+	 * @param characterTemporalLimit the max number of actions a character can
+	 * imagine when trying to explain its actions
+	 * @param epistemicLimit the max depth in a character's theory of mind to
+	 * search
+	 * @param explanationPruning whether the search should stop exploring a
+	 * branch once its root has been explained
+	 * @param transpositions whether the search should use a transposition
+	 * table to detect duplicate states
+	 * @param reclaim whether the search should reclaim the memory used by
+	 * nodes it no longer needs
+	 * @param deferred whether the search should wait to evaluate a node's
+	 * heuristic until the node is about to be visited
+	 * @param weight the factor by which a node's cost plus heuristic may
+	 * exceed the lowest in the queue, which is always at least 1
+	 */
+	public FocalSearch(
+		CompiledProblem problem,
+		ProgressionCost cost,
+		ProgressionCost heuristic,
+		EventTree<CompiledAction> actions,
+		ProgressionSpace<?> space,
+		long searchLimit,
+		long spaceLimit,
+		long timeLimit,
+		int authorTemporalLimit,
+		int characterTemporalLimit,
+		int epistemicLimit,
+		boolean explanationPruning,
+		boolean transpositions,
+		boolean reclaim,
+		boolean deferred,
+		double weight
+	) {
+		super(
+			problem,
+			cost,
+			heuristic,
+			actions,
+			space,
+			searchLimit,
+			spaceLimit,
+			timeLimit,
+			authorTemporalLimit,
+			characterTemporalLimit,
+			epistemicLimit,
+			explanationPruning,
+			transpositions,
+			reclaim,
+			deferred
+		);
+		this.weight = Math.max(weight, 1);
+	}
+	
+	@Override
+	public String toString() {
+		return "[" + toString("Focal Heuristic Progression Search") + "]";
+	}
+	
+	@Override
+	protected String toString(String name) {
+		return super.toString(name) + "; fw=" + weight;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Focal search always uses a {@link FocalQueue focal queue}. The queue
+	 * reads {@link #weight the weight} each time it chooses a node, so it can
+	 * be created before the weight is set.
+	 */
+	@Override
+	protected SearchQueue getQueue(Comparator<SearchNode<?>> comparator) {
+		return new FocalQueue(comparator, this);
+	}
+	
+	/**
+	 * Defines the priority in which {@link SearchNode search nodes} in the
+	 * focal list should be visited. This method follows the same contract as
+	 * {@link #compare(SearchNode, SearchNode)}, but it is only used to choose
+	 * between nodes whose cost plus heuristic is already within {@link #weight
+	 * the weight} of the lowest.
+	 * <p>
+	 * By default, this method prioritizes nodes in this order:
+	 * <ul>
+	 * <li>The node with the lowest {@link SearchNode#getEpistemicDepth()
+	 * epistemic depth} is first, so that the author's plan moves forward
+	 * before the search looks further into what characters imagine.</li>
+	 * <li>In case of a tie, the node with the lowest {@link
+	 * SearchNode#getHeuristic() heuristic} value is first, since it is
+	 * estimated to be closest to achieving its goal.</li>
+	 * <li>In case of a further tie, the nodes are {@link #compare(SearchNode,
+	 * SearchNode) compared as usual}.</li>
+	 * </ul>
+	 * 
+	 * @param <N> the type of object used to represent a node in {@link #space
+	 * the search space}
+	 * @param node1 the first node to be compared
+	 * @param node2 the second node to be compared
+	 * @return a negative double, zero, or a positive double as the first
+	 * node is higher priority, the same priority, or lower priority than the
+	 * second node
+	 */
+	protected <N> double focus(SearchNode<N> node1, SearchNode<N> node2) {
+		double comparison = node1.getEpistemicDepth() - node2.getEpistemicDepth();
+		if(comparison != 0)
+			return comparison;
+		comparison = node1.getHeuristic() - node2.getHeuristic();
+		if(comparison != 0)
+			return comparison;
+		return compare(node1, node2);
+	}
+}
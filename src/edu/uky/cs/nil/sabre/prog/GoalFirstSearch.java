@@ -1,6 +1,10 @@
 package edu.uky.cs.nil.sabre.prog;
 
-import java.util.HashMap;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.function.Function;
 
 import edu.uky.cs.nil.sabre.State;
 import edu.uky.cs.nil.sabre.comp.CompiledAction;
@@ -63,10 +67,10 @@ import edu.uky.cs.nil.sabre.util.Worker.Status;
 public class GoalFirstSearch extends ProgressionSearch {
 
 	/** Tracks which nodes have already been expanded */
-	private final HashMap<Object, Integer> expanded = new HashMap<>();
+	private final NodeTable expanded = new NodeTable();
 	
 	/** Tracks which nodes have already been explained */
-	private final HashMap<Object, Integer> explained = new HashMap<>();
+	private final NodeTable explained = new NodeTable();
 	
 	/** The temporal depth of the deepest author node visited so far */
 	private int deepest = 0;
@@ -97,6 +101,12 @@ public class GoalFirstSearch extends ProgressionSearch {
 	 * search
 	 * @param explanationPruning whether the search should stop exploring a
 	 * branch once its root has been explained
+	 * @param transpositions whether the search should use a transposition
+	 * table to detect duplicate states
+	 * @param reclaim whether the search should reclaim the memory used by
+	 * nodes it no longer needs
+	 * @param deferred whether the search should wait to evaluate a node's
+	 * heuristic until the node is about to be visited
 	 */
 	public GoalFirstSearch(
 		CompiledProblem problem,
@@ -110,7 +120,10 @@ public class GoalFirstSearch extends ProgressionSearch {
 		int authorTemporalLimit,
 		int characterTemporalLimit,
 		int epistemicLimit,
-		boolean explanationPruning
+		boolean explanationPruning,
+		boolean transpositions,
+		boolean reclaim,
+		boolean deferred
 	) {
 		super(
 			problem,
@@ -124,7 +137,10 @@ public class GoalFirstSearch extends ProgressionSearch {
 			authorTemporalLimit,
 			characterTemporalLimit,
 			epistemicLimit,
-			explanationPruning
+			explanationPruning,
+			transpositions,
+			reclaim,
+			deferred
 		);
 	}
 	
@@ -142,6 +158,58 @@ public class GoalFirstSearch extends ProgressionSearch {
 		shallowest = Integer.MAX_VALUE;
 	}
 	
+	@Override
+	protected <N> void checkpoint(DataOutputStream out) throws IOException {
+		super.checkpoint(out);
+		write(expanded, out);
+		write(explained, out);
+		out.writeInt(deepest);
+		out.writeInt(shallowest);
+	}
+	
+	@SuppressWarnings("unchecked")
+	private final <N> void write(NodeTable table, DataOutputStream out) throws IOException {
+		ProgressionSpace<N> space = (ProgressionSpace<N>) this.space;
+		out.writeInt(table.size());
+		for(Object node : table.nodes()) {
+			space.write((N) node, out);
+			out.writeInt(table.get(node, Integer.MAX_VALUE));
+		}
+	}
+	
+	@Override
+	protected <N> void restore(DataInputStream in) throws IOException {
+		super.restore(in);
+		read(expanded, in);
+		read(explained, in);
+		deepest = in.readInt();
+		shallowest = in.readInt();
+	}
+	
+	private final void read(NodeTable table, DataInputStream in) throws IOException {
+		table.clear();
+		int size = in.readInt();
+		for(int i=0; i<size; i++) {
+			Object node = space.read(in);
+			table.put(node, in.readInt());
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * During goal-first search, this method also updates the records of which
+	 * nodes have been expanded and explained. Records for nodes which were
+	 * discarded are removed, so if such a node is generated again, it will be
+	 * expanded and explained again.
+	 */
+	@Override
+	protected <N> void reclaim(Function<N, N> map) {
+		super.reclaim(map);
+		expanded.reclaim(map);
+		explained.reclaim(map);
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 * <p>
@@ -174,9 +242,8 @@ public class GoalFirstSearch extends ProgressionSearch {
 	
 	private final boolean expandOnce(SearchNode<?> node) {
 		int temporal = node.getTemporalOffset() + node.getTemporalDepth();
-		Integer expanded = this.expanded.get(node.getNode());
-		if(expanded == null || temporal < expanded) {
-			this.expanded.put(node.getNode(), temporal);
+		if(temporal < expanded.get(node.getNode(), Integer.MAX_VALUE)) {
+			expanded.put(node.getNode(), temporal);
 			expand(node);
 			return true;
 		}
@@ -185,9 +252,8 @@ public class GoalFirstSearch extends ProgressionSearch {
 	
 	private final void explainOnce(SearchNode<?> node) {
 		int temporal = node.getTemporalOffset() + node.getTemporalDepth();
-		Integer explained = this.explained.get(node.getNode());
-		if(explained == null || temporal < explained) {
-			this.explained.put(node.getNode(), temporal);
+		if(temporal < explained.get(node.getNode(), Integer.MAX_VALUE)) {
+			explained.put(node.getNode(), temporal);
 			if(explain(node))
 				push(node);
 		}
@@ -224,7 +290,21 @@ public class GoalFirstSearch extends ProgressionSearch {
 	 */
 	@Override
 	protected <N> boolean expand(SearchNode<N> parent, CompiledAction action) {
-		return push(parent.getChild(action));
+		SearchNode<N> child = parent.getChild(action);
+		defer(child, parent);
+		child.unexplained = false;
+		return push(child);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Because goal-first search orders nodes by epistemic depth first, it
+	 * always uses a {@link HeapQueue heap queue}.
+	 */
+	@Override
+	protected SearchQueue getQueue(Comparator<SearchNode<?>> comparator) {
+		return new HeapQueue(comparator);
 	}
 	
 	/**
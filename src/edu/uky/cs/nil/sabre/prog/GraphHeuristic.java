@@ -1,5 +1,9 @@
 package edu.uky.cs.nil.sabre.prog;
 
+import java.util.function.Function;
+
+import edu.uky.cs.nil.sabre.State;
+import edu.uky.cs.nil.sabre.comp.CompiledFluent;
 import edu.uky.cs.nil.sabre.comp.CompiledProblem;
 import edu.uky.cs.nil.sabre.hg.HeuristicGraph;
 import edu.uky.cs.nil.sabre.hg.MaxGraph;
@@ -148,6 +152,21 @@ public class GraphHeuristic implements ProgressionCost {
 	/** The heuristic graph used by this cost function */
 	protected final HeuristicGraph graph;
 	
+	/**
+	 * The fluent values of recently evaluated states, or null if no node has
+	 * been evaluated yet
+	 */
+	private RecentStates states = null;
+	
+	/**
+	 * The value of every fluent in the state being evaluated, indexed by
+	 * {@link CompiledFluent#id fluent ID}
+	 */
+	private Value[] values;
+	
+	/** The state being evaluated, which reads {@link #values} */
+	private final State state = fluent -> values[((CompiledFluent) fluent).id];
+	
 	/**
 	 * Constructs a new heuristic graph cost function.
 	 * 
@@ -156,6 +175,24 @@ public class GraphHeuristic implements ProgressionCost {
 	public GraphHeuristic(HeuristicGraph graph) {
 		this.graph = graph;
 	}
+	
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * This function forgets which nodes it has recently evaluated, because
+	 * the search may be starting over in a new space.
+	 */
+	@Override
+	public <N> void initialize(ProgressionNode<N> root) {
+		if(states != null)
+			states.clear();
+	}
+	
+	@Override
+	public <N> void reclaim(Function<N, N> map) {
+		if(states != null)
+			states.reclaim(map);
+	}
 
 	@Override
 	public <N> double evaluate(ProgressionNode<N> node) {
@@ -163,8 +200,52 @@ public class GraphHeuristic implements ProgressionCost {
 			return 0;
 		Value start = node.getUtility(node.getCharacter());
 		UtilityNode utility = graph.getUtility(node.getCharacter());
-		graph.initialize(node);
+		setState(node);
 		while(utility.getCost(Comparison.GREATER_THAN, start) == Double.POSITIVE_INFINITY && graph.extend());
 		return utility.getCost(Comparison.GREATER_THAN, start);
 	}
+	
+	/**
+	 * {@link HeuristicGraph#initialize(edu.uky.cs.nil.sabre.State)
+	 * Initializes} the heuristic graph to the state of a node. The node's
+	 * state is read through {@link RecentStates a record of recent states},
+	 * which only looks up the fluents that may have changed since a nearby
+	 * state was read, so the graph's fluents are set from values that are
+	 * already known rather than by walking back through the space once per
+	 * fluent.
+	 * 
+	 * @param <N> the type of object used to represent a node in the search
+	 * space
+	 * @param node the node whose state the graph will be initialized to
+	 */
+	protected <N> void setState(ProgressionNode<N> node) {
+		if(states == null)
+			states = new RecentStates(node.getSearch().problem);
+		values = states.getValues(states.set(node.getSpace(), node.getNode()));
+		graph.initialize(state);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Graph heuristics are always integral, because every action in the
+	 * {@link HeuristicGraph heuristic graph} costs one more than its
+	 * precondition.
+	 */
+	@Override
+	public boolean isIntegral() {
+		return true;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Graph heuristics are state based, because the graph is initialized from
+	 * the node's state and its value depends only on that state's utility for
+	 * the node's character.
+	 */
+	@Override
+	public boolean isStateBased() {
+		return true;
+	}
 }
\ No newline at end of file
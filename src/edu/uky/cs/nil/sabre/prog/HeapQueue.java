@@ -0,0 +1,230 @@
+package edu.uky.cs.nil.sabre.prog;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.function.Predicate;
+
+import edu.uky.cs.nil.sabre.util.ArrayIterator;
+
+/**
+ * A {@link SearchQueue search queue} implemented as a binary heap, like {@link
+ * java.util.PriorityQueue}, except that each node remembers its own position
+ * in the heap. This makes the queue addressable: a node can be {@link
+ * #remove(Object) removed} or {@link #update(SearchNode) moved after its
+ * priority changes} in logarithmic time, rather than by scanning the whole
+ * queue to find it. The queue also supports {@link #reprioritize(Predicate)
+ * reordering every node at once} in linear time, for when the priorities of
+ * many nodes change together.
+ * <p>
+ * Because a node has only one position, a node can be in at most one queue at
+ * a time, and adding a node that is already in the queue simply {@link
+ * #update(SearchNode) updates} its position. A node which is added to a
+ * second queue is no longer addressable in the first (though it is still
+ * there), so it should be removed from the first queue before it is added to
+ * another, or the first queue should be {@link #clear() cleared} soon after.
+ * Clearing a queue does not change the positions recorded in its nodes, so
+ * nodes can be moved into other queues before the queue they came from is
+ * cleared.
+ * <p>
+ * Nodes are added and removed in exactly the same way as {@link
+ * java.util.PriorityQueue}, so for any sequence of operations, the two queues
+ * return nodes in the same order.
+ * 
+ * @author Stephen G. Ware
+ */
+final class HeapQueue extends SearchQueue {
+	
+	/** The number of nodes the heap can hold before it first grows */
+	private static final int INITIAL_CAPACITY = 11;
+	
+	/** The nodes in the queue, arranged as a binary heap */
+	private SearchNode<?>[] heap = new SearchNode<?>[INITIAL_CAPACITY];
+	
+	/** The number of nodes in the queue */
+	private int size = 0;
+	
+	/**
+	 * Constructs a new, empty heap queue.
+	 * 
+	 * @param comparator the comparator which defines the order of the nodes,
+	 * with the lowest node first
+	 */
+	public HeapQueue(Comparator<SearchNode<?>> comparator) {
+		super(comparator);
+	}
+	
+	@Override
+	public HeapQueue create() {
+		return new HeapQueue(comparator());
+	}
+	
+	@Override
+	public int size() {
+		return size;
+	}
+	
+	@Override
+	public Iterator<SearchNode<?>> iterator() {
+		return new ArrayIterator<>(heap, 0, size - 1);
+	}
+	
+	@Override
+	public boolean contains(Object object) {
+		return indexOf(object) != -1;
+	}
+	
+	@Override
+	public boolean offer(SearchNode<?> node) {
+		if(contains(node)) {
+			update(node);
+			return true;
+		}
+		if(size == heap.length)
+			heap = Arrays.copyOf(heap, size < 64 ? (size + 1) * 2 : size + (size >> 1));
+		siftUp(size++, node);
+		return true;
+	}
+	
+	@Override
+	public SearchNode<?> peek() {
+		return heap[0];
+	}
+	
+	@Override
+	public SearchNode<?> poll() {
+		if(size == 0)
+			return null;
+		SearchNode<?> first = heap[0];
+		removeAt(0);
+		return first;
+	}
+	
+	@Override
+	public boolean remove(Object object) {
+		int index = indexOf(object);
+		if(index == -1)
+			return false;
+		removeAt(index);
+		return true;
+	}
+	
+	@Override
+	public void clear() {
+		Arrays.fill(heap, 0, size, null);
+		size = 0;
+	}
+	
+	@Override
+	public void update(SearchNode<?> node) {
+		int index = indexOf(node);
+		if(index != -1) {
+			siftUp(index, node);
+			if(heap[index] == node)
+				siftDown(index, node);
+		}
+	}
+	
+	@Override
+	public void reprioritize(Predicate<? super SearchNode<?>> test) {
+		int kept = 0;
+		for(int i=0; i<size; i++) {
+			SearchNode<?> node = heap[i];
+			heap[i] = null;
+			if(test.test(node))
+				set(kept++, node);
+			else
+				node.index = -1;
+		}
+		size = kept;
+		for(int i=(size >>> 1) - 1; i>=0; i--)
+			siftDown(i, heap[i]);
+	}
+	
+	/**
+	 * Returns the position of a node in the heap.
+	 * 
+	 * @param object the node
+	 * @return the node's index in {@link #heap the heap}, or -1 if the node
+	 * is not in this queue
+	 */
+	private final int indexOf(Object object) {
+		if(object instanceof SearchNode) {
+			int index = ((SearchNode<?>) object).index;
+			if(index >= 0 && index < size && heap[index] == object)
+				return index;
+		}
+		return -1;
+	}
+	
+	/**
+	 * Removes the node at a given position in the heap.
+	 * 
+	 * @param index the position of the node to remove
+	 */
+	private final void removeAt(int index) {
+		heap[index].index = -1;
+		int last = --size;
+		if(last == index)
+			heap[index] = null;
+		else {
+			SearchNode<?> moved = heap[last];
+			heap[last] = null;
+			siftDown(index, moved);
+			if(heap[index] == moved)
+				siftUp(index, moved);
+		}
+	}
+	
+	/**
+	 * Places a node at a given position in the heap and moves it toward the
+	 * top until its parent is lower than it.
+	 * 
+	 * @param index the position where the node starts
+	 * @param node the node
+	 */
+	private final void siftUp(int index, SearchNode<?> node) {
+		while(index > 0) {
+			int parent = (index - 1) >>> 1;
+			if(comparator().compare(node, heap[parent]) >= 0)
+				break;
+			set(index, heap[parent]);
+			index = parent;
+		}
+		set(index, node);
+	}
+	
+	/**
+	 * Places a node at a given position in the heap and moves it toward the
+	 * bottom until both of its children are higher than it.
+	 * 
+	 * @param index the position where the node starts
+	 * @param node the node
+	 */
+	private final void siftDown(int index, SearchNode<?> node) {
+		int half = size >>> 1;
+		while(index < half) {
+			int child = (index << 1) + 1;
+			int right = child + 1;
+			if(right < size && comparator().compare(heap[child], heap[right]) > 0)
+				child = right;
+			if(comparator().compare(node, heap[child]) <= 0)
+				break;
+			set(index, heap[child]);
+			index = child;
+		}
+		set(index, node);
+	}
+	
+	/**
+	 * Puts a node at a position in the heap and records the position in the
+	 * node.
+	 * 
+	 * @param index the position
+	 * @param node the node
+	 */
+	private final void set(int index, SearchNode<?> node) {
+		heap[index] = node;
+		node.index = index;
+	}
+}
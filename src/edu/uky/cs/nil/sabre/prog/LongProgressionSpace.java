@@ -0,0 +1,206 @@
+package edu.uky.cs.nil.sabre.prog;
+
+import java.util.Collection;
+
+import edu.uky.cs.nil.sabre.Character;
+import edu.uky.cs.nil.sabre.comp.CompiledAction;
+import edu.uky.cs.nil.sabre.comp.CompiledFluent;
+import edu.uky.cs.nil.sabre.logic.Value;
+import edu.uky.cs.nil.sabre.util.ArrayIterable;
+
+/**
+ * A {@link ProgressionSpace progression space} whose nodes are Java {@code
+ * long}s, such as {@link edu.uky.cs.nil.sabre.ptree.ProgressionTreeSpace the
+ * progression tree space}. In addition to the usual methods, which take and
+ * return {@link Long} objects, this interface defines a version of each method
+ * that takes and returns primitive {@code long}s, so that code which knows it
+ * is working with such a space can walk it without boxing a new {@link Long}
+ * for every node it touches. Methods which would return null for a missing
+ * node instead return {@link #NONE}, which is never a valid node.
+ * <p>
+ * Implementations only need to define the primitive methods; the methods
+ * inherited from {@link ProgressionSpace} are defined in terms of them.
+ * 
+ * @author Stephen G. Ware
+ */
+public interface LongProgressionSpace extends ProgressionSpace<Long> {
+	
+	/** The value returned in place of null when a node does not exist */
+	public static final long NONE = -1;
+	
+	/**
+	 * Compares two nodes. See {@link #compare(Object, Object)}.
+	 * 
+	 * @param node1 the first node in the state space to compare
+	 * @param node2 the second node in the state space to compare
+	 * @return a negative double, zero, or a positive double as the first
+	 * node is higher priority, the same priority, or lower priority than the
+	 * second node
+	 */
+	public double compare(long node1, long node2);
+	
+	@Override
+	public default double compare(Long node1, Long node2) {
+		return compare(node1.longValue(), node2.longValue());
+	}
+	
+	/**
+	 * Returns the action associated with a node. See {@link
+	 * #getAction(Object)}.
+	 * 
+	 * @param node the node in the state space whose action is desired
+	 * @return the action associated with the node, or null if the node
+	 * represents an initial state
+	 */
+	public CompiledAction getAction(long node);
+	
+	@Override
+	public default CompiledAction getAction(Long node) {
+		return getAction(node.longValue());
+	}
+	
+	/**
+	 * Returns the value of a fluent in the state represented by a node. See
+	 * {@link #getValue(Object, CompiledFluent)}.
+	 * 
+	 * @param node the node in the state space to be treated as a state
+	 * @param fluent the fluent to be evaluated
+	 * @return the value of the fluent in that node's state
+	 */
+	public Value getValue(long node, CompiledFluent fluent);
+	
+	@Override
+	public default Value getValue(Long node, CompiledFluent fluent) {
+		return getValue(node.longValue(), fluent);
+	}
+	
+	/**
+	 * Indicates whether a node's action is explained for all its consenting
+	 * characters. See {@link #isExplained(Object)}.
+	 * 
+	 * @param node the node in the state space whose action may be explained
+	 * @return true if the node's action is explained for all its consenting
+	 * characters, false otherwise
+	 */
+	public boolean isExplained(long node);
+	
+	@Override
+	public default boolean isExplained(Long node) {
+		return isExplained(node.longValue());
+	}
+	
+	/**
+	 * Indicates whether a node's action is explained for a given character.
+	 * See {@link #isExplained(Object, Character)}.
+	 * 
+	 * @param node the node in the state space whose action may be explained
+	 * @param character the character for which it may be explained
+	 * @return true if the action associated with the node is explained for that
+	 * character
+	 */
+	public boolean isExplained(long node, Character character);
+	
+	@Override
+	public default boolean isExplained(Long node, Character character) {
+		return isExplained(node.longValue(), character);
+	}
+	
+	/**
+	 * Returns the node that explains a node's action for a given character.
+	 * See {@link #getExplanation(Object, Character)}.
+	 * 
+	 * @param node the node in the state space whose action may be explained
+	 * @param character the character for which it may be explained
+	 * @return the node that explains the action for that character, or {@link
+	 * #NONE} if the action is not explained for that character
+	 */
+	public long getExplanation(long node, Character character);
+	
+	@Override
+	public default Long getExplanation(Long node, Character character) {
+		long explanation = getExplanation(node.longValue(), character);
+		if(explanation == NONE)
+			return null;
+		else
+			return explanation;
+	}
+	
+	/**
+	 * Returns the single node which represents the state before a node, or
+	 * {@link #NONE} if the node has no parent. Spaces whose nodes are longs
+	 * are trees, so each node has at most one {@link #getParents(Object)
+	 * parent}.
+	 * 
+	 * @param node a node in the state space
+	 * @return the node's parent, or {@link #NONE} if it has no parent
+	 */
+	public long getParent(long node);
+	
+	@Override
+	public default Iterable<Long> getParents(Long node) {
+		long parent = getParent(node.longValue());
+		if(parent == NONE)
+			return new ArrayIterable<>();
+		else
+			return new ArrayIterable<>(parent);
+	}
+	
+	/**
+	 * Returns the node that results from taking an action in the state
+	 * represented by a node. See {@link #getChild(Object, CompiledAction)}.
+	 * 
+	 * @param node a node in the state space
+	 * @param action the action to take in the state represented by the node
+	 * @return the node that results from taking that action in that state
+	 */
+	public long getChild(long node, CompiledAction action);
+	
+	@Override
+	public default Long getChild(Long node, CompiledAction action) {
+		return getChild(node.longValue(), action);
+	}
+	
+	/**
+	 * Returns the node that represents what a character believes will happen
+	 * when taking a node's action. See {@link #getBranch(Object, Character)}.
+	 * 
+	 * @param node the node in the state space whose action needs to be
+	 * explained for some character
+	 * @param character the character for which the action needs to be
+	 * explained
+	 * @return a node in the state space which represents that character's
+	 * beliefs about the state after taking the action, or {@link #NONE} if
+	 * such a branch does not exist
+	 */
+	public long getBranch(long node, Character character);
+	
+	@Override
+	public default Long getBranch(Long node, Character character) {
+		long branch = getBranch(node.longValue(), character);
+		if(branch == NONE)
+			return null;
+		else
+			return branch;
+	}
+	
+	/**
+	 * Adds to a collection every fluent whose value may be different in the
+	 * states represented by two nodes. See {@link #getChanges(Object, Object,
+	 * Collection)}. By default, this method always returns false.
+	 * 
+	 * @param from a node in the state space
+	 * @param to another node in the state space
+	 * @param changed the collection to which fluents that may have different
+	 * values will be added
+	 * @return true if every fluent which may have a different value was added
+	 * to the collection, or false if the space cannot tell
+	 */
+	public default boolean getChanges(long from, long to, Collection<? super CompiledFluent> changed) {
+		return false;
+	}
+	
+	@Override
+	public default boolean getChanges(Long from, Long to, Collection<? super CompiledFluent> changed) {
+		return getChanges(from.longValue(), to.longValue(), changed);
+	}
+}
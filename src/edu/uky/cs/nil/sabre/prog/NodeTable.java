@@ -0,0 +1,111 @@
+package edu.uky.cs.nil.sabre.prog;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.function.Function;
+
+import edu.uky.cs.nil.sabre.util.LongIntMap;
+
+/**
+ * A table which records an {@code int} for nodes in a {@link ProgressionSpace
+ * state space}, such as the temporal level at which a node was last visited.
+ * Most spaces, such as {@link LongProgressionSpace spaces whose nodes are
+ * longs}, represent nodes as {@link Long}s, so those nodes are stored in a
+ * {@link LongIntMap primitive table} that does not box keys or values. Nodes
+ * of any other type are stored in an ordinary {@link HashMap}.
+ * 
+ * @author Stephen G. Ware
+ */
+final class NodeTable {
+	
+	/** Values for nodes which are longs */
+	private final LongIntMap longs = new LongIntMap();
+	
+	/** Values for nodes of any other type */
+	private final HashMap<Object, Integer> objects = new HashMap<>();
+	
+	/**
+	 * Returns the number of nodes in the table.
+	 * 
+	 * @return the number of nodes
+	 */
+	public int size() {
+		return longs.size() + objects.size();
+	}
+	
+	/**
+	 * Returns the value recorded for a node, or a given value if nothing has
+	 * been recorded for the node.
+	 * 
+	 * @param node the node
+	 * @param missing the value to return if the node is not in the table
+	 * @return the node's value, or the missing value
+	 */
+	public int get(Object node, int missing) {
+		if(node instanceof Long)
+			return longs.get((Long) node, missing);
+		Integer value = objects.get(node);
+		if(value == null)
+			return missing;
+		else
+			return value;
+	}
+	
+	/**
+	 * Records a value for a node, replacing any value already recorded.
+	 * 
+	 * @param node the node
+	 * @param value the value
+	 */
+	public void put(Object node, int value) {
+		if(node instanceof Long)
+			longs.put((Long) node, value);
+		else
+			objects.put(node, value);
+	}
+	
+	/**
+	 * Removes every node from the table.
+	 */
+	public void clear() {
+		longs.clear();
+		objects.clear();
+	}
+	
+	/**
+	 * Returns a new list of every node in the table, in no particular order.
+	 * Changes to the table do not affect the list.
+	 * 
+	 * @return a list of nodes
+	 */
+	public ArrayList<Object> nodes() {
+		ArrayList<Object> nodes = new ArrayList<>(size());
+		for(long node : longs.keys())
+			nodes.add(node);
+		nodes.addAll(objects.keySet());
+		return nodes;
+	}
+	
+	/**
+	 * Replaces every node in the table with the node a function maps it to,
+	 * keeping the value recorded for it. Nodes which the function maps to
+	 * null are removed from the table.
+	 * 
+	 * @param <N> the type of nodes in the table
+	 * @param map a function mapping old nodes to new nodes, or to null if the
+	 * node was discarded
+	 */
+	@SuppressWarnings("unchecked")
+	public <N> void reclaim(Function<N, N> map) {
+		ArrayList<Object> nodes = nodes();
+		int[] values = new int[nodes.size()];
+		for(int i=0; i<values.length; i++)
+			values[i] = get(nodes.get(i), Integer.MAX_VALUE);
+		clear();
+		for(int i=0; i<values.length; i++) {
+			N node = map.apply((N) nodes.get(i));
+			if(node != null)
+				put(node, values[i]);
+		}
+	}
+}
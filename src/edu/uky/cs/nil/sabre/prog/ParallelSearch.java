@@ -0,0 +1,481 @@
+package edu.uky.cs.nil.sabre.prog;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+import edu.uky.cs.nil.sabre.Number;
+import edu.uky.cs.nil.sabre.Solution;
+import edu.uky.cs.nil.sabre.comp.CompiledAction;
+import edu.uky.cs.nil.sabre.comp.CompiledProblem;
+import edu.uky.cs.nil.sabre.etree.EventTree;
+import edu.uky.cs.nil.sabre.logic.Value;
+import edu.uky.cs.nil.sabre.search.Progress;
+import edu.uky.cs.nil.sabre.util.Worker.Status;
+
+/**
+ * A parallel search is a {@link ProgressionSearch progression search} that
+ * visits nodes in a {@link ProgressionPlanner.Method#BEST_FIRST best first}
+ * order using several threads at once. Each thread keeps its own open list
+ * (a priority queue of the nodes it owns) and repeatedly visits the best node
+ * in its list. Every node is owned by exactly one thread, chosen by hashing
+ * the node's {@link SearchNode#getNode() search space node}; when a thread
+ * generates a node owned by another thread, it sends the node to that
+ * thread's inbox. This means no open list is ever shared, and work spreads
+ * evenly across threads without any thread having to steal it.
+ * <p>
+ * The threads share a single {@link #space search space}, which is wrapped in
+ * a read/write lock so that many threads can evaluate states at once while
+ * only one at a time can add nodes to the space. Because a {@link
+ * ProgressionCost cost function} or {@link ProgressionCost heuristic} may keep
+ * internal state while it evaluates a node, each thread is given its own
+ * instances. Explanations are recorded by the space itself, so an action
+ * explained by a node visited on one thread is explained for every thread,
+ * and {@link #explanationPruning explanation pruning} works across threads.
+ * <p>
+ * The thread which calls {@link #get(Status)} coordinates the others: it
+ * reports {@link ProgressionSpace#getNextSolution() solutions} as they are
+ * discovered, checks the search's limits, and {@link #reclaim() reclaims} the
+ * space when needed (by pausing the other threads). Because limits are only
+ * checked periodically, the threads may visit and generate a few more nodes
+ * than the limits allow before they stop. Because nodes are visited in
+ * parallel, the order in which solutions are found may differ from a
+ * sequential best first search, and only nodes which are at the front of
+ * their own thread's open list are guaranteed to be visited in order.
+ * <p>
+ * Between searches, every open list is merged back into {@link #queue the
+ * queue}, so a parallel search can be {@link
+ * #checkpoint(java.io.OutputStream) checkpointed} and {@link #reclaim()
+ * reclaimed} just like a sequential search.
+ * 
+ * @author Stephen G. Ware
+ */
+public class ParallelSearch extends ProgressionSearch {
+	
+	/**
+	 * The number of nanoseconds a thread waits before checking again when it
+	 * has no work to do
+	 */
+	private static final long PAUSE = 1000000;
+	
+	/** The number of threads that visit nodes */
+	public final int threads;
+	
+	/** The cost function used by each thread */
+	private final ProgressionCost[] costs;
+	
+	/** The heuristic function used by each thread */
+	private final ProgressionCost[] heuristics;
+	
+	/**
+	 * The number of nodes in every thread's open list and inbox, plus the
+	 * nodes currently being visited; when this is 0, the search is finished
+	 */
+	private final AtomicLong pending = new AtomicLong();
+	
+	/** The number of nodes visited by the threads that are running now */
+	private final AtomicLong visits = new AtomicLong();
+	
+	/** The threads visiting nodes, or null if the search is not running */
+	private SearchThread[] workers = null;
+	
+	/** Whether the threads should keep visiting nodes */
+	private volatile boolean running = false;
+	
+	/** The first exception or error thrown by a thread, if any */
+	private volatile Throwable error = null;
+	
+	/**
+	 * Constructs a new parallel progression search. The search will use one
+	 * thread for each cost function given, so the arrays of cost functions and
+	 * heuristics must be the same length, and each should contain different
+	 * instances. The first cost and heuristic become the search's {@link
+	 * #cost cost} and {@link #heuristic heuristic}, which are used when nodes
+	 * are evaluated outside the search threads.
+	 * 
+	 * @param <N> the type of object used to represent a node in {@link #space
+	 * the search space}
+	 * @param problem the compiled problem to be solved
+	 * @param costs a function to measure the cost of a plan so far for each
+	 * thread
+	 * @param heuristics a function to estimate the cost of making a plan into
+	 * a solution for each thread
+	 * @param actions an event tree of all actions that can be taken during
+	 * search
+	 * @param space the model of states that will be searched
+	 * @param searchLimit the max number of nodes that can be visited
+	 * @param spaceLimit the max number of nodes that can be generated
+	 * @param timeLimit the max number of milliseconds a search can take
+	 * @param authorTemporalLimit the max number of actions in the main plan
+	 * @param characterTemporalLimit the max number of actions a character can
+	 * imagine when trying to explain its actions
+	 * @param epistemicLimit the max depth in a character's theory of mind to
+	 * search
+	 * @param explanationPruning whether the search should stop exploring a
+	 * branch once its root has been explained
+	 * @param transpositions whether the search should use a transposition
+	 * table to detect duplicate states
+	 * @param reclaim whether the search should reclaim the memory used by
+	 * nodes it no longer needs
+	 * @param deferred whether the search should wait to evaluate a node's
+	 * heuristic until the node is about to be visited
+	 */
+	public <N> ParallelSearch(
+		CompiledProblem problem,
+		ProgressionCost[] costs,
+		ProgressionCost[] heuristics,
+		EventTree<CompiledAction> actions,
+		ProgressionSpace<N> space,
+		long searchLimit,
+		long spaceLimit,
+		long timeLimit,
+		int authorTemporalLimit,
+		int characterTemporalLimit,
+		int epistemicLimit,
+		boolean explanationPruning,
+		boolean transpositions,
+		boolean reclaim,
+		boolean deferred
+	) {
+		super(
+			problem,
+			costs[0],
+			heuristics[0],
+			actions,
+			new ConcurrentSpace<>(space),
+			searchLimit,
+			spaceLimit,
+			timeLimit,
+			authorTemporalLimit,
+			characterTemporalLimit,
+			epistemicLimit,
+			explanationPruning,
+			transpositions,
+			reclaim,
+			deferred
+		);
+		this.threads = costs.length;
+		this.costs = costs.clone();
+		this.heuristics = heuristics.clone();
+	}
+	
+	@Override
+	public String toString() {
+		return "[" + toString("Parallel Heuristic Progression Search") + "]";
+	}
+	
+	@Override
+	protected String toString(String name) {
+		return super.toString(name) + "; th=" + threads;
+	}
+	
+	@Override
+	public long getVisited() {
+		return super.getVisited() + visits.get();
+	}
+	
+	@Override
+	protected <N> void initialize(SearchRoot<N> root) {
+		super.initialize(root);
+		for(int i=1; i<threads; i++) {
+			costs[i].initialize(root);
+			heuristics[i].initialize(root);
+		}
+	}
+	
+	@Override
+	protected <N> void reclaim(Function<N, N> map) {
+		super.reclaim(map);
+		for(int i=1; i<threads; i++) {
+			costs[i].reclaim(map);
+			heuristics[i].reclaim(map);
+		}
+	}
+	
+	@Override
+	protected void run(Progress<CompiledAction> progress, Status status) {
+		setStatus(status, progress);
+		error = null;
+		while(!progress.isDone()) {
+			if(isReclaimDue())
+				reclaim();
+			else if(!coordinate(progress, status))
+				break;
+		}
+		updateStatus(status, progress);
+	}
+	
+	/**
+	 * Starts the search threads and coordinates them until the search is
+	 * done or {@link Progress#isPaused() paused}, no nodes are left to visit,
+	 * or the space needs to be {@link #reclaim() reclaimed}. The threads are always stopped and their nodes
+	 * returned to {@link #queue the queue} before this method returns.
+	 * 
+	 * @param progress the progress object for the current search
+	 * @param status the status to update while the search runs
+	 * @return true if the threads were stopped so that the space could be
+	 * reclaimed, or false if the search should not continue
+	 */
+	private final boolean coordinate(Progress<CompiledAction> progress, Status status) {
+		start();
+		try {
+			while(true) {
+				if(error != null || progress.isDone() || progress.isPaused())
+					return false;
+				boolean idle = pending.get() == 0;
+				Solution<CompiledAction> solution = space.getNextSolution();
+				if(solution != null) {
+					Value utility = utility(solution);
+					if(utility instanceof Number)
+						progress.setSolution(solution, (Number) utility);
+				}
+				else if(idle)
+					return false;
+				else if(isReclaimDue())
+					return true;
+				else {
+					updateStatus(status, progress);
+					LockSupport.parkNanos(PAUSE);
+				}
+			}
+		}
+		finally {
+			stop();
+			if(error instanceof RuntimeException)
+				throw (RuntimeException) error;
+			else if(error instanceof Error)
+				throw (Error) error;
+		}
+	}
+	
+	/**
+	 * Divides the nodes in {@link #queue the queue} between new search
+	 * threads and starts them.
+	 */
+	private final void start() {
+		workers = new SearchThread[threads];
+		for(int i=0; i<threads; i++)
+			workers[i] = new SearchThread(i);
+		pending.set(queue.size());
+		for(SearchNode<?> node : queue)
+			workers[owner(node)].open.offer(node);
+		queue.clear();
+		visits.set(0);
+		running = true;
+		for(SearchThread worker : workers)
+			worker.start();
+	}
+	
+	/**
+	 * Signals the search threads to stop, waits for them to finish the nodes
+	 * they are visiting, and puts every node they had not yet visited back
+	 * into {@link #queue the queue}.
+	 */
+	private final void stop() {
+		running = false;
+		boolean interrupted = false;
+		for(SearchThread worker : workers) {
+			while(worker.isAlive()) {
+				try {
+					worker.join();
+				}
+				catch(InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		}
+		for(SearchThread worker : workers) {
+			queue.addAll(worker.open);
+			queue.addAll(worker.inbox);
+			queue.addAll(worker.buffer);
+		}
+		visited(visits.getAndSet(0));
+		pending.set(0);
+		workers = null;
+		if(interrupted)
+			Thread.currentThread().interrupt();
+	}
+	
+	/**
+	 * Returns the index of the thread which owns a node.
+	 * 
+	 * @param node the node
+	 * @return the index of the thread whose open list the node belongs in
+	 */
+	private final int owner(SearchNode<?> node) {
+		int hash = node.getNode().hashCode() * 0x9E3779B9;
+		return ((hash ^ (hash >>> 16)) & Integer.MAX_VALUE) % threads;
+	}
+	
+	/**
+	 * Returns the search thread which is running this code, or null if it is
+	 * not being run by one of this search's threads.
+	 * 
+	 * @return the current search thread, or null
+	 */
+	private final SearchThread current() {
+		Thread thread = Thread.currentThread();
+		if(thread instanceof SearchThread && ((SearchThread) thread).getSearch() == this)
+			return (SearchThread) thread;
+		else
+			return null;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * If this search uses a transposition table, only one thread at a time
+	 * may check whether a node should be pruned, since the table is shared by
+	 * every thread.
+	 */
+	@Override
+	protected <N> boolean prune(SearchNode<N> node) {
+		if(transpositions) {
+			synchronized(this) {
+				return super.prune(node);
+			}
+		}
+		else
+			return super.prune(node);
+	}
+	
+	@Override
+	protected <N> boolean expand(SearchNode<N> parent, CompiledAction action) {
+		SearchThread worker = current();
+		if(worker == null)
+			return super.expand(parent, action);
+		int mark = worker.buffer.size();
+		SearchNode<N> child = parent.getChild(action);
+		defer(child, parent);
+		if(!push(child))
+			return false;
+		else if(child.unexplained || explain(child))
+			return true;
+		else {
+			worker.buffer.subList(mark, worker.buffer.size()).clear();
+			return false;
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * When this method is called by one of the search threads, the node is
+	 * evaluated using that thread's own cost and heuristic functions and held
+	 * by the thread until it finishes visiting the current node, at which
+	 * point the node is sent to the thread which owns it.
+	 */
+	@Override
+	protected <N> boolean push(SearchNode<N> node) {
+		SearchThread worker = current();
+		if(worker == null)
+			return super.push(node);
+		else if(!evaluate(node, worker.cost, worker.heuristic))
+			return false;
+		worker.buffer.add(node);
+		return true;
+	}
+	
+	@Override
+	protected void setStatus(Status status, Progress<CompiledAction> progress) {
+		status.setMessage("Parallel progression search for \"" + problem.name + "\" (" + threads + " threads): %d visited; %d generated; %d in queue", 0, 0, 0);
+	}
+	
+	@Override
+	protected void updateStatus(Status status, Progress<CompiledAction> progress) {
+		status.update(0, progress.getVisited());
+		status.update(1, progress.getGenerated());
+		status.update(2, workers == null ? queue.size() : pending.get());
+	}
+	
+	/**
+	 * One of the threads which visit nodes during a {@link ParallelSearch
+	 * parallel search}.
+	 * 
+	 * @author Stephen G. Ware
+	 */
+	private final class SearchThread extends Thread {
+		
+		/** The cost function this thread uses to evaluate nodes */
+		public final ProgressionCost cost;
+		
+		/** The heuristic this thread uses to evaluate nodes */
+		public final ProgressionCost heuristic;
+		
+		/** The nodes this thread owns which have not yet been visited */
+		public final SearchQueue open = queue.create();
+		
+		/** Nodes sent to this thread by other threads */
+		public final ConcurrentLinkedQueue<SearchNode<?>> inbox = new ConcurrentLinkedQueue<>();
+		
+		/** Nodes generated by the node this thread is currently visiting */
+		public final ArrayList<SearchNode<?>> buffer = new ArrayList<>();
+		
+		/**
+		 * Constructs a new search thread.
+		 * 
+		 * @param index the index of the thread, which is used to choose its
+		 * cost function and heuristic
+		 */
+		public SearchThread(int index) {
+			super("Parallel Search " + index);
+			this.cost = costs[index];
+			this.heuristic = heuristics[index];
+			setDaemon(true);
+		}
+		
+		/**
+		 * Returns the search this thread belongs to.
+		 * 
+		 * @return the search
+		 */
+		public ParallelSearch getSearch() {
+			return ParallelSearch.this;
+		}
+		
+		@Override
+		public void run() {
+			try {
+				while(running) {
+					SearchNode<?> node = inbox.poll();
+					while(node != null) {
+						open.offer(node);
+						node = inbox.poll();
+					}
+					node = open.poll();
+					if(node == null) {
+						LockSupport.parkNanos(PAUSE);
+						continue;
+					}
+					if(isReady(node, heuristic, buffer) && !prune(node) && visit(node))
+						visits.incrementAndGet();
+					flush();
+					pending.decrementAndGet();
+				}
+			}
+			catch(Throwable t) {
+				if(error == null)
+					error = t;
+				running = false;
+			}
+		}
+		
+		/**
+		 * Sends the nodes generated by the last visit to the threads which own
+		 * them.
+		 */
+		private final void flush() {
+			pending.addAndGet(buffer.size());
+			for(SearchNode<?> node : buffer) {
+				SearchThread owner = workers[owner(node)];
+				if(owner == this)
+					open.offer(node);
+				else
+					owner.inbox.offer(node);
+			}
+			buffer.clear();
+		}
+	}
+}
@@ -0,0 +1,179 @@
+package edu.uky.cs.nil.sabre.prog;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.uky.cs.nil.sabre.Exceptions;
+import edu.uky.cs.nil.sabre.Problem;
+import edu.uky.cs.nil.sabre.Settings;
+import edu.uky.cs.nil.sabre.comp.CompiledAction;
+import edu.uky.cs.nil.sabre.comp.CompiledProblem;
+import edu.uky.cs.nil.sabre.prog.ProgressionPlanner.Method;
+import edu.uky.cs.nil.sabre.search.Planner;
+import edu.uky.cs.nil.sabre.util.ImmutableArray;
+import edu.uky.cs.nil.sabre.util.MemoryBudget;
+import edu.uky.cs.nil.sabre.util.Worker.Status;
+
+/**
+ * A portfolio {@link Planner planner} creates {@link PortfolioSearch
+ * portfolio searches}, which run several differently configured {@link
+ * ProgressionSearch progression searches} at the same time and return the
+ * first solution any of them finds. Which {@link ProgressionPlanner.Method
+ * search method} and {@link ProgressionPlanner#getHeuristic() heuristic} is
+ * fastest varies a lot from one problem to the next, so rather than guessing,
+ * a portfolio tries several and stops the rest as soon as one succeeds.
+ * <p>
+ * Each configuration is described by a {@link ProgressionPlanner progression
+ * planner}, which is used to create one of the searches. The problem is
+ * {@link #compile(Problem, Status) compiled} once, by the first
+ * configuration, and every search is created from that compiled problem, but
+ * each search has its own {@link ProgressionSpace space}, cost function, and
+ * heuristic, so the searches do not share any state that changes during
+ * search. Every search uses its own configuration's limits, and the portfolio
+ * as a whole is also bound by the limits of this planner, which apply to the
+ * total number of nodes visited and generated by all the searches.
+ * 
+ * @author Stephen G. Ware
+ */
+public class PortfolioPlanner extends Planner<CompiledAction> {
+	
+	/** Serial version ID */
+	private static final long serialVersionUID = Settings.VERSION_UID;
+	
+	/** The configurations of the searches in the portfolio */
+	private final List<ProgressionPlanner> planners = new ArrayList<>();
+	
+	/**
+	 * Constructs a new portfolio planner with no configurations.
+	 * 
+	 * @param name the name of the planner
+	 */
+	public PortfolioPlanner(String name) {
+		super(name);
+	}
+	
+	/**
+	 * Constructs a new portfolio planner with the default name and no
+	 * configurations.
+	 */
+	public PortfolioPlanner() {
+		this("Portfolio Planner");
+	}
+	
+	/**
+	 * Constructs a new portfolio planner with one configuration for each of a
+	 * number of {@link ProgressionPlanner.Method search methods}. Each
+	 * configuration copies the settings of a given progression planner,
+	 * except for its method. Because the searches run at the same time, each
+	 * one is given an equal share of the planner's {@link
+	 * ProgressionPlanner#getMemoryLimit() memory limit} and {@link
+	 * ProgressionPlanner#getSnapshotBudget() snapshot budget}, if it has
+	 * them. The portfolio itself uses the planner's name and limits.
+	 * 
+	 * @param planner the progression planner whose settings will be copied
+	 * @param methods the search methods to run
+	 */
+	public PortfolioPlanner(ProgressionPlanner planner, Method...methods) {
+		this(planner.name);
+		setSearchLimit(planner.getSearchLimit());
+		setSpaceLimit(planner.getSpaceLimit());
+		setTimeLimit(planner.getTimeLimit());
+		setAuthorTemporalLimit(planner.getAuthorTemporalLimit());
+		setCharacterTemporalLimit(planner.getCharacterTemporalLimit());
+		setEpistemicLimit(planner.getEpistemicLimit());
+		for(Method method : methods)
+			add(copy(planner, method, methods.length));
+	}
+	
+	@Override
+	protected String toString(String name) {
+		String string = super.toString(name);
+		for(ProgressionPlanner planner : planners)
+			string += "; " + planner;
+		return string;
+	}
+	
+	/**
+	 * Adds a configuration to the portfolio. The configuration is not copied,
+	 * so changes made to it later will affect searches created after the
+	 * changes are made.
+	 * 
+	 * @param planner a progression planner which describes the configuration
+	 */
+	public void add(ProgressionPlanner planner) {
+		planners.add(planner);
+	}
+	
+	/**
+	 * Returns the configurations of the searches in the portfolio, in the
+	 * order they were {@link #add(ProgressionPlanner) added}.
+	 * 
+	 * @return the configurations
+	 */
+	public ImmutableArray<ProgressionPlanner> getPlanners() {
+		return new ImmutableArray<>(planners);
+	}
+	
+	@Override
+	public CompiledProblem compile(Problem problem, Status status) {
+		return first().compile(problem, status);
+	}
+	
+	@Override
+	public PortfolioSearch getSearch(Problem problem, Status status) {
+		CompiledProblem compiled = problem instanceof CompiledProblem ? (CompiledProblem) problem : compile(problem, status);
+		ProgressionPlanner[] planners = this.planners.toArray(new ProgressionPlanner[this.planners.size()]);
+		ProgressionSearch[] searches = new ProgressionSearch[planners.length];
+		for(int i=0; i<planners.length; i++)
+			searches[i] = planners[i].getProgressionSearch(compiled, status);
+		return new PortfolioSearch(
+			compiled,
+			planners,
+			searches,
+			getSearchLimit(),
+			getSpaceLimit(),
+			getTimeLimit(),
+			getAuthorTemporalLimit(),
+			getCharacterTemporalLimit(),
+			getEpistemicLimit()
+		);
+	}
+	
+	private final ProgressionPlanner first() {
+		if(planners.isEmpty())
+			throw Exceptions.emptyPortfolio();
+		return planners.get(0);
+	}
+	
+	private static final ProgressionPlanner copy(ProgressionPlanner planner, Method method, int share) {
+		ProgressionPlanner copy = new ProgressionPlanner(planner.name + " (" + method + ")");
+		copy.setSearchLimit(planner.getSearchLimit());
+		copy.setSpaceLimit(planner.getSpaceLimit());
+		copy.setTimeLimit(planner.getTimeLimit());
+		copy.setAuthorTemporalLimit(planner.getAuthorTemporalLimit());
+		copy.setCharacterTemporalLimit(planner.getCharacterTemporalLimit());
+		copy.setEpistemicLimit(planner.getEpistemicLimit());
+		copy.setMethod(method);
+		copy.setCost(planner.getCost());
+		copy.setHeuristic(planner.getHeuristic());
+		copy.setExplanationPruning(planner.getExplanationPruning());
+		copy.setTranspositions(planner.getTranspositions());
+		copy.setReclaim(planner.getReclaim());
+		copy.setDeferred(planner.getDeferred());
+		copy.setFocalWeight(planner.getFocalWeight());
+		copy.setThreads(planner.getThreads());
+		copy.setMemoryLimit(share(planner.getMemoryLimit(), share));
+		copy.setSnapshotInterval(planner.getSnapshotInterval());
+		copy.setSnapshotBudget(share(planner.getSnapshotBudget(), share));
+		copy.setStorage(planner.getStorage());
+		copy.setCompact(planner.getCompact());
+		return copy;
+	}
+	
+	private static final long share(long bytes, int share) {
+		if(bytes == MemoryBudget.UNLIMITED)
+			return bytes;
+		else
+			return Math.max(1, bytes / Math.max(1, share));
+	}
+}
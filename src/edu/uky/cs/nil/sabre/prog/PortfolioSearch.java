@@ -0,0 +1,375 @@
+package edu.uky.cs.nil.sabre.prog;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+import edu.uky.cs.nil.sabre.Number;
+import edu.uky.cs.nil.sabre.Solution;
+import edu.uky.cs.nil.sabre.State;
+import edu.uky.cs.nil.sabre.comp.CompiledAction;
+import edu.uky.cs.nil.sabre.comp.CompiledProblem;
+import edu.uky.cs.nil.sabre.search.Progress;
+import edu.uky.cs.nil.sabre.search.Result;
+import edu.uky.cs.nil.sabre.search.Search;
+import edu.uky.cs.nil.sabre.util.ImmutableArray;
+import edu.uky.cs.nil.sabre.util.Worker.Status;
+
+/**
+ * A portfolio search runs several {@link ProgressionSearch progression
+ * searches} for the same problem at the same time, each in its own thread,
+ * and returns the first solution that any of them finds. As soon as one
+ * search finds a plan which meets {@link #getGoal() the goal}, the others are
+ * cancelled by {@link Thread#interrupt() interrupting} their threads, which
+ * makes them stop after the node they are currently visiting. Portfolio
+ * searches are {@link PortfolioPlanner#getSearch(edu.uky.cs.nil.sabre.Problem,
+ * Status) created by portfolio planners}.
+ * <p>
+ * Each search keeps its own state between calls to {@link #get(Status)}, so
+ * when the portfolio is asked for another solution, every search resumes
+ * where it stopped. Since the searches do not share what they have found, a
+ * search may later find a plan that another search already found; the
+ * portfolio remembers the actions of every solution it has returned, and a
+ * search which finds one of them again simply keeps searching. The portfolio
+ * records which {@link #planners
+ * configuration} found each solution, so that the best configuration for a
+ * kind of problem can be chosen ahead of time; see {@link #getWinner()} and
+ * {@link #getWins(int)}.
+ * <p>
+ * Plans which improve the author's utility but do not meet the goal are
+ * passed on to this search's {@link #addListener(java.util.function.Consumer)
+ * listeners} as they are found, regardless of which search found them. The
+ * number of nodes visited and generated by the portfolio is the total for all
+ * of its searches.
+ * 
+ * @author Stephen G. Ware
+ */
+public class PortfolioSearch extends Search<CompiledAction> {
+	
+	/**
+	 * How many nanoseconds the portfolio waits between checks on its
+	 * searches
+	 */
+	private static final long PAUSE = 1000000;
+	
+	/**
+	 * The configurations used to create {@link #searches the searches}, in the
+	 * same order
+	 */
+	public final ImmutableArray<ProgressionPlanner> planners;
+	
+	/** The searches which make up the portfolio */
+	public final ImmutableArray<ProgressionSearch> searches;
+	
+	/**
+	 * Improved plans reported by the searches, along with the index of the
+	 * search that found each one, waiting to be handled by the portfolio
+	 */
+	private final ConcurrentLinkedQueue<Report> reports = new ConcurrentLinkedQueue<>();
+	
+	/** How many solutions each search has found first */
+	private final int[] wins;
+	
+	/**
+	 * The actions of every solution this portfolio has returned since it was
+	 * last {@link #setStart(State) reset}, which is only changed while none
+	 * of the searches are running
+	 */
+	private final HashSet<ArrayList<CompiledAction>> returned = new HashSet<>();
+	
+	/**
+	 * The index of the search that found the most recent solution, or -1 if
+	 * no solution has been found
+	 */
+	private int winner = -1;
+	
+	/**
+	 * An improved plan found by one of the searches.
+	 * 
+	 * @author Stephen G. Ware
+	 */
+	private static final class Report {
+		
+		/** The index of the search that found the plan */
+		public final int index;
+		
+		/** The result describing the plan */
+		public final Result<CompiledAction> result;
+		
+		/**
+		 * Constructs a new report.
+		 * 
+		 * @param index the index of the search that found the plan
+		 * @param result the result describing the plan
+		 */
+		public Report(int index, Result<CompiledAction> result) {
+			this.index = index;
+			this.result = result;
+		}
+	}
+	
+	/**
+	 * A thread which runs one of the searches in the portfolio.
+	 * 
+	 * @author Stephen G. Ware
+	 */
+	private final class SearchThread extends Thread {
+		
+		/** The search this thread runs */
+		private final ProgressionSearch search;
+		
+		/** Anything thrown by the search while it was running */
+		private Throwable error = null;
+		
+		/**
+		 * Constructs a new search thread.
+		 * 
+		 * @param index the index of the search this thread will run
+		 */
+		public SearchThread(int index) {
+			super("Portfolio search " + index);
+			this.search = searches.get(index);
+			setDaemon(true);
+		}
+		
+		@Override
+		public void run() {
+			try {
+				Status status = new Status();
+				Result<CompiledAction> result = search.get(status);
+				while(result.getSuccess() && returned.contains(getActions(result.solution)) && !isInterrupted())
+					result = search.get(status);
+			}
+			catch(Throwable e) {
+				error = e;
+			}
+		}
+	}
+	
+	/**
+	 * Constructs a new portfolio search.
+	 * 
+	 * @param problem the compiled problem every search is solving
+	 * @param planners the configurations used to create the searches
+	 * @param searches the searches, in the same order as their configurations
+	 * @param searchLimit the maximum number of nodes that may be visited by
+	 * all the searches while finding one solution
+	 * @param spaceLimit the maximum number of nodes that may be generated by
+	 * all the searches while finding one solution
+	 * @param timeLimit the maximum number of milliseconds that may elapse
+	 * while finding one solution
+	 * @param authorTemporalLimit the maximum number of actions in the author's
+	 * plan
+	 * @param characterTemporalLimit the maximum number of actions in the plans
+	 * characters use to justify their actions
+	 * @param epistemicLimit the maximum depth in a character's theory of mind
+	 * to search
+	 */
+	public PortfolioSearch(
+		CompiledProblem problem,
+		ProgressionPlanner[] planners,
+		ProgressionSearch[] searches,
+		long searchLimit,
+		long spaceLimit,
+		long timeLimit,
+		int authorTemporalLimit,
+		int characterTemporalLimit,
+		int epistemicLimit
+	) {
+		super(problem, searchLimit, spaceLimit, timeLimit, authorTemporalLimit, characterTemporalLimit, epistemicLimit);
+		this.planners = new ImmutableArray<>(planners);
+		this.searches = new ImmutableArray<>(searches);
+		this.wins = new int[searches.length];
+		for(int i=0; i<searches.length; i++) {
+			int index = i;
+			searches[i].addListener(result -> reports.add(new Report(index, result)));
+		}
+	}
+	
+	@Override
+	protected String toString(String name) {
+		String string = super.toString(name);
+		for(ProgressionSearch search : searches)
+			string += "; " + search;
+		return string;
+	}
+	
+	@Override
+	public String toString() {
+		return "[" + toString("Portfolio Search") + "]";
+	}
+	
+	/**
+	 * Returns the configuration of the search which found the solution
+	 * returned by the most recent call to {@link #get(Status)}, or null if
+	 * that call did not find a solution which meets the goal.
+	 * 
+	 * @return the configuration which found the latest solution, or null
+	 */
+	public ProgressionPlanner getWinner() {
+		return winner == -1 ? null : planners.get(winner);
+	}
+	
+	/**
+	 * Returns the number of solutions {@link #get(Status) returned} by this
+	 * portfolio that were found by a given search since the portfolio was
+	 * last {@link #setStart(State) reset}.
+	 * 
+	 * @param index the index of the search in {@link #searches}
+	 * @return the number of solutions that search found first
+	 */
+	public int getWins(int index) {
+		return wins[index];
+	}
+	
+	@Override
+	public State getStart() {
+		return searches.get(0).getStart();
+	}
+	
+	@Override
+	public void setStart(State state) {
+		cancelStep();
+		for(ProgressionSearch search : searches)
+			search.setStart(state);
+		for(int i=0; i<wins.length; i++)
+			wins[i] = 0;
+		winner = -1;
+		returned.clear();
+	}
+	
+	@Override
+	public Number getGoal() {
+		return searches.get(0).getGoal();
+	}
+	
+	@Override
+	public void setGoal(Number goal) {
+		for(ProgressionSearch search : searches)
+			search.setGoal(goal);
+	}
+	
+	@Override
+	public long getVisited() {
+		long visited = 0;
+		for(ProgressionSearch search : searches)
+			visited += search.getVisited();
+		return visited;
+	}
+	
+	@Override
+	public long getGenerated() {
+		long generated = 0;
+		for(ProgressionSearch search : searches)
+			generated += search.getGenerated();
+		return generated;
+	}
+	
+	@Override
+	protected void run(Progress<CompiledAction> progress, Status status) {
+		status.setMessage("Portfolio search for \"" + problem.name + "\": %d visited; %d generated; %d running", 0, 0, searches.size());
+		reports.clear();
+		winner = -1;
+		Solution<CompiledAction> solution = null;
+		SearchThread[] threads = new SearchThread[searches.size()];
+		for(int i=0; i<threads.length; i++)
+			threads[i] = new SearchThread(i);
+		for(SearchThread thread : threads)
+			thread.start();
+		try {
+			int running = threads.length;
+			while(running > 0 && (solution = report(progress)) == null && !progress.isPaused()) {
+				running = 0;
+				for(SearchThread thread : threads)
+					if(thread.isAlive())
+						running++;
+				status.update(0, progress.getVisited());
+				status.update(1, progress.getGenerated());
+				status.update(2, running);
+				if(running > 0)
+					LockSupport.parkNanos(PAUSE);
+			}
+		}
+		finally {
+			stop(threads);
+		}
+		if(solution == null)
+			solution = report(progress);
+		if(winner == -1) {
+			for(SearchThread thread : threads) {
+				if(thread.error instanceof RuntimeException)
+					throw (RuntimeException) thread.error;
+				else if(thread.error instanceof Error)
+					throw (Error) thread.error;
+			}
+		}
+		else {
+			returned.add(getActions(solution));
+			wins[winner]++;
+			status.setMessage("Portfolio search for \"" + problem.name + "\": solution found by " + planners.get(winner).name + "; %d visited; %d generated", progress.getVisited(), progress.getGenerated());
+		}
+	}
+	
+	/**
+	 * Passes every plan the searches have reported to the portfolio's
+	 * progress object and notes which search found the first plan that meets
+	 * the goal. Plans that meet the goal but which the portfolio has already
+	 * {@link #returned returned} are skipped.
+	 * 
+	 * @param progress the progress object for the portfolio
+	 * @return the first plan that meets the goal, or null if none has been
+	 * reported yet
+	 */
+	private final Solution<CompiledAction> report(Progress<CompiledAction> progress) {
+		Report report;
+		while(!progress.isDone() && (report = reports.poll()) != null) {
+			if(report.result.getSuccess() && returned.contains(getActions(report.result.solution)))
+				continue;
+			progress.setSolution(report.result.solution, report.result.utility);
+			if(winner == -1 && report.result.getSuccess()) {
+				winner = report.index;
+				return report.result.solution;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Returns the actions in a plan, in order, which identify a solution
+	 * regardless of how its actions are explained.
+	 * 
+	 * @param solution the plan
+	 * @return a new list of the plan's actions
+	 */
+	private static final ArrayList<CompiledAction> getActions(Solution<CompiledAction> solution) {
+		ArrayList<CompiledAction> actions = new ArrayList<>(solution.size());
+		for(CompiledAction action : solution)
+			actions.add(action);
+		return actions;
+	}
+	
+	/**
+	 * Cancels every search which is still running and waits for its thread
+	 * to finish.
+	 * 
+	 * @param threads the threads running the searches
+	 */
+	private static final void stop(SearchThread[] threads) {
+		for(SearchThread thread : threads)
+			thread.interrupt();
+		boolean interrupted = false;
+		for(SearchThread thread : threads) {
+			while(thread.isAlive()) {
+				try {
+					thread.join();
+				}
+				catch(InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		}
+		if(interrupted)
+			Thread.currentThread().interrupt();
+	}
+}
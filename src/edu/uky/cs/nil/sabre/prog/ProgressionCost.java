@@ -1,5 +1,7 @@
 package edu.uky.cs.nil.sabre.prog;
 
+import java.util.function.Function;
+
 /**
  * A function used to measure the cost of a {@link ProgressionNode search node}
  * during a {@link ProgressionSearch progression search}. The progression node
@@ -26,6 +28,16 @@ public interface ProgressionCost {
 			return "0";
 		}
 		
+		@Override
+		public boolean isIntegral() {
+			return true;
+		}
+		
+		@Override
+		public boolean isStateBased() {
+			return true;
+		}
+		
 		@Override
 		public <N> double evaluate(ProgressionNode<N> node) {
 			return 0;
@@ -45,6 +57,11 @@ public interface ProgressionCost {
 			return "size";
 		}
 		
+		@Override
+		public boolean isIntegral() {
+			return true;
+		}
+		
 		@Override
 		public <N> double evaluate(ProgressionNode<N> node) {
 			return node.getTemporalDepth();
@@ -65,6 +82,11 @@ public interface ProgressionCost {
 			return "temporal";
 		}
 		
+		@Override
+		public boolean isIntegral() {
+			return true;
+		}
+		
 		@Override
 		public <N> double evaluate(ProgressionNode<N> node) {
 			return node.getTemporalOffset() + node.getTemporalDepth();
@@ -84,6 +106,23 @@ public interface ProgressionCost {
 	 */
 	public default <N> void initialize(ProgressionNode<N> root) {}
 	
+	/**
+	 * This method is called each time the {@link ProgressionSpace search
+	 * space} of a {@link ProgressionSearch progression search} is {@link
+	 * ProgressionSearch#reclaim() reclaimed}, which discards some nodes and
+	 * may renumber the others. A cost function that remembers nodes should
+	 * use the given function to update what it remembers and forget nodes
+	 * that were discarded, but it should not otherwise reset itself, since
+	 * the search is continuing where it left off. By default, this method
+	 * does nothing.
+	 * 
+	 * @param <N> the type of object used to represent a node in the search's
+	 * {@link ProgressionSpace search space}
+	 * @param map a function which maps each node as it was before reclaiming
+	 * to the node that represents it now, or to null if the node was discarded
+	 */
+	public default <N> void reclaim(Function<N, N> map) {}
+	
 	/**
 	 * Returns the cost of a given node based on its context in the {@link
 	 * ProgressionSearch progression search} that generated it.
@@ -94,4 +133,36 @@ public interface ProgressionCost {
 	 * @return the cost of the node
 	 */
 	public <N> double evaluate(ProgressionNode<N> node);
+	
+	/**
+	 * Indicates whether every value this cost function {@link
+	 * #evaluate(ProgressionNode) returns} is a whole number (or {@link
+	 * Double#POSITIVE_INFINITY positive infinity}). A {@link ProgressionSearch
+	 * progression search} whose cost and heuristic are both integral can use
+	 * a faster queue which groups nodes with the same values together. By
+	 * default, this method returns false.
+	 * 
+	 * @return true if this function only returns whole numbers, false if it
+	 * may return fractions
+	 */
+	public default boolean isIntegral() {
+		return false;
+	}
+	
+	/**
+	 * Indicates whether the value this cost function {@link
+	 * #evaluate(ProgressionNode) returns} for a node depends only on the
+	 * node's state, {@link ProgressionNode#getCharacter() its character}, and
+	 * whether {@link ProgressionNode#isExplained(Character) its action is
+	 * explained} for that character, so that any two nodes which agree on
+	 * those things always have the same value. A {@link CachedHeuristic cached
+	 * heuristic} only remembers the values of functions like this. By
+	 * default, this method returns false.
+	 * 
+	 * @return true if this function's values depend only on a node's state,
+	 * character, and whether its action is explained
+	 */
+	public default boolean isStateBased() {
+		return false;
+	}
 }
\ No newline at end of file
@@ -1,5 +1,7 @@
 package edu.uky.cs.nil.sabre.prog;
 
+import java.io.File;
+
 import edu.uky.cs.nil.sabre.Number;
 import edu.uky.cs.nil.sabre.Problem;
 import edu.uky.cs.nil.sabre.Settings;
@@ -11,14 +13,21 @@ import edu.uky.cs.nil.sabre.comp.Simplifier;
 import edu.uky.cs.nil.sabre.etree.EventTree;
 import edu.uky.cs.nil.sabre.logic.Unknown;
 import edu.uky.cs.nil.sabre.logic.Value;
+import edu.uky.cs.nil.sabre.ptree.ProgressionTree;
 import edu.uky.cs.nil.sabre.ptree.ProgressionTreeSpace;
 import edu.uky.cs.nil.sabre.search.Planner;
+import edu.uky.cs.nil.sabre.search.Search;
+import edu.uky.cs.nil.sabre.util.BigArrayLong;
+import edu.uky.cs.nil.sabre.util.MemoryBudget;
 import edu.uky.cs.nil.sabre.util.Worker.Status;
 
 /**
  * A progression {@link Planner planner} is a configurable factory object that
  * creates {@link ProgressionSearch progression search} objects for {@link
- * CompiledProblem compiled problems}.
+ * CompiledProblem compiled problems}. When its {@link #getMethod() method} is
+ * {@link Method#PORTFOLIO portfolio}, it instead creates a {@link
+ * PortfolioSearch portfolio search} which runs one progression search for
+ * each of the other single-threaded methods.
  * 
  * @author Stephen G. Ware
  */
@@ -61,6 +70,41 @@ public class ProgressionPlanner extends Planner<CompiledAction> {
 			public String toString() {
 				return "goal-first";
 			}
+		},
+		
+		/**
+		 * Greedy search that {@link FocalSearch may visit any node whose cost
+		 * plus heuristic is within a weight of the lowest}, choosing the one
+		 * that appears closest to its goal, with no bound on solution cost
+		 */
+		FOCAL {
+			@Override
+			public String toString() {
+				return "focal";
+			}
+		},
+		
+		/**
+		 * A* search that {@link ParallelSearch visits nodes using several
+		 * threads at once}
+		 */
+		PARALLEL {
+			@Override
+			public String toString() {
+				return "parallel best-first";
+			}
+		},
+		
+		/**
+		 * Best-first, explanation-first, and goal-first search {@link
+		 * PortfolioSearch run at the same time in separate threads}, stopping
+		 * as soon as any one of them finds a solution
+		 */
+		PORTFOLIO {
+			@Override
+			public String toString() {
+				return "portfolio";
+			}
 		}
 	}
 	
@@ -87,6 +131,64 @@ public class ProgressionPlanner extends Planner<CompiledAction> {
 	 * ProgressionSearch#explanationPruning explanation pruning}
 	 */
 	private boolean explanationPruning = true;
+	
+	/**
+	 * Whether or not searches will use a {@link
+	 * ProgressionSearch#transpositions transposition table}
+	 */
+	private boolean transpositions = false;
+	
+	/**
+	 * Whether or not searches will {@link ProgressionSearch#reclaim reclaim}
+	 * the memory used by nodes they no longer need
+	 */
+	private boolean reclaim = false;
+	
+	/**
+	 * Whether or not searches will {@link ProgressionSearch#deferred defer}
+	 * heuristic evaluation until a node is about to be visited
+	 */
+	private boolean deferred = false;
+	
+	/**
+	 * The {@link FocalSearch#weight weight} a {@link FocalSearch focal search}
+	 * will use
+	 */
+	private double focalWeight = 1.25;
+	
+	/**
+	 * The number of threads a {@link ParallelSearch parallel search} will
+	 * use
+	 */
+	private int threads = Runtime.getRuntime().availableProcessors();
+	
+	/**
+	 * The number of bytes a {@link ProgressionTree progression tree} may use
+	 * for its nodes
+	 */
+	private long memoryLimit = MemoryBudget.UNLIMITED;
+	
+	/**
+	 * The number of nodes a {@link ProgressionTree progression tree} may walk
+	 * back through before it takes a snapshot of a state
+	 */
+	private int snapshotInterval = ProgressionTree.NO_SNAPSHOTS;
+	
+	/** The number of bytes a progression tree's snapshots may use */
+	private long snapshotBudget = MemoryBudget.UNLIMITED;
+	
+	/**
+	 * The directory where a {@link ProgressionTree progression tree} will
+	 * store its nodes in memory-mapped files, or null if nodes will be stored
+	 * on the heap
+	 */
+	private File storage = null;
+	
+	/**
+	 * Whether a {@link ProgressionTree progression tree} will always use the
+	 * {@link ProgressionTree#compact compact node layout}
+	 */
+	private boolean compact = false;
 
 	/**
 	 * Constructs a new heuristic progression planner.
@@ -111,6 +213,24 @@ public class ProgressionPlanner extends Planner<CompiledAction> {
 		string += "; c=\"" + getCost() + "\"";
 		string += "; h=\"" + getHeuristic() + "\"";
 		string += "; ep=" + getExplanationPruning();
+		if(getTranspositions())
+			string += "; tt=" + getTranspositions();
+		if(getReclaim())
+			string += "; rc=" + getReclaim();
+		if(getDeferred())
+			string += "; dh=" + getDeferred();
+		if(getMethod() == Method.FOCAL)
+			string += "; fw=" + getFocalWeight();
+		if(getMethod() == Method.PARALLEL)
+			string += "; th=" + getThreads();
+		if(getMemoryLimit() != MemoryBudget.UNLIMITED)
+			string += "; mem=" + MemoryBudget.toString(getMemoryLimit());
+		if(getSnapshotInterval() != ProgressionTree.NO_SNAPSHOTS)
+			string += "; si=" + getSnapshotInterval() + "; sb=" + MemoryBudget.toString(getSnapshotBudget());
+		if(getStorage() != null)
+			string += "; st=\"" + getStorage() + "\"";
+		if(getCompact())
+			string += "; cl=" + getCompact();
 		return string;
 	}
 	
@@ -199,6 +319,241 @@ public class ProgressionPlanner extends Planner<CompiledAction> {
 		this.explanationPruning = value;
 	}
 	
+	/**
+	 * Indicates whether the searches this planner creates will use a {@link
+	 * ProgressionSearch#transpositions transposition table} to detect
+	 * duplicate states.
+	 * 
+	 * @return true if searches will use a transposition table, false otherwise
+	 */
+	public boolean getTranspositions() {
+		return transpositions;
+	}
+	
+	/**
+	 * Sets whether the searches this planner creates will use a {@link
+	 * ProgressionSearch#transpositions transposition table} to detect
+	 * duplicate states.
+	 * 
+	 * @param value true if searches should use a transposition table, false
+	 * if they should not
+	 */
+	public void setTranspositions(boolean value) {
+		this.transpositions = value;
+	}
+	
+	/**
+	 * Indicates whether the searches this planner creates will periodically
+	 * {@link ProgressionSearch#reclaim() reclaim} the memory used by nodes
+	 * they no longer need.
+	 * 
+	 * @return true if searches will reclaim memory, false otherwise
+	 */
+	public boolean getReclaim() {
+		return reclaim;
+	}
+	
+	/**
+	 * Sets whether the searches this planner creates will periodically {@link
+	 * ProgressionSearch#reclaim() reclaim} the memory used by nodes they no
+	 * longer need.
+	 * 
+	 * @param value true if searches should reclaim memory, false if they
+	 * should not
+	 */
+	public void setReclaim(boolean value) {
+		this.reclaim = value;
+	}
+	
+	/**
+	 * Indicates whether the searches this planner creates will {@link
+	 * ProgressionSearch#deferred defer evaluating} a node's heuristic until
+	 * the node is about to be visited.
+	 * 
+	 * @return true if searches will defer heuristic evaluation, false
+	 * otherwise
+	 */
+	public boolean getDeferred() {
+		return deferred;
+	}
+	
+	/**
+	 * Sets whether the searches this planner creates will {@link
+	 * ProgressionSearch#deferred defer evaluating} a node's heuristic until
+	 * the node is about to be visited.
+	 * 
+	 * @param value true if searches should defer heuristic evaluation, false
+	 * if they should evaluate every node as soon as it is generated
+	 */
+	public void setDeferred(boolean value) {
+		this.deferred = value;
+	}
+	
+	/**
+	 * Returns the {@link FocalSearch#weight weight} the searches this planner
+	 * creates will use when the {@link #getMethod() search method} is {@link
+	 * Method#FOCAL focal}.
+	 * 
+	 * @return the focal weight
+	 */
+	public double getFocalWeight() {
+		return focalWeight;
+	}
+	
+	/**
+	 * Sets the {@link FocalSearch#weight weight} the searches this planner
+	 * creates will use when the {@link #getMethod() search method} is {@link
+	 * Method#FOCAL focal}. The weight is always at least 1.
+	 * 
+	 * @param weight the new focal weight
+	 */
+	public void setFocalWeight(double weight) {
+		this.focalWeight = Math.max(weight, 1);
+	}
+	
+	/**
+	 * Returns the number of threads the searches this planner creates will
+	 * use when the {@link #getMethod() search method} is {@link
+	 * Method#PARALLEL parallel}.
+	 * 
+	 * @return the number of threads
+	 */
+	public int getThreads() {
+		return threads;
+	}
+	
+	/**
+	 * Sets the number of threads the searches this planner creates will use
+	 * when the {@link #getMethod() search method} is {@link Method#PARALLEL
+	 * parallel}. The number of threads is always at least 1.
+	 * 
+	 * @param threads the new number of threads
+	 */
+	public void setThreads(int threads) {
+		this.threads = Math.max(threads, 1);
+	}
+	
+	/**
+	 * Returns the number of bytes a {@link ProgressionTree progression tree}
+	 * created by this planner may use for its nodes. When the tree is close
+	 * to this limit, searches stop and report the best solution found so far.
+	 * If the tree is {@link #getStorage() stored in mapped files}, its nodes
+	 * are not counted, and this only limits the indexes it keeps on the heap.
+	 * 
+	 * @return the memory limit in bytes, or {@link MemoryBudget#UNLIMITED}
+	 */
+	public long getMemoryLimit() {
+		return memoryLimit;
+	}
+	
+	/**
+	 * Sets the number of bytes a {@link ProgressionTree progression tree}
+	 * created by this planner may use for its nodes.
+	 * 
+	 * @param bytes the new memory limit in bytes, or {@link
+	 * MemoryBudget#UNLIMITED}
+	 */
+	public void setMemoryLimit(long bytes) {
+		this.memoryLimit = Math.max(bytes, MemoryBudget.UNLIMITED);
+	}
+	
+	/**
+	 * Returns the number of nodes a {@link ProgressionTree progression tree}
+	 * created by this planner may walk back through while {@link
+	 * ProgressionTree#getValue(long, edu.uky.cs.nil.sabre.comp.CompiledFluent)
+	 * looking up the value of a fluent} before it takes a snapshot of the state
+	 * where the walk started.
+	 * 
+	 * @return the snapshot interval, or {@link ProgressionTree#NO_SNAPSHOTS}
+	 * if snapshots will not be taken
+	 */
+	public int getSnapshotInterval() {
+		return snapshotInterval;
+	}
+	
+	/**
+	 * Sets the number of nodes a {@link ProgressionTree progression tree}
+	 * created by this planner may walk back through before it takes a snapshot
+	 * of a state.
+	 * 
+	 * @param interval the new snapshot interval, or {@link
+	 * ProgressionTree#NO_SNAPSHOTS} to never take snapshots
+	 */
+	public void setSnapshotInterval(int interval) {
+		this.snapshotInterval = Math.max(interval, ProgressionTree.NO_SNAPSHOTS);
+	}
+	
+	/**
+	 * Returns the number of bytes that snapshots taken by a {@link
+	 * ProgressionTree progression tree} created by this planner may use.
+	 * 
+	 * @return the snapshot memory budget in bytes, or {@link
+	 * MemoryBudget#UNLIMITED}
+	 */
+	public long getSnapshotBudget() {
+		return snapshotBudget;
+	}
+	
+	/**
+	 * Sets the number of bytes that snapshots taken by a {@link
+	 * ProgressionTree progression tree} created by this planner may use.
+	 * 
+	 * @param bytes the new snapshot memory budget in bytes, or {@link
+	 * MemoryBudget#UNLIMITED}
+	 */
+	public void setSnapshotBudget(long bytes) {
+		this.snapshotBudget = Math.max(bytes, MemoryBudget.UNLIMITED);
+	}
+	
+	/**
+	 * Returns the directory where a {@link ProgressionTree progression tree}
+	 * created by this planner will store its nodes in {@link
+	 * BigArrayLong#directory memory-mapped files}, or null if nodes will be
+	 * stored on the heap.
+	 * 
+	 * @return the storage directory, or null
+	 */
+	public File getStorage() {
+		return storage;
+	}
+	
+	/**
+	 * Sets the directory where a {@link ProgressionTree progression tree}
+	 * created by this planner will store its nodes in {@link
+	 * BigArrayLong#directory memory-mapped files}.
+	 * 
+	 * @param directory the new storage directory, or null if nodes should be
+	 * stored on the heap
+	 */
+	public void setStorage(File directory) {
+		this.storage = directory;
+	}
+	
+	/**
+	 * Indicates whether a {@link ProgressionTree progression tree} created by
+	 * this planner will always use the {@link ProgressionTree#compact compact
+	 * node layout}. Even if this setting is false, a tree will use the compact
+	 * layout when its memory budget is too small for it to ever exceed {@link
+	 * ProgressionTree#COMPACT_LIMIT} nodes.
+	 * 
+	 * @return true if trees will always use the compact layout
+	 */
+	public boolean getCompact() {
+		return compact;
+	}
+	
+	/**
+	 * Sets whether a {@link ProgressionTree progression tree} created by this
+	 * planner will always use the {@link ProgressionTree#compact compact node
+	 * layout}.
+	 * 
+	 * @param value true if trees should always use the compact layout, false
+	 * if they should only use it when their memory budget requires it
+	 */
+	public void setCompact(boolean value) {
+		this.compact = value;
+	}
+	
 	@Override
 	public CompiledProblem compile(Problem problem, Status status) {
 		CompiledProblem compiled = Grounder.compile(problem, status);
@@ -208,11 +563,33 @@ public class ProgressionPlanner extends Planner<CompiledAction> {
 	}
 
 	@Override
-	public ProgressionSearch getSearch(Problem problem, Status status) {
+	public Search<CompiledAction> getSearch(Problem problem, Status status) {
+		if(getMethod() == Method.PORTFOLIO) {
+			CompiledProblem compiled = problem instanceof CompiledProblem ? (CompiledProblem) problem : compile(problem, status);
+			return new PortfolioPlanner(this, Method.BEST_FIRST, Method.EXPLANATION_FIRST, Method.GOAL_FIRST).getSearch(compiled, status);
+		}
+		else
+			return getProgressionSearch(problem, status);
+	}
+	
+	/**
+	 * Creates a single {@link ProgressionSearch progression search} for a
+	 * problem, configured based on this planner's current settings. This
+	 * method is used by {@link #getSearch(Problem, Status)} and by {@link
+	 * PortfolioPlanner portfolio planners}. If this planner's {@link
+	 * #getMethod() method} is {@link Method#PORTFOLIO portfolio}, which cannot
+	 * be run as a single search, a best-first search is created.
+	 * 
+	 * @param problem the planning problem to be solved
+	 * @param status a status object to update while compiling the problem and
+	 * preparing the search object
+	 * @return the progression search
+	 */
+	public ProgressionSearch getProgressionSearch(Problem problem, Status status) {
 		CompiledProblem compiled = problem instanceof CompiledProblem ? (CompiledProblem) problem : compile(problem, status);
 		EventTree<CompiledAction> actions = compiled.actions.buildTree(status);
 		compiled.triggers.buildTree(status);
-		ProgressionSpace<?> space = new ProgressionTreeSpace(compiled, status);
+		ProgressionSpace<?> space = getSpace(compiled, status);
 		ProgressionCost cost = getCost().getCost(compiled, status);
 		ProgressionCost heuristic = getHeuristic().getCost(compiled, status);
 		ProgressionSearch search;
@@ -230,7 +607,10 @@ public class ProgressionPlanner extends Planner<CompiledAction> {
 				getAuthorTemporalLimit(),
 				getCharacterTemporalLimit(),
 				getEpistemicLimit(),
-				getExplanationPruning()
+				getExplanationPruning(),
+				getTranspositions(),
+				getReclaim(),
+				getDeferred()
 			);
 			break;
 		case GOAL_FIRST:
@@ -246,7 +626,57 @@ public class ProgressionPlanner extends Planner<CompiledAction> {
 				getAuthorTemporalLimit(),
 				getCharacterTemporalLimit(),
 				getEpistemicLimit(),
-				getExplanationPruning()
+				getExplanationPruning(),
+				getTranspositions(),
+				getReclaim(),
+				getDeferred()
+			);
+			break;
+		case FOCAL:
+			search = new FocalSearch(
+				compiled,
+				cost,
+				heuristic,
+				actions,
+				space,
+				getSearchLimit(),
+				getSpaceLimit(),
+				getTimeLimit(),
+				getAuthorTemporalLimit(),
+				getCharacterTemporalLimit(),
+				getEpistemicLimit(),
+				getExplanationPruning(),
+				getTranspositions(),
+				getReclaim(),
+				getDeferred(),
+				getFocalWeight()
+			);
+			break;
+		case PARALLEL:
+			ProgressionCost[] costs = new ProgressionCost[getThreads()];
+			ProgressionCost[] heuristics = new ProgressionCost[getThreads()];
+			costs[0] = cost;
+			heuristics[0] = heuristic;
+			for(int i=1; i<costs.length; i++) {
+				costs[i] = getCost().getCost(compiled, status);
+				heuristics[i] = getHeuristic().getCost(compiled, status);
+			}
+			search = new ParallelSearch(
+				compiled,
+				costs,
+				heuristics,
+				actions,
+				space,
+				getSearchLimit(),
+				getSpaceLimit(),
+				getTimeLimit(),
+				getAuthorTemporalLimit(),
+				getCharacterTemporalLimit(),
+				getEpistemicLimit(),
+				getExplanationPruning(),
+				getTranspositions(),
+				getReclaim(),
+				getDeferred()
 			);
 			break;
 		default:
@@ -262,7 +692,10 @@ public class ProgressionPlanner extends Planner<CompiledAction> {
 				getAuthorTemporalLimit(),
 				getCharacterTemporalLimit(),
 				getEpistemicLimit(),
-				getExplanationPruning()
+				getExplanationPruning(),
+				getTranspositions(),
+				getReclaim(),
+				getDeferred()
 			);		
 		}
 		search.setStart(compiled.start);
@@ -272,4 +705,27 @@ public class ProgressionPlanner extends Planner<CompiledAction> {
 		search.setGoal((Number) goal);
 		return search;
 	}
+	
+	/**
+	 * Creates the {@link ProgressionSpace search space} that a search created
+	 * by this planner will explore, configured according to this planner's
+	 * settings.
+	 * 
+	 * @param problem the compiled problem whose states will be modeled
+	 * @param status a status to update while the space is created
+	 * @return a search space for the problem
+	 */
+	protected ProgressionSpace<?> getSpace(CompiledProblem problem, Status status) {
+		ProgressionTree tree = new ProgressionTree(
+			problem,
+			problem.triggers.buildTree(status),
+			BigArrayLong.DEFAULT_CHUNK_SIZE,
+			new MemoryBudget(getMemoryLimit()),
+			getStorage(),
+			getCompact(),
+			getSnapshotInterval(),
+			getSnapshotBudget()
+		);
+		return new ProgressionTreeSpace(tree);
+	}
 }
\ No newline at end of file
@@ -1,9 +1,20 @@
 package edu.uky.cs.nil.sabre.prog;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Comparator;
-import java.util.PriorityQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.function.Function;
 
 import edu.uky.cs.nil.sabre.Character;
+import edu.uky.cs.nil.sabre.Exceptions;
 import edu.uky.cs.nil.sabre.Number;
 import edu.uky.cs.nil.sabre.Solution;
 import edu.uky.cs.nil.sabre.State;
@@ -67,10 +78,30 @@ import edu.uky.cs.nil.sabre.util.Worker.Status;
  * SearchNode#getCost() cost} and {@link SearchNode#getHeuristic() heuristic}.
  * See {@link #compare(SearchNode, SearchNode)} for more details on the order in
  * which states are visited.
+ * <p>
+ * A progression search can be {@link #checkpoint(OutputStream) saved} to a
+ * binary checkpoint and later {@link #restore(InputStream) restored}, possibly
+ * by a different process, so that a long search can resume where it left off
+ * rather than starting over.
+ * <p>
+ * A search which runs for a long time may fill its space with nodes that it
+ * will never visit again. If {@link #reclaim reclaiming} is on, the search
+ * periodically asks the space to {@link ProgressionSpace#reclaim(Iterable)
+ * discard} every node that is not needed by a node in the queue, and it
+ * continues with the nodes that remain.
  * 
  * @author Stephen G. Ware
  */
 public class ProgressionSearch extends Search<CompiledAction> {
+	
+	/** The first four bytes of every {@link #checkpoint(OutputStream) checkpoint} */
+	private static final int CHECKPOINT_MAGIC = 0x53425343; // "SBSC"
+	
+	/** The version of the {@link #checkpoint(OutputStream) checkpoint} format */
+	private static final int CHECKPOINT_VERSION = 3;
+	
+	/** The size of the buffer used when writing or reading a checkpoint */
+	private static final int CHECKPOINT_BUFFER_SIZE = 1048576;
 
 	/** The problem this search is solving */
 	public final CompiledProblem problem;
@@ -93,6 +124,46 @@ public class ProgressionSearch extends Search<CompiledAction> {
 	 */
 	public final boolean explanationPruning;
 	
+	/**
+	 * Whether or not this search uses a {@link TranspositionTable
+	 * transposition table} to recognize when the same state has been reached
+	 * by more than one path. When it does, a node will not be visited if
+	 * another node in the same state under the same {@link
+	 * ProgressionNode#getRoot() root} has already been visited by a path of
+	 * explained actions, and a root that is in the same state as an already
+	 * explained root for the same character will be explained by replaying
+	 * the other root's explanation rather than by searching.
+	 */
+	public final boolean transpositions;
+	
+	/**
+	 * Whether or not this search will {@link #reclaim() reclaim} the memory
+	 * used by nodes it no longer needs. When it does, the space is reclaimed
+	 * each time it has doubled in size since it was last reclaimed, and each
+	 * time the space becomes {@link ProgressionSpace#isMemoryLow() low on
+	 * memory}.
+	 */
+	public final boolean reclaim;
+	
+	/**
+	 * Whether or not this search defers evaluating the {@link #heuristic
+	 * heuristic} of the nodes it {@link #expand(SearchNode, CompiledAction)
+	 * generates} until they are about to be visited. Most nodes added to the
+	 * queue are never visited, so evaluating them only when needed can save
+	 * many heuristic evaluations when actions have many children. When this
+	 * is on, a new child is {@link #push(SearchNode) added to the queue} using
+	 * its {@link #cost cost} and its parent's heuristic value. When the child
+	 * reaches the front of the queue, its heuristic is evaluated; if the
+	 * value is different from its parent's, the child is put back onto the
+	 * queue in its new position (or discarded, if the value is {@link
+	 * Double#POSITIVE_INFINITY positive infinity}) rather than being visited.
+	 * The branches which {@link #explain(SearchNode) explain} a deferred child
+	 * are not generated until its heuristic has been evaluated, so no branches
+	 * are generated for a child which is discarded. Branches are always
+	 * evaluated right away.
+	 */
+	public final boolean deferred;
+	
 	/**
 	 * An event tree of actions for efficiently detecting which actions apply
 	 * in a state
@@ -103,10 +174,16 @@ public class ProgressionSearch extends Search<CompiledAction> {
 	protected final ProgressionSpace<?> space;
 	
 	/**
-	 * A min priority queue of {@link SearchNode search nodes} that defines the
-	 * order in which states are visited
+	 * An addressable min priority queue of {@link SearchNode search nodes}
+	 * that defines the order in which states are visited
+	 */
+	protected final SearchQueue queue;
+	
+	/**
+	 * The transposition table used to detect duplicate states, or null if
+	 * this search does not {@link #transpositions use one}
 	 */
-	protected final PriorityQueue<SearchNode<?>> queue;
+	private final TranspositionTable table;
 	
 	/** The initial state that a search should start in */
 	private State start;
@@ -126,6 +203,15 @@ public class ProgressionSearch extends Search<CompiledAction> {
 	 */
 	private long visited = 0;
 	
+	/**
+	 * The total number of nodes discarded by {@link #reclaim() reclaiming} the
+	 * space since the last time the search was {@link #setStart(State) reset}
+	 */
+	private long discarded = 0;
+	
+	/** The size of the space the last time it was reclaimed or reset */
+	private long reclaimed = 0;
+	
 	/**
 	 * Constructs a new progression search.
 	 * 
@@ -148,6 +234,12 @@ public class ProgressionSearch extends Search<CompiledAction> {
 	 * search
 	 * @param explanationPruning whether the search should stop exploring a
 	 * branch once its root has been explained
+	 * @param transpositions whether the search should use a transposition
+	 * table to detect duplicate states
+	 * @param reclaim whether the search should reclaim the memory used by
+	 * nodes it no longer needs
+	 * @param deferred whether the search should wait to evaluate a node's
+	 * heuristic until the node is about to be visited
 	 */
 	@SuppressWarnings("unchecked")
 	public <N> ProgressionSearch(
@@ -162,7 +254,10 @@ public class ProgressionSearch extends Search<CompiledAction> {
 		int authorTemporalLimit,
 		int characterTemporalLimit,
 		int epistemicLimit,
-		boolean explanationPruning
+		boolean explanationPruning,
+		boolean transpositions,
+		boolean reclaim,
+		boolean deferred
 	) {
 		super(
 			problem,
@@ -190,9 +285,34 @@ public class ProgressionSearch extends Search<CompiledAction> {
 					return 0;
 			}
 		};
-		PriorityQueue<SearchNode<N>> queue = new PriorityQueue<>(comparator);
-		this.queue = (PriorityQueue<SearchNode<?>>) (PriorityQueue<?>) queue;
+		this.queue = getQueue((Comparator<SearchNode<?>>) (Comparator<?>) comparator);
 		this.explanationPruning = explanationPruning;
+		this.transpositions = transpositions;
+		this.table = transpositions ? new TranspositionTable(this) : null;
+		this.reclaim = reclaim;
+		this.deferred = deferred;
+	}
+	
+	/**
+	 * Creates the {@link #queue queue} this search will use. This method is
+	 * called once, by the constructor, after {@link #cost the cost} and {@link
+	 * #heuristic heuristic} have been set. By default, if both the cost and
+	 * heuristic are {@link ProgressionCost#isIntegral() integral}, this method
+	 * returns a {@link BucketQueue bucket queue}, which relies on nodes being
+	 * ordered as described in {@link #compare(SearchNode, SearchNode)}, and
+	 * otherwise it returns a {@link HeapQueue heap queue}. Subclasses which
+	 * override {@link #compare(SearchNode, SearchNode)} to order nodes
+	 * differently should also override this method.
+	 * 
+	 * @param comparator a comparator which orders nodes using {@link
+	 * #compare(SearchNode, SearchNode)}
+	 * @return the queue
+	 */
+	protected SearchQueue getQueue(Comparator<SearchNode<?>> comparator) {
+		if(cost.isIntegral() && heuristic.isIntegral())
+			return new BucketQueue(comparator);
+		else
+			return new HeapQueue(comparator);
 	}
 	
 	@Override
@@ -206,6 +326,12 @@ public class ProgressionSearch extends Search<CompiledAction> {
 		string += "; c=\"" + cost + "\"";
 		string += "; h=\"" + heuristic + "\"";
 		string += "; ep=" + explanationPruning;
+		if(transpositions)
+			string += "; tt=" + transpositions;
+		if(reclaim)
+			string += "; rc=" + reclaim;
+		if(deferred)
+			string += "; dh=" + deferred;
 		return string;
 	}
 
@@ -217,12 +343,178 @@ public class ProgressionSearch extends Search<CompiledAction> {
 	@Override
 	public void setStart(State state) {
 		queue.clear();
+		if(table != null)
+			table.clear();
+		cancelStep();
 		start = state;
 		root = new SearchRoot<>(this, space.initialize(start));
-		cost.initialize(root);
-		heuristic.initialize(root);
+		initialize(root);
 		push(root);
 		visited = 0;
+		discarded = 0;
+		reclaimed = space.size();
+	}
+
+	/**
+	 * Writes a checkpoint of this search to an output stream, from which the
+	 * search can later be {@link #restore(InputStream) restored}. The
+	 * checkpoint includes the entire {@link #space search space}, every node
+	 * in the {@link #queue queue} along with its cost and heuristic value, and
+	 * the number of nodes visited and discarded so far. It does not include the search's
+	 * settings (such as its limits and {@link #getGoal() goal}) or any state
+	 * kept internally by the {@link #cost cost} and {@link #heuristic
+	 * heuristic} functions. The stream is flushed but not closed.
+	 * 
+	 * @param out the output stream to write to
+	 * @throws IOException if an error occurs while writing
+	 */
+	public void checkpoint(OutputStream out) throws IOException {
+		DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, CHECKPOINT_BUFFER_SIZE));
+		checkpoint(data);
+		data.flush();
+	}
+	
+	/**
+	 * Replaces the current state of this search with a {@link
+	 * #checkpoint(OutputStream) checkpoint}, so that the next time the search
+	 * is {@link #get(Status) run} it will continue where the checkpointed
+	 * search left off. The checkpoint must have been written by a search of
+	 * the same type for the same problem, and this search's {@link
+	 * #setStart(State) start state} must already be set to the same state the
+	 * checkpointed search started in. Solutions which the checkpointed search
+	 * had already returned will not be returned again. If an exception is
+	 * thrown, this search is reset to its start state.
+	 * 
+	 * @param in the input stream to read from
+	 * @throws IOException if an error occurs while reading
+	 * @throws IllegalArgumentException if the checkpoint is malformed or was
+	 * written for a different problem, type of search, or start state
+	 */
+	public void restore(InputStream in) throws IOException {
+		try {
+			restore(new DataInputStream(new BufferedInputStream(in, CHECKPOINT_BUFFER_SIZE)));
+		}
+		catch(IOException | RuntimeException e) {
+			setStart(start);
+			throw e;
+		}
+	}
+	
+	/**
+	 * Writes the state of this search to a checkpoint. Search roots are
+	 * shared by many nodes, so each root is written once and nodes refer to
+	 * their root by index. Subclasses which keep additional state should
+	 * override this method, call the superclass method first, and then write
+	 * their own state.
+	 * 
+	 * @param <N> the type of object used to represent a node in {@link #space
+	 * the search space}
+	 * @param out the output stream to write to
+	 * @throws IOException if an error occurs while writing
+	 */
+	@SuppressWarnings("unchecked")
+	protected <N> void checkpoint(DataOutputStream out) throws IOException {
+		ProgressionSpace<N> space = (ProgressionSpace<N>) this.space;
+		out.writeInt(CHECKPOINT_MAGIC);
+		out.writeInt(CHECKPOINT_VERSION);
+		out.writeUTF(getClass().getName());
+		out.writeLong(visited);
+		out.writeLong(discarded);
+		space.checkpoint(out);
+		IdentityHashMap<SearchRoot<?>, Integer> roots = new IdentityHashMap<>();
+		SearchRoot<?>[] order = new SearchRoot<?>[queue.size() + 1];
+		roots.put(root, 0);
+		order[0] = root;
+		for(SearchNode<?> node : queue) {
+			if(!roots.containsKey(node.root)) {
+				order[roots.size()] = node.root;
+				roots.put(node.root, roots.size());
+			}
+		}
+		out.writeInt(roots.size());
+		for(int i=0; i<roots.size(); i++) {
+			SearchRoot<N> root = (SearchRoot<N>) order[i];
+			out.writeInt(root.character == null ? -1 : root.character.id);
+			out.writeBoolean(root.trunk != null);
+			if(root.trunk != null)
+				space.write(root.trunk, out);
+			space.write(root.node, out);
+			out.writeInt(root.offset);
+			out.writeInt(root.epistemic);
+		}
+		out.writeInt(queue.size());
+		for(SearchNode<?> node : queue) {
+			out.writeInt(roots.get(node.root));
+			out.writeBoolean(node == node.root);
+			if(node != node.root) {
+				space.write((N) node.node, out);
+				out.writeInt(node.temporal);
+			}
+			out.writeDouble(node.getCost());
+			out.writeDouble(node.getHeuristic());
+			out.writeBoolean(node.deferred);
+			out.writeBoolean(node.unexplained);
+		}
+	}
+	
+	/**
+	 * Reads the state of this search from a {@link
+	 * #checkpoint(DataOutputStream) checkpoint}. Subclasses which override
+	 * {@link #checkpoint(DataOutputStream)} should also override this method,
+	 * call the superclass method first, and then read their own state.
+	 * 
+	 * @param <N> the type of object used to represent a node in {@link #space
+	 * the search space}
+	 * @param in the input stream to read from
+	 * @throws IOException if an error occurs while reading
+	 */
+	@SuppressWarnings("unchecked")
+	protected <N> void restore(DataInputStream in) throws IOException {
+		ProgressionSpace<N> space = (ProgressionSpace<N>) this.space;
+		if(in.readInt() != CHECKPOINT_MAGIC)
+			throw Exceptions.checkpointMismatch("not a progression search checkpoint");
+		if(in.readInt() != CHECKPOINT_VERSION)
+			throw Exceptions.checkpointMismatch("unsupported checkpoint version");
+		String type = in.readUTF();
+		if(!type.equals(getClass().getName()))
+			throw Exceptions.checkpointMismatch("it was written by a different type of search (" + type + ")");
+		long visited = in.readLong();
+		long discarded = in.readLong();
+		queue.clear();
+		if(table != null)
+			table.clear();
+		space.restore(in);
+		SearchRoot<?>[] roots = new SearchRoot<?>[in.readInt()];
+		for(int i=0; i<roots.length; i++) {
+			int id = in.readInt();
+			Character character = id == -1 ? null : problem.universe.characters.get(id);
+			N trunk = in.readBoolean() ? space.read(in) : null;
+			N node = space.read(in);
+			int offset = in.readInt();
+			int epistemic = in.readInt();
+			if(i == 0)
+				roots[i] = root;
+			else
+				roots[i] = new SearchRoot<>(this, character, trunk, node, offset, epistemic);
+		}
+		int size = in.readInt();
+		for(int i=0; i<size; i++) {
+			SearchRoot<N> root = (SearchRoot<N>) roots[in.readInt()];
+			SearchNode<N> node = root;
+			if(!in.readBoolean()) {
+				N state = space.read(in);
+				node = new SearchNode<>(root, state, in.readInt());
+			}
+			node.setCost(in.readDouble());
+			node.setHeuristic(in.readDouble());
+			node.deferred = in.readBoolean();
+			node.unexplained = in.readBoolean();
+			queue.offer(node);
+		}
+		this.visited = visited;
+		this.discarded = discarded;
+		this.reclaimed = space.size();
+		initialize((SearchRoot<N>) root);
 	}
 
 	@Override
@@ -240,15 +532,31 @@ public class ProgressionSearch extends Search<CompiledAction> {
 		return visited;
 	}
 
+	/**
+	 * Adds to {@link #getVisited() the number of nodes visited}, for searches
+	 * which count visits somewhere other than {@link #run(Progress, Status)
+	 * the main search loop}.
+	 * 
+	 * @param count the number of nodes visited
+	 */
+	final void visited(long count) {
+		visited += count;
+	}
+	
 	@Override
 	public long getGenerated() {
-		return space.size();
+		return space.size() + discarded;
+	}
+	
+	@Override
+	public boolean isMemoryLow() {
+		return space.isMemoryLow();
 	}
 
 	@Override
 	protected void run(Progress<CompiledAction> progress, Status status) {
 		setStatus(status, progress);
-		while(!progress.isDone()) {
+		while(!isDone(progress) && !progress.isPaused()) {
 			Solution<CompiledAction> solution = space.getNextSolution();
 			if(solution != null) {
 				Value utility = utility(solution);
@@ -257,7 +565,7 @@ public class ProgressionSearch extends Search<CompiledAction> {
 			}
 			else if(!queue.isEmpty()) {
 				SearchNode<?> node = queue.poll();
-				if(!prune(node) && visit(node))
+				if(isReady(node, heuristic, queue) && !prune(node) && visit(node))
 					visited++;
 				updateStatus(status, progress);
 			}
@@ -267,8 +575,135 @@ public class ProgressionSearch extends Search<CompiledAction> {
 		updateStatus(status, progress);
 	}
 	
+	private final boolean isDone(Progress<CompiledAction> progress) {
+		if(isReclaimDue())
+			reclaim();
+		return progress.isDone();
+	}
+	
+	/**
+	 * Indicates whether {@link #reclaim reclaiming} is on and the space has
+	 * either doubled in size since it was last reclaimed or become low on
+	 * memory.
+	 * 
+	 * @return true if the space should be {@link #reclaim() reclaimed} now
+	 */
+	final boolean isReclaimDue() {
+		return reclaim && (space.isMemoryLow() || space.size() >= reclaimed * 2);
+	}
+	
+	/**
+	 * Discards every node in {@link #space the search space} which is not
+	 * needed by the nodes in {@link #queue the queue}, so that the memory
+	 * they occupied can be used for new nodes. The space decides which nodes
+	 * are needed; for example, a {@link
+	 * edu.uky.cs.nil.sabre.ptree.ProgressionTreeSpace progression tree space}
+	 * keeps every node before a queued node and the branches that explain
+	 * their actions, but discards subtrees which have been fully searched.
+	 * After the space is reclaimed, {@link #reclaim(Function)} is called to
+	 * update everything that refers to nodes in the space.
+	 * <p>
+	 * This method is called automatically during search if {@link #reclaim
+	 * reclaiming} is on, but it can be called at any time between searches.
+	 * Nodes that were discarded still count toward {@link #getGenerated() the
+	 * number of generated nodes}.
+	 */
+	@SuppressWarnings("unchecked")
+	public <N> void reclaim() {
+		ProgressionSpace<N> space = (ProgressionSpace<N>) this.space;
+		long size = space.size();
+		ArrayList<N> live = new ArrayList<>(queue.size() + 1);
+		live.add((N) root.node);
+		for(SearchNode<?> node : queue) {
+			live.add((N) node.node);
+			live.add((N) node.root.node);
+			if(node.root.trunk != null)
+				live.add((N) node.root.trunk);
+		}
+		reclaim(space.reclaim(live));
+		discarded += size - space.size();
+		reclaimed = space.size();
+	}
+	
+	/**
+	 * Replaces every reference this search holds to a node in {@link #space
+	 * the search space} after the space has been {@link #reclaim() reclaimed}.
+	 * By default, this method rebuilds every node in {@link #queue the queue}
+	 * and its root with the same cost and heuristic values, clears the
+	 * transposition table, and passes the map to the {@link #cost cost} and
+	 * {@link #heuristic heuristic} functions' {@link
+	 * ProgressionCost#reclaim(Function) reclaim} methods, so that they can
+	 * update what they remember about nodes without starting over.
+	 * Subclasses which keep their own references to nodes, or additional
+	 * cost functions, should override this method, call the superclass
+	 * method, and then update their own references.
+	 * 
+	 * @param <N> the type of object used to represent a node in {@link #space
+	 * the search space}
+	 * @param map a function which maps each node as it was before reclaiming
+	 * to the node that represents it now, or to null if the node was discarded
+	 */
+	@SuppressWarnings("unchecked")
+	protected <N> void reclaim(Function<N, N> map) {
+		IdentityHashMap<SearchRoot<?>, SearchRoot<N>> roots = new IdentityHashMap<>();
+		roots.put(root, new SearchRoot<>(this, map.apply((N) root.node)));
+		ArrayList<SearchNode<N>> nodes = new ArrayList<>(queue.size());
+		for(SearchNode<?> node : queue) {
+			SearchRoot<N> old = (SearchRoot<N>) node.root;
+			SearchRoot<N> branch = roots.get(old);
+			if(branch == null) {
+				N trunk = old.trunk == null ? null : map.apply(old.trunk);
+				branch = new SearchRoot<>(this, old.character, trunk, map.apply(old.node), old.offset, old.epistemic);
+				roots.put(old, branch);
+			}
+			SearchNode<N> copy = branch;
+			if(node != old)
+				copy = new SearchNode<>(branch, map.apply((N) node.node), node.temporal);
+			copy.setCost(node.getCost());
+			copy.setHeuristic(node.getHeuristic());
+			copy.deferred = node.deferred;
+			copy.unexplained = node.unexplained;
+			nodes.add(copy);
+		}
+		root = roots.get(root);
+		queue.clear();
+		queue.addAll(nodes);
+		if(table != null)
+			table.clear();
+		cost.reclaim(map);
+		heuristic.reclaim(map);
+	}
+	
+	/**
+	 * {@link ProgressionCost#initialize(ProgressionNode) Initializes} the
+	 * {@link #cost cost} and {@link #heuristic heuristic} functions for a new
+	 * start state. This method is called when the search's {@link
+	 * #setStart(State) start state is set} and when the search is restored
+	 * from a checkpoint. Subclasses which keep additional cost
+	 * functions should override this method, call the superclass method, and
+	 * then initialize their own.
+	 * 
+	 * @param <N> the type of object used to represent a node in {@link #space
+	 * the search space}
+	 * @param root the root node of the author's search
+	 */
+	protected <N> void initialize(SearchRoot<N> root) {
+		cost.initialize(root);
+		heuristic.initialize(root);
+	}
+	
+	/**
+	 * Returns the {@link edu.uky.cs.nil.sabre.Problem#utility author's utility}
+	 * after a solution, by taking its actions from {@link #setStart(State) the
+	 * start state}.
+	 * 
+	 * @param <N> the type of object used to represent a node in {@link #space
+	 * the search space}
+	 * @param solution the solution
+	 * @return the author's utility after the solution
+	 */
 	@SuppressWarnings("unchecked")
-	private final <N> Value utility(Solution<CompiledAction> solution) {
+	final <N> Value utility(Solution<CompiledAction> solution) {
 		ProgressionSpace<N> space = (ProgressionSpace<N>) this.space;
 		N state = (N) root.getNode();
 		for(CompiledAction action : solution)
@@ -315,7 +750,12 @@ public class ProgressionSearch extends Search<CompiledAction> {
 	 * #explanationPruning explanation pruning} is on, the node's {@link
 	 * SearchNode#getEpistemicDepth() epistemic depth} is greater than 0, and 
 	 * the given node's {@link SearchNode#getRoot() root} is {@link
-	 * SearchNode#isExplained() explained}.
+	 * SearchNode#isExplained() explained}. If this search uses a {@link
+	 * #transpositions transposition table}, this method also returns true
+	 * when the table recognizes the node as a duplicate of a node that has
+	 * already been visited, or when the node is a root that the table was
+	 * able to explain by sharing the explanation of an equivalent root (and
+	 * explanation pruning is on).
 	 * 
 	 * @param <N> the type of object used to represent a node in {@link #space
 	 * the search space}
@@ -325,7 +765,10 @@ public class ProgressionSearch extends Search<CompiledAction> {
 	 * or false if the node should be visited
 	 */
 	protected <N> boolean prune(SearchNode<N> node) {
-		return explanationPruning && node.getEpistemicDepth() > 0 && node.root.isExplained();
+		if(explanationPruning && node.getEpistemicDepth() > 0 && node.root.isExplained())
+			return true;
+		else
+			return table != null && table.prune(node);
 	}
 	
 	/**
@@ -424,6 +867,9 @@ public class ProgressionSearch extends Search<CompiledAction> {
 	 * them can be {@link #push(SearchNode) added to the queue}. In other words,
 	 * if {@link #push(SearchNode)} returns false for the child or any branch,
 	 * neither the child nor any of its branches will be added to the queue.
+	 * If the child's heuristic is {@link #deferred deferred}, its branches are
+	 * not generated until it is {@link #isReady(SearchNode, ProgressionCost,
+	 * Collection) ready}.
 	 * 
 	 * @param <N> the type of object used to represent a node in {@link #space
 	 * the search space}
@@ -434,9 +880,10 @@ public class ProgressionSearch extends Search<CompiledAction> {
 	 */
 	protected <N> boolean expand(SearchNode<N> parent, CompiledAction action) {
 		SearchNode<N> child = parent.getChild(action);
+		defer(child, parent);
 		if(!push(child))
 			return false;
-		else if(explain(child))
+		else if(child.unexplained || explain(child))
 			return true;
 		else {
 			queue.remove(child);
@@ -498,7 +945,8 @@ public class ProgressionSearch extends Search<CompiledAction> {
 	 * node and {@link SearchNode#setCost(double) sets them}. If either cost is
 	 * {@link Double#POSITIVE_INFINITY positive infinity}, this method returns
 	 * false. Otherwise, this method adds the node to the queue and returns
-	 * true.
+	 * true. If the node's heuristic has been {@link #deferred deferred}, only
+	 * its cost is calculated.
 	 * 
 	 * @param <N> the type of object used to represent a node in {@link #space
 	 * the search space}
@@ -507,16 +955,112 @@ public class ProgressionSearch extends Search<CompiledAction> {
 	 * not added
 	 */
 	protected <N> boolean push(SearchNode<N> node) {
+		if(!evaluate(node, cost, heuristic))
+			return false;
+		queue.offer(node);
+		return true;
+	}
+	
+	/**
+	 * Recalculates the {@link #cost cost} and {@link #heuristic heuristic}
+	 * values of every node in {@link #queue the queue} and restores the
+	 * queue's order. This should be called between searches after the cost
+	 * or heuristic function has changed in a way that affects nodes which
+	 * were already evaluated, such as when a weight is adjusted. Nodes which
+	 * could no longer be {@link #push(SearchNode) added to the queue} are
+	 * removed. The whole queue is reordered at once, which takes time linear
+	 * in the size of the queue.
+	 */
+	public void reprioritize() {
+		queue.reprioritize(node -> evaluate(node, cost, heuristic));
+	}
+	
+	/**
+	 * Checks whether a {@link SearchNode search node} is within {@link
+	 * #epistemicLimit the search's epistemic limit} and {@link
+	 * SearchNode#setCost(double) sets} its cost and heuristic values using
+	 * the given functions, as described in {@link #push(SearchNode)}.
+	 * 
+	 * @param <N> the type of object used to represent a node in {@link #space
+	 * the search space}
+	 * @param node the node to be evaluated
+	 * @param cost the cost function to use
+	 * @param heuristic the heuristic function to use
+	 * @return true if the node can be added to a queue, or false if it
+	 * exceeds the epistemic limit or either value is {@link
+	 * Double#POSITIVE_INFINITY positive infinity}
+	 */
+	final <N> boolean evaluate(SearchNode<N> node, ProgressionCost cost, ProgressionCost heuristic) {
 		if(epistemicLimit != Planner.UNLIMITED_DEPTH && node.getEpistemicDepth() > epistemicLimit)
 			return false;
 		node.setCost(cost.evaluate(node));
 		if(node.getCost() == Double.POSITIVE_INFINITY)
 			return false;
+		if(!node.deferred)
+			node.setHeuristic(heuristic.evaluate(node));
+		return node.getHeuristic() != Double.POSITIVE_INFINITY;
+	}
+	
+	/**
+	 * If this search {@link #deferred defers heuristic evaluation}, marks a
+	 * newly generated child so that its heuristic will not be evaluated until
+	 * it is about to be visited, and gives it its parent's heuristic value in
+	 * the meantime. The child is also marked so that the branches which {@link
+	 * #explain(SearchNode) explain} it will be generated only when it is
+	 * {@link #isReady(SearchNode, ProgressionCost, Collection) ready}; searches
+	 * which explain children at some other time should clear that mark.
+	 * 
+	 * @param <N> the type of object used to represent a node in {@link #space
+	 * the search space}
+	 * @param child the newly generated child
+	 * @param parent the node it was generated from
+	 */
+	final <N> void defer(SearchNode<N> child, SearchNode<N> parent) {
+		if(deferred) {
+			child.deferred = true;
+			child.unexplained = true;
+			child.setHeuristic(parent.getHeuristic());
+		}
+	}
+	
+	/**
+	 * Checks whether a node that was just taken from the front of a queue is
+	 * ready to be visited. A node is ready unless its heuristic was {@link
+	 * #deferred deferred}. If it was, the heuristic is evaluated now. If the
+	 * value is the same as the estimate the node was queued with, the node is
+	 * still at the front of the queue and is ready. If the value is {@link
+	 * Double#POSITIVE_INFINITY positive infinity}, the node is discarded.
+	 * Otherwise, if the node's explanation was also deferred, the branches
+	 * which {@link #explain(SearchNode) explain} it are generated now, and the
+	 * node is discarded if they cannot be. Finally, if the value is different
+	 * from the estimate, the node is put back onto the queue.
+	 * 
+	 * @param node the node taken from the front of the queue
+	 * @param heuristic the heuristic function to use
+	 * @param queue the collection the node will be put back into if it is
+	 * not ready, normally the queue it was taken from
+	 * @return true if the node should be visited now, or false if it was
+	 * discarded or put back onto the queue
+	 */
+	final boolean isReady(SearchNode<?> node, ProgressionCost heuristic, Collection<SearchNode<?>> queue) {
+		if(!node.deferred)
+			return true;
+		node.deferred = false;
+		double estimate = node.getHeuristic();
 		node.setHeuristic(heuristic.evaluate(node));
 		if(node.getHeuristic() == Double.POSITIVE_INFINITY)
 			return false;
-		queue.offer(node);
-		return true;
+		if(node.unexplained) {
+			node.unexplained = false;
+			if(!explain(node))
+				return false;
+		}
+		if(node.getHeuristic() != estimate) {
+			queue.add(node);
+			return false;
+		}
+		else
+			return true;
 	}
 	
 	/**
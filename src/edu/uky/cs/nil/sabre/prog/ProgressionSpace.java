@@ -1,13 +1,22 @@
 package edu.uky.cs.nil.sabre.prog;
 
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.function.Function;
 
 import edu.uky.cs.nil.sabre.Character;
+import edu.uky.cs.nil.sabre.Exceptions;
 import edu.uky.cs.nil.sabre.Solution;
 import edu.uky.cs.nil.sabre.State;
 import edu.uky.cs.nil.sabre.comp.CompiledAction;
 import edu.uky.cs.nil.sabre.comp.CompiledFluent;
 import edu.uky.cs.nil.sabre.logic.Value;
+import edu.uky.cs.nil.sabre.util.MemoryBudget;
 
 /**
  * A progression space is a method of implementing the graph of states that is
@@ -27,6 +36,11 @@ import edu.uky.cs.nil.sabre.logic.Value;
  * example, a progression space that detects duplicate states will be smaller,
  * but the added overhead needed to detect duplicates may or may not make the
  * space faster to search.
+ * <p>
+ * A space may support {@link #checkpoint(DataOutputStream) checkpoints}, so
+ * that a {@link ProgressionSearch#checkpoint(java.io.OutputStream) search}
+ * can be saved and resumed later. By default, the methods for writing and
+ * reading checkpoints throw an {@link UnsupportedOperationException}.
  * 
  * @param <N> the type of object used to represent a state in this space
  * @author Stephen G. Ware
@@ -41,6 +55,30 @@ public interface ProgressionSpace<N> {
 	 */
 	public long size();
 	
+	/**
+	 * Indicates whether the state space is close to using all of the memory
+	 * it is allowed to use. Once this method returns true, a search should
+	 * stop generating new nodes. A space whose memory is not limited always
+	 * returns false. By default, this method always returns false.
+	 * 
+	 * @return true if the space is low on memory, false otherwise
+	 */
+	public default boolean isMemoryLow() {
+		return false;
+	}
+	
+	/**
+	 * Returns the {@link MemoryBudget memory budget} which limits the size of
+	 * this state space. A search may charge other structures which grow with
+	 * the space, such as a {@link TranspositionTable transposition table}, to
+	 * the same budget. By default, this method returns an unlimited budget.
+	 * 
+	 * @return the space's memory budget
+	 */
+	public default MemoryBudget getBudget() {
+		return new MemoryBudget();
+	}
+	
 	/**
 	 * Reset and initializes the state space to begin at a given initial state.
 	 * The nodes previously represented in this structure may become invalid
@@ -51,6 +89,91 @@ public interface ProgressionSpace<N> {
 	 */
 	public N initialize(State state);
 	
+	/**
+	 * Writes a checkpoint of the whole state space to a binary output stream,
+	 * so that it can later be {@link #restore(DataInputStream) restored},
+	 * possibly by a different process. Nodes are not written individually;
+	 * objects which represent nodes can be written with {@link
+	 * #write(Object, DataOutput)}. By default, this method throws an
+	 * exception.
+	 * 
+	 * @param out the output stream to write to
+	 * @throws IOException if an error occurs while writing
+	 * @throws UnsupportedOperationException if this space does not support
+	 * checkpoints
+	 */
+	public default void checkpoint(DataOutputStream out) throws IOException {
+		throw Exceptions.checkpointNotSupported(this);
+	}
+	
+	/**
+	 * Replaces the contents of this state space with a {@link
+	 * #checkpoint(DataOutputStream) checkpoint}. The space must already have
+	 * been {@link #initialize(State) initialized} with the same initial state
+	 * the space had when the checkpoint was written. After this method
+	 * returns, nodes {@link #read(DataInput) read} from the same stream will
+	 * represent the same states they represented when they were written. By
+	 * default, this method throws an exception.
+	 * 
+	 * @param in the input stream to read from
+	 * @throws IOException if an error occurs while reading
+	 * @throws IllegalArgumentException if the checkpoint was written for a
+	 * different problem or initial state
+	 * @throws UnsupportedOperationException if this space does not support
+	 * checkpoints
+	 */
+	public default void restore(DataInputStream in) throws IOException {
+		throw Exceptions.checkpointNotSupported(this);
+	}
+	
+	/**
+	 * Writes an object representing a node in this space to a checkpoint. By
+	 * default, this method throws an exception.
+	 * 
+	 * @param node the node to write
+	 * @param out the output to write to
+	 * @throws IOException if an error occurs while writing
+	 * @throws UnsupportedOperationException if this space does not support
+	 * checkpoints
+	 */
+	public default void write(N node, DataOutput out) throws IOException {
+		throw Exceptions.checkpointNotSupported(this);
+	}
+	
+	/**
+	 * Reads an object representing a node in this space that was {@link
+	 * #write(Object, DataOutput) written to a checkpoint}. By default, this
+	 * method throws an exception.
+	 * 
+	 * @param in the input to read from
+	 * @return the node
+	 * @throws IOException if an error occurs while reading
+	 * @throws UnsupportedOperationException if this space does not support
+	 * checkpoints
+	 */
+	public default N read(DataInput in) throws IOException {
+		throw Exceptions.checkpointNotSupported(this);
+	}
+	
+	/**
+	 * Discards nodes which are no longer needed so that the memory they
+	 * occupy can be reused. A node is needed if it is one of the given live
+	 * nodes, or if some needed node depends on it (for example, every node
+	 * before a needed node is also needed). Reclaiming may change the objects
+	 * which represent nodes that are kept, so any node held outside the space
+	 * must be replaced using the returned function. A space which does not
+	 * support reclaiming returns {@link Function#identity() the identity
+	 * function}. By default, this method discards nothing and returns the
+	 * identity function.
+	 * 
+	 * @param live the nodes which must be kept
+	 * @return a function which maps each node as it was before reclaiming to
+	 * the object that represents it now, or to null if the node was discarded
+	 */
+	public default Function<N, N> reclaim(Iterable<N> live) {
+		return Function.identity();
+	}
+	
 	/**
 	 * Returns the next {@link Solution solution} in the space that has not yet
 	 * been returned. A solution is any plan which improves the {@link
@@ -126,6 +249,24 @@ public interface ProgressionSpace<N> {
 	 */
 	public boolean isExplained(N node, Character character);
 	
+	/**
+	 * Returns the node that {@link #isExplained(Object, Character) explains}
+	 * the {@link CompiledAction action} that led to the state for the given
+	 * node for a given character. The explanation is a node representing the
+	 * state after a plan the character believes is possible that starts with
+	 * the action and improves their utility. The explanation is either the
+	 * node's {@link #getBranch(Object, Character) branch} for that character
+	 * or a descendant of the branch, so the plan can be recovered by following
+	 * {@link #getParents(Object) parents} back from the explanation to the
+	 * branch.
+	 * 
+	 * @param node the node in the state space whose action may be explained
+	 * @param character the character for which it may be explained
+	 * @return the node that explains the action for that character, or null
+	 * if the action is not explained for that character
+	 */
+	public N getExplanation(N node, Character character);
+	
 	/**
 	 * Returns a collection of nodes from this state space that represent states
 	 * that may have come before the given node. Recall that a node is an
@@ -181,4 +322,96 @@ public interface ProgressionSpace<N> {
 	 * does not exist
 	 */
 	public N getBranch(N node, Character character);
+	
+	/**
+	 * Adds to a collection every {@link CompiledFluent fluent} whose value may
+	 * be different in the states represented by two nodes. This is meant for
+	 * code which evaluates many states one after another, such as a {@link
+	 * GraphHeuristic heuristic}, and which can reuse what it learned about
+	 * the last state if it knows which fluents have changed. Consecutive
+	 * states are usually close together, such as a node and its child or two
+	 * siblings, and differ in only a few fluents. Fluents which are not added
+	 * to the collection must have the same value in both states, but a fluent
+	 * which is added may still have the same value. If the space cannot
+	 * quickly tell which fluents may be different (for example, because the
+	 * nodes are far apart), this method returns false, in which case the
+	 * caller should assume that any fluent may be different. Spaces do not
+	 * need to support this method; by default, it always returns false.
+	 * 
+	 * @param from a node in the state space
+	 * @param to another node in the state space
+	 * @param changed the collection to which fluents that may have different
+	 * values will be added
+	 * @return true if every fluent which may have a different value was added
+	 * to the collection, or false if the space cannot tell
+	 */
+	public default boolean getChanges(N from, N to, Collection<? super CompiledFluent> changed) {
+		return false;
+	}
+	
+	/**
+	 * Indicates whether {@link #isExplained(Object)} can be answered for a
+	 * node without modifying the space, because everything it needs has
+	 * already been generated. Spaces often create nodes or update their
+	 * internal bookkeeping when asked whether an action is explained, but
+	 * once that work has been done, asking again only reads the space. This
+	 * allows a {@link ConcurrentSpace concurrent space} to let several threads
+	 * ask at once. Spaces do not need to support this method; by default, it
+	 * always returns false.
+	 * 
+	 * @param node the node in the state space whose action may be explained
+	 * @return true if {@link #isExplained(Object)} will not modify the space
+	 * for this node, or false if it might
+	 */
+	public default boolean isReadOnly(N node) {
+		return false;
+	}
+	
+	/**
+	 * Indicates whether {@link #isExplained(Object, Character)}, {@link
+	 * #getExplanation(Object, Character)}, and {@link #getBranch(Object,
+	 * Character)} can be answered for a node and character without modifying
+	 * the space. See {@link #isReadOnly(Object)}. By default, this method
+	 * always returns false.
+	 * 
+	 * @param node the node in the state space whose action may be explained
+	 * @param character the character for which it may be explained
+	 * @return true if those methods will not modify the space for this node
+	 * and character, or false if they might
+	 */
+	public default boolean isReadOnly(N node, Character character) {
+		return false;
+	}
+	
+	/**
+	 * Indicates whether {@link #getChild(Object, CompiledAction)} can be
+	 * answered for a node and action without modifying the space, usually
+	 * because the child has already been generated. See {@link
+	 * #isReadOnly(Object)}. By default, this method always returns false.
+	 * 
+	 * @param node a node in the state space
+	 * @param action the action to take in the state represented by the node
+	 * @return true if {@link #getChild(Object, CompiledAction)} will not
+	 * modify the space for this node and action, or false if it might
+	 */
+	public default boolean isReadOnly(N node, CompiledAction action) {
+		return false;
+	}
+	
+	/**
+	 * Indicates whether {@link #getValue(Object, CompiledFluent)} can be
+	 * answered for a node and fluent without modifying the space. Most spaces
+	 * only read themselves to evaluate a fluent, but some may record what
+	 * they learn, such as a {@link edu.uky.cs.nil.sabre.ptree.ProgressionTree
+	 * progression tree} which takes snapshots of states. See {@link
+	 * #isReadOnly(Object)}. By default, this method always returns true.
+	 * 
+	 * @param node a node in the state space
+	 * @param fluent the fluent to be evaluated
+	 * @return true if {@link #getValue(Object, CompiledFluent)} will not
+	 * modify the space for this node and fluent, or false if it might
+	 */
+	public default boolean isReadOnly(N node, CompiledFluent fluent) {
+		return true;
+	}
 }
\ No newline at end of file
@@ -72,4 +72,16 @@ public class ReachabilityHeuristic extends GraphHeuristic.MaxGraphHeuristic {
 		}
 		return 0;
 	}
+	
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * This heuristic is not state based, because it only checks nodes whose
+	 * {@link ProgressionNode#getTemporalDepth() temporal depth} is 0, and a
+	 * deeper node in the same state is given 0.
+	 */
+	@Override
+	public boolean isStateBased() {
+		return false;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,190 @@
+package edu.uky.cs.nil.sabre.prog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.Function;
+
+import edu.uky.cs.nil.sabre.comp.CompiledFluent;
+import edu.uky.cs.nil.sabre.comp.CompiledProblem;
+import edu.uky.cs.nil.sabre.logic.Value;
+
+/**
+ * Remembers the value of every {@link CompiledProblem#fluents fluent} in a
+ * few recently read states, along with a 64-bit hash of each state, so that
+ * the state of a nearby node can be read by looking up only the fluents which
+ * changed. Looking up every fluent in a node's state means walking back
+ * through the {@link ProgressionSpace search space} once per fluent, which
+ * can cost as much as evaluating a heuristic, but consecutive nodes are
+ * usually close together, such as a node and its child or two siblings, and
+ * when {@link ProgressionSpace#getChanges(Object, Object, java.util.Collection)
+ * the space can tell} which fluents may be different, only those need to be
+ * looked up. The hash of a state is a sum of one term per fluent, so it is
+ * also updated one changed fluent at a time.
+ * <p>
+ * Each state is kept in a slot, and the values and hash in a slot are only
+ * valid until the next state is {@link #set(ProgressionSpace, Object) read},
+ * since that may reuse the slot.
+ * 
+ * @author Stephen G. Ware
+ */
+final class RecentStates {
+	
+	/** The number of recently read states that are remembered */
+	private static final int RECENT = 8;
+	
+	/** Every fluent in the problem, indexed by {@link CompiledFluent#id} */
+	private final CompiledFluent[] fluents;
+	
+	/**
+	 * The space the {@link #recent recent nodes} belong to, or null if no
+	 * nodes have been read since this object was last {@link #clear()
+	 * cleared}
+	 */
+	private ProgressionSpace<?> space = null;
+	
+	/** Recently read nodes, or null for empty slots */
+	private final Object[] recent = new Object[RECENT];
+	
+	/** The value of every fluent in the state of each {@link #recent recent node} */
+	private final Value[][] values = new Value[RECENT][];
+	
+	/**
+	 * The sum of the {@link #hash(int, Value) hashes} of the values in each
+	 * slot of {@link #values}
+	 */
+	private final long[] hashes = new long[RECENT];
+	
+	/** The slot in {@link #recent} which will be replaced next */
+	private int next = 0;
+	
+	/**
+	 * The fluents which may be different between a recent node and the node
+	 * being read
+	 */
+	private final ArrayList<CompiledFluent> changed = new ArrayList<>();
+	
+	/**
+	 * Constructs a new, empty set of recent states.
+	 * 
+	 * @param problem the problem whose states will be read
+	 */
+	public RecentStates(CompiledProblem problem) {
+		this.fluents = new CompiledFluent[problem.fluents.size()];
+		for(int i=0; i<fluents.length; i++)
+			fluents[i] = problem.fluents.get(i);
+	}
+	
+	/**
+	 * Forgets every recent state. This should be called whenever the search
+	 * starts over, since the nodes of the search space may no longer mean the
+	 * same thing.
+	 */
+	public void clear() {
+		space = null;
+		Arrays.fill(recent, null);
+	}
+	
+	/**
+	 * Updates the recent nodes after the search space has been {@link
+	 * ProgressionSearch#reclaim() reclaimed}. Each recent node is replaced by
+	 * the node that represents it now, and the slots of nodes that were
+	 * discarded are emptied. The values recorded in each slot are kept, since
+	 * a node that was not discarded still has the same state.
+	 * 
+	 * @param <N> the type of object used to represent a node in the search
+	 * space
+	 * @param map a function which maps each node as it was before reclaiming
+	 * to the node that represents it now, or to null if the node was discarded
+	 */
+	@SuppressWarnings("unchecked")
+	public <N> void reclaim(Function<N, N> map) {
+		for(int i=0; i<RECENT; i++)
+			if(recent[i] != null)
+				recent[i] = map.apply((N) recent[i]);
+	}
+	
+	/**
+	 * Records the value of every fluent in a node's state in one of the slots,
+	 * along with the state's hash. If the node is close to a recently read
+	 * node, that node's slot is reused and only the fluents which may have
+	 * changed are looked up.
+	 * 
+	 * @param <N> the type of object used to represent a node in the search
+	 * space
+	 * @param space the search space the node belongs to
+	 * @param node the node
+	 * @return the slot where the node's values were recorded
+	 */
+	@SuppressWarnings("unchecked")
+	public <N> int set(ProgressionSpace<N> space, N node) {
+		if(space != this.space) {
+			Arrays.fill(recent, null);
+			this.space = space;
+		}
+		for(int i=0; i<RECENT; i++) {
+			int slot = (next + RECENT - 1 - i) % RECENT;
+			if(recent[slot] != null) {
+				changed.clear();
+				if(space.getChanges((N) recent[slot], node, changed)) {
+					Value[] values = this.values[slot];
+					long hash = hashes[slot];
+					for(CompiledFluent fluent : changed) {
+						Value value = space.getValue(node, fluent);
+						hash += hash(fluent.id, value) - hash(fluent.id, values[fluent.id]);
+						values[fluent.id] = value;
+					}
+					hashes[slot] = hash;
+					recent[slot] = node;
+					return slot;
+				}
+			}
+		}
+		int slot = next;
+		if(values[slot] == null)
+			values[slot] = new Value[fluents.length];
+		long hash = 0;
+		for(int i=0; i<fluents.length; i++) {
+			values[slot][i] = space.getValue(node, fluents[i]);
+			hash += hash(i, values[slot][i]);
+		}
+		hashes[slot] = hash;
+		recent[slot] = node;
+		next = (next + 1) % RECENT;
+		return slot;
+	}
+	
+	/**
+	 * Returns the value of every fluent in the state recorded in a slot,
+	 * indexed by {@link CompiledFluent#id fluent ID}. The array belongs to
+	 * this object and will change when the slot is reused.
+	 * 
+	 * @param slot the slot
+	 * @return the values of every fluent
+	 */
+	public Value[] getValues(int slot) {
+		return values[slot];
+	}
+	
+	/**
+	 * Returns the hash of the state recorded in a slot.
+	 * 
+	 * @param slot the slot
+	 * @return the state's hash
+	 */
+	public long getHash(int slot) {
+		return hashes[slot];
+	}
+	
+	/**
+	 * Returns the term a fluent's value contributes to the hash of a state.
+	 * The same value gives different terms for different fluents.
+	 * 
+	 * @param fluent the fluent's {@link CompiledFluent#id ID number}
+	 * @param value the fluent's value
+	 * @return the term
+	 */
+	public static final long hash(int fluent, Value value) {
+		long hash = (value.hashCode() + fluent * 0x9E3779B97F4A7C15L) * 0xC2B2AE3D27D4EB4FL;
+		return hash ^ (hash >>> 29);
+	}
+}
@@ -1,7 +1,6 @@
 package edu.uky.cs.nil.sabre.prog;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.Arrays;
 
 import edu.uky.cs.nil.sabre.Action;
 import edu.uky.cs.nil.sabre.comp.CompiledProblem;
@@ -43,6 +42,12 @@ import edu.uky.cs.nil.sabre.util.Worker.Status;
  * version of the problem that is computationally easier. Then we can use the
  * solution to the relaxed problem as an approximation of the solution to the
  * real problem.
+ * <p>
+ * Extracting the relaxed plan does not allocate any objects. The nodes which
+ * are part of the relaxed solution are marked in an array indexed by {@link
+ * Node#id node ID number} with a number that changes for each evaluation, so
+ * the marks never need to be cleared, and nodes which still need to be
+ * extracted are kept on an explicit stack rather than the Java call stack.
  * 
  * @author Stephen G. Ware
  */
@@ -71,8 +76,35 @@ public class RelaxedPlanHeuristic extends GraphHeuristic.MaxGraphHeuristic {
 	/** The name of this heuristic */
 	private static final String STRING = "relaxed plan";
 	
-	/** Records which nodes from the graph are part of the relaxed solution */
-	protected final Set<Node> subgraph = new HashSet<>();
+	/** The smallest number of entries in the stack of nodes to extract */
+	private static final int MIN_STACK = 64;
+	
+	/**
+	 * For each {@link Node#id node ID number}, the {@link #epoch evaluation}
+	 * during which that node was last added to the solution subgraph
+	 */
+	private int[] marks;
+	
+	/**
+	 * A number which identifies the current evaluation; a node is in the
+	 * solution subgraph if its mark equals this number
+	 */
+	private int epoch = 0;
+	
+	/** Nodes which still need to be extracted */
+	private Node[] stack = new Node[MIN_STACK];
+	
+	/**
+	 * For each formula node on the stack, the relationship it needs to have
+	 * to its value, or null for nodes which are not formulas
+	 */
+	private Comparison.Operator[] operators = new Comparison.Operator[MIN_STACK];
+	
+	/** For each formula node on the stack, the value it needs to compare to */
+	private Value[] values = new Value[MIN_STACK];
+	
+	/** The number of nodes on the stack */
+	private int size = 0;
 	
 	/** Counts the number of actions in the subgraph */
 	private int cost = 0;
@@ -86,6 +118,7 @@ public class RelaxedPlanHeuristic extends GraphHeuristic.MaxGraphHeuristic {
 	 */
 	public RelaxedPlanHeuristic(CompiledProblem problem, Status status) {
 		super(problem, status);
+		this.marks = new int[graph.size()];
 	}
 	
 	@Override
@@ -99,21 +132,127 @@ public class RelaxedPlanHeuristic extends GraphHeuristic.MaxGraphHeuristic {
 			return 0;
 		Value start = node.getUtility(node.getCharacter());
 		UtilityNode utility = graph.getUtility(node.getCharacter());
-		graph.initialize(node);
+		setState(node);
 		while(utility.getCost(Comparison.GREATER_THAN, start) == Double.POSITIVE_INFINITY && graph.extend());
 		if(utility.getCost(Comparison.GREATER_THAN, start) == Double.POSITIVE_INFINITY)
 			return Double.POSITIVE_INFINITY;
 		else {
-			subgraph.clear();
+			if(++epoch == 0) {
+				Arrays.fill(marks, 0);
+				epoch = 1;
+			}
 			cost = 0;
-			extract(utility, Comparison.GREATER_THAN, start);
+			push(utility, Comparison.GREATER_THAN, start);
+			while(size > 0) {
+				size--;
+				Node next = stack[size];
+				Comparison.Operator operator = operators[size];
+				Value value = values[size];
+				values[size] = null;
+				if(operator == null)
+					extract(next);
+				else
+					extract((FormulaNode) next, operator, value);
+			}
 			return cost;
 		}
 	}
 	
 	/**
-	 * Adds nodes from the {@link #graph heuristic graph} to the {@link
-	 * #subgraph solution subgraph} which are needed to make a {@link
+	 * Adds a node to the solution subgraph for the current evaluation.
+	 * 
+	 * @param node the node to add
+	 * @return true if the node was added, or false if it was already part of
+	 * the solution subgraph
+	 */
+	protected boolean add(Node node) {
+		if(node.id >= marks.length)
+			marks = Arrays.copyOf(marks, Math.max(node.id + 1, marks.length * 2));
+		if(marks[node.id] == epoch)
+			return false;
+		marks[node.id] = epoch;
+		return true;
+	}
+	
+	/**
+	 * Indicates whether a node is part of the solution subgraph for the
+	 * current evaluation.
+	 * 
+	 * @param node the node
+	 * @return true if the node is part of the solution subgraph
+	 */
+	protected boolean contains(Node node) {
+		return node.id < marks.length && marks[node.id] == epoch;
+	}
+	
+	/**
+	 * Pushes a node onto the stack of nodes which still need to be {@link
+	 * #extract(Node) extracted}.
+	 * 
+	 * @param node the node
+	 */
+	protected void push(Node node) {
+		append(node, null, null);
+	}
+	
+	/**
+	 * Pushes a formula node onto the stack of nodes which still need to be
+	 * {@link #extract(FormulaNode, Comparison.Operator, Value) extracted}.
+	 * 
+	 * @param formula the formula node
+	 * @param operator the relationship between the formula and the value
+	 * @param value the value
+	 */
+	protected void push(FormulaNode formula, Comparison.Operator operator, Value value) {
+		append(formula, operator, value);
+	}
+	
+	/**
+	 * Adds an entry to the top of the stack, doubling the size of the stack
+	 * if it is full.
+	 * 
+	 * @param node the node
+	 * @param operator the relationship between the node and the value, or
+	 * null if the node is not a formula
+	 * @param value the value, or null if the node is not a formula
+	 */
+	private final void append(Node node, Comparison.Operator operator, Value value) {
+		if(size == stack.length) {
+			stack = Arrays.copyOf(stack, size * 2);
+			operators = Arrays.copyOf(operators, size * 2);
+			values = Arrays.copyOf(values, size * 2);
+		}
+		stack[size] = node;
+		operators[size] = operator;
+		values[size] = value;
+		size++;
+	}
+	
+	/**
+	 * Adds nodes from the {@link #graph heuristic graph} to the solution
+	 * subgraph which are needed to make a node true or to include it in the
+	 * subgraph. Formula nodes are extracted by {@link
+	 * #extract(FormulaNode, Comparison.Operator, Value)} instead.
+	 * 
+	 * @param node the node
+	 */
+	protected void extract(Node node) {
+		if(node instanceof DisjunctionNode)
+			extract((DisjunctionNode) node);
+		else if(node instanceof ClauseNode)
+			extract((ClauseNode) node);
+		else if(node instanceof PreconditionNode)
+			extract((PreconditionNode) node);
+		else if(node instanceof EffectNode)
+			extract((EffectNode) node);
+		else if(node instanceof EventNode)
+			extract((EventNode) node);
+	}
+	
+	/**
+	 * Adds nodes from the {@link #graph heuristic graph} to the solution
+	 * subgraph, or {@link #push(Node) pushes} them to be extracted later,
+	 * which are needed to make a {@link
 	 * FormulaNode formula node} compare to a value.
 	 * 
 	 * @param formula the formula node
@@ -130,8 +269,9 @@ public class RelaxedPlanHeuristic extends GraphHeuristic.MaxGraphHeuristic {
 	}
 	
 	/**
-	 * Adds nodes from the {@link #graph heuristic graph} to the {@link
-	 * #subgraph solution subgraph} which are needed to make a {@link FluentNode
+	 * Adds nodes from the {@link #graph heuristic graph} to the solution
+	 * subgraph, or {@link #push(Node) pushes} them to be extracted later,
+	 * which are needed to make a {@link FluentNode
 	 * fluent node} compare to a value.
 	 * 
 	 * @param fluent the fluent node
@@ -160,13 +300,14 @@ public class RelaxedPlanHeuristic extends GraphHeuristic.MaxGraphHeuristic {
 				}
 			}
 		}
-		extract(bestEffect.value, Comparison.EQUAL_TO, bestValue);
-		extract(bestEffect);
+		push(bestEffect);
+		push(bestEffect.value, Comparison.EQUAL_TO, bestValue);
 	}
 	
 	/**
-	 * Adds nodes from the {@link #graph heuristic graph} to the {@link
-	 * #subgraph solution subgraph} which are needed to make an {@link
+	 * Adds nodes from the {@link #graph heuristic graph} to the solution
+	 * subgraph, or {@link #push(Node) pushes} them to be extracted later,
+	 * which are needed to make an {@link
 	 * ArithmeticNode arithmetic node} compare to a value.
 	 * 
 	 * @param arithmetic the arithmetic node
@@ -194,13 +335,14 @@ public class RelaxedPlanHeuristic extends GraphHeuristic.MaxGraphHeuristic {
 				}
 			}
 		}
-		extract(arithmetic.left, Comparison.EQUAL_TO, bestLeft);
-		extract(arithmetic.right, Comparison.EQUAL_TO, bestRight);
+		push(arithmetic.right, Comparison.EQUAL_TO, bestRight);
+		push(arithmetic.left, Comparison.EQUAL_TO, bestLeft);
 	}
 	
 	/**
-	 * Adds nodes from the {@link #graph heuristic graph} to the {@link
-	 * #subgraph solution subgraph} which are needed to make a {@link
+	 * Adds nodes from the {@link #graph heuristic graph} to the solution
+	 * subgraph, or {@link #push(Node) pushes} them to be extracted later,
+	 * which are needed to make a {@link
 	 * UtilityNode utility node} compare to a value.
 	 * 
 	 * @param utility the utility node
@@ -218,51 +360,54 @@ public class RelaxedPlanHeuristic extends GraphHeuristic.MaxGraphHeuristic {
 					best = goal;
 			}
 		}
-		extract(best.condition);
-		extract(best.value, operator, value);
+		push(best.value, operator, value);
+		push(best.condition);
 	}
 	
 	/**
-	 * Adds nodes from the {@link #graph heuristic graph} to the {@link
-	 * #subgraph solution subgraph} which are needed to make a {@link
+	 * Adds nodes from the {@link #graph heuristic graph} to the solution
+	 * subgraph, or {@link #push(Node) pushes} them to be extracted later,
+	 * which are needed to make a {@link
 	 * DisjunctionNode disjunction node} true.
 	 * 
 	 * @param disjunction the disjunction node
 	 */
 	protected void extract(DisjunctionNode disjunction) {
-		if(subgraph.add(disjunction)) {
+		if(add(disjunction)) {
 			ClauseNode best = null;
 			for(int i=0; i<disjunction.clauses.size(); i++) {
 				ClauseNode clause = disjunction.clauses.get(i);
 				if(clause.getCost() < Double.POSITIVE_INFINITY && (best == null || clause.getCost() < best.getCost()))
 					best = clause;
 			}
-			extract(best);
+			push(best);
 		}
 	}
 	
 	/**
-	 * Adds nodes from the {@link #graph heuristic graph} to the {@link
-	 * #subgraph solution subgraph} which are needed to make a {@link ClauseNode
+	 * Adds nodes from the {@link #graph heuristic graph} to the solution
+	 * subgraph, or {@link #push(Node) pushes} them to be extracted later,
+	 * which are needed to make a {@link ClauseNode
 	 * clause node} true.
 	 * 
 	 * @param clause the clause node
 	 */
 	protected void extract(ClauseNode clause) {
-		if(subgraph.add(clause))
-			for(int i=0; i<clause.preconditions.size(); i++)
-				extract(clause.preconditions.get(i));
+		if(add(clause))
+			for(int i=clause.preconditions.size()-1; i>=0; i--)
+				push(clause.preconditions.get(i));
 	}
 	
 	/**
-	 * Adds nodes from the {@link #graph heuristic graph} to the {@link
-	 * #subgraph solution subgraph} which are needed to make a {@link
+	 * Adds nodes from the {@link #graph heuristic graph} to the solution
+	 * subgraph, or {@link #push(Node) pushes} them to be extracted later,
+	 * which are needed to make a {@link
 	 * PreconditionNode precondition node} true.
 	 * 
 	 * @param precondition the precondition node
 	 */
 	protected void extract(PreconditionNode precondition) {
-		if(subgraph.add(precondition)) {
+		if(add(precondition)) {
 			Value bestLeft = null;
 			Value bestRight = null;
 			double bestCost = Double.POSITIVE_INFINITY;
@@ -281,44 +426,46 @@ public class RelaxedPlanHeuristic extends GraphHeuristic.MaxGraphHeuristic {
 				}
 			}
 			if(bestCost > 0) {
-				extract(precondition.fluent, Comparison.EQUAL_TO, bestLeft);
-				extract(precondition.value, Comparison.EQUAL_TO, bestRight);
+				push(precondition.value, Comparison.EQUAL_TO, bestRight);
+				push(precondition.fluent, Comparison.EQUAL_TO, bestLeft);
 			}
 		}
 	}
 	
 	/**
-	 * Adds nodes from the {@link #graph heuristic graph} to the {@link
-	 * #subgraph solution subgraph} which are needed to include an {@link
+	 * Adds nodes from the {@link #graph heuristic graph} to the solution
+	 * subgraph, or {@link #push(Node) pushes} them to be extracted later,
+	 * which are needed to include an {@link
 	 * EffectNode effect node} in the subgraph.
 	 * 
 	 * @param effect the effect node
 	 */
 	protected void extract(EffectNode effect) {
-		if(subgraph.add(effect)) {
+		if(add(effect)) {
 			EventNode best = null;
 			for(int i=0; i<effect.events.size(); i++) {
 				EventNode event = effect.events.get(i);
 				if(event.getCost() < Double.POSITIVE_INFINITY && (best == null || event.getCost() < best.getCost()))
 					best = event;
 			}
-			extract(effect.condition);
-			extract(best);
+			push(best);
+			push(effect.condition);
 		}
 	}
 	
 	/**
-	 * Adds nodes from the {@link #graph heuristic graph} to the {@link
-	 * #subgraph solution subgraph} which are needed to include an {@link
+	 * Adds nodes from the {@link #graph heuristic graph} to the solution
+	 * subgraph, or {@link #push(Node) pushes} them to be extracted later,
+	 * which are needed to include an {@link
 	 * EventNode event node} in the subgraph.
 	 * 
 	 * @param event the event node
 	 */
 	protected void extract(EventNode event) {
-		if(subgraph.add(event)) {
+		if(add(event)) {
 			if(event.label instanceof Action)
 				cost++;
-			extract(event.precondition);
+			push(event.precondition);
 		}
 	}
 }
\ No newline at end of file
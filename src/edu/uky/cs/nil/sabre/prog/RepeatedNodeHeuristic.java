@@ -1,6 +1,6 @@
 package edu.uky.cs.nil.sabre.prog;
 
-import java.util.HashMap;
+import java.util.function.Function;
 
 import edu.uky.cs.nil.sabre.Settings;
 import edu.uky.cs.nil.sabre.comp.CompiledProblem;
@@ -74,7 +74,7 @@ public class RepeatedNodeHeuristic implements ProgressionCost {
 	public final ProgressionCost parent;
 	
 	/** A hashtable to record the temporal level at which nodes were visited */
-	private final HashMap<Object, Integer> nodes = new HashMap<>();
+	private final NodeTable nodes = new NodeTable();
 	
 	/**
 	 * Constructs a new repeated node heuristic.
@@ -93,18 +93,36 @@ public class RepeatedNodeHeuristic implements ProgressionCost {
 	
 	@Override
 	public <N> void initialize(ProgressionNode<N> root) {
+		parent.initialize(root);
 		nodes.clear();
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * This function keeps the temporal level recorded for every node which
+	 * was not discarded, so nodes visited before reclaiming are still not
+	 * repeated afterward.
+	 */
+	@Override
+	public <N> void reclaim(Function<N, N> map) {
+		parent.reclaim(map);
+		nodes.reclaim(map);
+	}
+	
 	@Override
 	public <N> double evaluate(ProgressionNode<N> node) {
 		int temporal = node.getTemporalOffset() + node.getTemporalDepth();
-		Integer visited = nodes.get(node.getNode());
-		if(visited == null || temporal < visited) {
+		if(temporal < nodes.get(node.getNode(), Integer.MAX_VALUE)) {
 			nodes.put(node.getNode(), temporal);
 			return parent.evaluate(node);
 		}
 		else
 			return Double.POSITIVE_INFINITY;
 	}
+	
+	@Override
+	public boolean isIntegral() {
+		return parent.isIntegral();
+	}
 }
\ No newline at end of file
@@ -35,6 +35,35 @@ class SearchNode<N> implements ProgressionNode<N> {
 	/** The node's {@link ProgressionSearch#heuristic heuristic} value */
 	private double heuristic;
 	
+	/**
+	 * The node's position in the {@link SearchQueue search queue} it was most
+	 * recently added to, or -1 if it has not been added to a queue
+	 */
+	int index = -1;
+	
+	/**
+	 * The group the node was filed under in the {@link SearchQueue search
+	 * queue} it was most recently added to, for queues which group nodes by
+	 * their priority, such as a {@link BucketQueue bucket queue} or {@link
+	 * FocalQueue focal queue}
+	 */
+	long group = 0;
+	
+	/**
+	 * Whether this node's heuristic value is an estimate copied from its
+	 * parent which has not yet been evaluated; see {@link
+	 * ProgressionSearch#deferred}
+	 */
+	boolean deferred = false;
+	
+	/**
+	 * Whether this node's heuristic was {@link #deferred deferred} before the
+	 * {@link ProgressionSearch#explain(SearchNode) branches that explain it}
+	 * were generated, so that they should be generated once its heuristic has
+	 * been evaluated
+	 */
+	boolean unexplained = false;
+	
 	/**
 	 * This constructor should be used only by {@link SearchRoot search root
 	 * nodes}.
@@ -54,7 +83,7 @@ class SearchNode<N> implements ProgressionNode<N> {
 	 * @param node the search space node this search node will refer to
 	 * @param temporal the temporal depth of this search node
 	 */
-	private SearchNode(SearchRoot<N> root, N node, int temporal) {
+	SearchNode(SearchRoot<N> root, N node, int temporal) {
 		this.root = root;
 		this.node = node;
 		this.temporal = temporal;
@@ -186,11 +215,19 @@ class SearchNode<N> implements ProgressionNode<N> {
 	 * 
 	 * @return the node's parents
 	 */
+	@SuppressWarnings("unchecked")
 	public Iterable<SearchNode<N>> getParents() {
-		if(getTemporalDepth() > 0)
-			return new ArrayIterable<>(parents(this, getSpace().getParents(getNode()).iterator(), 0));
-		else
+		if(getTemporalDepth() == 0)
 			return new ArrayIterable<>();
+		else if(getSpace() instanceof LongProgressionSpace) {
+			long parent = ((LongProgressionSpace) getSpace()).getParent((Long) getNode());
+			if(parent == LongProgressionSpace.NONE)
+				return new ArrayIterable<>();
+			else
+				return new ArrayIterable<>(new SearchNode<>(root, (N) (Long) parent, getTemporalDepth() - 1));
+		}
+		else
+			return new ArrayIterable<>(parents(this, getSpace().getParents(getNode()).iterator(), 0));
 	}
 	
 	@SuppressWarnings("unchecked")
@@ -0,0 +1,81 @@
+package edu.uky.cs.nil.sabre.prog;
+
+import java.util.AbstractQueue;
+import java.util.Comparator;
+import java.util.function.Predicate;
+
+/**
+ * A min priority queue of {@link SearchNode search nodes}, used as the open
+ * list of a {@link ProgressionSearch progression search}. A search queue
+ * returns nodes in the order defined by {@link #comparator() its comparator},
+ * which is normally {@link ProgressionSearch#compare(SearchNode, SearchNode)
+ * the search's comparison method}. Each node records a position which a queue
+ * may use to find the node quickly, so a node can be {@link #remove(Object)
+ * removed} or {@link #update(SearchNode) moved after its priority changes}
+ * without scanning the whole queue.
+ * <p>
+ * Two kinds of queue are available. A {@link HeapQueue heap queue} works for
+ * any order. A {@link BucketQueue bucket queue} is faster, but only works
+ * when nodes are ordered first by the sum of their {@link SearchNode#getCost()
+ * cost} and {@link SearchNode#getHeuristic() heuristic}, then by heuristic,
+ * then by {@link SearchNode#getEpistemicDepth() epistemic depth}, and when
+ * those values are usually small integers. The two may return nodes which
+ * tie on those values in a different order, since a bucket queue returns
+ * them in the order they were added rather than using the comparator to
+ * break ties.
+ * 
+ * @author Stephen G. Ware
+ */
+abstract class SearchQueue extends AbstractQueue<SearchNode<?>> {
+	
+	/** Defines the order of the nodes */
+	private final Comparator<SearchNode<?>> comparator;
+	
+	/**
+	 * Constructs a new, empty search queue.
+	 * 
+	 * @param comparator the comparator which defines the order of the nodes,
+	 * with the lowest node first
+	 */
+	SearchQueue(Comparator<SearchNode<?>> comparator) {
+		this.comparator = comparator;
+	}
+	
+	/**
+	 * Returns the comparator which defines the order of the nodes.
+	 * 
+	 * @return the comparator
+	 */
+	public Comparator<SearchNode<?>> comparator() {
+		return comparator;
+	}
+	
+	/**
+	 * Creates a new, empty queue of the same kind as this queue which orders
+	 * its nodes the same way.
+	 * 
+	 * @return a new, empty queue
+	 */
+	public abstract SearchQueue create();
+	
+	/**
+	 * Moves a node to its correct position after its {@link
+	 * SearchNode#getCost() cost} or {@link SearchNode#getHeuristic()
+	 * heuristic} value has changed. If the node is not in the queue, this
+	 * method does nothing.
+	 * 
+	 * @param node the node whose priority changed
+	 */
+	public abstract void update(SearchNode<?> node);
+	
+	/**
+	 * Removes every node that does not pass a test and then restores the
+	 * order of the nodes that remain. The test may change the priority of
+	 * the nodes it keeps, so this method can be used to re-evaluate every
+	 * node in the queue at once. This takes linear time, which is faster than
+	 * {@link #update(SearchNode) updating} each node separately.
+	 * 
+	 * @param test returns true for each node that should be kept
+	 */
+	public abstract void reprioritize(Predicate<? super SearchNode<?>> test);
+}
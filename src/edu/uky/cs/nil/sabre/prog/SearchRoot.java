@@ -76,4 +76,28 @@ class SearchRoot<N> extends SearchNode<N> {
 			this.offset = trunk.getTemporalOffset() + trunk.getTemporalDepth();
 		this.epistemic = trunk.getEpistemicDepth() + 1;
 	}
+	
+	/**
+	 * Constructs a search root node whose fields are given explicitly. This
+	 * constructor is used when {@link ProgressionSearch#restore(java.io.InputStream)
+	 * restoring a search from a checkpoint}, when the trunk's search node no
+	 * longer exists.
+	 * 
+	 * @param search the search that generated this node
+	 * @param character the character whose utility this branch is trying to
+	 * improve, or null for the author
+	 * @param trunk the search space node for which this root is a branch, or
+	 * null for the author
+	 * @param branch the search space node that will be the root state
+	 * @param offset the temporal offset
+	 * @param epistemic the epistemic depth
+	 */
+	SearchRoot(ProgressionSearch search, Character character, N trunk, N branch, int offset, int epistemic) {
+		super(branch);
+		this.search = search;
+		this.character = character;
+		this.trunk = trunk;
+		this.offset = offset;
+		this.epistemic = epistemic;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,503 @@
+package edu.uky.cs.nil.sabre.prog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import edu.uky.cs.nil.sabre.Character;
+import edu.uky.cs.nil.sabre.Utilities;
+import edu.uky.cs.nil.sabre.comp.CompiledAction;
+import edu.uky.cs.nil.sabre.comp.CompiledFluent;
+import edu.uky.cs.nil.sabre.comp.CompiledProblem;
+import edu.uky.cs.nil.sabre.logic.Value;
+import edu.uky.cs.nil.sabre.util.MemoryBudget;
+
+/**
+ * A transposition table detects when a {@link ProgressionSearch progression
+ * search} reaches the same state by more than one path. A {@link
+ * ProgressionSpace search space} like a {@link
+ * edu.uky.cs.nil.sabre.ptree.ProgressionTree progression tree} makes no
+ * attempt to recognize duplicate states, so when two sequences of actions
+ * commute (for example, two characters walking to different places in either
+ * order), the same state appears in two places in the space and everything
+ * below it is generated, evaluated, and explained twice.
+ * <p>
+ * States are identified by the {@link Value value} of every {@link
+ * CompiledFluent compiled fluent} in {@link CompiledProblem#fluents the
+ * problem}. Because a compiled problem represents what characters believe,
+ * and what they believe others believe, as fluents of their own, this
+ * includes every nested belief the problem can ever ask about. The table
+ * does not keep those values; each entry is filed under a 64-bit {@link
+ * RecentStates#getHash(int) hash} of the state, and when an entry is found,
+ * the two states are compared fluent by fluent in the space before the entry
+ * is used, so states whose hashes collide are never mistaken for each other.
+ * States are read through {@link RecentStates a record of recent states}, so
+ * usually only the fluents that changed since a nearby state are looked up.
+ * The table is used in two ways:
+ * <ul>
+ * <li>When a non-root {@link SearchNode search node} is about to be visited,
+ * the table checks whether another node under the same {@link SearchRoot
+ * root object} with the same state has already been visited at the same or a
+ * lower temporal distance (the sum of {@link
+ * SearchNode#getTemporalOffset() temporal offset} and {@link
+ * SearchNode#getTemporalDepth() temporal depth}). If so, and if every action
+ * on the path to that other node is {@link ProgressionSpace#isExplained(Object,
+ * Character) explained} for its consenting characters, the new node is
+ * pruned, since everything reachable from it is also reachable from the
+ * other node. Nodes whose paths are not yet explained are never used to
+ * prune, because the path to the new node might be explainable when theirs
+ * is not. Nodes are only compared with nodes under the same root object.
+ * Each root is the start of one search for one purpose (the author's plan,
+ * or one character's explanation of one action from one trunk), with its
+ * own temporal offset and epistemic depth, so a node is only pruned in favor
+ * of one that serves the same purpose within the same limits, and pruning
+ * can never cut off the search for a different explanation.</li>
+ * <li>When a {@link SearchRoot root} created to explain an action for some
+ * character is about to be visited, the table checks whether a root for the
+ * same character, in the same state, starting from the same utility, has
+ * already been explained. If so, the other root's {@link
+ * ProgressionSpace#getExplanation(Object, Character) explanation} is
+ * replayed from the new root (along with the explanations of any actions it
+ * contains for other characters), which explains the new root without
+ * searching for it. Explanations are only shared with roots whose temporal
+ * offset and epistemic depth are no greater than the other root's, so that a
+ * replayed explanation never exceeds the search's limits.</li>
+ * </ul>
+ * The table has a fixed number of slots, and each entry can only go in one
+ * slot, chosen by its key. A new entry simply replaces whatever was in its
+ * slot, so the table never grows past {@link #CAPACITY} entries (or fewer,
+ * if {@link ProgressionSpace#getBudget() the space's memory budget} is
+ * small) and forgetting an entry only means a duplicate may go unnoticed.
+ * The table's memory, including the search nodes its entries keep, is
+ * charged to the space's budget. If the budget does not have enough memory
+ * left when the table is first used, the table is not created and no
+ * duplicates are detected.
+ * <p>
+ * The table is not included in {@link
+ * ProgressionSearch#checkpoint(java.io.OutputStream) checkpoints}; a restored
+ * search starts with an empty table.
+ * 
+ * @author Stephen G. Ware
+ */
+final class TranspositionTable {
+	
+	/** The largest number of entries in each part of the table */
+	public static final int CAPACITY = 1 << 16;
+	
+	/**
+	 * An estimate of the number of bytes used by one entry, counting its key,
+	 * its reference to a search node, and the search node it keeps from being
+	 * discarded
+	 */
+	private static final long ENTRY_SIZE = 80;
+	
+	/**
+	 * The table may use no more than this fraction of a limited memory
+	 * budget
+	 */
+	private static final int BUDGET_FRACTION = 64;
+	
+	/** The search this table belongs to */
+	private final ProgressionSearch search;
+	
+	/** The memory budget the table is charged to */
+	private final MemoryBudget budget;
+	
+	/** The number of slots in each part of the table (a power of 2) */
+	private final int capacity;
+	
+	/**
+	 * The hash of each node's state, combined with its root, or 0 for empty
+	 * slots; this array is not allocated until the table is first used
+	 */
+	private long[] keys;
+	
+	/**
+	 * The search node visited in each slot's state with the lowest temporal
+	 * distance
+	 */
+	private SearchNode<?>[] nodes;
+	
+	/**
+	 * The hash of each root's state, combined with its character and starting
+	 * utility, or 0 for empty slots
+	 */
+	private long[] rootKeys;
+	
+	/** The root node visited in each slot's state */
+	private SearchRoot<?>[] roots;
+	
+	/**
+	 * Whether the budget did not have enough memory left when the table was
+	 * first used, so the table was not created
+	 */
+	private boolean disabled = false;
+	
+	/** The fluent values of recently read states */
+	private final RecentStates states;
+	
+	/**
+	 * The fluents which may be different between a state in the table and
+	 * the state being checked
+	 */
+	private final ArrayList<CompiledFluent> changed = new ArrayList<>();
+	
+	/**
+	 * Constructs a new, empty transposition table.
+	 * 
+	 * @param search the search this table belongs to
+	 */
+	TranspositionTable(ProgressionSearch search) {
+		this.search = search;
+		this.budget = search.space.getBudget();
+		int capacity = CAPACITY;
+		if(budget.size != MemoryBudget.UNLIMITED)
+			while(capacity > 1 && capacity * 2 * ENTRY_SIZE > budget.size / BUDGET_FRACTION)
+				capacity /= 2;
+		this.capacity = capacity;
+		this.states = new RecentStates(search.problem);
+	}
+	
+	@Override
+	public String toString() {
+		return "[Transposition Table: " + capacity + " entries]";
+	}
+	
+	/**
+	 * Removes every entry from the table. This method should be called
+	 * whenever the search starts over.
+	 */
+	public void clear() {
+		if(keys != null) {
+			Arrays.fill(keys, 0);
+			Arrays.fill(nodes, null);
+			Arrays.fill(rootKeys, 0);
+			Arrays.fill(roots, null);
+		}
+		states.clear();
+	}
+	
+	/**
+	 * Checks whether a {@link SearchNode search node} that is about to be
+	 * visited is a duplicate of a node that has already been visited, and
+	 * records it in the table if it is not. If the node is a root, this method
+	 * first tries to share an explanation with it.
+	 * 
+	 * @param <N> the type of object used to represent a node in the search
+	 * space
+	 * @param node the search node that is about to be visited
+	 * @return true if the node should be pruned, false otherwise
+	 */
+	@SuppressWarnings("unchecked")
+	public <N> boolean prune(SearchNode<N> node) {
+		if(!allocate())
+			return false;
+		if(node == node.root)
+			return node.getEpistemicDepth() > 0 && share((SearchRoot<N>) node) && search.explanationPruning;
+		int slot = states.set(space(), node.getNode());
+		long key = mix(states.getHash(slot), System.identityHashCode(node.root));
+		int index = index(key);
+		SearchNode<N> visited = keys[index] == key ? (SearchNode<N>) nodes[index] : null;
+		int distance = node.getTemporalOffset() + node.getTemporalDepth();
+		if(visited != null && visited.root == node.root && equals(visited.getNode(), node.getNode(), slot)) {
+			int other = visited.getTemporalOffset() + visited.getTemporalDepth();
+			if(!visited.node.equals(node.node) && other <= distance && isExplained(visited))
+				return true;
+			else if(other < distance)
+				return false;
+		}
+		keys[index] = key;
+		nodes[index] = node;
+		return false;
+	}
+	
+	/**
+	 * Creates the table the first time it is used and charges its memory to
+	 * the budget. If the budget does not have enough memory left, the table
+	 * is never created.
+	 * 
+	 * @return true if the table exists, or false if it could not be created
+	 */
+	private final boolean allocate() {
+		if(keys != null)
+			return true;
+		else if(disabled)
+			return false;
+		long bytes = capacity * 2 * ENTRY_SIZE;
+		if(budget.getRemaining() < bytes) {
+			disabled = true;
+			return false;
+		}
+		budget.reduce(bytes);
+		keys = new long[capacity];
+		nodes = new SearchNode<?>[capacity];
+		rootKeys = new long[capacity];
+		roots = new SearchRoot<?>[capacity];
+		return true;
+	}
+	
+	/**
+	 * Explains a root node by replaying the explanation of an equivalent
+	 * root, if one has been found. If no equivalent root has been explained
+	 * yet, the root is recorded so that its explanation can be shared later.
+	 * Two roots are equivalent if they are for the same character, they are
+	 * in the same state, and the character's utility before the action being
+	 * explained was the same.
+	 * 
+	 * @param <N> the type of object used to represent a node in the search
+	 * space
+	 * @param root a root node for some character
+	 * @return true if the root was explained by this method
+	 */
+	@SuppressWarnings("unchecked")
+	private final <N> boolean share(SearchRoot<N> root) {
+		if(root.isExplained())
+			return false;
+		ProgressionSpace<N> space = space();
+		N before = parent(root.node);
+		if(before == null)
+			return false;
+		Value utility = utility(before, root.character);
+		int slot = states.set(space, root.node);
+		long key = mix(mix(states.getHash(slot), root.character == null ? 0 : root.character.hashCode() + 1), utility.hashCode());
+		int index = index(key);
+		SearchRoot<N> other = rootKeys[index] == key ? (SearchRoot<N>) roots[index] : null;
+		if(other != null && !isEquivalent(other, root, utility, slot))
+			other = null;
+		if(other != null && !other.node.equals(root.node) && other.isExplained() && fits(root, other))
+			return replay(other.node, root.node, root.character) && root.isExplained();
+		else if(other == null || (!other.isExplained() && fits(root, other))) {
+			rootKeys[index] = key;
+			roots[index] = root;
+		}
+		return false;
+	}
+	
+	/**
+	 * Tests whether a root in the table is equivalent to a new root, as
+	 * defined by {@link #share(SearchRoot)}.
+	 * 
+	 * @param <N> the type of object used to represent a node in the search
+	 * space
+	 * @param other the root in the table
+	 * @param root the new root
+	 * @param utility the new root's character's utility before its action
+	 * @param slot the {@link RecentStates recent state} slot where the new
+	 * root's state was read
+	 * @return true if the roots are equivalent
+	 */
+	private final <N> boolean isEquivalent(SearchRoot<N> other, SearchRoot<N> root, Value utility, int slot) {
+		if(!Utilities.equals(other.character, root.character))
+			return false;
+		N before = parent(other.node);
+		return before != null && utility(before, other.character).equals(utility) && equals(other.node, root.node, slot);
+	}
+	
+	/**
+	 * Tests whether an explanation found from one root will fit within the
+	 * search's limits when it is replayed from another root.
+	 * 
+	 * @param target the root the explanation would be replayed from
+	 * @param source the root the explanation was found from
+	 * @return true if the target's temporal offset and epistemic depth are no
+	 * greater than the source's
+	 */
+	private static final boolean fits(SearchRoot<?> target, SearchRoot<?> source) {
+		return target.offset <= source.offset && target.epistemic <= source.epistemic;
+	}
+	
+	/**
+	 * Takes the actions in the explanation of one search space node from
+	 * another node in the same state. For each action, the branches needed to
+	 * explain it for its other consenting characters are also replayed from
+	 * the matching branches of the source.
+	 * 
+	 * @param <N> the type of object used to represent a node in the search
+	 * space
+	 * @param source a node whose action is explained for the character
+	 * @param target a node in the same state as the source
+	 * @param character the character whose explanation will be replayed
+	 * @return true if every action in the explanation, and every explanation
+	 * it depends on, was replayed
+	 */
+	private final <N> boolean replay(N source, N target, Character character) {
+		ProgressionSpace<N> space = space();
+		N node = space.getExplanation(source, character);
+		if(node == null)
+			return false;
+		ArrayList<CompiledAction> plan = new ArrayList<>();
+		while(!node.equals(source)) {
+			N parent = parent(node);
+			if(parent == null)
+				return false;
+			plan.add(space.getAction(node));
+			node = parent;
+		}
+		for(int i=plan.size()-1; i>=0; i--) {
+			CompiledAction action = plan.get(i);
+			source = space.getChild(source, action);
+			target = space.getChild(target, action);
+			for(Character other : action.consenting) {
+				if(!Utilities.equals(other, character) && !space.isExplained(target, other)) {
+					N from = space.getBranch(source, other);
+					N to = space.getBranch(target, other);
+					if(from == null || to == null || !replay(from, to, other))
+						return false;
+				}
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Tests whether every action on the path from a search node's root to the
+	 * node is explained for all of its consenting characters other than the
+	 * root's character.
+	 * 
+	 * @param <N> the type of object used to represent a node in the search
+	 * space
+	 * @param node the search node
+	 * @return true if every action on the path is explained
+	 */
+	private final <N> boolean isExplained(SearchNode<N> node) {
+		if(search.space instanceof LongProgressionSpace)
+			return isExplained((LongProgressionSpace) search.space, (Long) node.getNode(), node.getTemporalDepth(), node.getCharacter());
+		ProgressionSpace<N> space = space();
+		N current = node.getNode();
+		for(int i=0; i<node.getTemporalDepth(); i++) {
+			CompiledAction action = space.getAction(current);
+			if(action == null)
+				return false;
+			for(Character other : action.consenting)
+				if(!Utilities.equals(other, node.getCharacter()) && !space.isExplained(current, other))
+					return false;
+			Iterator<N> parents = space.getParents(current).iterator();
+			if(!parents.hasNext())
+				return false;
+			current = parents.next();
+		}
+		return true;
+	}
+	
+	/**
+	 * Tests whether every action on a path is explained, as defined by {@link
+	 * #isExplained(SearchNode)}, by walking a {@link LongProgressionSpace
+	 * space whose nodes are longs} without boxing each node on the path.
+	 * 
+	 * @param space the search space
+	 * @param current the last node on the path
+	 * @param depth the number of actions on the path
+	 * @param character the character whose actions need not be explained
+	 * @return true if every action on the path is explained
+	 */
+	private static final boolean isExplained(LongProgressionSpace space, long current, int depth, Character character) {
+		for(int i=0; i<depth; i++) {
+			CompiledAction action = space.getAction(current);
+			if(action == null)
+				return false;
+			for(Character other : action.consenting)
+				if(!Utilities.equals(other, character) && !space.isExplained(current, other))
+					return false;
+			current = space.getParent(current);
+			if(current == LongProgressionSpace.NONE)
+				return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Tests whether the state represented by a search space node is the same
+	 * as the state of another node which was just {@link RecentStates#set(
+	 * ProgressionSpace, Object) read}. If the space can tell which fluents may
+	 * be different in the two states, only those are compared; otherwise,
+	 * every fluent is compared.
+	 * 
+	 * @param <N> the type of object used to represent a node in the search
+	 * space
+	 * @param other the search space node to compare
+	 * @param node the search space node that was just read
+	 * @param slot the slot where that node's state was read
+	 * @return true if every fluent has the same value in both states
+	 */
+	private final <N> boolean equals(N other, N node, int slot) {
+		ProgressionSpace<N> space = space();
+		Value[] values = states.getValues(slot);
+		changed.clear();
+		if(space.getChanges(other, node, changed)) {
+			for(CompiledFluent fluent : changed)
+				if(!space.getValue(other, fluent).equals(values[fluent.id]))
+					return false;
+		}
+		else {
+			CompiledProblem problem = search.problem;
+			for(int i=0; i<problem.fluents.size(); i++) {
+				CompiledFluent fluent = problem.fluents.get(i);
+				if(!space.getValue(other, fluent).equals(values[fluent.id]))
+					return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Combines a hash with another value to make a key for the table.
+	 * 
+	 * @param hash the hash
+	 * @param value the other value
+	 * @return the combined key
+	 */
+	private static final long mix(long hash, int value) {
+		return (hash ^ value) * 0x9E3779B97F4A7C15L;
+	}
+	
+	/**
+	 * Returns the slot in the table for a key.
+	 * 
+	 * @param key the key
+	 * @return the index of the key's slot
+	 */
+	private final int index(long key) {
+		return (int) (key ^ (key >>> 32)) & (capacity - 1);
+	}
+	
+	/**
+	 * Returns a character's utility in the state represented by a search space
+	 * node.
+	 * 
+	 * @param <N> the type of object used to represent a node in the search
+	 * space
+	 * @param node the search space node
+	 * @param character the character
+	 * @return the character's utility in that state
+	 */
+	private final <N> Value utility(N node, Character character) {
+		ProgressionSpace<N> space = space();
+		return search.problem.utilities.get(character).evaluate(f -> space.getValue(node, (CompiledFluent) f));
+	}
+	
+	/**
+	 * Returns the first {@link ProgressionSpace#getParents(Object) parent} of
+	 * a search space node, or null if it has none. When the space is a {@link
+	 * LongProgressionSpace space whose nodes are longs}, the parent is read
+	 * directly rather than through an iterator.
+	 * 
+	 * @param <N> the type of object used to represent a node in the search
+	 * space
+	 * @param node the search space node
+	 * @return the node's parent, or null if it has none
+	 */
+	@SuppressWarnings("unchecked")
+	private final <N> N parent(N node) {
+		if(search.space instanceof LongProgressionSpace) {
+			long parent = ((LongProgressionSpace) search.space).getParent((Long) node);
+			return parent == LongProgressionSpace.NONE ? null : (N) (Long) parent;
+		}
+		Iterator<N> parents = this.<N>space().getParents(node).iterator();
+		return parents.hasNext() ? parents.next() : null;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private final <N> ProgressionSpace<N> space() {
+		return (ProgressionSpace<N>) search.space;
+	}
+}
\ No newline at end of file
@@ -1,5 +1,7 @@
 package edu.uky.cs.nil.sabre.prog;
 
+import java.util.function.Function;
+
 import edu.uky.cs.nil.sabre.Settings;
 import edu.uky.cs.nil.sabre.comp.CompiledProblem;
 import edu.uky.cs.nil.sabre.util.Worker.Status;
@@ -86,8 +88,28 @@ public class WeightedCost implements ProgressionCost {
 		return toString(cost, weight);
 	}
 	
+	@Override
+	public <N> void initialize(ProgressionNode<N> root) {
+		cost.initialize(root);
+	}
+	
+	@Override
+	public <N> void reclaim(Function<N, N> map) {
+		cost.reclaim(map);
+	}
+	
 	@Override
 	public <N> double evaluate(ProgressionNode<N> node) {
 		return weight * cost.evaluate(node);
 	}
+	
+	@Override
+	public boolean isIntegral() {
+		return cost.isIntegral() && weight == Math.rint(weight);
+	}
+	
+	@Override
+	public boolean isStateBased() {
+		return cost.isStateBased();
+	}
 }
\ No newline at end of file
@@ -0,0 +1,164 @@
+package edu.uky.cs.nil.sabre.ptree;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+
+import edu.uky.cs.nil.sabre.Settings;
+import edu.uky.cs.nil.sabre.util.BigArrayLong;
+import edu.uky.cs.nil.sabre.util.MemoryBudget;
+
+/**
+ * A small cache of the {@link ProgressionTree#getBranch(long, Character)
+ * branches} of nodes in a {@link ProgressionTree progression tree}. A
+ * character's {@link ProgressionTree#getBeliefs(long, Character) beliefs} in
+ * a state are remembered in the node itself, but finding a branch also means
+ * finding the child of those beliefs for the node's action, evaluating the
+ * action's precondition if that child does not exist yet, and walking the
+ * branch's list of trunks to check whether the node is already in it. A
+ * search asks for the same branches over and over as it explains actions and
+ * checks whether they are explained, so this cache remembers the answer for
+ * each node and character, including the answer that the branch does not
+ * exist because the character does not believe the action is possible.
+ * <p>
+ * The cache is direct-mapped: each node and character pair has exactly one
+ * slot, and a new entry simply replaces whatever was in its slot. This means
+ * the cache never grows past {@link #CAPACITY} entries (or less, if the
+ * tree's memory budget is small) and never needs to be rehashed. Because the
+ * tree can always find a branch again, the cache can be discarded at any
+ * time.
+ * 
+ * @author Stephen G. Ware
+ */
+final class BranchCache implements Serializable {
+	
+	/** Serial version ID */
+	private static final long serialVersionUID = Settings.VERSION_UID;
+	
+	/** The largest number of entries the cache will hold */
+	public static final long CAPACITY = 65536;
+	
+	/**
+	 * The value returned by {@link #find(long, int)} when the cache does not
+	 * have an entry for a node and character
+	 */
+	public static final long MISSING = -2;
+	
+	/** The memory budget the cache's table is charged to */
+	private final MemoryBudget budget;
+	
+	/** The number of characters, used to combine a node and character */
+	private final int characters;
+	
+	/** The number of entries in the table (a power of 2) */
+	private final long capacity;
+	
+	/**
+	 * Pairs of slots holding one more than an entry's key (so that 0 means
+	 * the entry is empty) and the entry's branch; this array is not allocated
+	 * until the first entry is {@link #put(long, int, long) put}
+	 */
+	private transient BigArrayLong table;
+	
+	/**
+	 * Constructs a new, empty branch cache.
+	 * 
+	 * @param budget the memory budget the cache's table will reduce
+	 * @param chunk the largest chunk size the table may use, which limits the
+	 * number of entries
+	 * @param characters the number of characters in the problem
+	 */
+	public BranchCache(MemoryBudget budget, long chunk, int characters) {
+		this.budget = budget;
+		this.characters = characters;
+		long capacity = CAPACITY;
+		while(capacity > 1 && capacity * 2 * Long.BYTES > chunk)
+			capacity /= 2;
+		this.capacity = capacity;
+		clear();
+	}
+	
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		clear();
+	}
+	
+	@Override
+	public String toString() {
+		return "[Branch Cache: " + capacity + " entries]";
+	}
+	
+	/**
+	 * Returns the cached branch of a node for a character.
+	 * 
+	 * @param node the ID number of the trunk node
+	 * @param character the {@link edu.uky.cs.nil.sabre.Entity#id ID number} of
+	 * the character
+	 * @return the ID number of the branch, -1 if the branch is known not to
+	 * exist, or {@link #MISSING} if the cache has no entry
+	 */
+	public long find(long node, int character) {
+		if(table == null)
+			return MISSING;
+		long key = key(node, character);
+		long slot = slot(key);
+		if(table.get(slot) == key + 1)
+			return table.get(slot + 1);
+		else
+			return MISSING;
+	}
+	
+	/**
+	 * Records the branch of a node for a character, replacing any other entry
+	 * in the same slot.
+	 * 
+	 * @param node the ID number of the trunk node
+	 * @param character the {@link edu.uky.cs.nil.sabre.Entity#id ID number} of
+	 * the character
+	 * @param branch the ID number of the branch, or -1 if the branch does not
+	 * exist
+	 */
+	public void put(long node, int character, long branch) {
+		if(table == null) {
+			table = new BigArrayLong(capacity * 2 * Long.BYTES, budget);
+			table.set((capacity * 2) - 1, 0);
+		}
+		long key = key(node, character);
+		long slot = slot(key);
+		table.set(slot, key + 1);
+		table.set(slot + 1, branch);
+	}
+	
+	/**
+	 * Removes every entry from the cache and {@link BigArrayLong#release()
+	 * returns the memory} it used to the budget. This method should be called
+	 * whenever the tree's node ID numbers are reused.
+	 */
+	public void clear() {
+		if(table != null)
+			table.release();
+		table = null;
+	}
+	
+	/**
+	 * Combines a node and a character into a single key.
+	 * 
+	 * @param node the ID number of the node
+	 * @param character the ID number of the character
+	 * @return the key
+	 */
+	private final long key(long node, int character) {
+		return (node * characters) + character;
+	}
+	
+	/**
+	 * Returns the index in {@link #table} of the slot for a key.
+	 * 
+	 * @param key the key
+	 * @return the index of the first of the slot's two {@code long}s
+	 */
+	private final long slot(long key) {
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return ((hash ^ (hash >>> 32)) & (capacity - 1)) * 2;
+	}
+}
@@ -0,0 +1,272 @@
+package edu.uky.cs.nil.sabre.ptree;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+
+import edu.uky.cs.nil.sabre.Settings;
+import edu.uky.cs.nil.sabre.comp.CompiledEvent;
+import edu.uky.cs.nil.sabre.util.BigArrayLong;
+import edu.uky.cs.nil.sabre.util.MemoryBudget;
+
+/**
+ * A hash index of the children of nodes with many children in a {@link
+ * ProgressionTree progression tree}. Each node in a progression tree keeps its
+ * children in a linked list, so finding the child for a given event means
+ * walking the list and comparing event IDs one at a time. This is fine for
+ * nodes with few children, but when hundreds of actions apply in a state every
+ * lookup becomes linear in the number of children.
+ * <p>
+ * Once a walk through a node's list passes {@link #THRESHOLD} children without
+ * finding the one it wants, the tree adds the node to this index. Each indexed
+ * node gets its own open-addressed hash table, stored in one shared {@link
+ * BigArrayLong big array}, which maps {@link CompiledEvent#getID() event IDs}
+ * to child IDs. A table is laid out as its capacity, its number of entries,
+ * and then one pair of slots per entry (the event ID and one more than the
+ * child ID, so that 0 means the slot is empty). Tables are kept at most half
+ * full; when a table fills, its entries are moved to a table twice as large
+ * and the old table is released. Released tables are kept in one free list
+ * per capacity (linked through their count slots), and a new table reuses a
+ * released table of the same capacity before any space is added to the end
+ * of the array, so the memory charged to the budget for a table that has
+ * grown is used again rather than lost. Nothing is ever removed from the
+ * index until it is {@link #clear() cleared}.
+ * <p>
+ * The linked lists are still maintained for every node, so the index is only
+ * an accelerator and can be discarded and rebuilt at any time.
+ * 
+ * @author Stephen G. Ware
+ */
+final class ChildIndex implements Serializable {
+	
+	/** Serial version ID */
+	private static final long serialVersionUID = Settings.VERSION_UID;
+	
+	/**
+	 * The number of children a walk through a node's linked list may pass
+	 * before the node is added to the index
+	 */
+	public static final int THRESHOLD = 8;
+	
+	/** The number of entries in a new table (must be a power of 2) */
+	private static final long INITIAL_CAPACITY = 4 * THRESHOLD;
+	
+	/** The number of header slots before the first entry in each table */
+	private static final long HEADER = 2;
+	
+	/** The chunk size used by {@link #offsets the table of offsets} */
+	private static final long OFFSETS_CHUNK_SIZE = 65536L * Long.BYTES;
+	
+	/** The chunk size used by {@link #tables the hash tables} */
+	private static final long TABLES_CHUNK_SIZE = 131072L * Long.BYTES;
+	
+	/** The memory budget that new chunks are charged to */
+	private final MemoryBudget budget;
+	
+	/** The largest chunk size either big array may use */
+	private final long chunk;
+	
+	/**
+	 * Maps node ID numbers to one more than the offset of the node's table in
+	 * {@link #tables}, or 0 if the node is not indexed; this array is not
+	 * allocated until the first node is indexed
+	 */
+	private transient BigArrayLong offsets;
+	
+	/** Every hash table, one after another */
+	private transient BigArrayLong tables;
+	
+	/** The offset in {@link #tables} where the next table will be placed */
+	private transient long end;
+	
+	/**
+	 * For each capacity, indexed by its base 2 logarithm, one more than the
+	 * offset of the first released table with that capacity, or 0 if there
+	 * are none
+	 */
+	private transient long[] free;
+	
+	/**
+	 * Constructs a new, empty child index.
+	 * 
+	 * @param budget the memory budget that the index's big arrays will reduce
+	 * @param chunk the largest chunk size the index's big arrays may use
+	 */
+	public ChildIndex(MemoryBudget budget, long chunk) {
+		this.budget = budget;
+		this.chunk = chunk;
+		clear();
+	}
+	
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		clear();
+	}
+	
+	@Override
+	public String toString() {
+		return "[Child Index: " + end + " slots]";
+	}
+	
+	/**
+	 * Checks whether a node's children are in the index.
+	 * 
+	 * @param parent the ID number of a node
+	 * @return true if the node has been {@link #add(long) added} to the index
+	 */
+	public boolean contains(long parent) {
+		return offsets != null && parent < offsets.capacity() && offsets.get(parent) != 0;
+	}
+	
+	/**
+	 * Returns the ID number of the child that a given event leads to from an
+	 * indexed node. This method should only be called for nodes that the index
+	 * {@link #contains(long) contains}.
+	 * 
+	 * @param parent the ID number of an indexed node
+	 * @param event the {@link CompiledEvent#getID() ID number} of the event
+	 * @return the ID number of the child, or -1 if the node has no child for
+	 * that event
+	 */
+	public long find(long parent, long event) {
+		long offset = offsets.get(parent) - 1;
+		long mask = tables.get(offset) - 1;
+		long slot = hash(event) & mask;
+		long child = tables.get(offset + HEADER + (slot * 2) + 1);
+		while(child != 0) {
+			if(tables.get(offset + HEADER + (slot * 2)) == event)
+				return child - 1;
+			slot = (slot + 1) & mask;
+			child = tables.get(offset + HEADER + (slot * 2) + 1);
+		}
+		return -1;
+	}
+	
+	/**
+	 * Adds a node to the index by allocating an empty table for it. Its
+	 * existing children must then be {@link #put(long, long, long) put} into
+	 * the table.
+	 * 
+	 * @param parent the ID number of the node
+	 */
+	public void add(long parent) {
+		if(offsets == null) {
+			offsets = new BigArrayLong(Math.min(OFFSETS_CHUNK_SIZE, chunk), budget);
+			tables = new BigArrayLong(Math.min(TABLES_CHUNK_SIZE, chunk), budget);
+		}
+		offsets.set(parent, allocate(INITIAL_CAPACITY) + 1);
+	}
+	
+	/**
+	 * Records the child that a given event leads to from an indexed node,
+	 * moving the node's table to a larger one if it is half full. This method
+	 * should only be called for nodes that the index {@link #contains(long)
+	 * contains}, and only once per child.
+	 * 
+	 * @param parent the ID number of an indexed node
+	 * @param event the {@link CompiledEvent#getID() ID number} of the event
+	 * @param child the ID number of the child
+	 */
+	public void put(long parent, long event, long child) {
+		long offset = offsets.get(parent) - 1;
+		long capacity = tables.get(offset);
+		long count = tables.get(offset + 1);
+		if((count + 1) * 2 > capacity) {
+			long larger = allocate(capacity * 2);
+			for(long slot=0; slot<capacity; slot++) {
+				long value = tables.get(offset + HEADER + (slot * 2) + 1);
+				if(value != 0)
+					insert(larger, tables.get(offset + HEADER + (slot * 2)), value);
+			}
+			release(offset, capacity);
+			offset = larger;
+			offsets.set(parent, offset + 1);
+		}
+		insert(offset, event, child + 1);
+	}
+	
+	/**
+	 * Removes every node from the index and {@link BigArrayLong#release()
+	 * returns the memory} it used to the budget. This method should be
+	 * called whenever the tree's node ID numbers are reused.
+	 */
+	public void clear() {
+		if(offsets != null) {
+			offsets.release();
+			tables.release();
+		}
+		offsets = null;
+		tables = null;
+		end = 0;
+		free = new long[Long.SIZE];
+	}
+	
+	/**
+	 * Reserves space for a new, empty table, reusing a {@link #release(long,
+	 * long) released} table with the same capacity if there is one, or else
+	 * at the end of {@link #tables}.
+	 * 
+	 * @param capacity the number of entries the table can hold
+	 * @return the offset of the new table
+	 */
+	private final long allocate(long capacity) {
+		int size = Long.numberOfTrailingZeros(capacity);
+		if(free[size] != 0) {
+			long offset = free[size] - 1;
+			free[size] = tables.get(offset + 1);
+			for(long slot=offset+HEADER; slot<offset+HEADER+(capacity*2); slot++)
+				tables.set(slot, 0);
+			tables.set(offset + 1, 0);
+			return offset;
+		}
+		long offset = end;
+		end += HEADER + (capacity * 2);
+		tables.set(end - 1, 0);
+		tables.set(offset, capacity);
+		tables.set(offset + 1, 0);
+		return offset;
+	}
+	
+	/**
+	 * Adds a table which is no longer used to the free list for its capacity,
+	 * so that its space can be reused by {@link #allocate(long)}.
+	 * 
+	 * @param offset the offset of the table
+	 * @param capacity the number of entries the table can hold
+	 */
+	private final void release(long offset, long capacity) {
+		int size = Long.numberOfTrailingZeros(capacity);
+		tables.set(offset + 1, free[size]);
+		free[size] = offset + 1;
+	}
+	
+	/**
+	 * Stores an entry in the first empty slot for its event, without checking
+	 * whether the table has room.
+	 * 
+	 * @param offset the offset of the table
+	 * @param event the event ID
+	 * @param value one more than the child ID
+	 */
+	private final void insert(long offset, long event, long value) {
+		long mask = tables.get(offset) - 1;
+		long slot = hash(event) & mask;
+		while(tables.get(offset + HEADER + (slot * 2) + 1) != 0)
+			slot = (slot + 1) & mask;
+		tables.set(offset + HEADER + (slot * 2), event);
+		tables.set(offset + HEADER + (slot * 2) + 1, value);
+		tables.set(offset + 1, tables.get(offset + 1) + 1);
+	}
+	
+	/**
+	 * Spreads event ID numbers, which are small and consecutive, across the
+	 * bits of a {@code long} so that they can be masked to a slot.
+	 * 
+	 * @param event the event ID
+	 * @return a hash of the event ID
+	 */
+	private static final long hash(long event) {
+		long hash = event * 0x9E3779B97F4A7C15L;
+		return hash ^ (hash >>> 32);
+	}
+}
\ No newline at end of file
@@ -1,12 +1,21 @@
 package edu.uky.cs.nil.sabre.ptree;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Map;
 
 import edu.uky.cs.nil.sabre.Character;
+import edu.uky.cs.nil.sabre.Entity;
+import edu.uky.cs.nil.sabre.Exceptions;
+import edu.uky.cs.nil.sabre.Number;
 import edu.uky.cs.nil.sabre.Settings;
 import edu.uky.cs.nil.sabre.Signature;
+import edu.uky.cs.nil.sabre.Universe;
 import edu.uky.cs.nil.sabre.Utilities;
 import edu.uky.cs.nil.sabre.comp.CompiledAction;
 import edu.uky.cs.nil.sabre.comp.CompiledEvent;
@@ -20,6 +29,7 @@ import edu.uky.cs.nil.sabre.logic.False;
 import edu.uky.cs.nil.sabre.logic.Parameter;
 import edu.uky.cs.nil.sabre.logic.Precondition;
 import edu.uky.cs.nil.sabre.logic.True;
+import edu.uky.cs.nil.sabre.logic.Unknown;
 import edu.uky.cs.nil.sabre.logic.Value;
 import edu.uky.cs.nil.sabre.util.ImmutableSet;
 
@@ -27,6 +37,12 @@ import edu.uky.cs.nil.sabre.util.ImmutableSet;
  * A list of {@link CompiledEvent compiled events} (including dummy belief
  * update actions) and their effect for use in a {@link ProgressionTree
  * progression tree}.
+ * <p>
+ * Most events affect only a few of the problem's fluents, so effects are
+ * stored sparsely: each event has a short, sorted list of the fluents it
+ * affects and its effect on each. The list also keeps the reverse index, from
+ * each fluent to the events that affect it, so that fluents no event can
+ * change can be recognized without searching the tree.
  * 
  * @author Stephen G. Ware
  */
@@ -83,6 +99,21 @@ final class EventList implements Serializable {
 	/** Serial version ID */
 	private static final long serialVersionUID = Settings.VERSION_UID;
 	
+	/** Tag for {@link Unknown#UNKNOWN} in a checkpoint */
+	private static final byte VALUE_UNKNOWN = 0;
+	
+	/** Tag for {@link False#FALSE} in a checkpoint */
+	private static final byte VALUE_FALSE = 1;
+	
+	/** Tag for {@link True#TRUE} in a checkpoint */
+	private static final byte VALUE_TRUE = 2;
+	
+	/** Tag for a {@link Number number} in a checkpoint */
+	private static final byte VALUE_NUMBER = 3;
+	
+	/** Tag for an {@link Entity entity} in a checkpoint */
+	private static final byte VALUE_ENTITY = 4;
+	
 	/** A list of all events by ID, including dummy belief update events */
 	private final ArrayList<CompiledEvent> events;
 	
@@ -93,11 +124,53 @@ final class EventList implements Serializable {
 	private final UpdateKey key = new UpdateKey(null, null, null);
 	
 	/**
-	 * A table of each event's effect for each fluent; the first array is
-	 * indexed by {@link CompiledEvent#getID() the event ID}, and the second
-	 * array is indexed by {@link CompiledFluent#id the fluent ID}
+	 * The number of events defined in the {@link CompiledProblem problem};
+	 * every event with an ID number at or above this number is a dummy belief
+	 * update action
+	 */
+	private final int defined;
+	
+	/**
+	 * For each event defined in the problem (by {@link CompiledEvent#getID()
+	 * event ID}), the index in {@link #fluents} and {@link #effects} of the
+	 * first fluent that event affects; the entries for event {@code i} run
+	 * from {@code offsets[i]} up to {@code offsets[i + 1]}
 	 */
-	private final Clause<Effect>[][] effects;
+	private final int[] offsets;
+	
+	/**
+	 * The {@link CompiledFluent#id ID numbers} of the fluents each event
+	 * affects, grouped by event as described by {@link #offsets} and in
+	 * ascending order within each group
+	 */
+	private final int[] fluents;
+	
+	/**
+	 * The effects of each event on each fluent it affects, in the same order
+	 * as {@link #fluents}
+	 */
+	private final Clause<Effect>[] effects;
+	
+	/**
+	 * For each fluent (by {@link CompiledFluent#id fluent ID}), the index in
+	 * {@link #affecting} of the first event that affects it; the entries for
+	 * fluent {@code i} run from {@code starts[i]} up to {@code starts[i + 1]}
+	 */
+	private final int[] starts;
+	
+	/**
+	 * The {@link CompiledEvent#getID() ID numbers} of the events defined in
+	 * the problem that affect each fluent, grouped by fluent as described by
+	 * {@link #starts} and in ascending order within each group
+	 */
+	private final int[] affecting;
+	
+	/**
+	 * Whether any dummy belief update action has been {@link
+	 * #getUpdate(Character, CompiledFluent, Value) created} for each fluent,
+	 * indexed by {@link CompiledFluent#id fluent ID}
+	 */
+	private final boolean[] updated;
 	
 	/**
 	 * Constructs a new event list.
@@ -110,15 +183,54 @@ final class EventList implements Serializable {
 		for(CompiledEvent event : problem.events)
 			this.events.add(event);
 		this.updates = new HashMap<>(this.events.size() - problem.events.size());
-		this.effects = new Clause[problem.events.size()][problem.fluents.size()];
-		for(CompiledEvent event : problem.events)
-			for(CompiledFluent fluent : problem.fluents)
-				this.effects[event.getID()][fluent.id] = effect(event, fluent);
+		this.defined = problem.events.size();
+		int[][] affected = new int[defined][];
+		this.offsets = new int[defined + 1];
+		this.starts = new int[problem.fluents.size() + 1];
+		for(CompiledEvent event : problem.events) {
+			affected[event.getID()] = fluents(event);
+			offsets[event.getID() + 1] = affected[event.getID()].length;
+			for(int fluent : affected[event.getID()])
+				starts[fluent + 1]++;
+		}
+		for(int i=0; i<defined; i++)
+			offsets[i + 1] += offsets[i];
+		for(int i=0; i<problem.fluents.size(); i++)
+			starts[i + 1] += starts[i];
+		this.fluents = new int[offsets[defined]];
+		this.effects = new Clause[offsets[defined]];
+		this.affecting = new int[offsets[defined]];
+		int[] next = Arrays.copyOf(starts, problem.fluents.size());
+		for(int id=0; id<defined; id++) {
+			CompiledEvent event = problem.events.get(id);
+			for(int i=0; i<affected[id].length; i++) {
+				int fluent = affected[id][i];
+				fluents[offsets[id] + i] = fluent;
+				effects[offsets[id] + i] = event.getEffect(problem.fluents.get(fluent));
+				affecting[next[fluent]++] = id;
+			}
+		}
+		this.updated = new boolean[problem.fluents.size()];
 	}
 	
-	private static final Clause<Effect> effect(CompiledEvent event, CompiledFluent fluent) {
-		Clause<Effect> effect = event.getEffect(fluent);
-		return effect.equals(Clause.EMPTY) ? null : effect;
+	/**
+	 * Returns the {@link CompiledFluent#id ID numbers} of every fluent an
+	 * event's effect can modify, in ascending order and without duplicates.
+	 * 
+	 * @param event the event
+	 * @return the ID numbers of the fluents the event affects
+	 */
+	private static final int[] fluents(CompiledEvent event) {
+		Clause<Effect> effect = event.getEffect();
+		int[] ids = new int[effect.size()];
+		for(int i=0; i<ids.length; i++)
+			ids[i] = ((CompiledFluent) effect.get(i).fluent).id;
+		Arrays.sort(ids);
+		int count = 0;
+		for(int i=0; i<ids.length; i++)
+			if(i == 0 || ids[i] != ids[i - 1])
+				ids[count++] = ids[i];
+		return Arrays.copyOf(ids, count);
 	}
 	
 	/**
@@ -157,6 +269,7 @@ final class EventList implements Serializable {
 			update = update(character, fluent, value);
 			events.add(update);
 			updates.put(new UpdateKey(character, fluent, value), update);
+			updated[fluent.id] = true;
 		}
 		return update;
 	}
@@ -189,11 +302,130 @@ final class EventList implements Serializable {
 	 * the event has no effects that modify that fluent
 	 */
 	public Clause<Effect> getEffect(CompiledEvent event, CompiledFluent fluent) {
-		if(event.getID() < effects.length)
-			return effects[event.getID()][fluent.id];
+		int id = event.getID();
+		if(id < defined) {
+			int index = Arrays.binarySearch(fluents, offsets[id], offsets[id + 1], fluent.id);
+			return index < 0 ? null : effects[index];
+		}
 		else if(event.getEffect().get(0).fluent.equals(fluent))
 			return event.getEffect();
 		else
 			return null;
 	}
+	
+	/**
+	 * Checks whether any event could ever modify a given fluent. A fluent is
+	 * unaffected if no event defined in the problem has an effect on it and
+	 * no dummy belief update action has been {@link
+	 * #getUpdate(Character, CompiledFluent, Value) created} for it, which
+	 * means the fluent still has the value it had in every initial state.
+	 * 
+	 * @param fluent the fluent
+	 * @return true if some event affects the fluent, false otherwise
+	 */
+	public boolean isAffected(CompiledFluent fluent) {
+		return starts[fluent.id + 1] > starts[fluent.id] || updated[fluent.id];
+	}
+	
+	/**
+	 * Writes the dummy belief update actions this list has {@link
+	 * #getUpdate(Character, CompiledFluent, Value) created} to a checkpoint, in
+	 * the order they were created. Each update is written as the ID numbers of
+	 * its character and fluent followed by {@link #write(Value, DataOutput) its
+	 * value}.
+	 * 
+	 * @param out the output to write to
+	 * @throws IOException if an error occurs while writing
+	 */
+	public void write(DataOutput out) throws IOException {
+		int first = defined;
+		UpdateKey[] keys = new UpdateKey[events.size() - first];
+		for(Map.Entry<UpdateKey, CompiledEvent> entry : updates.entrySet())
+			keys[entry.getValue().getID() - first] = entry.getKey();
+		out.writeInt(keys.length);
+		for(UpdateKey key : keys) {
+			out.writeInt(key.character.id);
+			out.writeInt(key.fluent.id);
+			write(key.value, out);
+		}
+	}
+	
+	/**
+	 * Discards all dummy belief update actions and re-creates the ones that
+	 * were {@link #write(DataOutput) written to a checkpoint}. Because they
+	 * are re-created in the same order, each will have the same {@link
+	 * CompiledEvent#getID() ID number} it had when the checkpoint was written,
+	 * so nodes which refer to them by ID remain valid.
+	 * 
+	 * @param in the input to read from
+	 * @param problem the problem whose characters, fluents, and entities the
+	 * updates refer to
+	 * @throws IOException if an error occurs while reading
+	 */
+	public void read(DataInput in, CompiledProblem problem) throws IOException {
+		events.subList(defined, events.size()).clear();
+		updates.clear();
+		Arrays.fill(updated, false);
+		int count = in.readInt();
+		for(int i=0; i<count; i++) {
+			Character character = problem.universe.characters.get(in.readInt());
+			CompiledFluent fluent = problem.fluents.get(in.readInt());
+			getUpdate(character, fluent, read(in, problem.universe));
+		}
+	}
+	
+	/**
+	 * Writes a {@link Value value} to a checkpoint as a one byte tag followed
+	 * by the number for {@link Number numbers} or the {@link Entity#id ID
+	 * number} for {@link Entity entities}. Values are written this way rather
+	 * than with Java serialization because entities are compared by identity,
+	 * so a deserialized entity would not be equal to the original.
+	 * 
+	 * @param value the value to write
+	 * @param out the output to write to
+	 * @throws IOException if an error occurs while writing
+	 */
+	static final void write(Value value, DataOutput out) throws IOException {
+		if(value instanceof Entity) {
+			out.writeByte(VALUE_ENTITY);
+			out.writeInt(((Entity) value).id);
+		}
+		else if(value instanceof Number) {
+			out.writeByte(VALUE_NUMBER);
+			out.writeDouble(((Number) value).value);
+		}
+		else if(value.equals(True.TRUE))
+			out.writeByte(VALUE_TRUE);
+		else if(value.equals(False.FALSE))
+			out.writeByte(VALUE_FALSE);
+		else
+			out.writeByte(VALUE_UNKNOWN);
+	}
+	
+	/**
+	 * Reads a {@link Value value} that was {@link #write(Value, DataOutput)
+	 * written to a checkpoint}.
+	 * 
+	 * @param in the input to read from
+	 * @param universe the universe in which to find entities
+	 * @return the value
+	 * @throws IOException if an error occurs while reading
+	 */
+	static final Value read(DataInput in, Universe universe) throws IOException {
+		byte tag = in.readByte();
+		switch(tag) {
+		case VALUE_UNKNOWN:
+			return Unknown.UNKNOWN;
+		case VALUE_FALSE:
+			return False.FALSE;
+		case VALUE_TRUE:
+			return True.TRUE;
+		case VALUE_NUMBER:
+			return Number.get(in.readDouble());
+		case VALUE_ENTITY:
+			return universe.entities.get(in.readInt());
+		default:
+			throw Exceptions.checkpointMismatch("unknown value tag " + tag);
+		}
+	}
 }
\ No newline at end of file
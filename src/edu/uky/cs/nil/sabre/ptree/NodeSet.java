@@ -0,0 +1,138 @@
+package edu.uky.cs.nil.sabre.ptree;
+
+import java.util.Arrays;
+
+/**
+ * A set of node ID numbers in a {@link ProgressionTree progression tree},
+ * used when {@link ProgressionTree#reclaim(long[]) reclaiming} the space
+ * occupied by nodes that can no longer be reached. Membership is stored as a
+ * bitmap with one bit per node, so the set costs one bit per node in the tree
+ * no matter how many nodes it contains.
+ * <p>
+ * The set also keeps a worklist of nodes which have been {@link #add(long)
+ * added} but not yet {@link #next() processed}, so that it can be used to
+ * mark every node reachable from some starting nodes without recursion. Once
+ * marking is finished, {@link #index()} prepares the set to report the {@link
+ * #rank(long) rank} of each member, which is the ID number the node will have
+ * after the tree is compacted.
+ * 
+ * @author Stephen G. Ware
+ */
+final class NodeSet {
+	
+	/** One bit for each node, set if the node is in the set */
+	private final long[] words;
+	
+	/** Nodes which have been added but not yet returned by {@link #next()} */
+	private long[] pending = new long[64];
+	
+	/** The number of nodes in {@link #pending the worklist} */
+	private int top = 0;
+	
+	/** The number of nodes in the set */
+	private long count = 0;
+	
+	/**
+	 * The number of members before the start of each word, or null if the set
+	 * has not yet been {@link #index() indexed}
+	 */
+	private long[] ranks = null;
+	
+	/**
+	 * Constructs a new, empty set of nodes.
+	 * 
+	 * @param capacity one more than the largest node ID number the set will
+	 * hold
+	 */
+	NodeSet(long capacity) {
+		words = new long[(int) ((capacity + Long.SIZE - 1) / Long.SIZE)];
+	}
+	
+	@Override
+	public String toString() {
+		return "[Node Set: " + count + " nodes]";
+	}
+	
+	/**
+	 * Returns the number of nodes in the set.
+	 * 
+	 * @return the number of nodes
+	 */
+	public long size() {
+		return count;
+	}
+	
+	/**
+	 * Tests whether a node is in the set.
+	 * 
+	 * @param node the ID number of the node
+	 * @return true if the node is in the set, false otherwise
+	 */
+	public boolean contains(long node) {
+		if(node < 0 || node / Long.SIZE >= words.length)
+			return false;
+		return (words[(int) (node / Long.SIZE)] & (1L << node)) != 0;
+	}
+	
+	/**
+	 * Adds a node to the set. If the node was not already in the set, it is
+	 * also added to the worklist so that it will be returned by {@link
+	 * #next()}. An ID number of -1, which the tree uses to mean no node, is
+	 * ignored.
+	 * 
+	 * @param node the ID number of the node, or -1
+	 * @return true if the node was added, false if it was -1 or already in the
+	 * set
+	 */
+	public boolean add(long node) {
+		if(node < 0 || contains(node))
+			return false;
+		words[(int) (node / Long.SIZE)] |= 1L << node;
+		count++;
+		if(top == pending.length)
+			pending = Arrays.copyOf(pending, top * 2);
+		pending[top++] = node;
+		return true;
+	}
+	
+	/**
+	 * Removes and returns a node from the worklist of nodes which have been
+	 * added but not yet processed.
+	 * 
+	 * @return the ID number of a node, or -1 if the worklist is empty
+	 */
+	public long next() {
+		if(top == 0)
+			return -1;
+		else
+			return pending[--top];
+	}
+	
+	/**
+	 * Prepares the set to answer {@link #rank(long)} queries. Nodes should not
+	 * be added after this method is called.
+	 */
+	public void index() {
+		ranks = new long[words.length];
+		long total = 0;
+		for(int i=0; i<words.length; i++) {
+			ranks[i] = total;
+			total += Long.bitCount(words[i]);
+		}
+		pending = null;
+	}
+	
+	/**
+	 * Returns the number of nodes in the set whose ID numbers are lower than a
+	 * given node. If the given node is in the set, this is the node's position
+	 * in the set when members are listed in ascending order. The set must
+	 * have been {@link #index() indexed} first.
+	 * 
+	 * @param node the ID number of the node
+	 * @return the number of members with lower ID numbers
+	 */
+	public long rank(long node) {
+		int word = (int) (node / Long.SIZE);
+		return ranks[word] + Long.bitCount(words[word] & ((1L << node) - 1));
+	}
+}
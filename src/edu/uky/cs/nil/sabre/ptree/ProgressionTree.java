@@ -1,13 +1,21 @@
 package edu.uky.cs.nil.sabre.ptree;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.function.LongUnaryOperator;
 
+import edu.uky.cs.nil.sabre.Beliefs;
 import edu.uky.cs.nil.sabre.Character;
+import edu.uky.cs.nil.sabre.Exceptions;
 import edu.uky.cs.nil.sabre.Fluent;
 import edu.uky.cs.nil.sabre.HeadPlan;
 import edu.uky.cs.nil.sabre.Number;
@@ -82,6 +90,13 @@ import edu.uky.cs.nil.sabre.util.MemoryBudget;
  * little memory but methods like {@link #getValue(long, CompiledFluent)} are
  * relatively expensive.
  * <p>
+ * A tree can store nodes in one of two layouts. In the default wide layout,
+ * every feature of a node occupies one {@code long}. In the {@link #compact}
+ * layout, every feature except {@link #UTILITY} occupies one {@code int}, two
+ * to a {@code long} (so, for example, {@link #CHARACTER} and {@link #EVENT}
+ * share the first {@code long} of a node), which roughly halves the memory used
+ * by each node. A compact tree can hold at most {@link #COMPACT_LIMIT} nodes.
+ * <p>
  * Yes, I know this is a single class with 1500+ lines of code. Fight me, you
  * cowards. It is good code, perhaps even beautiful in its way. 
  * 
@@ -253,10 +268,15 @@ public class ProgressionTree implements Serializable {
  	 */
 	private final int BELIEFS;
 	
+	/** The total number of features a node has. */
+	private final int FEATURES;
+	
 	/**
-	 * The total number of features a node has. The amount of memory that a
-	 * node occupies can be obtained by multiplying this number by {@link
-	 * java.lang.Long#BYTES}.
+	 * The total number of {@code long}s a node occupies in {@link #nodes the
+	 * big array}. In the wide layout, this is the same as {@link #FEATURES};
+	 * in the {@link #compact} layout, it is about half as many. The amount of
+	 * memory that a node occupies can be obtained by multiplying this number
+	 * by {@link java.lang.Long#BYTES}.
 	 */
 	private final int NODE_SIZE;
 	
@@ -275,9 +295,51 @@ public class ProgressionTree implements Serializable {
 	 */
 	private static final long UTILITY_NOT_SET = UTILITY_UNKNOWN + 1;
 	
+	/**
+	 * The snapshot interval which indicates a tree should never {@link
+	 * #ProgressionTree(CompiledProblem, EventTree, long, MemoryBudget, int, long)
+	 * take snapshots} of its states
+	 */
+	public static final int NO_SNAPSHOTS = 0;
+	
+	/** The maximum number of nodes a {@link #compact compact} tree can hold */
+	public static final long COMPACT_LIMIT = Integer.MAX_VALUE;
+	
+	/**
+	 * The fraction of a limited {@link MemoryBudget memory budget} that is
+	 * held in reserve; once less than this much of the budget is free, the
+	 * tree {@link #isMemoryLow() is low on memory}
+	 */
+	public static final double MEMORY_RESERVE = 0.05;
+	
+	/**
+	 * The smallest number of chunks a limited {@link MemoryBudget memory
+	 * budget} is divided into, so that the budget is spent gradually as the
+	 * tree grows rather than all at once
+	 */
+	public static final int BUDGET_CHUNKS = 64;
+	
+	/**
+	 * The farthest {@link #getChanges(long, long, Collection)} will walk back
+	 * from either node to find a node they both descend from
+	 */
+	private static final int CHANGE_DISTANCE = 8;
+	
+	/** The first four bytes of every {@link #checkpoint(DataOutputStream) checkpoint} */
+	private static final int CHECKPOINT_MAGIC = 0x53425452; // "SBTR"
+	
+	/** The version of the {@link #checkpoint(DataOutputStream) checkpoint} format */
+	private static final int CHECKPOINT_VERSION = 1;
+	
 	/** The problem whose search space this table stores */
 	public final CompiledProblem problem;
 	
+	/**
+	 * Whether this tree stores node features as {@code int}s rather than
+	 * {@code long}s, which limits it to {@link #COMPACT_LIMIT} nodes
+	 */
+	public final boolean compact;
+	
 	/** A list of events, including dummy belief update actions */
 	private final EventList events;
 	
@@ -290,9 +352,28 @@ public class ProgressionTree implements Serializable {
 	/** The list of special initial state nodes */
 	private final ArrayList<InitialState> initial;
 	
+	/**
+	 * Materialized states which bound how far {@link
+	 * #getValue(long, CompiledFluent)} needs to walk back through the tree, or
+	 * null if snapshots are not being used
+	 */
+	private final SnapshotTable snapshots;
+	
+	/** A hash index of the children of nodes with many children */
+	private final ChildIndex children;
+	
+	/** A cache of each node's branches for each character */
+	private final BranchCache branches;
+	
 	/** The number of nodes in this state space */
 	private transient long size = 0;
 	
+	/**
+	 * Whether the tree has {@link #isMemoryLow() run low on memory} and
+	 * stopped taking snapshots, indexing children, and caching branches
+	 */
+	private transient boolean degraded = false;
+	
 	/**
 	 * Constructs a new progression state space for a given problem with a given
 	 * chunk size and {@link MemoryBudget memory budget} for its {@link
@@ -306,13 +387,95 @@ public class ProgressionTree implements Serializable {
 	 * that data will be stored in
 	 */
 	public ProgressionTree(CompiledProblem problem, EventTree<CompiledTrigger> triggers, long chunkSize, MemoryBudget budget) {
+		this(problem, triggers, chunkSize, budget, NO_SNAPSHOTS, MemoryBudget.UNLIMITED);
+	}
+	
+	/**
+	 * Constructs a new progression state space for a given problem with a given
+	 * chunk size and {@link MemoryBudget memory budget} for its {@link
+	 * BigArrayLong big array} which takes snapshots of the state every so many
+	 * levels. When {@link #getValue(long, CompiledFluent) the value of a
+	 * fluent} is requested, a node's state is normally derived by walking back
+	 * through the events that led to it, possibly all the way back to the root.
+	 * If a walk passes more than the snapshot interval number of nodes, the
+	 * value of every fluent in the state where the walk started is recorded, so
+	 * that future walks through that node can stop there. Snapshots are not
+	 * counted against the big array's memory budget; they have their own.
+	 * When the snapshot budget is spent, no new snapshots are taken.
+	 * 
+	 * @param problem the problem whose search space this table will store
+	 * @param triggers an event tree of all triggers in the problem
+	 * @param chunkSize the chunk size in bytes for that {@link BigArrayLong
+	 * big array} that data will be stored in
+	 * @param budget the memory budget which limits the size of the big array
+	 * that data will be stored in
+	 * @param snapshotInterval the number of nodes a walk may pass before a
+	 * snapshot is taken, or {@link #NO_SNAPSHOTS} to never take snapshots
+	 * @param snapshotBudget the number of bytes snapshots may use, or {@link
+	 * MemoryBudget#UNLIMITED}
+	 */
+	public ProgressionTree(CompiledProblem problem, EventTree<CompiledTrigger> triggers, long chunkSize, MemoryBudget budget, int snapshotInterval, long snapshotBudget) {
+		this(problem, triggers, chunkSize, budget, null, false, snapshotInterval, snapshotBudget);
+	}
+	
+	/**
+	 * Constructs a new progression state space for a given problem whose
+	 * {@link BigArrayLong big array} can store its chunks in {@link
+	 * BigArrayLong#directory memory-mapped files} rather than on the heap,
+	 * which may use the {@link #compact compact} node layout, and which may
+	 * {@link
+	 * #ProgressionTree(CompiledProblem, EventTree, long, MemoryBudget, int, long)
+	 * take snapshots} of its states. Storing the tree in mapped files allows it
+	 * to grow far beyond the size of the heap. The compact layout roughly
+	 * doubles the number of nodes that fit in a given amount of memory, but
+	 * limits the tree to {@link #COMPACT_LIMIT} nodes; it is always used when
+	 * the memory budget is too small for the tree to ever reach that limit.
+	 * When the budget is limited, chunks on the heap are never larger than
+	 * {@link #BUDGET_CHUNKS a fraction} of it, so the tree can tell when it is
+	 * {@link #isMemoryLow() low on memory} before the budget is spent. Mapped
+	 * chunks are not charged to the budget, so when the tree is stored in
+	 * mapped files the budget only limits its {@link ChildIndex child index}
+	 * and {@link BranchCache branch cache}, and the compact layout is only
+	 * used if it is asked for.
+	 * 
+	 * @param problem the problem whose search space this table will store
+	 * @param triggers an event tree of all triggers in the problem
+	 * @param chunkSize the chunk size in bytes for that {@link BigArrayLong
+	 * big array} that data will be stored in
+	 * @param budget the memory budget which limits the size of the big array
+	 * that data will be stored in
+	 * @param storage the directory where the big array's chunk files will be
+	 * created, or null if the big array should be stored on the heap
+	 * @param compact true if the compact node layout should be used even if
+	 * the memory budget would allow the tree to exceed {@link #COMPACT_LIMIT}
+	 * nodes
+	 * @param snapshotInterval the number of nodes a walk may pass before a
+	 * snapshot is taken, or {@link #NO_SNAPSHOTS} to never take snapshots
+	 * @param snapshotBudget the number of bytes snapshots may use, or {@link
+	 * MemoryBudget#UNLIMITED}
+	 */
+	public ProgressionTree(CompiledProblem problem, EventTree<CompiledTrigger> triggers, long chunkSize, MemoryBudget budget, File storage, boolean compact, int snapshotInterval, long snapshotBudget) {
 		this.BELIEFS = PREVIOUS_TRUNK + problem.universe.characters.size();
-		this.NODE_SIZE = BELIEFS + problem.universe.characters.size();
+		this.FEATURES = BELIEFS + problem.universe.characters.size();
+		int compactSize = (FEATURES + 2) / 2;
+		if(!compact && storage == null && budget.size != MemoryBudget.UNLIMITED)
+			compact = budget.size / ((long) compactSize * Long.BYTES) <= COMPACT_LIMIT;
+		this.NODE_SIZE = compact ? compactSize : FEATURES;
+		long heapChunkSize = chunkSize;
+		if(budget.size != MemoryBudget.UNLIMITED)
+			heapChunkSize = Math.min(chunkSize, budget.size / BUDGET_CHUNKS);
 		this.problem = problem;
+		this.compact = compact;
 		this.events = new EventList(problem);
 		this.triggers = triggers;
-		this.nodes = new BigArrayLong(chunkSize, budget);
+		this.nodes = new BigArrayLong(storage == null ? heapChunkSize : chunkSize, budget, storage);
+		this.children = new ChildIndex(budget, heapChunkSize);
+		this.branches = new BranchCache(budget, heapChunkSize, problem.universe.characters.size());
 		this.initial = new ArrayList<>((problem.universe.characters.size() * problem.universe.characters.size()) + 1);
+		if(snapshotInterval == NO_SNAPSHOTS)
+			this.snapshots = null;
+		else
+			this.snapshots = new SnapshotTable(snapshotInterval, snapshotBudget, problem.fluents.size());
 		initialize(problem.start);
 	}
 	
@@ -410,6 +573,55 @@ public class ProgressionTree implements Serializable {
 		return size;
 	}
 	
+	/**
+	 * Returns the {@link MemoryBudget memory budget} which limits the size of
+	 * this tree.
+	 * 
+	 * @return the tree's memory budget
+	 */
+	public MemoryBudget getBudget() {
+		return nodes.budget;
+	}
+	
+	/**
+	 * Indicates whether less than {@link #MEMORY_RESERVE} of the tree's
+	 * {@link MemoryBudget memory budget} remains free, counting both the
+	 * unspent budget and space for nodes in chunks that have already been
+	 * allocated. The reserve gives a search room to finish expanding the node
+	 * it is working on and report the best solution it has found so far,
+	 * rather than running out of memory in the middle of adding a node. When
+	 * the tree first becomes low on memory, it discards its {@link #snapshots
+	 * snapshots} and its {@link ChildIndex child index} and stops adding to
+	 * them, since both are only accelerators. A tree with an unlimited budget
+	 * is never low on memory, and neither is a tree stored in {@link
+	 * BigArrayLong#directory mapped files}, since its nodes are not charged
+	 * to the budget; such a tree still discards its accelerators when the
+	 * budget runs low.
+	 * 
+	 * @return true if the tree is low on memory, false otherwise
+	 */
+	public boolean isMemoryLow() {
+		return nodes.directory == null && isBudgetLow();
+	}
+	
+	/**
+	 * Indicates whether less than {@link #MEMORY_RESERVE} of the tree's
+	 * {@link MemoryBudget memory budget} remains free. Space for nodes in
+	 * chunks that have already been allocated counts as free only if those
+	 * chunks are on the heap, since only they are charged to the budget.
+	 * 
+	 * @return true if the budget is limited and nearly spent
+	 */
+	private final boolean isBudgetLow() {
+		MemoryBudget budget = nodes.budget;
+		if(budget.size == MemoryBudget.UNLIMITED)
+			return false;
+		long free = budget.getRemaining();
+		if(nodes.directory == null)
+			free += (nodes.capacity() - (size * NODE_SIZE)) * Long.BYTES;
+		return free < budget.size * MEMORY_RESERVE;
+	}
+	
 	/**
 	 * Returns the value of a feature for a node. Feature are identified by
 	 * indices; for example, the {@link #CHARACTER} feature is where the ID number
@@ -421,7 +633,26 @@ public class ProgressionTree implements Serializable {
 	 * @return the value of that feature for that node
 	 */
 	private final long get(long node, int feature) {
-		return nodes.get(node * NODE_SIZE + feature);
+		if(!compact)
+			return nodes.get(node * NODE_SIZE + feature);
+		else if(feature == UTILITY)
+			return nodes.get(node * NODE_SIZE + 1);
+		int slot = slot(feature);
+		long word = nodes.get(node * NODE_SIZE + (slot >> 1));
+		return (slot & 1) == 0 ? (int) word : (int) (word >>> 32);
+	}
+	
+	/**
+	 * Returns the index of the {@code int} where a feature is stored in the
+	 * {@link #compact compact} layout. The {@link #UTILITY} feature occupies
+	 * the second whole {@code long} (that is, {@code int}s 2 and 3), so every
+	 * feature after it is shifted by one.
+	 * 
+	 * @param feature the index of the feature
+	 * @return the index of the {@code int} where the feature is stored
+	 */
+	private static final int slot(int feature) {
+		return feature < UTILITY ? feature : feature + 1;
 	}
 	
 	/**
@@ -446,7 +677,20 @@ public class ProgressionTree implements Serializable {
 	 * @param value the value to set the feature to
 	 */
 	private final void set(long node, int feature, long value) {
-		nodes.set(node * NODE_SIZE + feature, value);
+		if(!compact)
+			nodes.set(node * NODE_SIZE + feature, value);
+		else if(feature == UTILITY)
+			nodes.set(node * NODE_SIZE + 1, value);
+		else {
+			int slot = slot(feature);
+			long index = node * NODE_SIZE + (slot >> 1);
+			long word = index < nodes.capacity() ? nodes.get(index) : 0;
+			if((slot & 1) == 0)
+				word = (word & 0xFFFFFFFF00000000L) | (value & 0xFFFFFFFFL);
+			else
+				word = (word & 0xFFFFFFFFL) | (value << 32);
+			nodes.set(index, word);
+		}
 	}
 	
 	/**
@@ -476,7 +720,12 @@ public class ProgressionTree implements Serializable {
 	 */
 	public long initialize(State initial) {
 		size = 0;
+		degraded = false;
 		this.initial.clear();
+		children.clear();
+		branches.clear();
+		if(snapshots != null)
+			snapshots.clear();
 		return initial(-1, null, new InitialState(problem, initial));
 	}
 	
@@ -491,19 +740,249 @@ public class ProgressionTree implements Serializable {
 	 * @return the ID number of the newly created initial state node
 	 */
 	private final long initial(long trunk, Character character, InitialState state) {
-		long node = size++;
+		long node = next();
 		set(node, CHARACTER, character == null ? -1 : character.id);
 		set(node, EVENT, initial.size());
 		initial.add(state);
 		set(node, UTILITY, UTILITY_NOT_SET);
 		set(node, BEFORE, node);
-		for(int i=BEFORE+1; i<NODE_SIZE; i++)
+		for(int i=BEFORE+1; i<FEATURES; i++)
 			set(node, i, -1);
 		if(trunk != -1)
 			addTrunk(node, trunk);
 		return getAfterTriggers(node);
 	}
 	
+	/**
+	 * Writes a checkpoint of this tree to a binary output stream from which
+	 * the tree can later be {@link #restore(DataInputStream) restored}, even
+	 * by a different process on a different machine. The checkpoint contains:
+	 * <ul>
+	 * <li>A header describing the problem and the value of every fluent in the
+	 * root state, so that a checkpoint is not restored into the wrong tree.
+	 * </li>
+	 * <li>How each {@link InitialState initial state} was derived from the
+	 * root state (that is, the chain of characters whose beliefs it
+	 * represents), rather than the states themselves.</li>
+	 * <li>The {@link EventList#write(java.io.DataOutput) dummy belief update
+	 * actions} in the order they were created.</li>
+	 * <li>The raw data of every node, {@link BigArrayLong#write(java.io.OutputStream, long)
+	 * streamed directly} from the big array.</li>
+	 * </ul>
+	 * Snapshots are not written, since they are only a cache and will be
+	 * taken again as needed. The stream is not flushed or closed.
+	 * 
+	 * @param out the output stream to write to
+	 * @throws IOException if an error occurs while writing
+	 */
+	public void checkpoint(DataOutputStream out) throws IOException {
+		out.writeInt(CHECKPOINT_MAGIC);
+		out.writeInt(CHECKPOINT_VERSION);
+		out.writeUTF(problem.name);
+		out.writeInt(NODE_SIZE);
+		out.writeInt(problem.events.size());
+		out.writeInt(problem.fluents.size());
+		InitialState root = initial.get(0);
+		for(CompiledFluent fluent : problem.fluents)
+			EventList.write(root.getValue(fluent), out);
+		IdentityHashMap<State, Integer> states = new IdentityHashMap<>(initial.size());
+		states.put(root.state, 0);
+		out.writeInt(initial.size());
+		for(int i=1; i<initial.size(); i++) {
+			Beliefs beliefs = (Beliefs) initial.get(i).state;
+			states.put(beliefs, i);
+			out.writeInt(states.get(beliefs.state));
+			out.writeInt(beliefs.character.id);
+		}
+		events.write(out);
+		out.writeLong(size);
+		nodes.write(out, size * NODE_SIZE);
+	}
+	
+	/**
+	 * Replaces the contents of this tree with a {@link
+	 * #checkpoint(DataOutputStream) checkpoint}. The checkpoint must have been
+	 * written by a tree for the same problem which was {@link
+	 * #initialize(State) initialized} with the same state as this tree;
+	 * otherwise an exception is thrown. After this method returns, every node
+	 * has the same ID number it had when the checkpoint was written. If an
+	 * exception is thrown, this tree is re-initialized and will be empty.
+	 * 
+	 * @param in the input stream to read from
+	 * @throws IOException if an error occurs while reading
+	 * @throws IllegalArgumentException if the checkpoint is malformed or was
+	 * written for a different problem or initial state
+	 */
+	public void restore(DataInputStream in) throws IOException {
+		InitialState root = initial.get(0);
+		try {
+			if(in.readInt() != CHECKPOINT_MAGIC)
+				throw Exceptions.checkpointMismatch("not a progression tree checkpoint");
+			if(in.readInt() != CHECKPOINT_VERSION)
+				throw Exceptions.checkpointMismatch("unsupported checkpoint version");
+			String name = in.readUTF();
+			if(!name.equals(problem.name))
+				throw Exceptions.checkpointMismatch("it was written for the problem \"" + name + "\"");
+			if(in.readInt() != NODE_SIZE || in.readInt() != problem.events.size() || in.readInt() != problem.fluents.size())
+				throw Exceptions.checkpointMismatch("it was written for a problem with different characters, events, or fluents");
+			for(CompiledFluent fluent : problem.fluents)
+				if(!EventList.read(in, problem.universe).equals(root.getValue(fluent)))
+					throw Exceptions.checkpointMismatch("it was written for a different initial state");
+			initial.clear();
+			initial.add(root);
+			int count = in.readInt();
+			for(int i=1; i<count; i++) {
+				InitialState parent = initial.get(in.readInt());
+				initial.add(parent.getBeliefs(problem.universe.characters.get(in.readInt())));
+			}
+			events.read(in, problem);
+			size = in.readLong();
+			nodes.read(in, size * NODE_SIZE);
+			degraded = false;
+			children.clear();
+			branches.clear();
+			if(snapshots != null)
+				snapshots.clear();
+		}
+		catch(IOException | RuntimeException e) {
+			initialize(root.state);
+			throw e;
+		}
+	}
+	
+	/**
+	 * Discards every node which is no longer needed and moves the remaining
+	 * nodes to the front of the tree, so that the space they occupied can be
+	 * used for new nodes. A node is kept if it is the author's root (node 0),
+	 * one of the given live nodes, or if it can be reached from a kept node by
+	 * any pointer other than the list of a node's children. In particular,
+	 * every node before a kept node, every node a kept node's {@link
+	 * #getBest(long) best}, {@link #getWorst(long) worst}, or {@link
+	 * #getExplanation(long, Character) explanation} features refer to, every
+	 * node waiting in a kept node's queue, and the {@link
+	 * #getBranch(long, Character) branches} of every kept node's action are
+	 * kept, so that reclaiming never changes whether a kept node is explained
+	 * or what solutions will be returned. A discarded node that is needed
+	 * again later is simply generated again with a new ID number.
+	 * <p>
+	 * Kept nodes keep the same relative order, so a node's new ID number is
+	 * never higher than its old one and comparisons between kept nodes are not
+	 * affected. Nodes are moved in place, so the only additional memory needed
+	 * is a {@link NodeSet set of kept nodes} with one bit per node. The {@link
+	 * ChildIndex child
+	 * index} and {@link #snapshots snapshots} are discarded, since they refer
+	 * to the old ID numbers; they will be rebuilt as needed unless the tree
+	 * is still low on memory.
+	 * 
+	 * @param live the ID numbers of nodes which must be kept, such as those
+	 * waiting to be visited by a search
+	 * @return a function which maps the old ID number of a node to its new ID
+	 * number, or to -1 if the node was discarded
+	 */
+	public LongUnaryOperator reclaim(long[] live) {
+		NodeSet keep = new NodeSet(size);
+		keep.add(0);
+		for(long node : live)
+			keep.add(node);
+		for(long node = keep.next(); node != -1; node = keep.next()) {
+			keep.add(get(node, BEFORE));
+			for(int i=PREVIOUS_SIBLING+1; i<FEATURES; i++)
+				keep.add(get(node, i));
+			CompiledEvent event = getEvent(node);
+			if(event instanceof CompiledAction)
+				for(Character character : ((CompiledAction) event).consenting)
+					if(!Utilities.equals(character, getCharacter(node)))
+						keep.add(getBranchChild(get(get(node, BEFORE), BELIEFS, character), get(node, EVENT)));
+		}
+		for(long node=0; node<size; node++) {
+			if(keep.contains(node)) {
+				set(node, LAST_CHILD, firstKept(get(node, LAST_CHILD), keep));
+				set(node, PREVIOUS_SIBLING, firstKept(get(node, PREVIOUS_SIBLING), keep));
+			}
+		}
+		keep.index();
+		long[] features = new long[FEATURES];
+		for(long node=0; node<size; node++) {
+			if(keep.contains(node)) {
+				for(int i=0; i<FEATURES; i++)
+					features[i] = get(node, i);
+				for(int i=BEFORE; i<FEATURES; i++)
+					if(features[i] != -1)
+						features[i] = keep.rank(features[i]);
+				long moved = keep.rank(node);
+				for(int i=0; i<FEATURES; i++)
+					set(moved, i, features[i]);
+			}
+		}
+		size = keep.size();
+		degraded = isBudgetLow();
+		children.clear();
+		branches.clear();
+		if(snapshots != null)
+			snapshots.clear();
+		return node -> keep.contains(node) ? keep.rank(node) : -1;
+	}
+	
+	/**
+	 * Finds the child of a node with a given event by walking the list of the
+	 * node's children, without consulting or updating the {@link ChildIndex
+	 * child index}.
+	 * 
+	 * @param parent the ID number of the parent node, or -1
+	 * @param event the {@link EventList#getEvent(int) ID number} of the event
+	 * @return the ID number of the child, or -1 if there is no such child
+	 */
+	private final long getBranchChild(long parent, long event) {
+		if(parent == -1)
+			return -1;
+		long child = get(parent, LAST_CHILD);
+		while(child != -1 && get(child, EVENT) != event)
+			child = get(child, PREVIOUS_SIBLING);
+		return child;
+	}
+	
+	/**
+	 * Returns the first node in a list of siblings which will be kept when the
+	 * tree is {@link #reclaim(long[]) reclaimed}.
+	 * 
+	 * @param node the ID number of the first node in the list, or -1
+	 * @param keep the set of nodes which will be kept
+	 * @return the ID number of the first kept node in the list, or -1 if no
+	 * node in the list will be kept
+	 */
+	private final long firstKept(long node, NodeSet keep) {
+		while(node != -1 && !keep.contains(node))
+			node = get(node, PREVIOUS_SIBLING);
+		return node;
+	}
+	
+	/**
+	 * Returns the ID number for a new node and increases the size of the tree
+	 * by one. Space for the whole node is allocated before the size of the
+	 * tree changes, so that if the {@link MemoryBudget memory budget} is
+	 * exhausted, the tree is left as it was. If the tree has become {@link
+	 * #isMemoryLow() low on memory}, its snapshots and {@link ChildIndex child
+	 * index} are discarded.
+	 * 
+	 * @return the ID number of the new node
+	 * @throws OutOfMemoryError if the tree is {@link #compact compact} and
+	 * already holds {@link #COMPACT_LIMIT} nodes, or if the memory budget
+	 * does not have room for another node
+	 */
+	private final long next() {
+		if(compact && size >= COMPACT_LIMIT)
+			throw Exceptions.compactTreeFull(COMPACT_LIMIT);
+		nodes.set(((size + 1) * NODE_SIZE) - 1, 0);
+		if(!degraded && isBudgetLow()) {
+			degraded = true;
+			children.clear();
+			branches.clear();
+			if(snapshots != null)
+				snapshots.clear();
+		}
+		return size++;
+	}
+	
 	/**
 	 * If any new solutions to the problem being modeled by this tree have been
 	 * generated, this method returns the node ID of the a solution. A solution
@@ -722,15 +1201,138 @@ public class ProgressionTree implements Serializable {
 	 * @return the value of the fluent in that state
 	 */
 	public Value getValue(long node, CompiledFluent fluent) {
+		if(!events.isAffected(fluent)) {
+			while(!isRoot(node))
+				node = getBefore(node);
+			return getInitialState(node).getValue(fluent);
+		}
+		return getValue(node, fluent, node, 0);
+	}
+	
+	/**
+	 * Adds to a collection every {@link CompiledFluent fluent} whose value may
+	 * be different in the states represented by two nodes. This is possible
+	 * when both nodes descend from a common node, such as when one node is the
+	 * parent or sibling of the other, and neither is more than {@link
+	 * #CHANGE_DISTANCE a few events} away from it. In that case, only the
+	 * fluents modified by {@link EventList#getEffect(CompiledEvent,
+	 * CompiledFluent) the effects} of the events between the common node and
+	 * each of the two nodes can be different, so those fluents are added to
+	 * the collection (unless they are already in it) and this method returns
+	 * true. Otherwise, nothing is added and this method returns false.
+	 * 
+	 * @param from the ID number of a node
+	 * @param to the ID number of another node
+	 * @param changed the collection to which fluents that may have different
+	 * values will be added
+	 * @return true if every fluent which may have a different value was added
+	 * to the collection, or false if the nodes are too far apart
+	 */
+	public boolean getChanges(long from, long to, Collection<? super CompiledFluent> changed) {
+		long ancestor = from;
+		for(int distance=0; distance<=CHANGE_DISTANCE; distance++) {
+			if(isAncestor(ancestor, to)) {
+				addChanges(from, ancestor, changed);
+				addChanges(to, ancestor, changed);
+				return true;
+			}
+			else if(isRoot(ancestor))
+				return false;
+			ancestor = getBefore(ancestor);
+		}
+		return false;
+	}
+	
+	/**
+	 * Checks whether a node is the same as or comes before another node and
+	 * is no more than {@link #CHANGE_DISTANCE a few events} away from it.
+	 * 
+	 * @param ancestor the ID number of the node which may come first
+	 * @param node the ID number of the node which may come after it
+	 * @return true if the first node is a close ancestor of the second
+	 */
+	private final boolean isAncestor(long ancestor, long node) {
+		for(int distance=0; distance<=CHANGE_DISTANCE; distance++) {
+			if(node == ancestor)
+				return true;
+			else if(isRoot(node))
+				return false;
+			node = getBefore(node);
+		}
+		return false;
+	}
+	
+	/**
+	 * Adds every fluent modified by an event between an ancestor and a node
+	 * to a collection, unless the fluent is already in it.
+	 * 
+	 * @param node the ID number of the node
+	 * @param ancestor the ID number of a node which comes before it
+	 * @param changed the collection to which fluents will be added
+	 */
+	private final void addChanges(long node, long ancestor, Collection<? super CompiledFluent> changed) {
+		while(node != ancestor) {
+			Clause<Effect> effect = getEvent(node).getEffect();
+			for(int i=0; i<effect.size(); i++) {
+				CompiledFluent fluent = (CompiledFluent) effect.get(i).fluent;
+				if(!changed.contains(fluent))
+					changed.add(fluent);
+			}
+			node = getBefore(node);
+		}
+	}
+	
+	/**
+	 * Walks back through the tree to find the {@link Value value} of a {@link
+	 * CompiledFluent compiled fluent}, stopping at the first event that sets
+	 * the fluent, the first node with a {@link #snapshots snapshot}, or the
+	 * root. If the walk passes the snapshot interval without stopping, a
+	 * snapshot of the node where the walk started is taken (if the snapshot
+	 * budget allows it).
+	 * 
+	 * @param node the ID number of the node the walk has reached
+	 * @param fluent the compiled fluent
+	 * @param start the ID number of the node where the walk started, or -1 if
+	 * no snapshot should be taken
+	 * @param distance the number of nodes the walk has passed so far
+	 * @return the value of the fluent in the state where the walk started
+	 */
+	private final Value getValue(long node, CompiledFluent fluent, long start, int distance) {
 		if(isRoot(node))
 			return getInitialState(node).getValue(fluent);
+		else if(snapshots != null) {
+			Value[] snapshot = snapshots.get(node);
+			if(snapshot != null)
+				return snapshot[fluent.id];
+			else if(start != -1 && !degraded && distance >= snapshots.interval && snapshots.fits(start))
+				return snapshot(start)[fluent.id];
+		}
 		long before = getBefore(node);
 		Clause<Effect> effect = events.getEffect(getEvent(node), fluent);
 		if(effect != null)
 			for(int i=0; i<effect.size(); i++)
 				if(getValue(before, effect.get(i).condition).equals(True.TRUE))
 					return getValue(before, effect.get(i).value);
-		return getValue(before, fluent);
+		return getValue(before, fluent, start, distance + 1);
+	}
+	
+	/**
+	 * Records the {@link Value value} of every {@link CompiledFluent fluent}
+	 * in the state represented by a node in {@link #snapshots the snapshot
+	 * table}.
+	 * 
+	 * @param node the ID number of the node to materialize
+	 * @return the values of every fluent in that state, indexed by {@link
+	 * CompiledFluent#id fluent ID}
+	 */
+	private final Value[] snapshot(long node) {
+		Value[] values = new Value[problem.fluents.size()];
+		for(int i=0; i<problem.fluents.size(); i++) {
+			CompiledFluent fluent = problem.fluents.get(i);
+			values[fluent.id] = getValue(node, fluent, -1, 0);
+		}
+		snapshots.put(node, values);
+		return values;
 	}
 	
 	/**
@@ -1011,7 +1613,9 @@ public class ProgressionTree implements Serializable {
 	/**
 	 * Searches for the child node that would result from taking a given event
 	 * in a given state. If the child node does not exist, this method returns
-	 * -1.
+	 * -1. Children are found by walking the parent's list of children, unless
+	 * the parent has more than {@link ChildIndex#THRESHOLD} children, in which
+	 * case they are looked up in a {@link ChildIndex hash index}.
 	 * 
 	 * @param parent the ID number of the node that is the parent of the desired
 	 * child
@@ -1020,15 +1624,36 @@ public class ProgressionTree implements Serializable {
 	 * the parent state, or -1 if no such child exists
 	 */
 	final long findChild(long parent, CompiledEvent event) {
+		if(children.contains(parent))
+			return children.find(parent, event.getID());
 		long child = getLastChild(parent);
+		int walked = 0;
 		while(child != -1) {
 			if(get(child, EVENT) == event.getID())
 				return child;
 			child = getPreviousSibling(child);
+			walked++;
 		}
+		if(walked > ChildIndex.THRESHOLD && !degraded)
+			index(parent);
 		return -1;
 	}
 	
+	/**
+	 * Adds a node and all of its existing children to the {@link ChildIndex
+	 * child index}.
+	 * 
+	 * @param parent the ID number of the node
+	 */
+	private final void index(long parent) {
+		children.add(parent);
+		long child = getLastChild(parent);
+		while(child != -1) {
+			children.put(parent, get(child, EVENT), child);
+			child = getPreviousSibling(child);
+		}
+	}
+	
 	/**
 	 * Creates a child node from a given parent node and event. This method does
 	 * not check if the event's precondition is true, and it does not check
@@ -1043,16 +1668,18 @@ public class ProgressionTree implements Serializable {
 	 * @return the ID number of the new child node
 	 */
 	final long makeChild(long parent, CompiledEvent event) {
-		long child = size++;
+		long child = next();
 		set(child, CHARACTER, get(parent, CHARACTER));
 		set(child, EVENT, event.getID());
 		set(child, UTILITY, UTILITY_NOT_SET);
 		set(child, BEFORE, parent);
 		set(child, LAST_CHILD, -1);
 		set(child, PREVIOUS_SIBLING, getLastChild(parent));
-		for(int i=PREVIOUS_SIBLING+1; i<NODE_SIZE; i++)
+		for(int i=PREVIOUS_SIBLING+1; i<FEATURES; i++)
 			set(child, i, -1);
 		set(parent, LAST_CHILD, child);
+		if(children.contains(parent))
+			children.put(parent, event.getID(), child);
 		return child;
 	}
 	
@@ -1425,7 +2052,10 @@ public class ProgressionTree implements Serializable {
 	
 	/**
 	 * Finds the branch from a given trunk for a given character, with the
-	 * option to create the branch if it does not already exist.
+	 * option to create the branch if it does not already exist. Results are
+	 * remembered in the {@link BranchCache branch cache}, including the result
+	 * that a branch does not exist when the branch could have been created,
+	 * since that means the character does not believe the action is possible.
 	 * 
 	 * @param node the ID number of the trunk node for which a branch is
 	 * desired
@@ -1435,6 +2065,48 @@ public class ProgressionTree implements Serializable {
 	 * exist and was not created
 	 */
 	private final long getBranch(long node, Character character, boolean create) {
+		if(character == null || isOwnBranch(node, character))
+			return findBranch(node, character, create);
+		long branch = branches.find(node, character.id);
+		if(branch == BranchCache.MISSING) {
+			branch = findBranch(node, character, create);
+			if((branch != -1 || create) && !degraded)
+				branches.put(node, character.id, branch);
+		}
+		return branch;
+	}
+	
+	/**
+	 * Checks whether a node {@link #getCharacter(long) belongs to} a given
+	 * character and its event is an action, in which case the node is its own
+	 * branch for that character and the {@link BranchCache branch cache} is
+	 * not needed to find it.
+	 * 
+	 * @param node the ID number of the trunk node
+	 * @param character the character for whom the branch is desired
+	 * @return true if the node's branch for the character is the node itself
+	 * after triggers
+	 */
+	private final boolean isOwnBranch(long node, Character character) {
+		CompiledEvent event = getEvent(node);
+		return event != null && !(event instanceof CompiledTrigger) && Utilities.equals(character, getCharacter(node));
+	}
+	
+	/**
+	 * Finds the branch from a given trunk for a given character without
+	 * consulting the {@link BranchCache branch cache}. Once this method has
+	 * returned a branch, or has returned -1 when it was allowed to create the
+	 * branch, it will always return the same result for the same trunk and
+	 * character, which is why that result can be cached.
+	 * 
+	 * @param node the ID number of the trunk node for which a branch is
+	 * desired
+	 * @param character the character for whom the branch is desired
+	 * @param create whether or not to create the branch if it does not exist
+	 * @return the ID number of the branch node, or -1 if the branch does not
+	 * exist and was not created
+	 */
+	private final long findBranch(long node, Character character, boolean create) {
 		CompiledEvent event = getEvent(node);
 		if(event == null)
 			return -1;
@@ -1620,6 +2292,101 @@ public class ProgressionTree implements Serializable {
 			return get(node, EXPLANATION);
 	}
 	
+	/**
+	 * Checks whether {@link #isExplained(long)} can be answered for a given
+	 * node without modifying the tree, which is true when it can be answered
+	 * that way for every {@link CompiledAction#consenting consenting
+	 * character} of {@link #getAction(long) the most recent action}. See
+	 * {@link #isReadOnly(long, Character)}.
+	 * 
+	 * @param node the ID number of a node
+	 * @return true if {@link #isExplained(long)} will only read the tree,
+	 * false if it may modify it
+	 */
+	public boolean isReadOnly(long node) {
+		CompiledEvent event = getEvent(node);
+		if(event == null || isDummy(event))
+			return true;
+		else if(event instanceof CompiledTrigger)
+			return isReadOnly(getBefore(node));
+		else {
+			ImmutableSet<Character> consenting = ((CompiledAction) event).consenting;
+			for(int i=0; i<consenting.size(); i++)
+				if(!isReadOnly(node, consenting.get(i)))
+					return false;
+			return true;
+		}
+	}
+	
+	/**
+	 * Checks whether {@link #getBranch(long, Character)}, {@link
+	 * #isExplained(long, Character)}, and {@link #getExplanation(long,
+	 * Character)} can be answered for a given node and {@link Character
+	 * character} without modifying the tree. Finding a branch the first time
+	 * may create nodes, but the result is then kept in the {@link BranchCache
+	 * branch cache}, after which these methods only read the tree. A node
+	 * which belongs to the given character (or to no character, when the
+	 * given character is null) is its own branch, which only needs {@link
+	 * #getAfterTriggers(long) the node after triggers} to be known. A node
+	 * never has a branch for no character if it belongs to some character.
+	 * 
+	 * @param node the ID number of a node
+	 * @param character the character for whom the branch is desired
+	 * @return true if those methods will only read the tree, false if they
+	 * may modify it
+	 */
+	public boolean isReadOnly(long node, Character character) {
+		if(character == null && getCharacter(node) != null)
+			return true;
+		else if(character == null || isOwnBranch(node, character))
+			return get(node, AFTER_TRIGGERS) != -1;
+		else
+			return branches.find(node, character.id) != BranchCache.MISSING;
+	}
+	
+	/**
+	 * Checks whether {@link #getAfter(long, CompiledAction)} can be answered
+	 * for a given node and {@link CompiledAction action} without modifying
+	 * the tree, which is true once the child for that action and the node
+	 * after its triggers have been created. Unlike {@link #findChild(long,
+	 * CompiledEvent)}, this method never adds the node to the {@link
+	 * ChildIndex child index}.
+	 * 
+	 * @param node the ID number of a node
+	 * @param action the action to be taken in the state represented by the
+	 * node
+	 * @return true if {@link #getAfter(long, CompiledAction)} will only read
+	 * the tree, false if it may modify it
+	 */
+	public boolean isReadOnly(long node, CompiledAction action) {
+		long child;
+		if(children.contains(node))
+			child = children.find(node, action.getID());
+		else {
+			child = getLastChild(node);
+			while(child != -1 && get(child, EVENT) != action.getID())
+				child = getPreviousSibling(child);
+		}
+		return child != -1 && get(child, AFTER_TRIGGERS) != -1;
+	}
+	
+	/**
+	 * Checks whether {@link #getValue(long, CompiledFluent)} can be answered
+	 * for a given node and {@link CompiledFluent fluent} without modifying
+	 * the tree. Looking up a value may take a {@link #snapshots snapshot} of
+	 * a state, so this is only guaranteed when snapshots are not being taken,
+	 * either because they are disabled or because the tree {@link #degraded
+	 * has degraded}, or when the fluent is never changed by any event.
+	 * 
+	 * @param node the ID number of a node
+	 * @param fluent the fluent to be evaluated
+	 * @return true if {@link #getValue(long, CompiledFluent)} will only read
+	 * the tree, false if it may modify it
+	 */
+	public boolean isReadOnly(long node, CompiledFluent fluent) {
+		return snapshots == null || degraded || !events.isAffected(fluent);
+	}
+	
 	/**
 	 * Returns a {@link Clause clause} from {@link #getBest(long) the best
 	 * known descendant} of a given node that is sufficient to ensure {@link
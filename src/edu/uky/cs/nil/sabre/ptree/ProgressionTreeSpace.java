@@ -1,5 +1,15 @@
 package edu.uky.cs.nil.sabre.ptree;
 
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.Function;
+import java.util.function.LongUnaryOperator;
+
 import edu.uky.cs.nil.sabre.Character;
 import edu.uky.cs.nil.sabre.Solution;
 import edu.uky.cs.nil.sabre.State;
@@ -7,8 +17,9 @@ import edu.uky.cs.nil.sabre.comp.CompiledAction;
 import edu.uky.cs.nil.sabre.comp.CompiledFluent;
 import edu.uky.cs.nil.sabre.comp.CompiledProblem;
 import edu.uky.cs.nil.sabre.logic.Value;
+import edu.uky.cs.nil.sabre.prog.LongProgressionSpace;
 import edu.uky.cs.nil.sabre.prog.ProgressionSpace;
-import edu.uky.cs.nil.sabre.util.ArrayIterable;
+import edu.uky.cs.nil.sabre.util.MemoryBudget;
 import edu.uky.cs.nil.sabre.util.Worker.Status;
 
 /**
@@ -20,11 +31,12 @@ import edu.uky.cs.nil.sabre.util.Worker.Status;
  * then all be searched.
  * <p>
  * This state space uses the efficient {@link ProgressionTree progression tree}
- * data structure, which represents each node as a unique Java {@code long}.
+ * data structure, which represents each node as a unique Java {@code long},
+ * so it is a {@link LongProgressionSpace long progression space}.
  * 
  * @author Stephen G. Ware
  */
-public class ProgressionTreeSpace implements ProgressionSpace<Long> {
+public class ProgressionTreeSpace implements LongProgressionSpace {
 	
 	/** The tree structure that represents all states in the space */
 	private final ProgressionTree tree;
@@ -53,12 +65,61 @@ public class ProgressionTreeSpace implements ProgressionSpace<Long> {
 	public long size() {
 		return tree.size();
 	}
+	
+	@Override
+	public boolean isMemoryLow() {
+		return tree.isMemoryLow();
+	}
+
+	@Override
+	public MemoryBudget getBudget() {
+		return tree.getBudget();
+	}
 
 	@Override
 	public Long initialize(State state) {
 		return tree.initialize(state);
 	}
 
+	@Override
+	public void checkpoint(DataOutputStream out) throws IOException {
+		tree.checkpoint(out);
+	}
+	
+	@Override
+	public void restore(DataInputStream in) throws IOException {
+		tree.restore(in);
+	}
+	
+	@Override
+	public void write(Long node, DataOutput out) throws IOException {
+		out.writeLong(node);
+	}
+	
+	@Override
+	public Long read(DataInput in) throws IOException {
+		return in.readLong();
+	}
+
+	@Override
+	public Function<Long, Long> reclaim(Iterable<Long> live) {
+		long[] nodes = new long[16];
+		int count = 0;
+		for(Long node : live) {
+			if(count == nodes.length)
+				nodes = Arrays.copyOf(nodes, count * 2);
+			nodes[count++] = node;
+		}
+		LongUnaryOperator map = tree.reclaim(Arrays.copyOf(nodes, count));
+		return node -> {
+			long moved = map.applyAsLong(node);
+			if(moved == -1)
+				return null;
+			else
+				return moved;
+		};
+	}
+	
 	@Override
 	public Solution<CompiledAction> getNextSolution() {
 		long solution = tree.getNextSolution();
@@ -69,50 +130,76 @@ public class ProgressionTreeSpace implements ProgressionSpace<Long> {
 	}
 
 	@Override
-	public double compare(Long node1, Long node2) {
+	public double compare(long node1, long node2) {
 		return node1 - node2;
 	}
 
 	@Override
-	public boolean isExplained(Long node) {
+	public boolean isExplained(long node) {
 		return tree.isExplained(node);
 	}
 
 	@Override
-	public boolean isExplained(Long node, Character character) {
+	public boolean isExplained(long node, Character character) {
 		return tree.isExplained(node, character);
 	}
 	
 	@Override
-	public CompiledAction getAction(Long node) {
+	public long getExplanation(long node, Character character) {
+		return tree.getExplanation(node, character);
+	}
+	
+	@Override
+	public CompiledAction getAction(long node) {
 		return tree.getAction(node);
 	}
 
 	@Override
-	public Value getValue(Long node, CompiledFluent fluent) {
+	public Value getValue(long node, CompiledFluent fluent) {
 		return tree.getValue(node, fluent);
 	}
 	
 	@Override
-	public Iterable<Long> getParents(Long node) {
+	public long getParent(long node) {
 		long before = tree.getJustBeforeAction(node);
-		if(before == -1 || before == node)
-			return new ArrayIterable<>();
+		if(before == node)
+			return NONE;
 		else
-			return new ArrayIterable<>(before);
+			return before;
 	}
 
 	@Override
-	public Long getChild(Long node, CompiledAction action) {
+	public long getChild(long node, CompiledAction action) {
 		return tree.getAfter(node, action);
 	}
 
 	@Override
-	public Long getBranch(Long node, Character character) {
-		long branch = tree.getBranch(node, character);
-		if(branch == -1)
-			return null;
-		else
-			return branch;
+	public long getBranch(long node, Character character) {
+		return tree.getBranch(node, character);
+	}
+	
+	@Override
+	public boolean getChanges(long from, long to, Collection<? super CompiledFluent> changed) {
+		return tree.getChanges(from, to, changed);
+	}
+	
+	@Override
+	public boolean isReadOnly(Long node) {
+		return tree.isReadOnly(node);
+	}
+	
+	@Override
+	public boolean isReadOnly(Long node, Character character) {
+		return tree.isReadOnly(node, character);
+	}
+	
+	@Override
+	public boolean isReadOnly(Long node, CompiledAction action) {
+		return tree.isReadOnly(node, action);
+	}
+	
+	@Override
+	public boolean isReadOnly(Long node, CompiledFluent fluent) {
+		return tree.isReadOnly(node, fluent);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,179 @@
+package edu.uky.cs.nil.sabre.ptree;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+
+import edu.uky.cs.nil.sabre.Settings;
+import edu.uky.cs.nil.sabre.comp.CompiledFluent;
+import edu.uky.cs.nil.sabre.logic.Value;
+import edu.uky.cs.nil.sabre.util.BigArrayLong;
+import edu.uky.cs.nil.sabre.util.MemoryBudget;
+
+/**
+ * A table of materialized states for some of the nodes in a {@link
+ * ProgressionTree progression tree}. Nodes in a progression tree do not store
+ * the value of each {@link CompiledFluent fluent}; rather, {@link
+ * ProgressionTree#getValue(long, CompiledFluent)} derives a value by walking
+ * back through the events that led to a node until it finds one that sets the
+ * fluent or until it reaches the root. A snapshot is an array of the values of
+ * every fluent in one node's state, so a walk that reaches a node with a
+ * snapshot can stop there instead of continuing back to the root.
+ * <p>
+ * Snapshots are taken lazily. When a walk has passed {@link #interval} nodes
+ * without finding a value, the node where the walk started is materialized.
+ * This means snapshots appear at most once every interval levels along the
+ * paths that are actually queried, and nodes which are generated but never
+ * evaluated do not pay for them. Each snapshot is charged to a {@link
+ * MemoryBudget memory budget}; once the budget is spent, no more snapshots are
+ * taken and lookups simply walk the tree as usual.
+ * <p>
+ * Because snapshots are taken while reading the tree, {@link
+ * ProgressionTree#isReadOnly(long, CompiledFluent)} reports that looking up a
+ * value may modify the tree whenever snapshots are enabled, so a {@link
+ * edu.uky.cs.nil.sabre.prog.ConcurrentSpace concurrent space} only does so
+ * while holding its write lock. The table's methods are also synchronized.
+ * 
+ * @author Stephen G. Ware
+ */
+final class SnapshotTable implements Serializable {
+	
+	/** Serial version ID */
+	private static final long serialVersionUID = Settings.VERSION_UID;
+	
+	/** The chunk size used by {@link #index the index of snapshots} */
+	private static final long INDEX_CHUNK_SIZE = 65536L * Long.BYTES;
+	
+	/**
+	 * The number of nodes a walk may pass before a snapshot is taken where
+	 * the walk started
+	 */
+	public final int interval;
+	
+	/**
+	 * The total number of bytes snapshots may use, or {@link
+	 * MemoryBudget#UNLIMITED}
+	 */
+	public final long limit;
+	
+	/** The number of fluents in each snapshot */
+	private final int fluents;
+	
+	/** The budget which is reduced each time a snapshot is taken */
+	private transient MemoryBudget budget;
+	
+	/**
+	 * Maps node ID numbers to one more than the index of the node's snapshot
+	 * in {@link #snapshots}, or 0 if the node has no snapshot; this table is
+	 * not allocated until the first snapshot is taken
+	 */
+	private transient BigArrayLong index;
+	
+	/** Every snapshot taken so far */
+	private transient ArrayList<Value[]> snapshots;
+	
+	/**
+	 * Constructs a new, empty snapshot table.
+	 * 
+	 * @param interval the number of nodes a walk may pass before a snapshot is
+	 * taken
+	 * @param limit the total number of bytes that snapshots may use, or
+	 * {@link MemoryBudget#UNLIMITED}
+	 * @param fluents the number of fluents in each snapshot
+	 */
+	public SnapshotTable(int interval, long limit, int fluents) {
+		this.interval = Math.max(interval, 1);
+		this.limit = limit;
+		this.fluents = fluents;
+		clear();
+	}
+	
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		clear();
+	}
+	
+	@Override
+	public String toString() {
+		return "[Snapshots: " + size() + " every " + interval + " nodes; " + budget + "]";
+	}
+	
+	/**
+	 * Returns the number of snapshots that have been taken.
+	 * 
+	 * @return the number of snapshots
+	 */
+	public synchronized int size() {
+		return snapshots.size();
+	}
+	
+	/**
+	 * Returns the snapshot for a node, or null if the node has no snapshot.
+	 * The array is indexed by {@link CompiledFluent#id fluent ID} and must not
+	 * be modified.
+	 * 
+	 * @param node the ID number of a node
+	 * @return the node's snapshot, or null if none has been taken
+	 */
+	public synchronized Value[] get(long node) {
+		if(index == null || node >= index.capacity())
+			return null;
+		long slot = index.get(node);
+		if(slot == 0)
+			return null;
+		else
+			return snapshots.get((int) (slot - 1));
+	}
+	
+	/**
+	 * Checks whether the remaining budget is enough to take a snapshot of a
+	 * given node.
+	 * 
+	 * @param node the ID number of the node that would be materialized
+	 * @return true if a snapshot of the node can be stored, false otherwise
+	 */
+	public synchronized boolean fits(long node) {
+		long bytes = bytes();
+		long capacity = index == null ? 0 : index.capacity();
+		if(node >= capacity)
+			bytes += (((node - capacity) / (INDEX_CHUNK_SIZE / Long.BYTES)) + 1) * INDEX_CHUNK_SIZE;
+		return budget.getRemaining() >= bytes;
+	}
+	
+	/**
+	 * Stores the snapshot of a node. This method should only be called when
+	 * {@link #fits(long)} returns true for the node.
+	 * 
+	 * @param node the ID number of the node
+	 * @param values the value of each fluent in the node's state, indexed by
+	 * {@link CompiledFluent#id fluent ID}
+	 */
+	public synchronized void put(long node, Value[] values) {
+		if(index == null)
+			index = new BigArrayLong(INDEX_CHUNK_SIZE, budget);
+		budget.reduce(bytes());
+		snapshots.add(values);
+		index.set(node, snapshots.size());
+	}
+	
+	/**
+	 * Removes all snapshots and restores the full memory budget. This method
+	 * should be called whenever the tree's node ID numbers are reused.
+	 */
+	public synchronized void clear() {
+		budget = new MemoryBudget(limit);
+		index = null;
+		snapshots = new ArrayList<>();
+	}
+	
+	/**
+	 * Estimates the number of bytes used by a single snapshot: an array header
+	 * plus one reference per fluent, and one reference in {@link #snapshots}.
+	 * 
+	 * @return the approximate size in bytes of one snapshot
+	 */
+	private final long bytes() {
+		return 16 + ((long) fluents * 8) + 8;
+	}
+}
\ No newline at end of file
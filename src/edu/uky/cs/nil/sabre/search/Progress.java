@@ -3,6 +3,7 @@ package edu.uky.cs.nil.sabre.search;
 import edu.uky.cs.nil.sabre.Action;
 import edu.uky.cs.nil.sabre.Number;
 import edu.uky.cs.nil.sabre.Solution;
+import edu.uky.cs.nil.sabre.util.Worker.Status;
 
 /**
  * A progress object provides a convenient way to track whether a {@link Search
@@ -19,9 +20,29 @@ import edu.uky.cs.nil.sabre.Solution;
  * that the search {@link #isDone() is done} if the solution meets or exceeds
  * {@link Search#getGoal() the search's goal}, otherwise, it will track the
  * best solution found so far. If the search finishes without finding a
- * solution (perhaps because it exceeded a node or time limit), the best
- * solution found will be reported, even if it does not meet or exceed the
- * goal.
+ * solution (perhaps because it exceeded a node, time, or memory limit), the
+ * best solution found will be reported, even if it does not meet or exceed
+ * the goal.
+ * <p>
+ * Each time the best solution improves, a {@link Result result} describing it
+ * is sent to the search's {@link Search#addListener(java.util.function.Consumer)
+ * listeners}, if it has any.
+ * <p>
+ * When a search is {@link Search#step(long, long, edu.uky.cs.nil.sabre.util.Worker.Status)
+ * run one slice at a time}, the same progress object is used for every slice
+ * until the search is done. While the search is running, it should also
+ * periodically call {@link #isPaused()} and return as soon as that method
+ * reports true, leaving its state intact so that it can resume where it
+ * stopped during the next slice.
+ * <p>
+ * Because {@link #isDone()} and {@link #isPaused()} are called on every
+ * iteration of a search's main loop, they do not read the clock or check for
+ * cancellation every time they are called. The number of nodes visited and
+ * generated are always compared to the limits, but the time and cancellation
+ * are only checked once every {@value #CHECK_INTERVAL} calls. A search is
+ * cancelled when the thread running it is {@link Thread#interrupt()
+ * interrupted} or when the {@link Status status} it was given is {@link
+ * Status#cancel() cancelled}. {@link #getMessage()} always checks everything.
  * 
  * @param <A> the type of {@link Action action} used in plans produced by the
  * search this progress represents
@@ -29,6 +50,15 @@ import edu.uky.cs.nil.sabre.Solution;
  */
 public class Progress<A extends Action> {
 
+	/** The message given when a solution does not meet the goal */
+	private static final String SUBOPTIMAL = "Suboptimal solution found.";
+	
+	/**
+	 * The number of calls to {@link #isDone()} or {@link #isPaused()} that
+	 * pass between each time the time and cancellation are checked
+	 */
+	public static final int CHECK_INTERVAL = 16;
+	
 	private final Search<A> search;
 	private final long visitedBefore;
 	private final long maxVisited;
@@ -36,38 +66,130 @@ public class Progress<A extends Action> {
 	private final long maxGenerated;
 	private final long timeBefore;
 	private final long maxTime;
+	private Status status;
+	private long now;
+	private boolean cancelled = false;
+	private int unchecked = 0;
 	private Solution<A> solution = null;
 	private Number utility = null;
 	private String message = null;
+	private boolean sliced = false;
+	private long sliceVisited = Long.MAX_VALUE;
+	private long sliceStart = 0;
+	private long sliceTime = Long.MAX_VALUE;
 	
 	/**
-	 * Constructs a new progress object for a given search.
+	 * Constructs a new progress object for a given search which can be
+	 * cancelled by {@link Status#cancel() cancelling} a given status.
 	 * 
 	 * @param search the search whose progress is being tracked
+	 * @param status the status passed to the search, which is checked for
+	 * cancellation
 	 */
-	public Progress(Search<A> search) {
+	public Progress(Search<A> search, Status status) {
 		this.search = search;
+		this.status = status;
 		this.visitedBefore = search.getVisited();
 		this.maxVisited = search.searchLimit == Planner.UNLIMITED_NODES ? Long.MAX_VALUE : visitedBefore + search.searchLimit;
 		this.generatedBefore = search.getGenerated();
 		this.maxGenerated = search.spaceLimit == Planner.UNLIMITED_NODES ? Integer.MAX_VALUE : generatedBefore + search.spaceLimit;
-		this.timeBefore = System.currentTimeMillis();
-		this.maxTime = search.timeLimit == Planner.UNLIMITED_TIME ? Long.MAX_VALUE : timeBefore + search.timeLimit;
+		this.timeBefore = System.nanoTime();
+		this.maxTime = search.timeLimit == Planner.UNLIMITED_TIME ? Long.MAX_VALUE : toNanoseconds(search.timeLimit);
+		this.now = timeBefore;
+	}
+	
+	/**
+	 * Constructs a new progress object for a given search which can only be
+	 * cancelled by interrupting the thread running the search.
+	 * 
+	 * @param search the search whose progress is being tracked
+	 */
+	public Progress(Search<A> search) {
+		this(search, new Status());
 	}
 	
 	/**
-	 * Checks whether a search is finished, either because a solution was found
-	 * or because the search exceeded some limit, such as {@link
+	 * Checks whether a search is finished, either because a solution was found,
+	 * because the search exceeded some limit, such as {@link
 	 * Planner#setSearchLimit(long) the number of nodes visited} or {@link
-	 * Planner#setTimeLimit(long) amount of time allowed}.
+	 * Planner#setTimeLimit(long) amount of time allowed}, or because the
+	 * search was cancelled.
 	 * 
 	 * @return true if the search is finished, false otherwise
 	 */
 	public boolean isDone() {
-		getMessage();
+		check(false);
 		return message != null;
 	}
 	
+	/**
+	 * Begins a new slice of work for a search which is being {@link
+	 * Search#step(long, long, edu.uky.cs.nil.sabre.util.Worker.Status) run one
+	 * slice at a time}. After this method is called, {@link #isPaused()} will
+	 * report true once the search has visited a given number of nodes or a
+	 * given number of nanoseconds have passed.
+	 * 
+	 * @param visited the number of nodes which may be visited during the
+	 * slice, or {@link Planner#UNLIMITED_NODES} for no limit
+	 * @param time the number of nanoseconds the slice may take, or {@link
+	 * Planner#UNLIMITED_TIME} for no limit
+	 * @param status the status passed to the search for this slice, which
+	 * will be checked for cancellation
+	 */
+	void slice(long visited, long time, Status status) {
+		this.status = status;
+		sliced = true;
+		sliceVisited = visited == Planner.UNLIMITED_NODES ? Long.MAX_VALUE : search.getVisited() + visited;
+		sliceStart = System.nanoTime();
+		sliceTime = time == Planner.UNLIMITED_TIME ? Long.MAX_VALUE : time;
+	}
+	
+	/**
+	 * Checks whether the current slice of a search which is being {@link
+	 * Search#step(long, long, edu.uky.cs.nil.sabre.util.Worker.Status) run one
+	 * slice at a time} has used up its budget, meaning the search should
+	 * return now and resume later. For a search which is not being run one
+	 * slice at a time, this method always returns false.
+	 * 
+	 * @return true if the search should pause, false otherwise
+	 */
+	public boolean isPaused() {
+		return sliced && (search.getVisited() >= sliceVisited || clock(false) - sliceStart >= sliceTime);
+	}
+	
+	/**
+	 * Converts a number of milliseconds to nanoseconds, returning {@link
+	 * Long#MAX_VALUE} if the result would be too large to represent.
+	 * 
+	 * @param milliseconds the number of milliseconds
+	 * @return the same amount of time in nanoseconds
+	 */
+	private static final long toNanoseconds(long milliseconds) {
+		try {
+			return Math.multiplyExact(milliseconds, 1000000L);
+		}
+		catch(ArithmeticException e) {
+			return Long.MAX_VALUE;
+		}
+	}
+	
+	/**
+	 * Returns the time from {@link System#nanoTime()}, but only reads the
+	 * clock, and checks whether the search has been cancelled, once every
+	 * {@link #CHECK_INTERVAL} calls.
+	 * 
+	 * @param force true if the clock should be read no matter what
+	 * @return the current time, or the time of the last check
+	 */
+	private final long clock(boolean force) {
+		if(force || ++unchecked >= CHECK_INTERVAL) {
+			unchecked = 0;
+			now = System.nanoTime();
+			cancelled = Thread.currentThread().isInterrupted() || status.isCancelled();
+		}
+		return now;
+	}
+	
 	/**
 	 * Returns the best solution reported to {@link
 	 * #setSolution(Solution, Number)} so far or null if no solutions have been
@@ -94,7 +216,9 @@ public class Progress<A extends Action> {
 	 * to or above {@link Search#getGoal() the goal}. If the plan meets or
 	 * exceeds the goal, {@link #isDone()} will begin reporting true after
 	 * that solution is reported and {@link #getMessage()} will indicate
-	 * success.
+	 * success. If the solution is better than any reported so far, it is sent
+	 * to {@link Search#addListener(java.util.function.Consumer) the search's
+	 * listeners} before this method returns.
 	 * 
 	 * @param solution any potential solution that improves the author's
 	 * utility, even if it does not meet or exceed the goal
@@ -106,6 +230,8 @@ public class Progress<A extends Action> {
 			this.utility = utility;
 			if(utility.isGreaterThanOrEqualTo(search.getGoal()))
 				message = "Success!";
+			if(search.hasListeners())
+				search.report(new Result<>(search, this, message == null ? SUBOPTIMAL : message));
 		}
 	}
 	
@@ -129,7 +255,11 @@ public class Progress<A extends Action> {
 	 * Search search}. If the search ended because the {@link
 	 * Planner#getSearchLimit() search limit}, {@link Planner#getSpaceLimit()
 	 * space limit}, or {@link Planner#getTimeLimit() time limit} was exceeded,
-	 * the message will say so. If a solution that achieves the {@link
+	 * or because the search {@link Search#isMemoryLow() ran low on memory},
+	 * the message will say so. If the thread running the search has been
+	 * {@link Thread#interrupt() interrupted} or the search's status has been
+	 * {@link Status#cancel() cancelled}, the message will say the search was
+	 * cancelled. If a solution that achieves the {@link
 	 * Search#getGoal()} was {@link #setSolution(Solution, Number) reported},
 	 * the message will indicate success. If a solution was reported that
 	 * improves {@link edu.uky.cs.nil.sabre.Problem#utility author utility} but
@@ -140,19 +270,35 @@ public class Progress<A extends Action> {
 	 * @return a brief message explaining the results of the search
 	 */
 	public String getMessage() {
+		check(true);
+		if(message != null)
+			return message;
+		else if(solution != null)
+			return SUBOPTIMAL;
+		else
+			return "No solution exists.";
+	}
+	
+	/**
+	 * Sets the final message if the search has reached one of its limits or
+	 * has been cancelled.
+	 * 
+	 * @param force true if the time and cancellation should be checked even
+	 * if a check is not due
+	 */
+	private final void check(boolean force) {
 		if(message == null) {
 			if(search.getVisited() >= maxVisited)
 				message = "Search limit reached.";
 			else if(search.getGenerated() >= maxGenerated)
 				message = "Space limit reached.";
-			else if(System.currentTimeMillis() >= maxTime)
+			else if(clock(force) - timeBefore >= maxTime)
 				message = "Time limit reached.";
-			else if(solution != null)
-				return "Suboptimal solution found.";
-			else
-				return "No solution exists.";
+			else if(cancelled)
+				message = "Search cancelled.";
+			else if(search.isMemoryLow())
+				message = "Memory limit reached.";
 		}
-		return message;
 	}
 	
 	/**
@@ -190,6 +336,6 @@ public class Progress<A extends Action> {
 	 * @return the number of milliseconds elapsed
 	 */
 	public long getTime() {
-		return System.currentTimeMillis() - timeBefore;
+		return (System.nanoTime() - timeBefore) / 1000000;
 	}
 }
\ No newline at end of file
@@ -88,7 +88,7 @@ public class Result<A extends Action> {
 		this.goal = search.getGoal();
 		String message;
 		String outOfMemory = "Out of memory.";
-		Progress<A> progress = new Progress<>(search);
+		Progress<A> progress = new Progress<>(search, status);
 		try {
 			search.run(progress, status);
 			message = progress.getMessage();
@@ -108,6 +108,27 @@ public class Result<A extends Action> {
 		this.time = progress.getTime();
 	}
 	
+	/**
+	 * Constructs a result describing the best solution a search in progress
+	 * has found so far, for {@link Search#addListener(java.util.function.Consumer)
+	 * listeners} that want each improved solution as soon as it is found.
+	 * 
+	 * @param search the search which found the solution
+	 * @param progress the progress of the search when the solution was found
+	 * @param message a brief message explaining the outcome so far
+	 */
+	Result(Search<A> search, Progress<A> progress, String message) {
+		this.problem = search.problem;
+		this.start = search.getStart();
+		this.goal = search.getGoal();
+		this.solution = progress.getSolution();
+		this.utility = progress.getUtility();
+		this.message = message;
+		this.visited = progress.getVisited();
+		this.generated = progress.getGenerated();
+		this.time = progress.getTime();
+	}
+	
 	@Override
 	public String toString() {
 		String string = "[Result for \"" + problem.name + "\": " + message;
@@ -1,5 +1,8 @@
 package edu.uky.cs.nil.sabre.search;
 
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
 import edu.uky.cs.nil.sabre.Action;
 import edu.uky.cs.nil.sabre.Character;
 import edu.uky.cs.nil.sabre.Number;
@@ -29,6 +32,17 @@ import edu.uky.cs.nil.sabre.util.Worker.Status;
  * (meaning it can discard its internal state and reset counters for things
  * like {@link #getVisited() the number of nodes visited}) when the {@link
  * #setStart(State)} method is called.
+ * <p>
+ * A search only returns a result once it has finished, but a search may find
+ * several increasingly better plans along the way. Callers who want to use a
+ * good-enough plan right away and a better plan later can {@link
+ * #addListener(Consumer) add a listener}, which will be sent a result for
+ * each improved plan the moment it is found.
+ * <p>
+ * Rather than calling {@link #get(Status)}, which runs until the search is
+ * finished, a caller which cannot give the search a thread of its own, such
+ * as a game engine which plans between frames, can {@link #step(long, long,
+ * Status) run the search one slice at a time}.
  * 
  * @param <A> the type of {@link Action action} used in the plans this search
  * produces
@@ -107,6 +121,15 @@ public abstract class Search<A extends Action> implements Getter<Result<A>> {
 	 */
 	public final int epistemicLimit;
 	
+	/** Listeners to be sent each improved solution as soon as it is found */
+	private final CopyOnWriteArrayList<Consumer<? super Result<A>>> listeners = new CopyOnWriteArrayList<>();
+	
+	/**
+	 * The progress of the search currently being {@link #step(long, long,
+	 * Status) run one slice at a time}, or null if there is no such search
+	 */
+	private Progress<A> stepping = null;
+	
 	/**
 	 * Constructs a new search with a given problem and settings.
 	 * 
@@ -210,9 +233,144 @@ public abstract class Search<A extends Action> implements Getter<Result<A>> {
 	 */
 	@Override
 	public Result<A> get(Status status) {
+		stepping = null;
 		return new Result<>(this, status);
 	}
 	
+	/**
+	 * Does a bounded slice of the work of {@link #get(Status) finding the next
+	 * solution} and then returns, so that a caller can spread the work of one
+	 * search over many short calls, such as once per frame of a game loop. The
+	 * slice ends once a given number of nodes have been visited or a given
+	 * number of nanoseconds have passed, whichever comes first; the node
+	 * being visited when the budget runs out is always finished, so a slice
+	 * may run slightly over its time budget. The search keeps its state
+	 * between slices, and the next call to this method resumes where the last
+	 * one stopped.
+	 * <p>
+	 * If the search has not finished by the end of the slice, this method
+	 * returns null. Once the search finishes, this method returns the same
+	 * {@link Result result} that {@link #get(Status)} would have returned,
+	 * counting the nodes visited and generated and the time elapsed since the
+	 * first slice began, and the next call to this method will start looking
+	 * for the next solution. The search's limits, such as its {@link
+	 * #timeLimit time limit}, apply to the whole search, not to each slice.
+	 * Calling {@link #get(Status)} or {@link #setStart(State)} abandons a
+	 * search which is being run one slice at a time.
+	 * <p>
+	 * A slice only pauses early if this search's {@link #run(Progress,
+	 * Status)} method checks {@link Progress#isPaused()}; a search that does
+	 * not check will finish in one slice.
+	 * 
+	 * @param visited the number of nodes that may be visited during this
+	 * slice, or {@link Planner#UNLIMITED_NODES} for no limit
+	 * @param time the number of nanoseconds this slice may take, or {@link
+	 * Planner#UNLIMITED_TIME} for no limit
+	 * @param status a status to update while the search runs
+	 * @return a result object if the search has finished, or null if it has
+	 * not
+	 */
+	public Result<A> step(long visited, long time, Status status) {
+		if(stepping == null)
+			stepping = new Progress<>(this, status);
+		Progress<A> progress = stepping;
+		progress.slice(visited, time, status);
+		String message = null;
+		try {
+			run(progress, status);
+		}
+		catch(SearchException e) {
+			message = e.getMessage();
+		}
+		catch(OutOfMemoryError e) {
+			System.gc();
+			message = "Out of memory.";
+		}
+		if(message == null) {
+			if(!progress.isDone() && progress.isPaused())
+				return null;
+			message = progress.getMessage();
+		}
+		stepping = null;
+		return new Result<>(this, progress, message);
+	}
+	
+	/**
+	 * Does a bounded slice of the work of finding the next solution. See
+	 * {@link #step(long, long, Status)}.
+	 * 
+	 * @param visited the number of nodes that may be visited during this
+	 * slice, or {@link Planner#UNLIMITED_NODES} for no limit
+	 * @param time the number of nanoseconds this slice may take, or {@link
+	 * Planner#UNLIMITED_TIME} for no limit
+	 * @return a result object if the search has finished, or null if it has
+	 * not
+	 */
+	public Result<A> step(long visited, long time) {
+		return step(visited, time, new Status());
+	}
+	
+	/**
+	 * Abandons the search currently being {@link #step(long, long, Status) run
+	 * one slice at a time}, if any, so that the next slice will start a new
+	 * search. Searches should call this method from {@link #setStart(State)}.
+	 */
+	protected final void cancelStep() {
+		stepping = null;
+	}
+	
+	/**
+	 * Adds a listener which will be sent a {@link Result result} each time
+	 * this search finds a plan which improves the {@link Problem#utility
+	 * author's utility} more than any plan found so far during the current
+	 * call to {@link #get(Status)}. Each result describes one plan, the
+	 * utility it achieves, and the number of nodes visited and generated and
+	 * the milliseconds elapsed since {@link #get(Status)} was called up to
+	 * the moment the plan was found. The last plan reported during a call is
+	 * the same plan that call returns.
+	 * <p>
+	 * Listeners are called on the thread running the search, while the search
+	 * is paused, so they should return quickly; a listener that needs to do a
+	 * lot of work with a plan should hand it off to another thread. Listeners
+	 * can be added and removed at any time, including from other threads.
+	 * 
+	 * @param listener the listener to add
+	 */
+	public void addListener(Consumer<? super Result<A>> listener) {
+		listeners.add(listener);
+	}
+	
+	/**
+	 * Removes a listener previously {@link #addListener(Consumer) added} to
+	 * this search. If the listener was not added, this method does nothing.
+	 * 
+	 * @param listener the listener to remove
+	 */
+	public void removeListener(Consumer<? super Result<A>> listener) {
+		listeners.remove(listener);
+	}
+	
+	/**
+	 * Indicates whether any {@link #addListener(Consumer) listeners} need to
+	 * be sent improved solutions.
+	 * 
+	 * @return true if this search has at least one listener
+	 */
+	boolean hasListeners() {
+		return !listeners.isEmpty();
+	}
+	
+	/**
+	 * Sends a result for an improved solution to every {@link
+	 * #addListener(Consumer) listener}.
+	 * 
+	 * @param result the result describing the improved solution
+	 */
+	void report(Result<A> result) {
+		for(Consumer<? super Result<A>> listener : listeners)
+			listener.accept(result);
+	}
+	
 	/**
 	 * Returns the initial state of the world from which a solution {@link
 	 * Plan plan} must be executable. Unless changed by the {@link
@@ -274,6 +432,19 @@ public abstract class Search<A extends Action> implements Getter<Result<A>> {
 	 */
 	public abstract long getGenerated();
 	
+	/**
+	 * Indicates whether this search is close to using all of the memory it is
+	 * allowed to use. When memory is low, the search stops and reports the
+	 * best solution found so far rather than risk running out of memory
+	 * partway through expanding a node. By default, searches do not limit
+	 * their memory, so this method always returns false.
+	 * 
+	 * @return true if the search is low on memory, false otherwise
+	 */
+	public boolean isMemoryLow() {
+		return false;
+	}
+	
 	/**
 	 * This method searches for the next solution, resuming where the previous
 	 * call left off (unless {@link #setStart(State)} has been called to reset
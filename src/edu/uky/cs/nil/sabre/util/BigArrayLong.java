@@ -1,10 +1,20 @@
 package edu.uky.cs.nil.sabre.util;
 
+import java.io.File;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Arrays;
 
+import edu.uky.cs.nil.sabre.Exceptions;
 import edu.uky.cs.nil.sabre.Settings;
 
 /**
@@ -14,6 +24,25 @@ import edu.uky.cs.nil.sabre.Settings;
  * allocated as needed, subtracting from a bounded {@link MemoryBudget memory
  * budget} if one is provided. Unlike arrays, which are indexed by {@code
  * int}s, this table is indexed by {@code long}s.
+ * <p>
+ * By default, chunks are ordinary arrays on the Java heap. If a {@link
+ * #directory directory} is given, each chunk is instead a temporary file in
+ * that directory which is {@link FileChannel#map(FileChannel.MapMode, long,
+ * long) mapped into memory}. Mapped chunks live outside the heap, so the table
+ * can grow much larger than the heap without long garbage collection pauses,
+ * and the operating system decides which pages stay in physical memory. Chunk
+ * files are deleted as soon as they are mapped (or when the program exits, on
+ * systems which do not allow mapped files to be deleted), so they never
+ * outlive the table. Mapped chunks may not be larger than {@link
+ * #MAX_MAPPED_CHUNK_SIZE}. Only chunks on the heap are charged to the memory
+ * budget, since mapped chunks are limited by disk space rather than by the
+ * heap. The kind of chunk is chosen once, when the table is created, so
+ * reading and writing values does not need to check which kind is used.
+ * <p>
+ * Java serialization does not preserve the contents of the table (a
+ * deserialized table is always empty), but the raw values can be streamed
+ * to and from a binary file with {@link #write(OutputStream, long)} and
+ * {@link #read(InputStream, long)}.
  * 
  * @author Stephen G. Ware
  */
@@ -28,41 +57,77 @@ public final class BigArrayLong implements Serializable {
 	/** The default chunk size */
 	public static final long DEFAULT_CHUNK_SIZE = 1048576L * Long.BYTES; // 8 MiB
 	
+	/** The largest allowed size for a chunk that is a memory-mapped file */
+	public static final long MAX_MAPPED_CHUNK_SIZE = (Integer.MAX_VALUE / Long.BYTES) * Long.BYTES;
+	
 	/** Serial version ID */
 	private static final long serialVersionUID = Settings.VERSION_UID;
 	
+	/**
+	 * The number of bytes {@link #write(OutputStream, long)} and {@link
+	 * #read(InputStream, long)} copy at a time
+	 */
+	private static final int STREAM_BUFFER_SIZE = 65536;
+	
 	/** Chunk size (in bytes) */
 	public final long chunk;
 	
-	/** Each newly allocated chunk reduces this memory budget */
+	/** Each newly allocated chunk on the heap reduces this memory budget */
 	public final MemoryBudget budget;
 	
+	/**
+	 * The directory where chunk files are created and mapped, or null if
+	 * chunks are stored on the heap
+	 */
+	public final File directory;
+	
 	/** The number of array indices each chunk will have */
 	private final int slotsPerChunk;
 	
-	/** The array of chunks */
-	private transient long[][] chunks;
+	/** The chunks, either on the heap or in mapped files */
+	private transient Chunks chunks;
 	
 	/** The total number of indices that can be stored in the big array */
 	private transient long capacity;
+	
+	/** The number of bytes the chunks have taken from the memory budget */
+	private transient long charged;
 
 	/**
 	 * Constructs a table of {@code long} values with a given chunk size and
-	 * limited by a given memory budget.
+	 * limited by a given memory budget whose chunks are memory-mapped files in
+	 * a given directory.
 	 * 
 	 * @param chunk the chunk size in bytes
-	 * @param budget the memory budget
+	 * @param budget the memory budget, which is only reduced by chunks stored
+	 * on the heap
+	 * @param directory the directory where chunk files will be created, or
+	 * null if chunks should be stored on the heap
+	 * @throws java.io.UncheckedIOException if the first chunk file cannot be
+	 * created or mapped
 	 */
-	public BigArrayLong(long chunk, MemoryBudget budget) {
-		chunk = Math.min(chunk, MAX_CHUNK_SIZE);
+	public BigArrayLong(long chunk, MemoryBudget budget, File directory) {
+		chunk = Math.min(chunk, directory == null ? MAX_CHUNK_SIZE : MAX_MAPPED_CHUNK_SIZE);
 		chunk -= chunk % Long.BYTES;
 		chunk = Math.max(chunk, MIN_CHUNK_SIZE);
 		this.chunk = chunk;
 		this.budget = budget;
+		this.directory = directory;
 		this.slotsPerChunk = (int) chunk / Long.BYTES;
 		initialize();
 	}
 	
+	/**
+	 * Constructs a table of {@code long} values with a given chunk size and
+	 * limited by a given memory budget.
+	 * 
+	 * @param chunk the chunk size in bytes
+	 * @param budget the memory budget
+	 */
+	public BigArrayLong(long chunk, MemoryBudget budget) {
+		this(chunk, budget, null);
+	}
+	
 	/**
 	 * Constructs a table of {@code long} values with a given chunk size and an
 	 * unlimited memory budget.
@@ -107,14 +172,13 @@ public final class BigArrayLong implements Serializable {
 	}
 	
 	private final void initialize() {
-		chunks = new long[0][];
-		capacity = 0;
+		release();
 		allocate();
 	}
 	
 	@Override
 	public String toString() {
-		return "[Big Array: capacity " + capacity + "; chunk size " + chunk + "]";
+		return "[Big Array: capacity " + capacity + "; chunk size " + chunk + (directory == null ? "" : "; mapped in " + directory) + "]";
 	}
 	
 	/**
@@ -134,7 +198,7 @@ public final class BigArrayLong implements Serializable {
 	 * @return the value at that index
 	 */
 	public final long get(long index) {
-		return chunks[(int) (index / slotsPerChunk)][(int) (index % slotsPerChunk)];
+		return chunks.get((int) (index / slotsPerChunk), (int) (index % slotsPerChunk));
 	}
 	
 	/**
@@ -146,17 +210,280 @@ public final class BigArrayLong implements Serializable {
 	public final void set(long index, long value) {
 		while(index >= capacity)
 			allocate();
-		chunks[(int) (index / slotsPerChunk)][(int) (index % slotsPerChunk)] = value;
+		chunks.set((int) (index / slotsPerChunk), (int) (index % slotsPerChunk), value);
 	}
 	
 	private final void allocate() {
-		long bytes = Math.min(this.chunk, budget.getRemaining());
-		bytes -= bytes % Long.BYTES;
-		bytes = Math.max(bytes, MIN_CHUNK_SIZE);
-		budget.reduce(bytes);
-		int slots = (int) (bytes / Long.BYTES);
-		chunks = Arrays.copyOf(chunks, chunks.length + 1);
-		chunks[chunks.length - 1] = new long[slots];
-		capacity += slots;
+		capacity += chunks.allocate();
+	}
+	
+	/**
+	 * Discards every chunk in this table and returns the bytes they took from
+	 * the {@link #budget memory budget}. The table is left empty, with a
+	 * capacity of 0, and new chunks will be allocated as values are {@link
+	 * #set(long, long) set}. This method should be called when a table which
+	 * shares its budget with other objects is no longer needed, since the
+	 * budget is not otherwise given back the memory when the table is
+	 * garbage collected.
+	 */
+	public void release() {
+		budget.release(charged);
+		charged = 0;
+		if(directory == null)
+			chunks = new HeapChunks();
+		else
+			chunks = new MappedChunks();
+		capacity = 0;
+	}
+	
+	/**
+	 * The chunks of a {@link BigArrayLong big array}, which are stored in one
+	 * of two ways.
+	 * 
+	 * @author Stephen G. Ware
+	 */
+	private abstract class Chunks {
+		
+		/**
+		 * Returns the value in a slot of a chunk.
+		 * 
+		 * @param chunk the index of the chunk
+		 * @param slot the index of the slot in the chunk
+		 * @return the value
+		 */
+		public abstract long get(int chunk, int slot);
+		
+		/**
+		 * Sets the value in a slot of a chunk.
+		 * 
+		 * @param chunk the index of the chunk
+		 * @param slot the index of the slot in the chunk
+		 * @param value the new value
+		 */
+		public abstract void set(int chunk, int slot, long value);
+		
+		/**
+		 * Copies consecutive values from a chunk into a buffer.
+		 * 
+		 * @param chunk the index of the chunk
+		 * @param slot the index of the first slot to copy
+		 * @param target the buffer to copy into
+		 * @param count the number of values to copy
+		 */
+		public abstract void get(int chunk, int slot, LongBuffer target, int count);
+		
+		/**
+		 * Copies the remaining values in a buffer into consecutive slots of a
+		 * chunk.
+		 * 
+		 * @param chunk the index of the chunk
+		 * @param slot the index of the first slot to copy into
+		 * @param source the buffer to copy from
+		 */
+		public abstract void set(int chunk, int slot, LongBuffer source);
+		
+		/**
+		 * Adds slots at the end, either by adding a new chunk or by growing
+		 * the last chunk. Every chunk but the last must always have the full
+		 * number of slots, since a slot's chunk is found by dividing its
+		 * index by that number.
+		 * 
+		 * @return the number of slots added
+		 */
+		public abstract int allocate();
+	}
+	
+	/**
+	 * Chunks which are arrays on the heap and are charged to the {@link
+	 * BigArrayLong#budget memory budget}. When the budget cannot cover a full
+	 * chunk, the last chunk is made as large as the remaining budget allows.
+	 * Since memory may later be {@link MemoryBudget#release(long) returned to
+	 * the budget}, a short last chunk is grown to the full size before any
+	 * chunk is added after it.
+	 * 
+	 * @author Stephen G. Ware
+	 */
+	private final class HeapChunks extends Chunks {
+		
+		/** The arrays */
+		private long[][] arrays = new long[0][];
+		
+		@Override
+		public long get(int chunk, int slot) {
+			return arrays[chunk][slot];
+		}
+		
+		@Override
+		public void set(int chunk, int slot, long value) {
+			arrays[chunk][slot] = value;
+		}
+		
+		@Override
+		public void get(int chunk, int slot, LongBuffer target, int count) {
+			target.put(arrays[chunk], slot, count);
+		}
+		
+		@Override
+		public void set(int chunk, int slot, LongBuffer source) {
+			source.get(arrays[chunk], slot, source.remaining());
+		}
+		
+		@Override
+		public int allocate() {
+			int last = arrays.length - 1;
+			if(last >= 0 && arrays[last].length < slotsPerChunk) {
+				int slots = charge((long) (slotsPerChunk - arrays[last].length) * Long.BYTES);
+				arrays[last] = Arrays.copyOf(arrays[last], arrays[last].length + slots);
+				return slots;
+			}
+			int slots = charge(chunk);
+			arrays = Arrays.copyOf(arrays, arrays.length + 1);
+			arrays[arrays.length - 1] = new long[slots];
+			return slots;
+		}
+		
+		/**
+		 * Takes up to a given number of bytes from the memory budget, or as
+		 * much as remains, and returns how many slots that many bytes holds.
+		 * 
+		 * @param bytes the number of bytes wanted
+		 * @return the number of slots charged to the budget
+		 * @throws OutOfMemoryError if the budget is already exhausted
+		 */
+		private final int charge(long bytes) {
+			bytes = Math.min(bytes, budget.getRemaining());
+			bytes -= bytes % Long.BYTES;
+			bytes = Math.max(bytes, MIN_CHUNK_SIZE);
+			charged += budget.reduce(bytes);
+			return (int) (bytes / Long.BYTES);
+		}
+	}
+	
+	/**
+	 * Chunks which are {@link #map(long) memory-mapped files} in {@link
+	 * BigArrayLong#directory the directory}. They are always the full chunk
+	 * size and are not charged to the {@link BigArrayLong#budget memory
+	 * budget}.
+	 * 
+	 * @author Stephen G. Ware
+	 */
+	private final class MappedChunks extends Chunks {
+		
+		/** The mapped buffers */
+		private LongBuffer[] buffers = new LongBuffer[0];
+		
+		@Override
+		public long get(int chunk, int slot) {
+			return buffers[chunk].get(slot);
+		}
+		
+		@Override
+		public void set(int chunk, int slot, long value) {
+			buffers[chunk].put(slot, value);
+		}
+		
+		@Override
+		public void get(int chunk, int slot, LongBuffer target, int count) {
+			LongBuffer source = buffers[chunk].duplicate();
+			source.position(slot).limit(slot + count);
+			target.put(source);
+		}
+		
+		@Override
+		public void set(int chunk, int slot, LongBuffer source) {
+			LongBuffer target = buffers[chunk].duplicate();
+			target.position(slot);
+			target.put(source);
+		}
+		
+		@Override
+		public int allocate() {
+			buffers = Arrays.copyOf(buffers, buffers.length + 1);
+			buffers[buffers.length - 1] = map(chunk);
+			return slotsPerChunk;
+		}
+	}
+	
+	/**
+	 * Writes the first {@code length} values in this table to an output stream
+	 * as raw 8-byte big-endian {@code long}s. The values are copied directly
+	 * from the table's chunks in large blocks, so this method is much faster
+	 * than writing each value individually. The stream is not flushed or
+	 * closed.
+	 * 
+	 * @param out the output stream to write to
+	 * @param length the number of values to write, starting at index 0
+	 * @throws IOException if an error occurs while writing to the stream
+	 */
+	public void write(OutputStream out, long length) throws IOException {
+		byte[] bytes = new byte[STREAM_BUFFER_SIZE];
+		LongBuffer buffer = ByteBuffer.wrap(bytes).asLongBuffer();
+		long index = 0;
+		while(index < length) {
+			int chunk = (int) (index / slotsPerChunk);
+			int offset = (int) (index % slotsPerChunk);
+			int count = (int) Math.min(Math.min(buffer.capacity(), slotsPerChunk - offset), length - index);
+			buffer.clear();
+			chunks.get(chunk, offset, buffer, count);
+			out.write(bytes, 0, count * Long.BYTES);
+			index += count;
+		}
+	}
+	
+	/**
+	 * Reads {@code length} values which were {@link #write(OutputStream, long)
+	 * written} by a table from an input stream and stores them in this table
+	 * starting at index 0, allocating new chunks as needed. Values at indices
+	 * beyond {@code length} are not changed.
+	 * 
+	 * @param in the input stream to read from
+	 * @param length the number of values to read
+	 * @throws IOException if an error occurs while reading from the stream, or
+	 * if the stream ends before all values have been read
+	 */
+	public void read(InputStream in, long length) throws IOException {
+		byte[] bytes = new byte[STREAM_BUFFER_SIZE];
+		LongBuffer buffer = ByteBuffer.wrap(bytes).asLongBuffer();
+		while(capacity < length)
+			allocate();
+		long index = 0;
+		while(index < length) {
+			int chunk = (int) (index / slotsPerChunk);
+			int offset = (int) (index % slotsPerChunk);
+			int count = (int) Math.min(Math.min(buffer.capacity(), slotsPerChunk - offset), length - index);
+			int read = in.readNBytes(bytes, 0, count * Long.BYTES);
+			if(read < count * Long.BYTES)
+				throw new EOFException();
+			buffer.clear().limit(count);
+			chunks.set(chunk, offset, buffer);
+			index += count;
+		}
+	}
+	
+	/**
+	 * Creates a new temporary chunk file of a given size in {@link #directory
+	 * the directory} and maps it into memory. New files are filled with zeros,
+	 * just like new arrays.
+	 * 
+	 * @param bytes the size of the chunk in bytes
+	 * @return a buffer of {@code long} values backed by the mapped file
+	 * @throws java.io.UncheckedIOException if the file cannot be created or
+	 * mapped
+	 */
+	private final LongBuffer map(long bytes) {
+		try {
+			File file = File.createTempFile("chunk", ".bin", directory);
+			try(RandomAccessFile access = new RandomAccessFile(file, "rw")) {
+				access.setLength(bytes);
+				return access.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, bytes).order(ByteOrder.nativeOrder()).asLongBuffer();
+			}
+			finally {
+				if(!file.delete())
+					file.deleteOnExit();
+			}
+		}
+		catch(IOException e) {
+			throw Exceptions.cannotMapChunk(directory, e);
+		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,202 @@
+package edu.uky.cs.nil.sabre.util;
+
+import java.util.Arrays;
+
+/**
+ * A hashtable which maps Java {@code long} keys to {@code int} values without
+ * boxing either one. Keys and values are stored in parallel arrays using open
+ * addressing with linear probing, so looking up a key does not allocate any
+ * objects. This is useful for tables which record something about every node
+ * in a {@link edu.uky.cs.nil.sabre.prog.ProgressionSpace state space} whose
+ * nodes are {@code long}s, such as {@link
+ * edu.uky.cs.nil.sabre.ptree.ProgressionTree progression trees}, where a
+ * {@link java.util.HashMap} would need a {@link Long}, an {@link Integer}, and
+ * an entry object for every node.
+ * <p>
+ * Keys cannot be removed individually, but the whole table can be {@link
+ * #clear() cleared}.
+ * 
+ * @author Stephen G. Ware
+ */
+public final class LongIntMap {
+	
+	/** The key used to mark an empty slot in the table */
+	private static final long EMPTY = Long.MIN_VALUE;
+	
+	/** The smallest number of slots in the table */
+	private static final int MIN_CAPACITY = 16;
+	
+	/** The keys in each slot of the table */
+	private long[] keys;
+	
+	/** The values in each slot of the table */
+	private int[] values;
+	
+	/** The number of keys in the table, not counting {@link #EMPTY} */
+	private int size = 0;
+	
+	/** Whether {@link #EMPTY} is a key in the table */
+	private boolean hasEmpty = false;
+	
+	/** The value of {@link #EMPTY} if it is a key in the table */
+	private int emptyValue;
+	
+	/**
+	 * Constructs a new, empty table.
+	 */
+	public LongIntMap() {
+		this.keys = new long[MIN_CAPACITY];
+		this.values = new int[MIN_CAPACITY];
+		Arrays.fill(keys, EMPTY);
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder string = new StringBuilder();
+		for(long key : keys()) {
+			if(string.length() > 0)
+				string.append(", ");
+			string.append(key).append("=").append(get(key, 0));
+		}
+		return "{" + string + "}";
+	}
+	
+	/**
+	 * Returns the number of keys in the table.
+	 * 
+	 * @return the number of keys
+	 */
+	public int size() {
+		return size + (hasEmpty ? 1 : 0);
+	}
+	
+	/**
+	 * Indicates whether a key is in the table.
+	 * 
+	 * @param key the key
+	 * @return true if the key is in the table, false otherwise
+	 */
+	public boolean containsKey(long key) {
+		if(key == EMPTY)
+			return hasEmpty;
+		else
+			return keys[find(key)] != EMPTY;
+	}
+	
+	/**
+	 * Returns the value associated with a key, or a given value if the key is
+	 * not in the table.
+	 * 
+	 * @param key the key
+	 * @param missing the value to return if the key is not in the table
+	 * @return the key's value, or the missing value
+	 */
+	public int get(long key, int missing) {
+		if(key == EMPTY)
+			return hasEmpty ? emptyValue : missing;
+		int slot = find(key);
+		if(keys[slot] == EMPTY)
+			return missing;
+		else
+			return values[slot];
+	}
+	
+	/**
+	 * Associates a value with a key, replacing any value the key already had.
+	 * 
+	 * @param key the key
+	 * @param value the value
+	 */
+	public void put(long key, int value) {
+		if(key == EMPTY) {
+			hasEmpty = true;
+			emptyValue = value;
+			return;
+		}
+		int slot = find(key);
+		values[slot] = value;
+		if(keys[slot] == EMPTY) {
+			keys[slot] = key;
+			size++;
+			if(size * 3 > keys.length * 2)
+				grow();
+		}
+	}
+	
+	/**
+	 * Removes every key from the table.
+	 */
+	public void clear() {
+		if(keys.length > MIN_CAPACITY) {
+			keys = new long[MIN_CAPACITY];
+			values = new int[MIN_CAPACITY];
+		}
+		Arrays.fill(keys, EMPTY);
+		size = 0;
+		hasEmpty = false;
+	}
+	
+	/**
+	 * Returns a new array of every key in the table, in no particular order.
+	 * Changes to the table do not affect the array.
+	 * 
+	 * @return an array of keys
+	 */
+	public long[] keys() {
+		long[] result = new long[size()];
+		int count = 0;
+		for(long key : keys)
+			if(key != EMPTY)
+				result[count++] = key;
+		if(hasEmpty)
+			result[count] = EMPTY;
+		return result;
+	}
+	
+	/**
+	 * Returns the slot that holds a key, or the empty slot where the key would
+	 * be put if it is not in the table.
+	 * 
+	 * @param key the key
+	 * @return the key's slot
+	 */
+	private final int find(long key) {
+		int mask = keys.length - 1;
+		int slot = hash(key) & mask;
+		while(keys[slot] != EMPTY && keys[slot] != key)
+			slot = (slot + 1) & mask;
+		return slot;
+	}
+	
+	/**
+	 * Doubles the number of slots in the table and moves every key to its new
+	 * slot.
+	 */
+	private final void grow() {
+		long[] keys = this.keys;
+		int[] values = this.values;
+		this.keys = new long[keys.length * 2];
+		this.values = new int[keys.length * 2];
+		Arrays.fill(this.keys, EMPTY);
+		for(int i=0; i<keys.length; i++) {
+			if(keys[i] != EMPTY) {
+				int slot = find(keys[i]);
+				this.keys[slot] = keys[i];
+				this.values[slot] = values[i];
+			}
+		}
+	}
+	
+	/**
+	 * Spreads the bits of a key so that keys which differ only in their high
+	 * or low bits, such as consecutive node numbers, are spread evenly across
+	 * the table.
+	 * 
+	 * @param key the key
+	 * @return a hash code for the key
+	 */
+	private static final int hash(long key) {
+		key *= 0x9E3779B97F4A7C15L;
+		return (int) (key ^ (key >>> 32));
+	}
+}
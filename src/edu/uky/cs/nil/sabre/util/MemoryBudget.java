@@ -125,6 +125,26 @@ public class MemoryBudget implements Serializable {
 		return reducation;
 	}
 	
+	/**
+	 * Returns memory to the budget that was previously taken by {@link
+	 * #reduce(long)}, such as when a data structure which used that memory
+	 * is discarded. The budget will never have more than its {@link #size
+	 * size} remaining.
+	 * 
+	 * @param bytes the number of bytes to return to the budget
+	 * @return the number of bytes the budget was increased by, which may be
+	 * less than the requested amount if less than that had been used
+	 */
+	public long release(long bytes) {
+		if(size == UNLIMITED)
+			return bytes;
+		else if(bytes < 0)
+			return 0;
+		long increase = Math.min(bytes, size - remaining);
+		remaining += increase;
+		return increase;
+	}
+	
 	private static final String[] SUFFIX = new String[] { "k",    "M",    "G",    "T",    "P",   "E" };
 	private static final long[] MULTIPLIER = new long[] { pow(1), pow(2), pow(3), pow(4), pow(5), pow(6) };
 	private static final DecimalFormat FORMAT = new DecimalFormat("#.#");
@@ -5,6 +5,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -37,6 +38,16 @@ public abstract class Worker {
 	 * cost and can be done frequently, whereas {@link #toString() generating}
 	 * and displaying the message is more costly and will be done much less
 	 * frequently.
+	 * <p>
+	 * A status can also be used to ask a process to stop early. Anyone holding
+	 * the status can {@link #cancel() cancel} it, and the process should check
+	 * {@link #isCancelled()} periodically and return as soon as it can when
+	 * that method reports true. A cancellation only applies to the process
+	 * that is running when it happens. The same status is often shared by
+	 * several processes that run one after another, so {@link Worker} calls
+	 * {@link #start()} to clear the cancellation before each process begins,
+	 * and anyone else who runs a process with a status that may have been
+	 * used before should do the same.
 	 * 
 	 * @author Stephen G. Ware
 	 */
@@ -44,6 +55,7 @@ public abstract class Worker {
 		
 		private String message = "working...";
 		private Object[] arguments = NO_ARGUMENTS;
+		private volatile boolean cancelled = false;
 		
 		/**
 		 * Constructs a new status with a given message and arguments.
@@ -109,6 +121,33 @@ public abstract class Worker {
 		public void update(int index, Object value) {
 			arguments[index] = value;
 		}
+		
+		/**
+		 * Prepares this status to be used by a new process by clearing any
+		 * {@link #cancel() cancellation} requested for an earlier process.
+		 * This method should be called before the new process starts, so that
+		 * a cancellation which arrives while it runs is never lost.
+		 */
+		public void start() {
+			cancelled = false;
+		}
+		
+		/**
+		 * Asks the process using this status to stop as soon as it can. This
+		 * method may be called from any thread.
+		 */
+		public void cancel() {
+			cancelled = true;
+		}
+		
+		/**
+		 * Indicates whether this status has been {@link #cancel() cancelled}.
+		 * 
+		 * @return true if the process using this status should stop
+		 */
+		public boolean isCancelled() {
+			return cancelled;
+		}
 	}
 	
 	/**
@@ -135,7 +174,9 @@ public abstract class Worker {
 	/**
 	 * Runs a {@link Getter}, printing a {@link Status status update} from a
 	 * given status to standard output with a given frequency until a value is
-	 * returned or an exception is thrown.
+	 * returned or an exception is thrown. The status is {@link Status#start()
+	 * started} before the getter runs, and it is {@link Status#cancel()
+	 * cancelled} if the thread waiting for the value is interrupted.
 	 * 
 	 * @param <T> the type of value returned by the getter
 	 * @param getter the getter
@@ -151,6 +192,7 @@ public abstract class Worker {
 		Throwable throwable = null;
 		boolean hasPrinted = false;
 		int pad = 0;
+		status.start();
 		ExecutorService executor = Executors.newSingleThreadExecutor();
 		Future<T> future = executor.submit(() -> {
 			return getter.get(status);
@@ -166,8 +208,10 @@ public abstract class Worker {
 				System.out.print("\r" + String.format("%-" + pad + "s", string));
 				hasPrinted = true;
 			}
-			// If the task is cancelled or the current thread gets interrupted, return null.
+			// If the task is cancelled or the current thread gets interrupted, stop the task and return null.
 			catch(CancellationException | InterruptedException e) {
+				status.cancel();
+				future.cancel(true);
 				throwable = e;
 				break;
 			}
@@ -240,6 +284,36 @@ public abstract class Worker {
 		return get(getter, DEFAULT_FREQUENCY, DEFAULT_TIME_UNIT);
 	}
 	
+	/**
+	 * Starts running a {@link Getter} in a new background thread and returns
+	 * a {@link Future} which can be used to wait for its value or to cancel
+	 * it. {@link Future#cancel(boolean) Cancelling} the future also {@link
+	 * Status#cancel() cancels} the status, so a getter which checks its status
+	 * will stop soon after, even if the future is cancelled without
+	 * interrupting its thread. The status is {@link Status#start() started}
+	 * before the getter runs, so an earlier cancellation does not stop it.
+	 * 
+	 * @param <T> the type of value returned by the getter
+	 * @param getter the getter
+	 * @param status the status object to be updated while the getter runs
+	 * @return a future for the value the getter will return
+	 */
+	public static final <T> Future<T> submit(Getter<T> getter, Status status) {
+		status.start();
+		FutureTask<T> future = new FutureTask<T>(() -> getter.get(status)) {
+			
+			@Override
+			public boolean cancel(boolean interrupt) {
+				status.cancel();
+				return super.cancel(interrupt);
+			}
+		};
+		Thread thread = new Thread(future, "Worker");
+		thread.setDaemon(true);
+		thread.start();
+		return future;
+	}
+	
 	/**
 	 * A runner is a {@link Worker} whose long-running process does not return
 	 * a value.
@@ -1,11 +1,27 @@
 package r7.sabre.spaces;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashSet;
 
 import edu.uky.cs.nil.sabre.Problem;
+import edu.uky.cs.nil.sabre.comp.CompiledAction;
+import edu.uky.cs.nil.sabre.comp.CompiledProblem;
+import r7.sabre.spaces.distance.DistanceMetric;
 
 /**
  * A story space maintains a list of {@link StoryPlan story plans} for a given {@link Problem problem}.
+ * A story space never holds two stories with the same sequence of actions; stories which differ only
+ * in how their actions are explained are treated as duplicates, and only the first is kept. A story
+ * can also be {@link #add(StoryPlan, DistanceMetric, double) required to be some minimum distance}
+ * from every story already in the space, so that the space only holds stories which are meaningfully
+ * different from one another.
+ * <p>
+ * The action sequences used to detect duplicates can be {@link #checkpoint(DataOutput) saved} and
+ * {@link #restore(DataInput, CompiledProblem) restored} along with a search, so that a resumed search
+ * does not report a story that was already found before it was saved.
  * 
  * @author Rachelyn Farrell
  */
@@ -17,6 +33,12 @@ public class StorySpace {
 	/** The list of story plans that solve the problem **/
 	protected ArrayList<StoryPlan> stories;
 	
+	/** The action sequences of the stories in the list, used to detect duplicates **/
+	protected HashSet<ArrayList<CompiledAction>> sequences;
+	
+	/** The distance metric which was last initialized with this space, or null if none has been **/
+	protected DistanceMetric metric;
+	
 	/**
 	 * Creates a new story space for a given problem.
 	 * 
@@ -25,6 +47,7 @@ public class StorySpace {
 	public StorySpace(Problem problem) {
 		this.problem = problem;
 		this.stories = new ArrayList<StoryPlan>();
+		this.sequences = new HashSet<ArrayList<CompiledAction>>();
 	}
 
 	/**
@@ -37,12 +60,54 @@ public class StorySpace {
 	}
 	
 	/**
-	 * Adds a new {@link StoryPlan story plan} to the list.
+	 * Adds a new {@link StoryPlan story plan} to the list, unless a story with the same sequence of
+	 * actions is already in the list. Since no distance metric is told about the story, the next
+	 * metric used with this space will be {@link DistanceMetric#initialize(StorySpace) initialized}
+	 * again.
 	 * 
 	 * @param story the story to add
+	 * @return true if the story was added, false if it was a duplicate
 	 */
-	public void add(StoryPlan story) {
+	public boolean add(StoryPlan story) {
+		if(!sequences.add(getSequence(story)))
+			return false;
 		this.stories.add(story);
+		this.metric = null;
+		return true;
+	}
+	
+	/**
+	 * Adds a new {@link StoryPlan story plan} to the list, unless a story with the same sequence of
+	 * actions is already in the list or the new story is less than a minimum distance from any story
+	 * in the list. The first time a metric is used, it is {@link DistanceMetric#initialize(StorySpace)
+	 * initialized} with the stories in the list, so metrics which depend on the whole set of stories
+	 * can be used. The new story is {@link DistanceMetric#getCandidateDistance(StoryPlan, StoryPlan)
+	 * measured as a candidate}, and the metric is only {@link DistanceMetric#add(StoryPlan) told about}
+	 * it once it has been accepted, so a rejected story has no effect on later distances and adding a
+	 * story does not require looking at every story again.
+	 * 
+	 * @param story the story to add
+	 * @param metric the distance metric used to compare stories, or null if distance does not matter
+	 * @param minimum the smallest allowed distance between the new story and any story in the list
+	 * @return true if the story was added, false if it was a duplicate or too close to another story
+	 */
+	public boolean add(StoryPlan story, DistanceMetric metric, double minimum) {
+		if(metric == null || minimum <= 0 || stories.isEmpty())
+			return add(story);
+		ArrayList<CompiledAction> sequence = getSequence(story);
+		if(sequences.contains(sequence))
+			return false;
+		if(metric != this.metric) {
+			metric.initialize(this);
+			this.metric = metric;
+		}
+		for(int i=0; i<stories.size(); i++)
+			if(metric.getCandidateDistance(stories.get(i), story) < minimum)
+				return false;
+		sequences.add(sequence);
+		stories.add(story);
+		metric.add(story);
+		return true;
 	}
 	
 	/**
@@ -63,5 +128,59 @@ public class StorySpace {
 	public ArrayList<StoryPlan> getStories(){
 		return stories;
 	}
-		
+	
+	/**
+	 * Writes the action sequences of the stories in this space to a stream. The stories themselves
+	 * are not written.
+	 * 
+	 * @param out the stream
+	 * @throws IOException if the stream cannot be written
+	 */
+	public void checkpoint(DataOutput out) throws IOException {
+		out.writeInt(sequences.size());
+		for(ArrayList<CompiledAction> sequence : sequences) {
+			out.writeInt(sequence.size());
+			for(CompiledAction action : sequence)
+				out.writeInt(action.id);
+		}
+	}
+	
+	/**
+	 * Replaces the contents of this space with action sequences read from a stream which was written
+	 * by {@link #checkpoint(DataOutput)}. Because only the sequences were saved, the list of stories
+	 * will be empty, but a story with the same actions as one that was saved will still be treated as
+	 * a duplicate.
+	 * 
+	 * @param in the stream
+	 * @param problem the compiled problem whose {@link CompiledProblem#actions actions} the sequences
+	 * refer to
+	 * @throws IOException if the stream cannot be read
+	 */
+	public void restore(DataInput in, CompiledProblem problem) throws IOException {
+		stories.clear();
+		sequences.clear();
+		metric = null;
+		int size = in.readInt();
+		for(int i=0; i<size; i++) {
+			int length = in.readInt();
+			ArrayList<CompiledAction> sequence = new ArrayList<>(length);
+			for(int j=0; j<length; j++)
+				sequence.add(problem.actions.get(in.readInt()));
+			sequences.add(sequence);
+		}
+	}
+	
+	/**
+	 * Returns the sequence of {@link CompiledAction actions} in a {@link StoryPlan story}, which
+	 * identifies the story regardless of how its actions are explained.
+	 * 
+	 * @param story the story
+	 * @return the story's actions, in order
+	 */
+	protected static ArrayList<CompiledAction> getSequence(StoryPlan story) {
+		ArrayList<CompiledAction> sequence = new ArrayList<>(story.size());
+		for(int i=0; i<story.size(); i++)
+			sequence.add(story.get(i).getAction());
+		return sequence;
+	}
 }
@@ -32,6 +32,21 @@ public abstract class DistanceMetric {
 	 */
 	public abstract double getDistance(StoryPlan storyA, StoryPlan storyB);
 	
+	/**
+	 * Returns the distance between a {@link StoryPlan story} this metric already knows about and a
+	 * candidate story which it has not been {@link #add(StoryPlan) told about} yet. The candidate is
+	 * measured as if it had been added, but the metric is not changed, so a candidate which is
+	 * rejected has no effect on later distances. By default, this is the same as {@link
+	 * #getDistance(StoryPlan, StoryPlan)}.
+	 * 
+	 * @param story a story the metric was initialized or updated with
+	 * @param candidate a story which may be added later
+	 * @return the distance between the story and the candidate
+	 */
+	public double getCandidateDistance(StoryPlan story, StoryPlan candidate) {
+		return getDistance(story, candidate);
+	}
+	
 	/**
 	 * Creates a {@link DistanceMatrix distance matrix} for the given {@link StorySpace 
 	 * stories} using this distance metric for comparison.
@@ -58,4 +73,13 @@ public abstract class DistanceMetric {
 	 * @param storySpace the solutions with which to initialize the metric
 	 */
 	public void initialize(StorySpace storySpace) {}
+	
+	/**
+	 * Updates the distance metric for a new {@link StoryPlan story} which was added to the {@link
+	 * StorySpace solutions} it was last {@link #initialize(StorySpace) initialized} with, so that the
+	 * new story can be compared without initializing the metric again.
+	 * 
+	 * @param story the new story
+	 */
+	public void add(StoryPlan story) {}
 }
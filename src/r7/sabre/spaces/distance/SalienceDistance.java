@@ -49,6 +49,21 @@ public class SalienceDistance extends DistanceMetric {
 	
 	/** The list of character goals that appear in the explanations of actions in the solution **/
 	protected CharacterGoal[] goals;
+	
+	/** The {@link CompiledAction actions} that appear in the {@link StorySpace solutions}, in the order they were found **/
+	protected LinkedHashSet<CompiledAction> uniqueActions = new LinkedHashSet<>();
+	
+	/** The character goals that appear in the {@link StorySpace solutions}, in the order they were found **/
+	protected LinkedHashSet<CharacterGoal> uniqueGoals = new LinkedHashSet<>();
+	
+	/** The last candidate story measured by {@link #getCandidateDistance(StoryPlan, StoryPlan)}, or null **/
+	private StoryPlan candidate = null;
+	
+	/** The actions in the solutions and in the {@link #candidate candidate} **/
+	private CompiledAction[] candidateActions;
+	
+	/** The goals in the solutions and in the {@link #candidate candidate} **/
+	private CharacterGoal[] candidateGoals;
 
 	/**
 	 * Creates a new salience distance metric for a given problem. 
@@ -76,27 +91,67 @@ public class SalienceDistance extends DistanceMetric {
 	/** Populates the lists of goals and actions that appear in the {@link StorySpace story space} **/
 	@Override
 	public void initialize(StorySpace storySpace) {
-		LinkedHashSet<CompiledAction> uniqueActions = new LinkedHashSet<>();
-		LinkedHashSet<CharacterGoal> uniqueGoals = new LinkedHashSet<>();
-		for(StoryPlan story : storySpace.getStories()) {
-			for(int i=0; i<story.size(); i++) {
-				uniqueActions.add(story.get(i).getAction());
-				for(CharacterGoal g : story.get(i).getGoals())
-					uniqueGoals.add(g);
-			}
-		}
-		goals = new CharacterGoal[uniqueGoals.size()];
-		int i=0;
-		for(CharacterGoal g : uniqueGoals) {
-			goals[i] = g;
-			i++;
+		uniqueActions.clear();
+		uniqueGoals.clear();
+		for(StoryPlan story : storySpace.getStories())
+			collect(story, uniqueActions, uniqueGoals);
+		update();
+	}
+	
+	/** Adds the goals and actions that appear in a new story to the lists **/
+	@Override
+	public void add(StoryPlan story) {
+		if(collect(story, uniqueActions, uniqueGoals))
+			update();
+	}
+	
+	/**
+	 * Adds the goals and actions that appear in a story to sets of unique goals and actions.
+	 * 
+	 * @param story the story
+	 * @param uniqueActions the set of actions
+	 * @param uniqueGoals the set of goals
+	 * @return true if a new goal or action was found
+	 */
+	private static boolean collect(StoryPlan story, LinkedHashSet<CompiledAction> uniqueActions, LinkedHashSet<CharacterGoal> uniqueGoals) {
+		boolean changed = false;
+		for(int i=0; i<story.size(); i++) {
+			changed = uniqueActions.add(story.get(i).getAction()) || changed;
+			for(CharacterGoal g : story.get(i).getGoals())
+				changed = uniqueGoals.add(g) || changed;
 		}
-		actions = new CompiledAction[uniqueActions.size()];
-		i=0;
-		for(CompiledAction a : uniqueActions) {
-			actions[i] = a;
-			i++;
+		return changed;
+	}
+	
+	/** Rebuilds the lists of goals and actions from the sets of unique goals and actions **/
+	private void update() {
+		goals = uniqueGoals.toArray(new CharacterGoal[uniqueGoals.size()]);
+		actions = uniqueActions.toArray(new CompiledAction[uniqueActions.size()]);
+		candidate = null;
+	}
+	
+	/**
+	 * Returns the salience distance between a story and a candidate story using the default index
+	 * weights. The candidate's goals and actions are included in both salience vectors, as if it had
+	 * been {@link #add(StoryPlan) added}, but the lists of goals and actions are not changed.
+	 * 
+	 * @param story a story
+	 * @param candidate a story which may be added later
+	 * @return the salience distance between the given stories
+	 */
+	@Override
+	public double getCandidateDistance(StoryPlan story, StoryPlan candidate) {
+		if(candidate != this.candidate) {
+			LinkedHashSet<CompiledAction> actions = new LinkedHashSet<>(uniqueActions);
+			LinkedHashSet<CharacterGoal> goals = new LinkedHashSet<>(uniqueGoals);
+			collect(candidate, actions, goals);
+			this.candidate = candidate;
+			this.candidateActions = actions.toArray(new CompiledAction[actions.size()]);
+			this.candidateGoals = goals.toArray(new CharacterGoal[goals.size()]);
 		}
+		SalienceVector vectorA = getSalienceVector(story, candidateActions, candidateGoals);
+		SalienceVector vectorB = getSalienceVector(candidate, candidateActions, candidateGoals);
+		return getDistance(vectorA, vectorB, DEFAULT_INDEX_WEIGHTS);
 	}
 	
 	/**
@@ -168,6 +223,19 @@ public class SalienceDistance extends DistanceMetric {
 	 * @return the salience vector for the story
 	 */
 	protected SalienceVector getSalienceVector(StoryPlan story) {
+		return getSalienceVector(story, actions, goals);
+	}
+	
+	/**
+	 * Returns a new {@link SalienceVector salience vector} for the given {@link StoryPlan story plan}
+	 * whose causality and intentionality indices are for the given actions and goals.
+	 * 
+	 * @param story the story
+	 * @param actions the actions for the causality index
+	 * @param goals the goals for the intentionality index
+	 * @return the salience vector for the story
+	 */
+	private SalienceVector getSalienceVector(StoryPlan story, CompiledAction[] actions, CharacterGoal[] goals) {
 		SalienceVector salienceVector = new SalienceVector(characters.length, places.size(), times.size(), actions.length, goals.length);
 		for(int i=0; i<story.size(); i++) {
 			StoryAction action = story.get(i);